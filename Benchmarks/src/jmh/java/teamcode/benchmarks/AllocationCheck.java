@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import TrcCommonLib.trclib.TrcRobot;
+import teamcode.Robot;
+import teamcode.RobotParams;
+
+/**
+ * This class asserts that the per-loop code that is meant to be allocation free really is. JMH only reports
+ * gc.alloc.rate.norm, nothing fails when it goes up. This check runs each operation until the JIT has compiled it,
+ * then measures the bytes the thread allocates over many more runs and exits with an error if it is not zero. It
+ * runs as the checkAllocations task, which the check task depends on.
+ */
+public class AllocationCheck
+{
+    private static final int WARMUP_RUNS = 50000;
+    private static final int MEASURED_RUNS = 10000;
+
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static long sink = 0;
+
+    /**
+     * This method runs all the checks and exits with status 1 if any of them allocated.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args)
+    {
+        BenchmarkRobot.createSimRobot(RobotParams.RobotType.MecanumRobot, true);
+        Robot robot = new Robot(TrcRobot.RunMode.TELEOP_MODE);
+        boolean passed = true;
+
+        // Steady state status rendering, the values are not changing.
+        passed &= check("renderStatus", () ->
+        {
+            int numLines = robot.renderStatus();
+
+            for (int i = 0; i < numLines; i++)
+            {
+                sink += robot.getStatusLine(i).getText().length();
+            }
+        });
+
+        System.exit(passed? 0: 1);
+    }   //main
+
+    /**
+     * This method warms up the operation and checks that it does not allocate.
+     *
+     * @param name specifies the name of the operation.
+     * @param operation specifies the operation.
+     * @return true if the operation did not allocate, false otherwise.
+     */
+    private static boolean check(String name, Runnable operation)
+    {
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_RUNS; i++)
+        {
+            operation.run();
+        }
+        // Reading the counter may allocate itself, measure that first and take it off.
+        long overhead = threadMXBean.getThreadAllocatedBytes(threadId);
+        overhead = threadMXBean.getThreadAllocatedBytes(threadId) - overhead;
+
+        long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RUNS; i++)
+        {
+            operation.run();
+        }
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes - overhead;
+        boolean passed = allocatedBytes <= 0;
+
+        System.out.printf(
+            "%s: %s, %.2f bytes per operation (sink=%d)%n", name, passed? "PASSED": "FAILED",
+            (double) Math.max(allocatedBytes, 0)/MEASURED_RUNS, sink);
+
+        return passed;
+    }   //check
+
+}   //class AllocationCheck
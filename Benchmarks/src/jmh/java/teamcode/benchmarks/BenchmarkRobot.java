@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import teamcode.RobotParams;
+import teamcode.simulation.SimRobot;
+
+/**
+ * This class creates the simulated robot shared by the benchmarks. Hub transaction time is set to zero so that the
+ * benchmarks measure the CPU cost of our code, not the simulated I/O latency.
+ */
+public class BenchmarkRobot
+{
+    /**
+     * This method configures the robot preferences and creates the simulated robot hardware.
+     *
+     * @param robotType specifies the robot type.
+     * @param useSubsystems specifies true to create subsystem hardware, false for drive base only.
+     * @return simulated robot.
+     */
+    public static SimRobot createSimRobot(RobotParams.RobotType robotType, boolean useSubsystems)
+    {
+        RobotParams.Preferences.robotType = robotType;
+        RobotParams.Preferences.useSubsystems = useSubsystems;
+        RobotParams.Preferences.useTraceLog = false;
+        RobotParams.Preferences.useBlinkin = false;
+        RobotParams.Preferences.useBatteryMonitor = false;
+        RobotParams.Preferences.tuneColorBlobVision = false;
+        RobotParams.Preferences.useAprilTagVision = false;
+        RobotParams.Preferences.useColorBlobVision = false;
+        RobotParams.Preferences.useTensorFlowVision = false;
+
+        SimRobot simRobot = new SimRobot(null);
+        simRobot.setTransactionTime(0);
+
+        return simRobot;
+    }   //createSimRobot
+
+}   //class BenchmarkRobot
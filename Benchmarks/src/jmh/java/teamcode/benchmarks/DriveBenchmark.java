@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcRobot;
+import teamcode.Robot;
+import teamcode.RobotParams;
+import teamcode.simulation.SimRobot;
+
+/**
+ * This class benchmarks holonomicDrive of the mecanum and swerve drive bases on simulated hardware. This is the
+ * call TeleOp makes every loop with the gamepad inputs.
+ */
+@State(Scope.Thread)
+public class DriveBenchmark
+{
+    @Param({"MecanumRobot", "SwerveRobot"})
+    public RobotParams.RobotType robotType;
+
+    private SimRobot simRobot;
+    private TrcDriveBase driveBase;
+    private int loopCount = 0;
+
+    @Setup
+    public void setup()
+    {
+        simRobot = BenchmarkRobot.createSimRobot(robotType, false);
+        Robot robot = simRobot.createRobot(TrcRobot.RunMode.TELEOP_MODE);
+        driveBase = robot.robotDrive.driveBase;
+    }   //setup
+
+    @Benchmark
+    public void holonomicDrive()
+    {
+        double value = (loopCount++ & 0xff)/255.0;
+
+        driveBase.holonomicDrive(null, value, 1.0 - value, value - 0.5, driveBase.getDriveGyroAngle());
+    }   //holonomicDrive
+
+}   //class DriveBenchmark
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import teamcode.RobotParams;
+import teamcode.subsystems.Elevator;
+
+/**
+ * This class benchmarks the elevator gravity compensation that the PID controller calls every loop while the
+ * elevator is holding or moving.
+ */
+@State(Scope.Thread)
+public class ElevatorBenchmark
+{
+    private Elevator elevator;
+
+    @Setup
+    public void setup()
+    {
+        BenchmarkRobot.createSimRobot(RobotParams.RobotType.MecanumRobot, true);
+        elevator = new Elevator();
+    }   //setup
+
+    @Benchmark
+    public double getPowerComp()
+    {
+        return elevator.getPowerComp(0.5);
+    }   //getPowerComp
+
+}   //class ElevatorBenchmark
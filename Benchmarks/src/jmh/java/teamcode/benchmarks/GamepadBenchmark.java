@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import TrcFtcLib.ftclib.FtcGamepad;
+import teamcode.RobotParams;
+
+/**
+ * This class benchmarks the driver gamepad processing done every TeleOp loop.
+ */
+@State(Scope.Thread)
+public class GamepadBenchmark
+{
+    private Gamepad gamepad;
+    private FtcGamepad driverGamepad;
+    private int loopCount = 0;
+
+    @Setup
+    public void setup()
+    {
+        gamepad = new Gamepad();
+        driverGamepad = new FtcGamepad("DriverGamepad", gamepad, null);
+        driverGamepad.setYInverted(true);
+    }   //setup
+
+    @Benchmark
+    public double[] getDriveInputs()
+    {
+        // Move the sticks so the deadband and scaling code sees changing values.
+        float value = (loopCount++ & 0xff)/255.0f;
+        gamepad.left_stick_x = value;
+        gamepad.left_stick_y = -value;
+        gamepad.right_stick_x = 1.0f - value;
+
+        return driverGamepad.getDriveInputs(
+            RobotParams.ROBOT_DRIVE_MODE, true, RobotParams.DRIVE_POWER_SCALE_NORMAL,
+            RobotParams.TURN_POWER_SCALE_NORMAL);
+    }   //getDriveInputs
+
+}   //class GamepadBenchmark
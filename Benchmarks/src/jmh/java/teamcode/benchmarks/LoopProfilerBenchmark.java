@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import teamcode.telemetry.LoopProfiler;
+import teamcode.telemetry.StatusLine;
+
+/**
+ * This class benchmarks the overhead the loop profiler adds to every profiled phase. The profiler is meant to stay on
+ * during matches.
+ */
+@State(Scope.Thread)
+public class LoopProfilerBenchmark
+{
+    private LoopProfiler profiler;
+    private int phase;
+
+    @Setup
+    public void setup()
+    {
+        profiler = new LoopProfiler("Benchmark");
+        phase = profiler.addPhase("Phase");
+        profiler.setEnabled(true);
+    }   //setup
+
+    @Benchmark
+    public void profilePhase()
+    {
+        profiler.beginLoop();
+        profiler.start(phase);
+        profiler.stop(phase);
+        profiler.endLoop();
+    }   //profilePhase
+
+    @Benchmark
+    public StatusLine renderSummary()
+    {
+        return profiler.getSummary(phase);
+    }   //renderSummary
+
+}   //class LoopProfilerBenchmark
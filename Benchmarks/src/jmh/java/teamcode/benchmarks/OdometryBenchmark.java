@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcOdometryWheels;
+import TrcCommonLib.trclib.TrcRobot;
+import teamcode.Robot;
+import teamcode.RobotParams;
+import teamcode.drivebases.DeadWheelOdometry;
+import teamcode.drivebases.RobotDrive;
+import teamcode.simulation.SimRobot;
+
+/**
+ * This class benchmarks the dead wheel odometry update the drive base runs every loop. The robot is driving so the
+ * odometry sees changing encoder values. simStep is the cost of advancing the simulation alone and should be
+ * subtracted from updateOdometry. integrateArc is one constant curvature step of the odometry thread without the
+ * encoder reads.
+ */
+@State(Scope.Thread)
+public class OdometryBenchmark
+{
+    private static final double LOOP_PERIOD = 0.01;
+
+    private SimRobot simRobot;
+    private TrcOdometryWheels odometry;
+    private DeadWheelOdometry deadWheelOdometry;
+
+    @Setup
+    public void setup()
+    {
+        RobotParams.Preferences.useExternalOdometry = true;
+        simRobot = BenchmarkRobot.createSimRobot(RobotParams.RobotType.MecanumRobot, false);
+        Robot robot = simRobot.createRobot(TrcRobot.RunMode.TELEOP_MODE);
+        RobotDrive robotDrive = robot.robotDrive;
+        // Same odometry configuration as MecanumDrive.
+        odometry = new TrcOdometryWheels(
+            new TrcOdometryWheels.AxisSensor(
+                robotDrive.driveMotors[RobotDrive.INDEX_RIGHT_FRONT], RobotParams.X_ODWHEEL_Y_OFFSET,
+                RobotParams.X_ODWHEEL_X_OFFSET),
+            new TrcOdometryWheels.AxisSensor[] {
+                new TrcOdometryWheels.AxisSensor(
+                    robotDrive.driveMotors[RobotDrive.INDEX_LEFT_BACK], RobotParams.YLEFT_ODWHEEL_X_OFFSET,
+                    RobotParams.YLEFT_ODWHEEL_Y_OFFSET),
+                new TrcOdometryWheels.AxisSensor(
+                    robotDrive.driveMotors[RobotDrive.INDEX_RIGHT_BACK], RobotParams.YRIGHT_ODWHEEL_X_OFFSET,
+                    RobotParams.YRIGHT_ODWHEEL_Y_OFFSET)},
+            robotDrive.gyro);
+        deadWheelOdometry = new DeadWheelOdometry(
+            "deadWheelOdometry", null, null, RobotParams.X_ODWHEEL_Y_OFFSET, null, RobotParams.YLEFT_ODWHEEL_X_OFFSET,
+            null, RobotParams.YRIGHT_ODWHEEL_X_OFFSET, RobotParams.ODWHEEL_INCHES_PER_COUNT, null,
+            RobotParams.ODOMETRY_THREAD_PERIOD);
+        robotDrive.driveBase.holonomicDrive(0.3, 0.5, 0.2);
+    }   //setup
+
+    @Benchmark
+    public void simStep()
+    {
+        simRobot.step(LOOP_PERIOD);
+    }   //simStep
+
+    @Benchmark
+    public TrcDriveBase.Odometry updateOdometry()
+    {
+        simRobot.step(LOOP_PERIOD);
+        return odometry.getOdometryDelta();
+    }   //updateOdometry
+
+    @Benchmark
+    public void integrateArc()
+    {
+        // One 5 msec step of driving forward while turning clockwise.
+        deadWheelOdometry.integrate(0.01, 0.32, 0.28, Double.NaN);
+    }   //integrateArc
+
+}   //class OdometryBenchmark
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import teamcode.Robot;
+import teamcode.RobotParams;
+import teamcode.drivebases.KalmanPoseEstimator;
+import teamcode.simulation.SimRobot;
+
+/**
+ * This class benchmarks the Kalman filter pose estimator. step and visionReplay run the filter without a drive base.
+ * estimatorTask runs the estimator the way the robot does on a simulated robot while it is driving: the drive base
+ * odometry update steps the filter with the odometry wheels and the sampled IMU heading, and the pre periodic task
+ * publishes the pose. It also runs the other pre periodic
+ * tasks the robot registers (e.g. the bulk read cache). simStep is the cost of advancing the simulation alone and
+ * should be subtracted from estimatorTask.
+ */
+@State(Scope.Thread)
+public class PoseEstimatorBenchmark
+{
+    private static final long LOOP_NANOS = 25000000L;
+    private static final double LOOP_PERIOD = 0.01;
+
+    private KalmanPoseEstimator estimator;
+    private long timestamp;
+    private SimRobot simRobot;
+    private Robot robot;
+
+    @Setup
+    public void setup()
+    {
+        estimator = new KalmanPoseEstimator("Benchmark", null, 64);
+        timestamp = 0;
+        estimator.resetPose(0.0, 0.0, 0.0, timestamp);
+        for (int i = 0; i < 64; i++)
+        {
+            step();
+        }
+
+        simRobot = BenchmarkRobot.createSimRobot(RobotParams.RobotType.MecanumRobot, false);
+        RobotParams.Preferences.usePoseEstimator = true;
+        RobotParams.Preferences.useImuSampler = true;
+        robot = simRobot.createRobot(TrcRobot.RunMode.TELEOP_MODE);
+        robot.startMode(TrcRobot.RunMode.TELEOP_MODE);
+        robot.robotDrive.driveBase.holonomicDrive(0.3, 0.5, 0.2);
+    }   //setup
+
+    @TearDown
+    public void tearDown()
+    {
+        robot.stopMode(TrcRobot.RunMode.TELEOP_MODE);
+        RobotParams.Preferences.usePoseEstimator = false;
+    }   //tearDown
+
+    @Benchmark
+    public double step()
+    {
+        timestamp += LOOP_NANOS;
+        estimator.step(0.1, 1.0, 0.5, estimator.getHeading(), timestamp);
+
+        return estimator.getY();
+    }   //step
+
+    @Benchmark
+    public boolean visionReplay()
+    {
+        // A frame captured 4 loops ago, replaying 4 steps.
+        step();
+        return estimator.addVisionMeasurement(
+            estimator.getX(), estimator.getY(), estimator.getHeading(), timestamp - 4*LOOP_NANOS, null);
+    }   //visionReplay
+
+    @Benchmark
+    public void simStep()
+    {
+        simRobot.step(LOOP_PERIOD);
+    }   //simStep
+
+    @Benchmark
+    public double estimatorTask()
+    {
+        simRobot.step(LOOP_PERIOD);
+        // The odometry update of the drive base steps the filter, the pre periodic task publishes the pose.
+        robot.robotDrive.poseEstimator.getOdometryDelta();
+        TrcTaskMgr.executeTaskType(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK, TrcRobot.RunMode.TELEOP_MODE, false);
+
+        return robot.robotDrive.poseEstimator.getY();
+    }   //estimatorTask
+
+}   //class PoseEstimatorBenchmark
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import teamcode.drivebases.PoseHistory;
+
+/**
+ * This class benchmarks the odometry pose history without a drive base.
+ */
+@State(Scope.Thread)
+public class PoseHistoryBenchmark
+{
+    private static final long LOOP_NANOS = 25000000L;
+    private static final int CAPACITY = 64;
+
+    private final double[] pose = new double[3];
+    private PoseHistory history;
+    private long timestamp;
+
+    @Setup
+    public void setup()
+    {
+        history = new PoseHistory(null, CAPACITY);
+        timestamp = 0;
+        for (int i = 0; i < CAPACITY; i++)
+        {
+            add();
+        }
+    }   //setup
+
+    @Benchmark
+    public void add()
+    {
+        timestamp += LOOP_NANOS;
+        history.add(timestamp, 0.0, timestamp/1.0e9, 0.0);
+    }   //add
+
+    @Benchmark
+    public boolean lookup()
+    {
+        // 100 msec ago, between two entries.
+        return history.getPose(timestamp - 4*LOOP_NANOS - LOOP_NANOS/2, pose);
+    }   //lookup
+
+    @Benchmark
+    public boolean relocalize()
+    {
+        add();
+        return history.relocalize(1.0, 2.0, 3.0, timestamp - 4*LOOP_NANOS, pose);
+    }   //relocalize
+
+}   //class PoseHistoryBenchmark
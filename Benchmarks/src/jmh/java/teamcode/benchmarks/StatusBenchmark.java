@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import TrcCommonLib.trclib.TrcRobot;
+import teamcode.Robot;
+import teamcode.RobotParams;
+
+/**
+ * This class benchmarks rendering of the robot status lines done by Robot.updateStatus. In steady state (values
+ * not changing) gc.alloc.rate.norm must be 0 bytes per operation. Any other number means someone put string
+ * concatenation or String.format back into the status code. AllocationCheck enforces this, it fails the check task
+ * if the steady state rendering allocates.
+ */
+@State(Scope.Thread)
+public class StatusBenchmark
+{
+    private Robot robot;
+
+    @Setup
+    public void setup()
+    {
+        BenchmarkRobot.createSimRobot(RobotParams.RobotType.MecanumRobot, true);
+        robot = new Robot(TrcRobot.RunMode.TELEOP_MODE);
+    }   //setup
+
+    @Benchmark
+    public void renderStatus(Blackhole blackhole)
+    {
+        int numLines = robot.renderStatus();
+
+        for (int i = 0; i < numLines; i++)
+        {
+            blackhole.consume(robot.getStatusLine(i).getText());
+        }
+    }   //renderStatus
+
+}   //class StatusBenchmark
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import teamcode.drivebases.SwerveKinematics;
+
+/**
+ * This class benchmarks the swerve kinematics for one loop of driving.
+ */
+@State(Scope.Thread)
+public class SwerveKinematicsBenchmark
+{
+    private final double[] currentAngles = new double[4];
+    private SwerveKinematics kinematics;
+    private double phase;
+
+    @Setup
+    public void setup()
+    {
+        kinematics = SwerveKinematics.createRectangular(14.3, 8.9);
+        phase = 0.0;
+    }   //setup
+
+    @Benchmark
+    public double calculate()
+    {
+        // Sweep the stick around so angles are flipped some of the time.
+        phase += 0.1;
+        kinematics.calculate(Math.sin(phase), Math.cos(phase), 0.3, currentAngles);
+        for (int i = 0; i < currentAngles.length; i++)
+        {
+            currentAngles[i] = kinematics.getAngle(i);
+        }
+
+        return kinematics.getPower(0);
+    }   //calculate
+
+}   //class SwerveKinematicsBenchmark
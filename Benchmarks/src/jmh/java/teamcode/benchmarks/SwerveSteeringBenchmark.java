@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import TrcCommonLib.trclib.TrcRobot;
+import teamcode.Robot;
+import teamcode.RobotParams;
+import teamcode.drivebases.SwerveDrive;
+import teamcode.drivebases.SwerveSteeringController;
+import teamcode.simulation.SimRobot;
+
+/**
+ * This class benchmarks one batch of the swerve steering controller on simulated hardware: reading the four steer
+ * encoders, computing the four PID outputs and writing the servo powers.
+ */
+@State(Scope.Thread)
+public class SwerveSteeringBenchmark
+{
+    private SwerveSteeringController steeringController;
+    private int loopCount = 0;
+
+    @Setup
+    public void setup()
+    {
+        SimRobot simRobot = BenchmarkRobot.createSimRobot(RobotParams.RobotType.SwerveRobot, false);
+        Robot robot = simRobot.createRobot(TrcRobot.RunMode.TELEOP_MODE);
+        steeringController = ((SwerveDrive) robot.robotDrive).steeringController;
+    }   //setup
+
+    @Benchmark
+    public double update()
+    {
+        // Move the targets every loop so the outputs change and the servos are written.
+        double target = (loopCount++ & 0xff) - 128.0;
+
+        for (int i = 0; i < 4; i++)
+        {
+            steeringController.setTarget(i, target);
+        }
+        steeringController.update();
+
+        return steeringController.getOutput(0);
+    }   //update
+
+}   //class SwerveSteeringBenchmark
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+
+import TrcCommonLib.trclib.TrcRobot;
+import teamcode.Robot;
+import teamcode.RobotParams;
+import teamcode.logging.TelemetryLogReader;
+import teamcode.logging.TelemetryRecorder;
+
+/**
+ * This class benchmarks the telemetry recorder. sample is the per-loop cost of recording all the robot channels.
+ * loadMatch is the desktop cost of loading a 2.5 minute match
+ * recorded at 100 loops per second. Iterations are kept short and the sample file is recreated every iteration because
+ * the recording grows by about 100 MB per second of benchmarking.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TelemetryRecorderBenchmark
+{
+    private static final int MATCH_SAMPLES = 150*100;
+
+    private Robot robot;
+    private File sampleFile;
+    private File matchFile;
+    private double timestamp = 0.0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        BenchmarkRobot.createSimRobot(RobotParams.RobotType.MecanumRobot, true);
+        RobotParams.Preferences.useTelemetryRecorder = true;
+        robot = new Robot(TrcRobot.RunMode.TELEOP_MODE);
+
+        matchFile = File.createTempFile("match", ".tlm");
+        TelemetryRecorder matchRecorder = new TelemetryRecorder();
+        for (int i = 0; i < robot.recorder.getNumChannels(); i++)
+        {
+            final int channel = i;
+            matchRecorder.addChannel("channel" + i, "", () -> Math.sin(timestamp + channel));
+        }
+        matchRecorder.open(matchFile.getPath());
+        for (int i = 0; i < MATCH_SAMPLES; i++)
+        {
+            timestamp = i*0.01;
+            matchRecorder.sample(timestamp);
+        }
+        matchRecorder.close();
+    }   //setup
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        matchFile.delete();
+    }   //tearDown
+
+    @Setup(Level.Iteration)
+    public void openSampleFile() throws IOException
+    {
+        sampleFile = File.createTempFile("sample", ".tlm");
+        robot.recorder.open(sampleFile.getPath());
+    }   //openSampleFile
+
+    @TearDown(Level.Iteration)
+    public void closeSampleFile()
+    {
+        robot.recorder.close();
+        sampleFile.delete();
+    }   //closeSampleFile
+
+    @Benchmark
+    public void sample()
+    {
+        timestamp += 0.01;
+        robot.recorder.sample(timestamp);
+    }   //sample
+
+    @Benchmark
+    public TelemetryLogReader loadMatch() throws IOException
+    {
+        return new TelemetryLogReader(matchFile.getPath());
+    }   //loadMatch
+
+}   //class TelemetryRecorderBenchmark
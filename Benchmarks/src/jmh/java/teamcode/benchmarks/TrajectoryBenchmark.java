@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import TrcCommonLib.trclib.TrcPose2D;
+import teamcode.trajectory.Trajectory;
+import teamcode.trajectory.TrajectoryGenerator;
+
+/**
+ * This class benchmarks trajectory generation at init against the per-loop sample lookup of a follower. The generate
+ * benchmark allocates the sample arrays by design and is there to show the init cost.
+ */
+@State(Scope.Thread)
+public class TrajectoryBenchmark
+{
+    private static final double LOOP_TIME = 0.025;
+    private static final TrcPose2D[] WAYPOINTS = {
+        new TrcPose2D(0.0, 0.0, 0.0), new TrcPose2D(0.0, 48.0, 90.0), new TrcPose2D(48.0, 48.0, 180.0),
+        new TrcPose2D(48.0, 0.0, 270.0)};
+
+    private TrajectoryGenerator generator;
+    private Trajectory trajectory;
+    private double time;
+
+    @Setup
+    public void setup()
+    {
+        generator = new TrajectoryGenerator(25.0, 60.0, 600.0, 40.0, 0.01);
+        trajectory = generator.generate(WAYPOINTS);
+        time = 0.0;
+    }   //setup
+
+    @Benchmark
+    public Trajectory generate()
+    {
+        return generator.generate(WAYPOINTS);
+    }   //generate
+
+    @Benchmark
+    public double lookup()
+    {
+        time += LOOP_TIME;
+        if (time > trajectory.getDuration())
+        {
+            time = 0.0;
+        }
+
+        int index = trajectory.getIndex(time);
+        return trajectory.getX(index) + trajectory.getY(index) + trajectory.getHeading(index) +
+               trajectory.getVelocity(index) + trajectory.getAcceleration(index);
+    }   //lookup
+
+}   //class TrajectoryBenchmark
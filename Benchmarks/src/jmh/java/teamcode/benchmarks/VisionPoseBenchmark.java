@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import TrcCommonLib.trclib.TrcPose2D;
+import teamcode.vision.AprilTagLocalizer;
+import teamcode.vision.Vision;
+
+/**
+ * This class benchmarks the pose math that relocalizes the robot from detected AprilTags. No camera is needed,
+ * the AprilTag poses relative to the camera are synthesized.
+ */
+@State(Scope.Thread)
+public class VisionPoseBenchmark
+{
+    private final TrcPose2D aprilTagPoseFromCamera = new TrcPose2D(3.5, 24.0, -12.0);
+    private final AprilTagLocalizer localizer = new AprilTagLocalizer(4, 0.5, 0.03, 0.01, 1.0, 0.05);
+
+    @Benchmark
+    public TrcPose2D getRobotFieldPose()
+    {
+        return Vision.getRobotFieldPose(1, aprilTagPoseFromCamera);
+    }   //getRobotFieldPose
+
+    @Benchmark
+    public double fuseFourTags()
+    {
+        // Three tags agree, the fourth is an outlier.
+        localizer.reset();
+        localizer.addObservation(1, 10.2, 20.1, 179.0, 0.0, 60.0, 40.0);
+        localizer.addObservation(2, 9.8, 19.8, -179.5, 10.0, 60.0, 40.0);
+        localizer.addObservation(3, 10.1, 20.3, 178.5, 20.0, 60.0, 41.0);
+        localizer.addObservation(4, 30.0, 5.0, 150.0, 30.0, 60.0, 60.0);
+        localizer.solve();
+
+        return localizer.getX() + localizer.getY() + localizer.getHeading();
+    }   //fuseFourTags
+
+}   //class VisionPoseBenchmark
@@ -24,7 +24,9 @@ package teamcode;
 
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.function.Supplier;
 
 import TrcCommonLib.command.CmdPidDrive;
 import TrcCommonLib.command.CmdTimedDrive;
@@ -37,6 +39,10 @@ import TrcFtcLib.ftclib.FtcMatchInfo;
 import TrcFtcLib.ftclib.FtcMenu;
 import TrcFtcLib.ftclib.FtcOpMode;
 import TrcFtcLib.ftclib.FtcValueMenu;
+import teamcode.autocommands.CmdTrajectoryDrive;
+import teamcode.logging.AsyncTraceLog;
+import teamcode.trajectory.Trajectory;
+import teamcode.trajectory.TrajectoryCache;
 
 /**
  * This class contains the Autonomous Mode program.
@@ -61,6 +67,7 @@ public class FtcAuto extends FtcOpMode
     public enum AutoStrategy
     {
         PID_DRIVE,
+        PURE_PURSUIT_DRIVE,
         TIMED_DRIVE,
         DO_NOTHING
     }   //enum AutoStrategy
@@ -102,6 +109,7 @@ public class FtcAuto extends FtcOpMode
     public static final AutoChoices autoChoices = new AutoChoices();
     private Robot robot;
     private TrcRobot.RobotCommand autoCommand;
+    private TrajectoryCache trajectoryCache = null;
 
     //
     // Implements FtcOpMode abstract method.
@@ -126,13 +134,30 @@ public class FtcAuto extends FtcOpMode
             Robot.matchInfo = FtcMatchInfo.getMatchInfo();
             String filePrefix = String.format(
                 Locale.US, "%s%02d_Auto", Robot.matchInfo.matchType, Robot.matchInfo.matchNumber);
+            // The global tracer (TrcLib traces and our stopMode statistics) always writes to the trace log file.
             TrcDbgTrace.openTraceLog(RobotParams.LOG_FOLDER_PATH, filePrefix);
+            if (RobotParams.Preferences.useAsyncTraceLog)
+            {
+                // Per-loop trace records from our code are written to a separate file by a background thread so
+                // they don't block the robot loop on file writes.
+                AsyncTraceLog.openTraceLog(RobotParams.LOG_FOLDER_PATH, filePrefix + "_Async");
+            }
         }
         //
         // Create and run choice menus.
         //
         doAutoChoicesMenus();
         //
+        // Load generated trajectories from the cache file so we don't have to generate them again.
+        //
+        double cacheStartTime = TrcTimer.getCurrentTime();
+        if (RobotParams.Preferences.useTrajectoryCache && robot.robotDrive != null)
+        {
+            trajectoryCache = new TrajectoryCache(
+                RobotParams.TRAJECTORY_CACHE_FILE,
+                TrajectoryCache.computeParamsHash(RobotParams.class, robot.robotDrive.trajectoryGenerator));
+        }
+        //
         // Create autonomous command according to chosen strategy.
         //
         switch (autoChoices.strategy)
@@ -147,6 +172,18 @@ public class FtcAuto extends FtcOpMode
                 }
                 break;
 
+            case PURE_PURSUIT_DRIVE:
+                if (RobotParams.Preferences.robotType != RobotParams.RobotType.NoRobot)
+                {
+                    // Distance targets are in feet, so convert them into inches.
+                    TrcPose2D startPose = robot.robotDrive.driveBase.getFieldPosition();
+                    TrcPose2D endPose = startPose.addRelativePose(
+                        new TrcPose2D(autoChoices.xTarget*12.0, autoChoices.yTarget*12.0, autoChoices.turnTarget));
+                    autoCommand = new CmdTrajectoryDrive(
+                        robot.robotDrive, autoChoices.delay, getTrajectory("PurePursuitDrive", startPose, endPose));
+                }
+                break;
+
             case TIMED_DRIVE:
                 if (RobotParams.Preferences.robotType != RobotParams.RobotType.NoRobot)
                 {
@@ -162,6 +199,13 @@ public class FtcAuto extends FtcOpMode
                 break;
         }
 
+        if (trajectoryCache != null)
+        {
+            trajectoryCache.save();
+            robot.globalTracer.traceInfo(
+                moduleName, "%s: elapsed=%.3f", trajectoryCache, TrcTimer.getCurrentTime() - cacheStartTime);
+        }
+
         if (robot.vision != null)
         {
             // Enabling vision early so we can detect target before match starts if necessary.
@@ -222,6 +266,11 @@ public class FtcAuto extends FtcOpMode
         {
             TrcDbgTrace.setTraceLogEnabled(true);
         }
+
+        if (AsyncTraceLog.isTraceLogOpened())
+        {
+            AsyncTraceLog.getTraceLog().setEnabled(true);
+        }
         robot.globalTracer.traceInfo(
             moduleName, "***** Starting autonomous: " + TrcTimer.getCurrentTimeString() + " *****");
         if (Robot.matchInfo != null)
@@ -229,7 +278,7 @@ public class FtcAuto extends FtcOpMode
             robot.globalTracer.logInfo(moduleName, "MatchInfo", Robot.matchInfo.toString());
         }
         robot.globalTracer.logInfo(moduleName, "AutoChoices", autoChoices.toString());
-        robot.dashboard.clearDisplay();
+        robot.display.clearDisplay();
         //
         // Tell robot object opmode is about to start so it can do the necessary start initialization for the mode.
         //
@@ -282,6 +331,16 @@ public class FtcAuto extends FtcOpMode
         robot.globalTracer.traceInfo(
             moduleName, "***** Stopping autonomous: " + TrcTimer.getCurrentTimeString() + " *****");
 
+        if (AsyncTraceLog.isTraceLogOpened())
+        {
+            AsyncTraceLog traceLog = AsyncTraceLog.getTraceLog();
+            // Close it first so that its final counts are in the trace log file.
+            AsyncTraceLog.closeTraceLog();
+            robot.globalTracer.traceInfo(
+                moduleName, "AsyncTraceLog: written=" + traceLog.getWrittenCount() +
+                ", dropped=" + traceLog.getOverflowCount());
+        }
+
         if (TrcDbgTrace.isTraceLogOpened())
         {
             TrcDbgTrace.closeTraceLog();
@@ -309,6 +368,27 @@ public class FtcAuto extends FtcOpMode
         }
     }   //periodic
 
+    /**
+     * This method returns the trajectory through the given waypoints. It comes from the trajectory cache if it is
+     * enabled, so it is only generated the first time or when the generator or RobotParams changed. The cache key
+     * covers the alliance, start position and strategy choices and the waypoints, which are derived from the
+     * other choices.
+     *
+     * @param name specifies the trajectory name.
+     * @param waypoints specifies the absolute field poses to go through.
+     * @return trajectory.
+     */
+    private Trajectory getTrajectory(String name, TrcPose2D... waypoints)
+    {
+        Supplier<Trajectory> generator = () -> robot.robotDrive.trajectoryGenerator.generate(waypoints);
+
+        return trajectoryCache != null?
+            trajectoryCache.get(
+                name + "|" + autoChoices.alliance + "|" + autoChoices.startPos + "|" + autoChoices.strategy + "|" +
+                Arrays.toString(waypoints), generator):
+            generator.get();
+    }   //getTrajectory
+
     /**
      * This method creates the autonomous menus, displays them and stores the choices.
      */
@@ -349,6 +429,7 @@ public class FtcAuto extends FtcOpMode
         startPosMenu.addChoice("Start Position Right", StartPos.RIGHT, false, strategyMenu);
 
         strategyMenu.addChoice("PID Drive", AutoStrategy.PID_DRIVE, false, xTargetMenu);
+        strategyMenu.addChoice("Pure Pursuit Drive", AutoStrategy.PURE_PURSUIT_DRIVE, false, xTargetMenu);
         strategyMenu.addChoice("Timed Drive", AutoStrategy.TIMED_DRIVE, false, driveTimeMenu);
         strategyMenu.addChoice("Do nothing", AutoStrategy.DO_NOTHING, true);
         //
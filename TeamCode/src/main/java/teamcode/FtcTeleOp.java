@@ -34,7 +34,11 @@ import TrcCommonLib.trclib.TrcRobot;
 import TrcCommonLib.trclib.TrcTimer;
 import TrcFtcLib.ftclib.FtcGamepad;
 import TrcFtcLib.ftclib.FtcOpMode;
+import teamcode.drivebases.KalmanPoseEstimator;
 import teamcode.drivebases.SwerveDrive;
+import teamcode.hardware.WriteCache;
+import teamcode.logging.AsyncTraceLog;
+import teamcode.telemetry.LoopProfiler;
 
 /**
  * This class contains the TeleOp Mode program.
@@ -48,16 +52,33 @@ public class FtcTeleOp extends FtcOpMode
     protected Robot robot;
     protected FtcGamepad driverGamepad;
     protected FtcGamepad operatorGamepad;
+    // Subclasses that steer through the drive base controllers (e.g. FtcTest) must clear it before startMode.
+    protected boolean batchedSteeringAllowed = true;
     private double drivePowerScale = RobotParams.DRIVE_POWER_SCALE_NORMAL;
     private double turnPowerScale = RobotParams.TURN_POWER_SCALE_NORMAL;
-    private double hangPrevPower = 0.0;
-    private double elevatorPrevPower = 0.0;
+    private WriteCache.Channel hangPowerOutput = null;
+    private WriteCache.Channel elevatorPowerOutput = null;
     private boolean slowDrive = false;
     private boolean wristPositionInverted = false;
     private double hangPos = RobotParams.HANG_MIN_POS;
     private boolean manualOverride = false;
     private boolean relocalizing = false;
     private TrcPose2D robotFieldPose = null;
+    // Capture time and covariance of robotFieldPose, taken with the pose so that all three describe the same frame.
+    private long robotFieldPoseTime = 0;
+    private final double[] robotFieldPoseCov = new double[9];
+    private boolean hasRobotFieldPoseCov = false;
+    //
+    // Loop profiler phases.
+    //
+    private final LoopProfiler profiler = new LoopProfiler(moduleName);
+    private final int gamepadPhase = profiler.addPhase("Gamepad");
+    private final int drivePhase = profiler.addPhase("Drive");
+    private final int visionPhase = profiler.addPhase("Vision");
+    private final int hangPhase = profiler.addPhase("Hang");
+    private final int elevatorPhase = profiler.addPhase("Elevator");
+    private final int wristPhase = profiler.addPhase("Wrist");
+    private final int statusPhase = profiler.addPhase("Status");
 
     //
     // Implements FtcOpMode abstract method.
@@ -82,7 +103,14 @@ public class FtcTeleOp extends FtcOpMode
             String filePrefix = Robot.matchInfo != null?
                 String.format(Locale.US, "%s%02d_TeleOp", Robot.matchInfo.matchType, Robot.matchInfo.matchNumber):
                 "Unknown_TeleOp";
+            // The global tracer (TrcLib traces and our stopMode statistics) always writes to the trace log file.
             TrcDbgTrace.openTraceLog(RobotParams.LOG_FOLDER_PATH, filePrefix);
+            if (RobotParams.Preferences.useAsyncTraceLog)
+            {
+                // Per-loop trace records from our code are written to a separate file by a background thread so
+                // they don't block the robot loop on file writes.
+                AsyncTraceLog.openTraceLog(RobotParams.LOG_FOLDER_PATH, filePrefix + "_Async");
+            }
         }
         //
         // Create and initialize Gamepads.
@@ -92,8 +120,59 @@ public class FtcTeleOp extends FtcOpMode
         driverGamepad.setYInverted(true);
         operatorGamepad.setYInverted(true);
         setDriveOrientation(TrcDriveBase.DriveOrientation.ROBOT);
+        //
+        // Stick powers are set every loop, write them through the cache so unchanged powers are dropped.
+        //
+        if (robot.hang != null)
+        {
+            hangPowerOutput = robot.writeCache.addChannel(
+                RobotParams.HWNAME_HANG + ".power", robot.hang.toString(), RobotParams.WRITE_CACHE_POWER_EPSILON,
+                this::setHangPower);
+        }
+
+        if (robot.elevator != null)
+        {
+            elevatorPowerOutput = robot.writeCache.addChannel(
+                RobotParams.HWNAME_ELEVATOR + ".power", robot.elevator.toString(),
+                RobotParams.WRITE_CACHE_POWER_EPSILON, this::setElevatorPower);
+        }
     }   //robotInit
 
+    /**
+     * This method sets the hang power, with PID limits unless in manual override. It is called by the write cache.
+     *
+     * @param power specifies the hang power.
+     */
+    private void setHangPower(double power)
+    {
+        if (manualOverride)
+        {
+            robot.hang.setPower(power);
+        }
+        else
+        {
+            robot.hang.setPidPower(null, power, RobotParams.HANG_MIN_POS, RobotParams.HANG_MAX_POS, false);
+        }
+    }   //setHangPower
+
+    /**
+     * This method sets the elevator power, with PID limits unless in manual override. It is called by the write
+     * cache.
+     *
+     * @param power specifies the elevator power.
+     */
+    private void setElevatorPower(double power)
+    {
+        if (manualOverride)
+        {
+            robot.elevator.setPower(power);
+        }
+        else
+        {
+            robot.elevator.setPidPower(null, power, RobotParams.ELEVATOR_MIN, RobotParams.ELEVATOR_MAX, true);
+        }
+    }   //setElevatorPower
+
     //
     // Overrides TrcRobot.RobotMode methods.
     //
@@ -113,13 +192,26 @@ public class FtcTeleOp extends FtcOpMode
         {
             TrcDbgTrace.setTraceLogEnabled(true);
         }
+
+        if (AsyncTraceLog.isTraceLogOpened())
+        {
+            AsyncTraceLog.getTraceLog().setEnabled(true);
+        }
         robot.globalTracer.traceInfo(
             moduleName, "***** Starting TeleOp: " + TrcTimer.getCurrentTimeString() + " *****");
-        robot.dashboard.clearDisplay();
+        robot.display.clearDisplay();
         //
         // Tell robot object opmode is about to start so it can do the necessary start initialization for the mode.
         //
         robot.startMode(nextMode);
+        if (batchedSteeringAllowed && RobotParams.Preferences.useSwerveKinematics &&
+            robot.robotDrive instanceof SwerveDrive)
+        {
+            // Manual driving steers through kinematicDrive, which batches the steer servos while nothing else steers.
+            ((SwerveDrive) robot.robotDrive).setBatchedSteeringAllowed(true);
+        }
+        profiler.reset();
+        profiler.setEnabled(RobotParams.Preferences.useLoopPerformanceMonitor);
         //
         // Enable AprilTag vision for re-localization.
         //
@@ -144,10 +236,32 @@ public class FtcTeleOp extends FtcOpMode
         // Tell robot object opmode is about to stop so it can do the necessary cleanup for the mode.
         //
         robot.stopMode(prevMode);
+        if (robot.robotDrive instanceof SwerveDrive)
+        {
+            ((SwerveDrive) robot.robotDrive).setBatchedSteeringAllowed(false);
+        }
         printPerformanceMetrics();
+        if (profiler.isEnabled())
+        {
+            profiler.setEnabled(false);
+            profiler.traceSummary(robot.globalTracer);
+            robot.display.clearDisplay();
+            profiler.displaySummary(robot.display, 1);
+            robot.display.flush(true);
+        }
         robot.globalTracer.traceInfo(
             moduleName, "***** Stopping TeleOp: " + TrcTimer.getCurrentTimeString() + " *****");
 
+        if (AsyncTraceLog.isTraceLogOpened())
+        {
+            AsyncTraceLog traceLog = AsyncTraceLog.getTraceLog();
+            // Close it first so that its final counts are in the trace log file.
+            AsyncTraceLog.closeTraceLog();
+            robot.globalTracer.traceInfo(
+                moduleName, "AsyncTraceLog: written=" + traceLog.getWrittenCount() +
+                ", dropped=" + traceLog.getOverflowCount());
+        }
+
         if (TrcDbgTrace.isTraceLogOpened())
         {
             TrcDbgTrace.closeTraceLog();
@@ -167,6 +281,7 @@ public class FtcTeleOp extends FtcOpMode
     @Override
     public void periodic(double elapsedTime, boolean slowPeriodicLoop)
     {
+        profiler.beginLoop();
         if (slowPeriodicLoop)
         {
             //
@@ -179,15 +294,36 @@ public class FtcTeleOp extends FtcOpMode
                 {
                     if (robotFieldPose == null)
                     {
+                        profiler.start(visionPhase);
                         robotFieldPose = robot.vision.getRobotFieldPose();
+                        if (robotFieldPose != null)
+                        {
+                            double[] cov = robot.vision.getPoseCovariance();
+
+                            robotFieldPoseTime = robot.vision.getRobotFieldPoseTime();
+                            hasRobotFieldPoseCov = cov != null;
+                            if (hasRobotFieldPoseCov)
+                            {
+                                System.arraycopy(cov, 0, robotFieldPoseCov, 0, robotFieldPoseCov.length);
+                            }
+                        }
+                        profiler.stop(visionPhase);
                     }
                 }
                 else
                 {
+                    profiler.start(gamepadPhase);
                     double[] inputs = driverGamepad.getDriveInputs(
                         RobotParams.ROBOT_DRIVE_MODE, true, drivePowerScale, turnPowerScale);
+                    profiler.stop(gamepadPhase);
 
-                    if (robot.robotDrive.driveBase.supportsHolonomicDrive())
+                    profiler.start(drivePhase);
+                    if (RobotParams.Preferences.useSwerveKinematics && robot.robotDrive instanceof SwerveDrive)
+                    {
+                        ((SwerveDrive) robot.robotDrive).kinematicDrive(
+                            null, inputs[0], inputs[1], inputs[2], robot.robotDrive.driveBase.getDriveGyroAngle());
+                    }
+                    else if (robot.robotDrive.driveBase.supportsHolonomicDrive())
                     {
                         robot.robotDrive.driveBase.holonomicDrive(
                             null, inputs[0], inputs[1], inputs[2], robot.robotDrive.driveBase.getDriveGyroAngle());
@@ -196,9 +332,10 @@ public class FtcTeleOp extends FtcOpMode
                     {
                         robot.robotDrive.driveBase.arcadeDrive(inputs[1], inputs[2]);
                     }
-                    robot.dashboard.displayPrintf(
+                    robot.display.displayPrintf(
                         1, "RobotDrive: Power=(%.2f,y=%.2f,rot=%.2f),Mode:%s",
                         inputs[0], inputs[1], inputs[2], robot.robotDrive.driveBase.getDriveOrientation());
+                    profiler.stop(drivePhase);
                 }
             }
             //
@@ -209,40 +346,23 @@ public class FtcTeleOp extends FtcOpMode
                 //hang subsystem
                 if(robot.hang != null)
                 {
+                    profiler.start(hangPhase);
                     double hangPower = operatorGamepad.getRightStickY(true) * RobotParams.HANG_POWER_LIMIT;
-                    if(hangPower != hangPrevPower)
-                    {
-                        if (manualOverride)
-                        {
-                            robot.hang.setPower(hangPower);
-                        }
-                        else
-                        {
-                            robot.hang.setPidPower(null, hangPower, RobotParams.HANG_MIN_POS, RobotParams.HANG_MAX_POS, false);
-                        }
-                        hangPrevPower = hangPower;
-                    }
+                    hangPowerOutput.set(hangPower);
+                    profiler.stop(hangPhase);
                 }
                 //elevator subsystem
                 if(robot.elevator != null)
                 {
+                    profiler.start(elevatorPhase);
                     double elevatorPower = operatorGamepad.getLeftStickY(true) * RobotParams.ELEVATOR_POWER_LIMIT;
-                    if(elevatorPower != elevatorPrevPower)
-                    {
-                        if (manualOverride)
-                        {
-                            robot.elevator.setPower(elevatorPower);
-                        }
-                        else
-                        {
-                            robot.elevator.setPidPower(null, elevatorPower, RobotParams.ELEVATOR_MIN,RobotParams.ELEVATOR_MAX, true);
-                        }
-                        elevatorPrevPower = elevatorPower;
-                    }
+                    elevatorPowerOutput.set(elevatorPower);
+                    profiler.stop(elevatorPhase);
                 }
                 if(robot.wrist != null && robot.elevator != null)
                 {
-                    if (robot.elevator.getPosition() >= RobotParams.WRIST_EDIT_ELEVATOR_HEIGHT)
+                    profiler.start(wristPhase);
+                    if (robot.getElevatorPosition() >= RobotParams.WRIST_EDIT_ELEVATOR_HEIGHT)
                     {
                         if (wristPositionInverted)
                         {
@@ -256,6 +376,7 @@ public class FtcTeleOp extends FtcOpMode
                     {
                         robot.wrist.wristGround(null);
                     }
+                    profiler.stop(wristPhase);
                 }
 
                 boolean slowDriveTriggered = driverGamepad.getLeftTrigger() >= .3;
@@ -278,9 +399,12 @@ public class FtcTeleOp extends FtcOpMode
             // Display subsystem status.
             if (RobotParams.Preferences.doStatusUpdate)
             {
+                profiler.start(statusPhase);
                 robot.updateStatus();
+                profiler.stop(statusPhase);
             }
         }
+        profiler.endLoop();
     }   //periodic
 
     /**
@@ -414,7 +538,24 @@ public class FtcTeleOp extends FtcOpMode
                             // Vision found an AprilTag, set the new robot field location.
                             robot.globalTracer.traceInfo(
                                 moduleName, ">>>>> Finish re-localizing: pose=" + robotFieldPose);
-                            robot.robotDrive.driveBase.setFieldPosition(robotFieldPose, false);
+                            KalmanPoseEstimator poseEstimator = robot.robotDrive.poseEstimator;
+                            if (poseEstimator != null && poseEstimator.isEnabled())
+                            {
+                                // Fuse it at capture time. An outlier is not forced in, the driver can try again.
+                                if (!poseEstimator.addVisionMeasurement(
+                                        robotFieldPose.x, robotFieldPose.y, robotFieldPose.angle,
+                                        robotFieldPoseTime, hasRobotFieldPoseCov? robotFieldPoseCov: null))
+                                {
+                                    robot.globalTracer.traceWarn(
+                                        moduleName, "Re-localization pose rejected by the pose estimator.");
+                                }
+                            }
+                            else if (robot.robotDrive.poseHistory == null ||
+                                     !robot.robotDrive.poseHistory.relocalize(robotFieldPose, robotFieldPoseTime))
+                            {
+                                // No history covering the capture time, the pose is applied as current.
+                                robot.robotDrive.setFieldPosition(robotFieldPose, false);
+                            }
                             robotFieldPose = null;
                         }
                     }
@@ -36,6 +36,7 @@ import TrcCommonLib.command.CmdTimedDrive;
 import TrcCommonLib.trclib.TrcDbgTrace;
 import TrcCommonLib.trclib.TrcElapsedTimer;
 import TrcCommonLib.trclib.TrcGameController;
+import TrcCommonLib.trclib.TrcPath;
 import TrcCommonLib.trclib.TrcPidController;
 import TrcCommonLib.trclib.TrcPose2D;
 import TrcCommonLib.trclib.TrcRobot;
@@ -46,9 +47,13 @@ import TrcFtcLib.ftclib.FtcGamepad;
 import TrcFtcLib.ftclib.FtcMenu;
 import TrcFtcLib.ftclib.FtcPidCoeffCache;
 import TrcFtcLib.ftclib.FtcValueMenu;
+import teamcode.autocommands.CmdDriveCharacterization;
 import teamcode.autocommands.CmdMyPidDrive;
 import teamcode.drivebases.RobotDrive;
 import teamcode.drivebases.SwerveDrive;
+import teamcode.logging.AsyncTraceLog;
+import teamcode.telemetry.StatusLine;
+import teamcode.trajectory.Trajectory;
 
 /**
  * This class contains the Test Mode program. It extends FtcTeleOp so that we can teleop control the robot for
@@ -70,6 +75,7 @@ public class FtcTest extends FtcTeleOp
         VISION_TEST,
         TUNE_COLORBLOB_VISION,
         DRIVE_SPEED_TEST,
+        DRIVE_CHARACTERIZATION,
         DRIVE_MOTORS_TEST,
         X_TIMED_DRIVE,
         Y_TIMED_DRIVE,
@@ -125,6 +131,11 @@ public class FtcTest extends FtcTeleOp
     private FtcChoiceMenu<Test> testMenu = null;
 
     private TrcRobot.RobotCommand testCommand = null;
+    // Pure Pursuit Drive, followed by the trajectory follower if the robot has one.
+    private Trajectory testTrajectory = null;
+    private TrcPath purePursuitPath = null;
+    // PID drive tests: per-loop PID record for the async trace log.
+    private final StatusLine pidLogLine = new StatusLine(AsyncTraceLog.DEF_RECORD_LENGTH);
     // Drive Speed Test.
     private double maxDriveVelocity = 0.0;
     private double maxDriveAcceleration = 0.0;
@@ -159,6 +170,8 @@ public class FtcTest extends FtcTeleOp
         // TeleOp initialization.
         //
         super.robotInit();
+        // Tests steer through PidDrive, PurePursuitDrive and timed drive, so the steer servos keep their own PID.
+        batchedSteeringAllowed = false;
         if (robot.vision != null)
         {
             frontWebcam = robot.vision.getFrontWebcam();
@@ -178,6 +191,16 @@ public class FtcTest extends FtcTeleOp
         //
         switch (testChoices.test)
         {
+            case DRIVE_CHARACTERIZATION:
+                if (robot.robotDrive != null)
+                {
+                    testCommand = new CmdDriveCharacterization(
+                        robot.robotDrive.driveBase, RobotParams.DRIVE_CHAR_RAMP_RATE,
+                        RobotParams.DRIVE_CHAR_STEP_VOLTAGE, RobotParams.DRIVE_CHAR_MAX_DISTANCE,
+                        RobotParams.DRIVE_CHAR_MAX_SAMPLES);
+                }
+                break;
+
             case DRIVE_MOTORS_TEST:
                 if (robot.robotDrive != null)
                 {
@@ -210,6 +233,20 @@ public class FtcTest extends FtcTeleOp
                             new TrcPose2D(testChoices.xTarget*12.0, testChoices.yTarget*12.0, testChoices.turnTarget));
                 }
                 break;
+
+            case PURE_PURSUIT_DRIVE:
+                if (robot.robotDrive != null)
+                {
+                    // Generate the trajectory now so start does not pay for it.
+                    testTrajectory = robot.robotDrive.trajectoryGenerator.generate(
+                        new TrcPose2D(0.0, 0.0, 0.0), new TrcPose2D(0.0, 48.0, 90.0));
+                    robot.globalTracer.traceInfo(moduleName, "PurePursuit trajectory: " + testTrajectory);
+                    // Convert the trajectory only if Pure Pursuit Drive is going to follow it.
+                    purePursuitPath = robot.robotDrive.trajectoryFollower == null?
+                        testTrajectory.toPath(RobotParams.TRAJECTORY_WAYPOINT_STRIDE): null;
+                }
+                break;
+
             case TUNE_X_PID:
             case TUNE_Y_PID:
             case TUNE_TURN_PID:
@@ -217,7 +254,8 @@ public class FtcTest extends FtcTeleOp
                         (testChoices.test != Test.TUNE_X_PID || robot.robotDrive.driveBase.supportsHolonomicDrive()))
                 {
                     // Distance targets are in feet, so convert them into inches.
-                    testCommand = new CmdMyPidDrive(robot.robotDrive.driveBase, robot.robotDrive.pidDrive);
+                    testCommand = new CmdMyPidDrive(
+                        robot.robotDrive.driveBase, robot.robotDrive.pidDrive, robot.display);
                 }
                 break;
         }
@@ -297,7 +335,10 @@ public class FtcTest extends FtcTeleOp
             case TUNE_TURN_PID:
                 if (robot.robotDrive != null)
                 {
-                    robot.robotDrive.pidDrive.setTraceLevel(TrcDbgTrace.MsgLevel.INFO, logEvents, debugPid, false);
+                    // TrcLib writes the PID trace synchronously every loop. With the async trace log open, periodic
+                    // logs the PID state through it instead.
+                    robot.robotDrive.pidDrive.setTraceLevel(
+                        TrcDbgTrace.MsgLevel.INFO, logEvents, debugPid && !AsyncTraceLog.isTraceLogOpened(), false);
                 }
                 break;
 
@@ -305,14 +346,21 @@ public class FtcTest extends FtcTeleOp
                 if (robot.robotDrive != null)
                 {
                     robot.robotDrive.purePursuitDrive.setTraceLevel(
-                        TrcDbgTrace.MsgLevel.INFO, logEvents, debugPid, false);
+                        TrcDbgTrace.MsgLevel.INFO, logEvents, debugPid && !AsyncTraceLog.isTraceLogOpened(), false);
                     //
                     // Doing a 48x48-inch square box with robot heading always pointing to the center of the box.
                     //
                     // Set the current position as the absolute field origin so the path can be an absolute path.
                     TrcPose2D startPose = new TrcPose2D(0.0, 0.0, 0.0);
-                    robot.robotDrive.driveBase.setFieldPosition(startPose);
-                    robot.robotDrive.purePursuitDrive.start(startPose, false, new TrcPose2D(0.0, 48.0, 90.0));
+                    robot.robotDrive.setFieldPosition(startPose);
+                    if (robot.robotDrive.trajectoryFollower != null)
+                    {
+                        robot.robotDrive.trajectoryFollower.start(testTrajectory, null);
+                    }
+                    else
+                    {
+                        robot.robotDrive.purePursuitDrive.start(purePursuitPath, null, 0.0);
+                    }
                 }
                 break;
         }
@@ -391,20 +439,27 @@ public class FtcTest extends FtcTeleOp
                     prevTime = currTime;
                     prevVelocity = velocity;
 
-                    robot.dashboard.displayPrintf(lineNum++, "Drive Vel: (%.1f/%.1f)", velocity, maxDriveVelocity);
-                    robot.dashboard.displayPrintf(
+                    robot.display.displayPrintf(lineNum++, "Drive Vel: (%.1f/%.1f)", velocity, maxDriveVelocity);
+                    robot.display.displayPrintf(
                         lineNum++, "Drive Accel: (%.1f/%.1f)", acceleration, maxDriveAcceleration);
                 }
                 break;
 
+            case DRIVE_CHARACTERIZATION:
+                if (testCommand != null)
+                {
+                    robot.display.displayPrintf(lineNum++, "Characterization: %s", testCommand);
+                }
+                break;
+
             case X_TIMED_DRIVE:
             case Y_TIMED_DRIVE:
                 if (robot.robotDrive != null)
                 {
-                    robot.dashboard.displayPrintf(lineNum++, "Timed Drive: %.0f sec", testChoices.driveTime);
-                    robot.dashboard.displayPrintf(
+                    robot.display.displayPrintf(lineNum++, "Timed Drive: %.0f sec", testChoices.driveTime);
+                    robot.display.displayPrintf(
                         lineNum++, "RobotPose=%s", robot.robotDrive.driveBase.getFieldPosition());
-                    robot.dashboard.displayPrintf(
+                    robot.display.displayPrintf(
                         lineNum++, "rawEnc=lf:%.0f,rf:%.0f,lb:%.0f,rb:%.0f",
                         robot.robotDrive.driveMotors[RobotDrive.INDEX_LEFT_FRONT].getPosition(),
                         robot.robotDrive.driveMotors[RobotDrive.INDEX_RIGHT_FRONT].getPosition(),
@@ -418,7 +473,7 @@ public class FtcTest extends FtcTeleOp
             case TUNE_TURN_PID:
                 if (robot.robotDrive != null && testChoices.tunePidCoeff != null)
                 {
-                    robot.dashboard.displayPrintf(7, "TunePid=%s", testChoices.tunePidCoeff);
+                    robot.display.displayPrintf(7, "TunePid=%s", testChoices.tunePidCoeff);
                 }
                 //
                 // Intentionally falling through.
@@ -428,20 +483,30 @@ public class FtcTest extends FtcTeleOp
                 if (robot.robotDrive != null)
                 {
                     TrcPidController xPidCtrl, yPidCtrl, turnPidCtrl;
+                    boolean driveActive;
                     if (testChoices.test == Test.PURE_PURSUIT_DRIVE)
                     {
                         xPidCtrl = robot.robotDrive.purePursuitDrive.getXPosPidCtrl();
                         yPidCtrl = robot.robotDrive.purePursuitDrive.getYPosPidCtrl();
                         turnPidCtrl = robot.robotDrive.purePursuitDrive.getTurnPidCtrl();
+                        // The trajectory follower has no PID controllers to log.
+                        driveActive =
+                            robot.robotDrive.trajectoryFollower == null && robot.robotDrive.purePursuitDrive.isActive();
                     }
                     else
                     {
                         xPidCtrl = robot.robotDrive.pidDrive.getXPidCtrl();
                         yPidCtrl = robot.robotDrive.pidDrive.getYPidCtrl();
                         turnPidCtrl = robot.robotDrive.pidDrive.getTurnPidCtrl();
+                        driveActive = robot.robotDrive.pidDrive.isActive();
                     }
 
-                    robot.dashboard.displayPrintf(
+                    if (debugPid && driveActive && AsyncTraceLog.isTraceLogOpened())
+                    {
+                        logPidState(AsyncTraceLog.getTraceLog(), xPidCtrl, yPidCtrl, turnPidCtrl);
+                    }
+
+                    robot.display.displayPrintf(
                         lineNum++, "RobotPose=%s,rawEnc=lf:%.0f,rf:%.0f,lb:%.0f,rb:%.0f",
                         robot.robotDrive.driveBase.getFieldPosition(),
                         robot.robotDrive.driveMotors[RobotDrive.INDEX_LEFT_FRONT].getPosition(),
@@ -463,7 +528,7 @@ public class FtcTest extends FtcTeleOp
         if (elapsedTimer != null)
         {
             elapsedTimer.recordPeriodTime();
-            robot.dashboard.displayPrintf(
+            robot.display.displayPrintf(
                 15, "Period: %.3f(%.3f/%.3f)",
                 elapsedTimer.getAverageElapsedTime(), elapsedTimer.getMinElapsedTime(),
                 elapsedTimer.getMaxElapsedTime());
@@ -498,20 +563,20 @@ public class FtcTest extends FtcTeleOp
                         swerveDrive.runSteeringCalibration();
                         if (swerveDrive.calibrationCount > 0)
                         {
-                            robot.dashboard.displayPrintf(lineNum++, "Count = %d", swerveDrive.calibrationCount);
-                            robot.dashboard.displayPrintf(
+                            robot.display.displayPrintf(lineNum++, "Count = %d", swerveDrive.calibrationCount);
+                            robot.display.displayPrintf(
                                 lineNum++, "Encoder: lf=%.3f/%f",
                                 swerveDrive.steerEncoders[SwerveDrive.INDEX_LEFT_FRONT].getRawPosition(),
                                 swerveDrive.zeroPositions[SwerveDrive.INDEX_LEFT_FRONT]/swerveDrive.calibrationCount);
-                            robot.dashboard.displayPrintf(
+                            robot.display.displayPrintf(
                                 lineNum++, "Encoder: rf=%.3f/%f",
                                 swerveDrive.steerEncoders[SwerveDrive.INDEX_RIGHT_FRONT].getRawPosition(),
                                 swerveDrive.zeroPositions[SwerveDrive.INDEX_RIGHT_FRONT]/swerveDrive.calibrationCount);
-                            robot.dashboard.displayPrintf(
+                            robot.display.displayPrintf(
                                 lineNum++, "Encoder: lb=%.3f/%f",
                                 swerveDrive.steerEncoders[SwerveDrive.INDEX_LEFT_BACK].getRawPosition(),
                                 swerveDrive.zeroPositions[SwerveDrive.INDEX_LEFT_BACK]/swerveDrive.calibrationCount);
-                            robot.dashboard.displayPrintf(
+                            robot.display.displayPrintf(
                                 lineNum++, "Encoder: rb=%.3f/%f",
                                 swerveDrive.steerEncoders[SwerveDrive.INDEX_RIGHT_BACK].getRawPosition(),
                                 swerveDrive.zeroPositions[SwerveDrive.INDEX_RIGHT_BACK]/swerveDrive.calibrationCount);
@@ -520,7 +585,7 @@ public class FtcTest extends FtcTeleOp
                     break;
                 case TUNE_LAUNCHER_VEL:
                     if (robot.launcher != null ) {
-                        robot.dashboard.displayPrintf(lineNum++, "LauncherVelocity=" + robot.launcher.getLauncherRPM() + "/" + launchVelocity);
+                        robot.display.displayPrintf(lineNum++, "LauncherVelocity=" + robot.launcher.getLauncherRPM() + "/" + launchVelocity);
                     }
                     break;
             }
@@ -942,6 +1007,7 @@ public class FtcTest extends FtcTeleOp
         testMenu.addChoice("Vision test", Test.VISION_TEST, false);
         testMenu.addChoice("Tune ColorBlob vision", Test.TUNE_COLORBLOB_VISION, false);
         testMenu.addChoice("Drive speed test", Test.DRIVE_SPEED_TEST, false);
+        testMenu.addChoice("Drive characterization", Test.DRIVE_CHARACTERIZATION, false);
         testMenu.addChoice("Drive motors test", Test.DRIVE_MOTORS_TEST, false);
         testMenu.addChoice("X Timed drive", Test.X_TIMED_DRIVE, false, driveTimeMenu);
         testMenu.addChoice("Y Timed drive", Test.Y_TIMED_DRIVE, false, driveTimeMenu);
@@ -1115,7 +1181,7 @@ public class FtcTest extends FtcTeleOp
         //
         if (robot.robotDrive != null)
         {
-            robot.dashboard.displayPrintf(
+            robot.display.displayPrintf(
                 lineNum++, "DriveEnc: lf=%.0f,rf=%.0f,lb=%.0f,rb=%.0f",
                 robot.robotDrive.driveMotors[RobotDrive.INDEX_LEFT_FRONT].getPosition(),
                 robot.robotDrive.driveMotors[RobotDrive.INDEX_RIGHT_FRONT].getPosition(),
@@ -1125,13 +1191,13 @@ public class FtcTest extends FtcTeleOp
             if (robot.robotDrive instanceof SwerveDrive)
             {
                 SwerveDrive swerveDrive = (SwerveDrive) robot.robotDrive;
-                robot.dashboard.displayPrintf(
+                robot.display.displayPrintf(
                     lineNum++, "SteerEnc: lf=%.2f, rf=%.2f, lb=%.2f, rb=%.2f",
                     swerveDrive.steerEncoders[RobotDrive.INDEX_LEFT_FRONT].getScaledPosition(),
                     swerveDrive.steerEncoders[RobotDrive.INDEX_RIGHT_FRONT].getScaledPosition(),
                     swerveDrive.steerEncoders[RobotDrive.INDEX_LEFT_BACK].getScaledPosition(),
                     swerveDrive.steerEncoders[RobotDrive.INDEX_RIGHT_BACK].getScaledPosition());
-                robot.dashboard.displayPrintf(
+                robot.display.displayPrintf(
                     lineNum++, "SteerRaw: lf=%.2f, rf=%.2f, lb=%.2f, rb=%.2f",
                     swerveDrive.steerEncoders[RobotDrive.INDEX_LEFT_FRONT].getRawPosition(),
                     swerveDrive.steerEncoders[RobotDrive.INDEX_RIGHT_FRONT].getRawPosition(),
@@ -1141,7 +1207,7 @@ public class FtcTest extends FtcTeleOp
 
             if (robot.robotDrive.gyro != null)
             {
-                robot.dashboard.displayPrintf(
+                robot.display.displayPrintf(
                     lineNum++, "Gyro(x,y,z): Heading=(%.1f,%.1f,%.1f), Rate=(%.3f,%.3f,%.3f)",
                     robot.robotDrive.gyro.getXHeading().value, robot.robotDrive.gyro.getYHeading().value,
                     robot.robotDrive.gyro.getZHeading().value, robot.robotDrive.gyro.getXRotationRate().value,
@@ -1187,6 +1253,43 @@ public class FtcTest extends FtcTeleOp
         }
     }   //doVisionTest
 
+    /**
+     * This method logs the target, input and output of the drive PID controllers through the async trace log. It
+     * replaces the TrcLib PID trace, which writes synchronously, while the async trace log is open.
+     *
+     * @param traceLog specifies the async trace log.
+     * @param xPidCtrl specifies the X PID controller, can be null.
+     * @param yPidCtrl specifies the Y PID controller.
+     * @param turnPidCtrl specifies the turn PID controller.
+     */
+    private void logPidState(
+        AsyncTraceLog traceLog, TrcPidController xPidCtrl, TrcPidController yPidCtrl, TrcPidController turnPidCtrl)
+    {
+        pidLogLine.clear().append("RobotPose=").appendPose(
+            robot.robotDrive.driveBase.getXPosition(), robot.robotDrive.driveBase.getYPosition(),
+            robot.robotDrive.driveBase.getHeading(), 2);
+        appendPidState("xPid", xPidCtrl);
+        appendPidState("yPid", yPidCtrl);
+        appendPidState("turnPid", turnPidCtrl);
+        traceLog.traceInfo(moduleName, pidLogLine);
+    }   //logPidState
+
+    /**
+     * This method appends the target, input and output of a PID controller to the PID record.
+     *
+     * @param name specifies the label of the PID controller.
+     * @param pidCtrl specifies the PID controller, can be null.
+     */
+    private void appendPidState(String name, TrcPidController pidCtrl)
+    {
+        if (pidCtrl != null)
+        {
+            pidLogLine.append(", ").append(name).append("=(target=").append(pidCtrl.getTarget(), 2)
+                .append(",input=").append(pidCtrl.getCurrentInput(), 2)
+                .append(",out=").append(pidCtrl.getOutput(), 3).append(')');
+        }
+    }   //appendPidState
+
     /**
      * This method is called to determine if Test mode is allowed to do teleop control of the robot.
      *
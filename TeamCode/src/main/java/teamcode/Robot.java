@@ -22,9 +22,15 @@
 
 package teamcode;
 
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
 import TrcCommonLib.trclib.TrcDbgTrace;
 import TrcCommonLib.trclib.TrcDigitalInput;
 import TrcCommonLib.trclib.TrcMotor;
+import TrcCommonLib.trclib.TrcPidController;
 import TrcCommonLib.trclib.TrcPose2D;
 import TrcCommonLib.trclib.TrcRobot;
 import TrcCommonLib.trclib.TrcServo;
@@ -37,12 +43,20 @@ import TrcFtcLib.ftclib.FtcRobotBattery;
 import teamcode.drivebases.MecanumDrive;
 import teamcode.drivebases.RobotDrive;
 import teamcode.drivebases.SwerveDrive;
+import teamcode.hardware.BulkReadCache;
+import teamcode.hardware.HubTransactionMonitor;
+import teamcode.hardware.SampledImu;
+import teamcode.hardware.SensorScheduler;
+import teamcode.hardware.WriteCache;
+import teamcode.logging.TelemetryRecorder;
 import teamcode.subsystems.AirplaneLauncher;
 import teamcode.subsystems.BlinkinLEDs;
 import teamcode.subsystems.Elevator;
 import teamcode.subsystems.Hang;
 import teamcode.subsystems.Intake;
 import teamcode.subsystems.Wrist;
+import teamcode.telemetry.ChangeDrivenDashboard;
+import teamcode.telemetry.StatusLine;
 import teamcode.vision.Vision;
 
 /**
@@ -52,12 +66,15 @@ public class Robot
 {
     private static final String moduleName = Robot.class.getSimpleName();
     private static final double STATUS_UPDATE_INTERVAL = 0.1;   // 100 msec
+    private static final int STATUS_FIRST_LINE = 2;
+    private static final int MAX_STATUS_LINES = 8;
     //
     // Global objects.
     //
     public final FtcOpMode opMode;
     public final TrcDbgTrace globalTracer;
     public final FtcDashboard dashboard;
+    public final ChangeDrivenDashboard display;
     public static FtcMatchInfo matchInfo = null;
     private static TrcPose2D endOfAutoRobotPose = null;
     private static double nextStatusUpdateTime = 0.0;
@@ -79,7 +96,38 @@ public class Robot
     public TrcMotor hang;
     public Wrist wrist;
     public TrcMotor elevator;
-
+    //
+    // Per-loop sensor snapshot.
+    //
+    public BulkReadCache sensorCache;
+    public BulkReadCache.CachedMotor[] cachedDriveMotors;
+    public BulkReadCache.CachedMotor cachedHang;
+    public BulkReadCache.CachedMotor cachedElevator;
+    public BulkReadCache.CachedMotor cachedLauncher;
+    //
+    // Multi-rate reads of slow changing sensors, null if not used.
+    //
+    public SensorScheduler sensorScheduler;
+    public SensorScheduler.Sensor batteryVoltage;
+    public SensorScheduler.Sensor elevatorLowerLimit;
+    public SensorScheduler.Sensor hangLowerLimit;
+    public SensorScheduler.Sensor launcherVelocity;
+    //
+    // Motor power and servo position write cache.
+    //
+    public final WriteCache writeCache = new WriteCache();
+    //
+    // Per device hub transaction accounting, null if not used.
+    //
+    public HubTransactionMonitor hubMonitor;
+    //
+    // Binary telemetry recording.
+    //
+    public TelemetryRecorder recorder;
+    //
+    // Preallocated status display lines.
+    //
+    private final StatusLine[] statusLines = new StatusLine[MAX_STATUS_LINES];
 
     /**
      * Constructor: Create an instance of the object.
@@ -95,7 +143,12 @@ public class Robot
         opMode = FtcOpMode.getInstance();
         globalTracer = TrcDbgTrace.getGlobalTracer();
         dashboard = FtcDashboard.getInstance();
+        display = new ChangeDrivenDashboard(dashboard, RobotParams.DASHBOARD_LINE_MIN_INTERVAL);
         nextStatusUpdateTime = TrcTimer.getCurrentTime();
+        for (int i = 0; i < statusLines.length; i++)
+        {
+            statusLines[i] = new StatusLine();
+        }
 
         speak("Init starting");
         //
@@ -114,6 +167,16 @@ public class Robot
         //
         if (RobotParams.Preferences.robotType != RobotParams.RobotType.NoRobot)
         {
+            //
+            // Create the transaction monitor first so that the caches and samplers created below are accounted.
+            //
+            if (RobotParams.Preferences.useHubTransactionMonitor)
+            {
+                hubMonitor = new HubTransactionMonitor(
+                    RobotParams.HUB_TRANSACTION_BUDGET, RobotParams.HUB_BACKGROUND_BUDGET,
+                    RobotParams.HUB_CACHED_READ_TIME, globalTracer);
+                writeCache.setTransactionMonitor(hubMonitor);
+            }
             //
             // Create and initialize sensors and indicators.
             //
@@ -132,6 +195,38 @@ public class Robot
             robotDrive =
                 RobotParams.Preferences.robotType == RobotParams.RobotType.SwerveRobot?
                     new SwerveDrive(): new MecanumDrive();
+            if (hubMonitor != null)
+            {
+                if (robotDrive.gyro instanceof SampledImu)
+                {
+                    ((SampledImu) robotDrive.gyro).setTransactionMonitor(hubMonitor);
+                }
+
+                if (robotDrive instanceof SwerveDrive && ((SwerveDrive) robotDrive).steeringController != null)
+                {
+                    ((SwerveDrive) robotDrive).steeringController.setTransactionMonitor(hubMonitor);
+                }
+
+                if (robotDrive.deadWheelOdometry != null)
+                {
+                    robotDrive.deadWheelOdometry.setTransactionMonitor(hubMonitor);
+                }
+            }
+
+            if (RobotParams.Preferences.usePoseEstimator)
+            {
+                robotDrive.createPoseEstimator();
+            }
+
+            if (RobotParams.Preferences.usePoseHistory)
+            {
+                robotDrive.createPoseHistory();
+            }
+
+            if (RobotParams.Preferences.useTrajectoryFollower)
+            {
+                robotDrive.createTrajectoryFollower();
+            }
             //
             // Create and initialize other subsystems.
             //
@@ -160,6 +255,25 @@ public class Robot
                     elevator.zeroCalibrate(RobotParams.ELEVATOR_CAL_POWER);
                 }
             }
+            //
+            // Create the sensor scheduler first so that the sensor snapshot leaves out what it reads at a lower rate.
+            //
+            if (RobotParams.Preferences.useSensorScheduler)
+            {
+                createSensorScheduler();
+            }
+            //
+            // Create the per-loop sensor snapshot so that all encoder reads in a loop cost one bulk read per hub.
+            //
+            if (RobotParams.Preferences.useBulkReadCache)
+            {
+                createSensorCache();
+            }
+
+            if (RobotParams.Preferences.useTelemetryRecorder)
+            {
+                createTelemetryRecorder();
+            }
         }
 
         speak("Init complete");
@@ -176,6 +290,151 @@ public class Robot
         return RobotParams.ROBOT_NAME;
     }   //toString
 
+    /**
+     * This method creates the per-loop sensor snapshot and adds all motors that are read every loop.
+     */
+    private void createSensorCache()
+    {
+        sensorCache = new BulkReadCache(BulkReadCache.getLynxHubs(opMode.hardwareMap));
+        sensorCache.setTransactionMonitor(hubMonitor);
+
+        if (robotDrive != null)
+        {
+            cachedDriveMotors = new BulkReadCache.CachedMotor[robotDrive.driveMotors.length];
+            for (int i = 0; i < cachedDriveMotors.length; i++)
+            {
+                cachedDriveMotors[i] = sensorCache.addMotor(
+                    robotDrive.driveMotors[i].toString(), robotDrive.driveMotors[i]);
+            }
+        }
+
+        if (hang != null)
+        {
+            cachedHang = sensorCache.addMotor(RobotParams.HWNAME_HANG, hang);
+        }
+
+        if (elevator != null)
+        {
+            cachedElevator = sensorCache.addMotor(RobotParams.HWNAME_ELEVATOR, elevator);
+        }
+
+        if (launcher != null && launcherVelocity == null)
+        {
+            cachedLauncher = sensorCache.addMotor(RobotParams.HWNAME_LAUNCHER, launcher.getlauncherMotor());
+        }
+    }   //createSensorCache
+
+    /**
+     * This method creates the sensor scheduler and adds the slow changing sensors with their read rates. Limit
+     * switches are only added if they exist.
+     */
+    private void createSensorScheduler()
+    {
+        sensorScheduler = new SensorScheduler(RobotParams.SENSOR_SCHEDULER_MAX_READS);
+        sensorScheduler.setTransactionMonitor(hubMonitor);
+
+        if (battery != null)
+        {
+            batteryVoltage = sensorScheduler.addSensor("battery", RobotParams.BATTERY_READ_RATE, battery::getVoltage);
+        }
+
+        if (elevator != null && RobotParams.ELEVATOR_HAS_LOWER_LIMIT_SWITCH)
+        {
+            elevatorLowerLimit = sensorScheduler.addDigitalSensor(
+                RobotParams.HWNAME_ELEVATOR + ".lowerLimit", RobotParams.LIMIT_SWITCH_READ_RATE,
+                elevator::isLowerLimitSwitchActive);
+        }
+
+        if (hang != null && RobotParams.HANG_HAS_LOWER_LIMIT_SWITCH)
+        {
+            hangLowerLimit = sensorScheduler.addDigitalSensor(
+                RobotParams.HWNAME_HANG + ".lowerLimit", RobotParams.LIMIT_SWITCH_READ_RATE,
+                hang::isLowerLimitSwitchActive);
+        }
+
+        if (launcher != null)
+        {
+            launcherVelocity = sensorScheduler.addSensor(
+                RobotParams.HWNAME_LAUNCHER + ".vel", launcher.getlauncherMotor().toString(),
+                RobotParams.LAUNCHER_READ_RATE, launcher.getlauncherMotor()::getVelocity);
+        }
+    }   //createSensorScheduler
+
+    /**
+     * This method creates the telemetry recorder and declares the channels sampled at the end of every loop. Values
+     * that are in the sensor snapshot or the sensor scheduler are read from them so recording costs no extra hub
+     * transactions.
+     */
+    private void createTelemetryRecorder()
+    {
+        recorder = new TelemetryRecorder();
+
+        if (robotDrive != null)
+        {
+            recorder.addChannel("pose.x", "in", robotDrive.driveBase::getXPosition);
+            recorder.addChannel("pose.y", "in", robotDrive.driveBase::getYPosition);
+            recorder.addChannel("pose.heading", "deg", robotDrive.driveBase::getHeading);
+            for (int i = 0; i < robotDrive.driveMotors.length; i++)
+            {
+                String name = robotDrive.driveMotors[i].toString();
+
+                if (cachedDriveMotors != null)
+                {
+                    recorder.addChannel(name + ".pos", "count", cachedDriveMotors[i]::getPosition);
+                    recorder.addChannel(name + ".power", "", cachedDriveMotors[i]::getPower);
+                }
+                else
+                {
+                    recorder.addChannel(name + ".pos", "count", robotDrive.driveMotors[i]::getPosition);
+                    recorder.addChannel(name + ".power", "", robotDrive.driveMotors[i]::getPower);
+                }
+            }
+
+            if (robotDrive.pidDrive != null)
+            {
+                addPidChannels("pidDrive.x", robotDrive.pidDrive.getXPidCtrl());
+                addPidChannels("pidDrive.y", robotDrive.pidDrive.getYPidCtrl());
+                addPidChannels("pidDrive.turn", robotDrive.pidDrive.getTurnPidCtrl());
+            }
+
+            if (robotDrive.purePursuitDrive != null)
+            {
+                addPidChannels("purePursuit.x", robotDrive.purePursuitDrive.getXPosPidCtrl());
+                addPidChannels("purePursuit.y", robotDrive.purePursuitDrive.getYPosPidCtrl());
+                addPidChannels("purePursuit.turn", robotDrive.purePursuitDrive.getTurnPidCtrl());
+            }
+        }
+
+        if (elevator != null)
+        {
+            recorder.addChannel("elevator.pos", "in", this::getElevatorPosition);
+            recorder.addChannel(
+                "elevator.current", "A", cachedElevator != null? cachedElevator::getCurrent: elevator::getCurrent);
+            recorder.addChannel(
+                "elevator.power", "", cachedElevator != null? cachedElevator::getPower: elevator::getPower);
+        }
+
+        if (battery != null)
+        {
+            recorder.addChannel("battery", "V", batteryVoltage != null? batteryVoltage::getValue: battery::getVoltage);
+        }
+    }   //createTelemetryRecorder
+
+    /**
+     * This method adds the error and output channels of a PID controller to the telemetry recorder.
+     *
+     * @param name specifies the channel name prefix.
+     * @param pidCtrl specifies the PID controller, can be null.
+     */
+    private void addPidChannels(String name, TrcPidController pidCtrl)
+    {
+        if (pidCtrl != null)
+        {
+            recorder.addChannel(name + ".err", "", pidCtrl::getError);
+            recorder.addChannel(name + ".out", "", pidCtrl::getOutput);
+        }
+    }   //addPidChannels
+
     /**
      * This method is call when the robot mode is about to start. It contains code to initialize robot hardware
      * necessary for running the robot mode.
@@ -184,6 +443,14 @@ public class Robot
      */
     public void startMode(TrcRobot.RunMode runMode)
     {
+        //
+        // Start accounting hub transactions before anything else registers a task or starts a thread.
+        //
+        if (hubMonitor != null)
+        {
+            hubMonitor.setEnabled(true);
+        }
+
         if (robotDrive != null)
         {
             //
@@ -195,6 +462,11 @@ public class Robot
                 // The following are performance counters, could be disabled for competition if you want.
                 // But it might give you some insight if somehow autonomous wasn't performing as expected.
                 robotDrive.gyro.setElapsedTimerEnabled(true);
+                // Start sampling the IMU in the background, the heading is then read from the sample slot.
+                if (robotDrive.gyro instanceof SampledImu)
+                {
+                    ((SampledImu) robotDrive.gyro).setSamplerEnabled(true);
+                }
             }
             //
             // Enable odometry for all opmodes. We may need odometry in TeleOp for auto-assist drive.
@@ -205,16 +477,77 @@ public class Robot
                 if (endOfAutoRobotPose != null)
                 {
                     // We had a previous autonomous run that saved the robot position at the end, use it.
-                    robotDrive.driveBase.setFieldPosition(endOfAutoRobotPose);
+                    robotDrive.setFieldPosition(endOfAutoRobotPose);
                     globalTracer.traceInfo(moduleName, "Restore saved RobotPose=" + endOfAutoRobotPose);
                 }
             }
             // Consume it so it's no longer valid for next run.
             endOfAutoRobotPose = null;
+            //
+            // Start integrating the odometry wheels on their own thread, starting from the current pose.
+            //
+            if (robotDrive.deadWheelOdometry != null)
+            {
+                robotDrive.deadWheelOdometry.setBulkCacheHubs(
+                    sensorCache != null? sensorCache.getHubs(RobotParams.HWNAME_ODOMETRY_HUBS): null);
+                robotDrive.deadWheelOdometry.setEnabled(true);
+            }
+            //
+            // Start filtering the odometry pose, fusing AprilTag poses if we have them.
+            //
+            if (robotDrive.poseEstimator != null)
+            {
+                robotDrive.poseEstimator.setVisionPoseSource(
+                    vision != null && vision.aprilTagVision != null? vision: null);
+                robotDrive.poseEstimator.setEnabled(true);
+            }
+
+            if (robotDrive.poseHistory != null)
+            {
+                robotDrive.poseHistory.setEnabled(true);
+            }
         }
         TrcDigitalInput.setElapsedTimerEnabled(true);
         TrcMotor.setElapsedTimerEnabled(true);
         TrcServo.setElapsedTimerEnabled(true);
+        //
+        // Start taking a sensor snapshot at the top of every loop.
+        //
+        if (sensorCache != null)
+        {
+            sensorCache.setEnabled(true);
+        }
+        //
+        // Start reading the slow changing sensors at their own rates, after the snapshot so bulk data reads are free.
+        //
+        if (sensorScheduler != null)
+        {
+            sensorScheduler.setEnabled(true);
+        }
+        //
+        // Start dropping redundant writes and flushing the rest at the end of every loop.
+        //
+        writeCache.setEnabled(RobotParams.Preferences.useWriteCache);
+        display.resetCounters();
+        display.setEnabled(true);
+        //
+        // Start recording telemetry at the end of every loop.
+        //
+        if (recorder != null)
+        {
+            File folder = new File(RobotParams.LOG_FOLDER_PATH);
+            String filePrefix = matchInfo != null?
+                String.format(Locale.US, "%s%02d_%s", matchInfo.matchType, matchInfo.matchNumber, runMode):
+                "Unknown_" + runMode;
+            String filePath =
+                RobotParams.LOG_FOLDER_PATH + "/" + filePrefix + "_" +
+                new SimpleDateFormat("yyyyMMdd@HHmmss", Locale.US).format(new Date()) + ".tlm";
+
+            if ((folder.isDirectory() || folder.mkdirs()) && recorder.open(filePath))
+            {
+                recorder.setEnabled(true);
+            }
+        }
     }   //startMode
 
     /**
@@ -225,11 +558,73 @@ public class Robot
      */
     public void stopMode(TrcRobot.RunMode runMode)
     {
+        if (sensorCache != null)
+        {
+            sensorCache.setEnabled(false);
+        }
+
+        if (sensorScheduler != null)
+        {
+            sensorScheduler.setEnabled(false);
+            sensorScheduler.traceStatistics(globalTracer);
+        }
+
+        if (writeCache.isEnabled())
+        {
+            writeCache.setEnabled(false);
+            writeCache.traceStatistics(globalTracer);
+        }
+
+        if (hubMonitor != null)
+        {
+            hubMonitor.setEnabled(false);
+            hubMonitor.traceStatistics(globalTracer);
+        }
+        display.setEnabled(false);
+        if (recorder != null && recorder.isOpened())
+        {
+            recorder.close();
+            globalTracer.traceInfo(
+                moduleName, "TelemetryRecorder: samples=" + recorder.getSampleCount() +
+                ", chunks=" + recorder.getChunkCount());
+        }
         //
         // Print all performance counters if there are any.
         //
+        globalTracer.traceInfo(
+            moduleName, "Dashboard: sent=" + display.getSentCount() + ", skipped=" + display.getSkippedCount());
+        if (robotDrive != null && robotDrive.poseHistory != null)
+        {
+            robotDrive.poseHistory.setEnabled(false);
+        }
+
+        if (robotDrive != null && robotDrive.deadWheelOdometry != null)
+        {
+            robotDrive.deadWheelOdometry.setEnabled(false);
+            globalTracer.traceInfo(
+                moduleName, "DeadWheelOdometry: steps=" + robotDrive.deadWheelOdometry.getStepCount() +
+                ", overruns=" + robotDrive.deadWheelOdometry.getOverrunCount() +
+                ", readTime=" + robotDrive.deadWheelOdometry.getAverageReadTime() +
+                ", hubLoad=" + robotDrive.deadWheelOdometry.getHubLoad());
+        }
+
+        if (robotDrive != null && robotDrive.poseEstimator != null)
+        {
+            robotDrive.poseEstimator.setEnabled(false);
+            globalTracer.traceInfo(moduleName, "PoseEstimator: " + robotDrive.poseEstimator.getStatistics());
+        }
+
         if (robotDrive != null && robotDrive.gyro != null)
         {
+            if (robotDrive.gyro instanceof SampledImu)
+            {
+                SampledImu sampledImu = (SampledImu) robotDrive.gyro;
+
+                globalTracer.traceInfo(
+                    moduleName, "SampledImu: samples=" + sampledImu.getSampleCount() +
+                    ", rate=" + sampledImu.getSampleRate() + " Hz");
+                sampledImu.setSamplerEnabled(false);
+            }
             robotDrive.gyro.printElapsedTime(globalTracer);
             robotDrive.gyro.setElapsedTimerEnabled(false);
         }
@@ -306,39 +701,126 @@ public class Robot
     {
         if (TrcTimer.getCurrentTime() > nextStatusUpdateTime)
         {
-            int lineNum = 2;
+            int numLines = renderStatus();
 
             nextStatusUpdateTime += STATUS_UPDATE_INTERVAL;
-            if (robotDrive != null)
-            {
-                dashboard.displayPrintf(lineNum++, "DriveBase: Pose=%s", robotDrive.driveBase.getFieldPosition());
-            }
-            //
-            // Display other subsystem status here.
-            //
-            if (intake != null)
+            for (int i = 0; i < numLines; i++)
             {
-                dashboard.displayPrintf(
-                        lineNum++, "Intake: leftClawClosed=" + intake.isLeftClawClosed() + ", rightClawClosed=" + intake.isRightClawClosed());
+                display.displayText(STATUS_FIRST_LINE + i, statusLines[i]);
             }
-            if(launcher != null)
-            {
-                dashboard.displayPrintf(lineNum++, "Launcher: servoPos=" + launcher.servoLauncherServoPos() + ", motorVelocity=" + launcher.getLauncherRPM() + ", state=" + launcher.getLauncherState());
-            }
-            if(hang != null)
-            {
-                dashboard.displayPrintf(lineNum++,"Hang: power=" + hang.getPower() + ", pos=" + hang.getPosition() + "/" + hang.getPidTarget());
-            }
-            if(wrist != null)
+        }
+    }   //updateStatus
+
+    /**
+     * This method renders the status of all subsystems into the status line buffers. It does not allocate memory,
+     * so it can be called periodically without generating garbage.
+     *
+     * @return number of status lines rendered.
+     */
+    public int renderStatus()
+    {
+        int numLines = 0;
+
+        if (robotDrive != null)
+        {
+            statusLines[numLines++].clear()
+                .append("DriveBase: Pose=")
+                .appendPose(
+                    robotDrive.driveBase.getXPosition(), robotDrive.driveBase.getYPosition(),
+                    robotDrive.driveBase.getHeading(), 1);
+        }
+        //
+        // Display other subsystem status here.
+        //
+        if (intake != null)
+        {
+            statusLines[numLines++].clear()
+                .append("Intake: leftClawClosed=").append(intake.isLeftClawClosed())
+                .append(", rightClawClosed=").append(intake.isRightClawClosed());
+        }
+        if (launcher != null)
+        {
+            statusLines[numLines++].clear()
+                .append("Launcher: servoPos=").append(launcher.servoLauncherServoPos(), 3)
+                .append(", motorVelocity=").append(getLauncherRPM(), 1)
+                .append(", state=").append(launcher.getLauncherState());
+        }
+        if (hang != null)
+        {
+            statusLines[numLines++].clear()
+                .append("Hang: power=").append(cachedHang != null? cachedHang.getPower(): hang.getPower(), 2)
+                .append(", pos=").append(getHangPosition(), 1)
+                .append('/').append(hang.getPidTarget(), 1);
+            if (hangLowerLimit != null)
             {
-                dashboard.displayPrintf(lineNum++,"Wirst: servoLeftRightFlat="+ wrist.isWristLeftRightFlat() + ", servoUpDownPosition" + wrist.WirstUpDwonPosition());
+                statusLines[numLines - 1].append(", lowerLimit=").append(hangLowerLimit.isActive());
             }
-            if(elevator != null)
+        }
+        if (wrist != null)
+        {
+            statusLines[numLines++].clear()
+                .append("Wrist: servoLeftRightFlat=").append(wrist.isWristLeftRightFlat())
+                .append(", servoUpDownPosition=").append(wrist.WirstUpDwonPosition());
+        }
+        if (elevator != null)
+        {
+            statusLines[numLines++].clear()
+                .append("Elevator: power=")
+                .append(cachedElevator != null? cachedElevator.getPower(): elevator.getPower(), 2)
+                .append(", pos=").append(getElevatorPosition(), 1)
+                .append('/').append(elevator.getPidTarget(), 1)
+                .append(", current=")
+                .append(cachedElevator != null? cachedElevator.getCurrent(): elevator.getCurrent(), 2);
+            if (elevatorLowerLimit != null)
             {
-                dashboard.displayPrintf(lineNum++,"Elevator: power=" + elevator.getPower() + ", pos=" + elevator.getPosition() + "/" + elevator.getPidTarget() + ", Current" + elevator.getCurrent());
+                statusLines[numLines - 1].append(", lowerLimit=").append(elevatorLowerLimit.isActive());
             }
         }
-    }   //updateStatus
+
+        return numLines;
+    }   //renderStatus
+
+    /**
+     * This method returns the specified status line rendered by renderStatus.
+     *
+     * @param index specifies the index of the status line.
+     * @return status line.
+     */
+    public StatusLine getStatusLine(int index)
+    {
+        return statusLines[index];
+    }   //getStatusLine
+
+    /**
+     * This method returns the hang position, from the sensor snapshot if there is one.
+     *
+     * @return hang position in degrees.
+     */
+    public double getHangPosition()
+    {
+        return cachedHang != null? cachedHang.getPosition(): hang.getPosition();
+    }   //getHangPosition
+
+    /**
+     * This method returns the elevator position, from the sensor snapshot if there is one.
+     *
+     * @return elevator position in inches.
+     */
+    public double getElevatorPosition()
+    {
+        return cachedElevator != null? cachedElevator.getPosition(): elevator.getPosition();
+    }   //getElevatorPosition
+
+    /**
+     * This method returns the launcher velocity, from the sensor scheduler or the sensor snapshot if there is one.
+     *
+     * @return launcher velocity in RPM.
+     */
+    public double getLauncherRPM()
+    {
+        return launcherVelocity != null? launcher.cpsToRpm(launcherVelocity.getValue()):
+               cachedLauncher != null? launcher.cpsToRpm(cachedLauncher.getVelocity()): launcher.getLauncherRPM();
+    }   //getLauncherRPM
 
     /**
      * This method zero calibrates all subsystems.
@@ -378,7 +860,11 @@ public class Robot
      */
     public void speak(String sentence)
     {
-        opMode.telemetry.speak(sentence);
+        // Telemetry does not exist when running headless (e.g. simulation).
+        if (opMode.telemetry != null)
+        {
+            opMode.telemetry.speak(sentence);
+        }
     }   //speak
 
 }   //class Robot
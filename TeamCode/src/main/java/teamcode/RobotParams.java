@@ -58,10 +58,17 @@ public class RobotParams
 
         // Miscellaneous
         public static boolean useTraceLog = true;
+        public static boolean useAsyncTraceLog = true;
         public static boolean useLoopPerformanceMonitor = true;
+        public static boolean useBulkReadCache = true;
+        public static boolean useWriteCache = true;
+        public static boolean useHubTransactionMonitor = false;
+        public static boolean useSensorScheduler = true;
+        public static boolean useTelemetryRecorder = true;
         public static boolean useBlinkin = false;
         public static boolean useBatteryMonitor = false;
         public static boolean doStatusUpdate = !inCompetition;
+        public static boolean useTrajectoryCache = true;
         // Vision
         public static boolean useWebCam = true;
         public static boolean hasWebCam2 = false;
@@ -70,12 +77,23 @@ public class RobotParams
         public static boolean useAprilTagVision = false;
         public static boolean useColorBlobVision = false;
         public static boolean useTensorFlowVision = false;
+        public static boolean useParallelVision = false;
+        public static boolean useColorBlobRoi = true;
+        public static boolean useDetectionCache = true;
         public static boolean showVisionView = !inCompetition;
         public static boolean showVisionStat = false;
         // Drive Base
         public static boolean useExternalOdometry = true;
         public static boolean doSwervePhysicalAlignment = false;
+        public static boolean usePoseEstimator = false;
+        public static boolean usePoseHistory = true;
+        // Off until the drive feedforward is characterized, DRIVE_KS and DRIVE_KA are still placeholders.
+        public static boolean useTrajectoryFollower = false;
         public static boolean swerveDualServoSteering = true;
+        public static boolean useSwerveKinematics = true;
+        public static boolean useImuSampler = true;
+        public static boolean useOdometryThread = true;
+        public static boolean useBatchedSteering = true;
         // Subsystems
         public static boolean useSubsystems = true;
         public static boolean useIntake = true;
@@ -94,6 +112,7 @@ public class RobotParams
         Environment.getExternalStorageDirectory().getPath() + "/FIRST/ftcxxxx";
     public static final String LOG_FOLDER_PATH                  = TEAM_FOLDER_PATH + "/tracelogs";
     public static final String STEERING_CALIBRATION_DATA_FILE   = "SteerCalibration.txt";
+    public static final String TRAJECTORY_CACHE_FILE            = TEAM_FOLDER_PATH + "/trajectories.bin";
     //
     // Hardware names.
     //
@@ -102,6 +121,10 @@ public class RobotParams
     public static final String HWNAME_WEBCAM1                   = "Webcam 1";
     public static final String HWNAME_WEBCAM2                   = "Webcam 2";
     public static final String HWNAME_BLINKIN                   = "blinkin";
+    public static final String HWNAME_CONTROL_HUB               = "Control Hub";
+    public static final String HWNAME_EXPANSION_HUB             = "Expansion Hub 2";
+    // Hubs of the odometry wheel encoders, their bulk data is invalidated by the odometry thread.
+    public static final String[] HWNAME_ODOMETRY_HUBS           = {HWNAME_CONTROL_HUB};
     // Drive Base.
     public static final String HWNAME_LFDRIVE_MOTOR             = "lfdrivemotor";
     public static final String HWNAME_RFDRIVE_MOTOR             = "rfdrivemotor";
@@ -125,6 +148,7 @@ public class RobotParams
     // Times
     //
     public static final double END_GAME_TIME                    = 90;
+    public static final double DASHBOARD_LINE_MIN_INTERVAL      = 0.05; // Max 20 updates per second per line.
 
     //
     // Field dimensions.
@@ -148,6 +172,12 @@ public class RobotParams
         new TrcPose2D(0.0, 0.0, 0.0),   // TagId 3
         new TrcPose2D(0.0, 0.0, 0.0)    // TagId 4
     };
+    // AprilTag observation noise model: standard deviation = base + scale * tag distance from camera.
+    public static final double APRILTAG_POS_STDDEV              = 0.5;  // in inches
+    public static final double APRILTAG_RANGE_STDDEV_SCALE      = 0.03; // in inches per inch
+    public static final double APRILTAG_LATERAL_STDDEV_SCALE    = 0.01; // in inches per inch
+    public static final double APRILTAG_HEADING_STDDEV          = 1.0;  // in degrees
+    public static final double APRILTAG_HEADING_STDDEV_SCALE    = 0.05; // in degrees per inch
     //
     // Vision subsystem.
     //
@@ -210,6 +240,57 @@ public class RobotParams
         RobotParams.HOMOGRAPHY_WORLD_TOPRIGHT_X, RobotParams.HOMOGRAPHY_WORLD_TOPRIGHT_Y,
         RobotParams.HOMOGRAPHY_WORLD_BOTTOMLEFT_X, RobotParams.HOMOGRAPHY_WORLD_BOTTOMLEFT_Y,
         RobotParams.HOMOGRAPHY_WORLD_BOTTOMRIGHT_X, RobotParams.HOMOGRAPHY_WORLD_BOTTOMRIGHT_Y);
+    // Color blob vision processes at reduced resolution when the robot moves faster than these.
+    public static final double COLOR_BLOB_MOVING_SCALE          = 0.5;
+    public static final double COLOR_BLOB_MOVING_SPEED          = 6.0;  // in inches per second
+    public static final double COLOR_BLOB_MOVING_TURN_RATE      = 30.0; // in degrees per second
+    // Cached vision results older than this are considered stale.
+    public static final double VISION_DETECTION_MAX_AGE         = 0.5;  // in seconds
+    //
+    // Pose estimator (Kalman filter on top of the drive base odometry) and pose history.
+    //
+    public static final int POSE_HISTORY_SIZE                   = 64;   // in loops, must cover vision latency
+    public static final int POSE_EKF_HISTORY_SIZE               = 64;   // in loops, must cover vision latency
+    public static final double POSE_EKF_TRANS_NOISE             = 0.05; // in inches per inch travelled
+    public static final double POSE_EKF_ROT_NOISE               = 0.02; // in degrees per degree turned
+    public static final double POSE_EKF_POS_DRIFT               = 0.01; // in inches per loop
+    public static final double POSE_EKF_HEADING_DRIFT           = 0.01; // in degrees per loop
+    public static final double POSE_EKF_IMU_STDDEV              = 0.5;  // in degrees
+    public static final double POSE_EKF_VISION_POS_STDDEV       = 1.5;  // in inches
+    public static final double POSE_EKF_VISION_HEADING_STDDEV   = 3.0;  // in degrees
+    //
+    // IMU sampler. Every sample is two I2C transactions (heading and rotation rate) on the Control Hub, the same hub
+    // the odometry thread reads. The IMU fusion output is updated at 100 Hz, so sampling faster only reads the same
+    // value again while taking bus time from the odometry thread and the robot loop.
+    //
+    public static final double IMU_SAMPLE_PERIOD                = 0.01; // in seconds, minimum time between samples
+    public static final double IMU_MAX_EXTRAPOLATION            = 0.02; // in seconds
+    //
+    // Dead wheel odometry thread. Every step is one bulk read of the odometry hub that the robot loop has to wait
+    // for, so the period trades integration steps against hub time taken from the loop. The arc integration is exact
+    // for constant curvature, so shorter steps only help when the curvature changes within a step. Check hubLoad in
+    // the DeadWheelOdometry line of the trace log (fraction of the hub time the thread takes) when changing it.
+    //
+    public static final double ODOMETRY_THREAD_PERIOD           = 0.01; // in seconds
+    //
+    // Hub write cache, changes smaller than these are not written.
+    //
+    public static final double WRITE_CACHE_POWER_EPSILON        = 0.01;
+    public static final double WRITE_CACHE_SERVO_EPSILON        = 0.001;
+    //
+    // Hub transaction monitor, a loop with more robot thread transactions than the budget is flagged. Background
+    // threads are budgeted per second: the odometry thread makes 100 bulk reads and the IMU sampler 200 reads a second.
+    //
+    public static final int HUB_TRANSACTION_BUDGET              = 24;
+    public static final double HUB_BACKGROUND_BUDGET            = 350.0;// in transactions per second
+    public static final double HUB_CACHED_READ_TIME             = 0.0001;// in seconds, faster reads are cache hits
+    //
+    // Sensor scheduler, slow changing sensors are read at these rates instead of every loop.
+    //
+    public static final int SENSOR_SCHEDULER_MAX_READS          = 2;    // per loop
+    public static final double BATTERY_READ_RATE                = 2.0;  // in Hz
+    public static final double LIMIT_SWITCH_READ_RATE           = 50.0; // in Hz
+    public static final double LAUNCHER_READ_RATE               = 20.0; // in Hz
     //
     // Motor Odometries.
     //
@@ -298,14 +379,41 @@ public class RobotParams
     // = 65.345127194667699360022982372214 in./sec.
     public static final double ROBOT_MAX_VELOCITY               = 25; // measured maximum from drive speed test.
     public static final double ROBOT_MAX_ACCELERATION           = 500.0; // measured maximum from drive speed test.
+    // Drive feedforward V = kS*sign(v) + kV*v + kA*a, fitted by the drive characterization test.
+    // Defaults to a pure kV that matches the max velocity until the robot is characterized.
+    public static final double DRIVE_KS                         = 0.0;      // in volts
+    public static final double DRIVE_KV                         = TrcUtil.BATTERY_NOMINAL_VOLTAGE/ROBOT_MAX_VELOCITY;
+    public static final double DRIVE_KA                         = 0.0;      // in volts per in./sec.^2
+    // kS is not applied below this velocity so the drive does not chatter when the target velocity is near zero.
+    // Same as the minimum velocity of the characterization fit.
+    public static final double DRIVE_KS_DEADBAND                = 0.5;      // in in./sec.
     // KF should be set to the reciprocal of max tangential velocity (time to travel unit distance), units: sec./in.
+    // With voltage compensation, that is kV over the nominal voltage.
     public static final TrcPidController.PidCoefficients velPidCoeff  =
-        new TrcPidController.PidCoefficients(0.0, 0.0, 0.0, 1.0/ROBOT_MAX_VELOCITY);
+        new TrcPidController.PidCoefficients(0.0, 0.0, 0.0, DRIVE_KV/TrcUtil.BATTERY_NOMINAL_VOLTAGE);
+    // Velocity feedback on top of the feedforward, in power per in./sec. of error.
+    public static final TrcPidController.PidCoefficients driveFeedforwardVelPidCoeff =
+        new TrcPidController.PidCoefficients(0.01, 0.0, 0.0);
+    // Drive characterization test.
+    public static final double DRIVE_CHAR_RAMP_RATE             = 0.5;      // in volts per second
+    public static final double DRIVE_CHAR_STEP_VOLTAGE          = 6.0;      // in volts
+    public static final double DRIVE_CHAR_MAX_DISTANCE          = 72.0;     // in inches
+    public static final int DRIVE_CHAR_MAX_SAMPLES              = 4000;
     public static final double PPD_FOLLOWING_DISTANCE           = 6.0;
     public static final double PPD_POS_TOLERANCE                = 1.0;
     public static final double PPD_POS_ERR_RATE_THRESHOLD       = 1.0;
     public static final double PPD_TURN_TOLERANCE               = 1.0;
     public static final double PPD_TURN_ERR_RATE_THRESHOLD      = 1.0;
+    // Trajectory generator, velocities in in./sec., accelerations in in./sec.^2, jerk in in./sec.^3.
+    public static final double TRAJECTORY_MAX_VELOCITY          = ROBOT_MAX_VELOCITY;
+    public static final double TRAJECTORY_MAX_ACCELERATION      = 60.0;
+    public static final double TRAJECTORY_MAX_JERK              = 600.0;    // 0.0 for trapezoid profile.
+    public static final double TRAJECTORY_MAX_LATERAL_ACCEL     = 40.0;
+    public static final double TRAJECTORY_TIME_STEP             = 0.01;     // in seconds
+    public static final int TRAJECTORY_WAYPOINT_STRIDE          = 5;        // samples per PurePursuit waypoint
+    public static final double TRAJECTORY_FOLLOWER_POS_GAIN     = 2.0;      // in./sec. per in. of error
+    public static final double TRAJECTORY_FOLLOWER_TURN_GAIN    = 0.02;     // power per degree of error
+    public static final double TRAJECTORY_FOLLOWER_SETTLE_TIME  = 1.0;      // in seconds
     //
     // Intake Subsystem
     //
@@ -28,6 +28,7 @@ import TrcCommonLib.trclib.TrcStateMachine;
 import TrcCommonLib.trclib.TrcTimer;
 import teamcode.FtcAuto;
 import teamcode.Robot;
+import teamcode.logging.AsyncTraceLog;
 
 /**
  * This class implements an autonomous strategy.
@@ -130,9 +131,18 @@ public class CmdAuto implements TrcRobot.RobotCommand
                     break;
             }
 
-            robot.globalTracer.tracePostStateInfo(
-                sm.toString(), state, robot.robotDrive.driveBase, robot.robotDrive.pidDrive,
-                robot.robotDrive.purePursuitDrive, null);
+            if (AsyncTraceLog.isTraceLogOpened())
+            {
+                AsyncTraceLog.getTraceLog().tracePostStateInfo(
+                    sm.toString(), state, robot.robotDrive.driveBase, robot.robotDrive.pidDrive,
+                    robot.robotDrive.purePursuitDrive);
+            }
+            else
+            {
+                robot.globalTracer.tracePostStateInfo(
+                    sm.toString(), state, robot.robotDrive.driveBase, robot.robotDrive.pidDrive,
+                    robot.robotDrive.purePursuitDrive, null);
+            }
         }
 
         return !sm.isEnabled();
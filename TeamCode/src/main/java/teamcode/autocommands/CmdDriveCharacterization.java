@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.autocommands;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcEvent;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcStateMachine;
+import TrcCommonLib.trclib.TrcTimer;
+import TrcCommonLib.trclib.TrcUtil;
+import teamcode.drivebases.DriveFeedforward;
+
+/**
+ * This class implements the drive train characterization command. It drives the robot forward with a slowly
+ * ramping voltage (quasistatic test, acceleration is negligible so it measures kS and kV), lets it settle, then
+ * drives it back with a voltage step (dynamic test, which measures kA). Each test stops when the robot has
+ * travelled the max distance. The applied voltage and the forward velocity are recorded every loop and kS, kV and
+ * kA are fitted by least squares at the end. Make sure the robot has the max distance of free space in front of it.
+ */
+public class CmdDriveCharacterization implements TrcRobot.RobotCommand
+{
+    private static final String moduleName = CmdDriveCharacterization.class.getSimpleName();
+    private static final double SETTLE_TIME = 1.0;
+    private static final double MIN_FIT_VELOCITY = 0.5;
+    private static final int ACCEL_HALF_WINDOW = 2;
+
+    private enum State
+    {
+        QUASISTATIC,
+        DYNAMIC,
+        FIT,
+        DONE
+    }   //enum State
+
+    private final TrcDbgTrace tracer = TrcDbgTrace.getGlobalTracer();
+    private final TrcDriveBase driveBase;
+    private final double rampRate;
+    private final double stepVoltage;
+    private final double maxDistance;
+    private final double[] times, voltages, velocities, accelerations;
+    private final TrcTimer timer;
+    private final TrcEvent event;
+    private final TrcStateMachine<State> sm;
+    private int numSamples = 0;
+    private int dynamicStartIndex = 0;
+    private double phaseStartTime = -1.0;
+    private double phaseStartX = 0.0;
+    private double phaseStartY = 0.0;
+    private double voltage = 0.0;
+    private double velocity = 0.0;
+    private DriveFeedforward feedforward = null;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param driveBase specifies the drive base, drive motors must have voltage compensation enabled.
+     * @param rampRate specifies the quasistatic voltage ramp rate in volts per second.
+     * @param stepVoltage specifies the dynamic step voltage in volts.
+     * @param maxDistance specifies the max distance of each test in inches.
+     * @param maxSamples specifies the max number of samples to record.
+     */
+    public CmdDriveCharacterization(
+        TrcDriveBase driveBase, double rampRate, double stepVoltage, double maxDistance, int maxSamples)
+    {
+        this.driveBase = driveBase;
+        this.rampRate = rampRate;
+        this.stepVoltage = stepVoltage;
+        this.maxDistance = maxDistance;
+        times = new double[maxSamples];
+        voltages = new double[maxSamples];
+        velocities = new double[maxSamples];
+        accelerations = new double[maxSamples];
+
+        timer = new TrcTimer(moduleName);
+        event = new TrcEvent(moduleName);
+        sm = new TrcStateMachine<>(moduleName);
+        sm.start(State.QUASISTATIC);
+    }   //CmdDriveCharacterization
+
+    /**
+     * This method returns the command status.
+     *
+     * @return command status string.
+     */
+    @Override
+    public String toString()
+    {
+        return "state=" + sm.getState() + ",samples=" + numSamples + ",volts=" + TrcUtil.round(voltage, 2) +
+               ",vel=" + TrcUtil.round(velocity, 1) + (feedforward != null? ",ff=(" + feedforward + ")": "");
+    }   //toString
+
+    /**
+     * This method returns the fitted feedforward.
+     *
+     * @return fitted feedforward, null if not done or the fit failed.
+     */
+    public DriveFeedforward getFeedforward()
+    {
+        return feedforward;
+    }   //getFeedforward
+
+    //
+    // Implements the TrcRobot.RobotCommand interface.
+    //
+
+    /**
+     * This method checks if the current RobotCommand  is running.
+     *
+     * @return true if the command is running, false otherwise.
+     */
+    @Override
+    public boolean isActive()
+    {
+        return sm.isEnabled();
+    }   //isActive
+
+    /**
+     * This method cancels the command if it is active.
+     */
+    @Override
+    public void cancel()
+    {
+        timer.cancel();
+        driveBase.stop();
+        sm.stop();
+    }   //cancel
+
+    /**
+     * This method must be called periodically by the caller to drive the command sequence forward.
+     *
+     * @param elapsedTime specifies the elapsed time in seconds since the start of the robot mode.
+     * @return true if the command sequence is completed, false otherwise.
+     */
+    @Override
+    public boolean cmdPeriodic(double elapsedTime)
+    {
+        State state = sm.checkReadyAndGetState();
+
+        if (state != null)
+        {
+            double currTime = TrcTimer.getCurrentTime();
+
+            switch (state)
+            {
+                case QUASISTATIC:
+                case DYNAMIC:
+                    if (phaseStartTime < 0.0)
+                    {
+                        phaseStartTime = currTime;
+                        phaseStartX = driveBase.getXPosition();
+                        phaseStartY = driveBase.getYPosition();
+                        if (state == State.DYNAMIC)
+                        {
+                            dynamicStartIndex = numSamples;
+                        }
+                    }
+
+                    voltage = state == State.QUASISTATIC?
+                        Math.min(rampRate*(currTime - phaseStartTime), TrcUtil.BATTERY_NOMINAL_VOLTAGE):
+                        -stepVoltage;
+                    recordSample(currTime);
+                    driveBase.holonomicDrive(0.0, voltage/TrcUtil.BATTERY_NOMINAL_VOLTAGE, 0.0);
+
+                    double distance = TrcUtil.magnitude(
+                        driveBase.getXPosition() - phaseStartX, driveBase.getYPosition() - phaseStartY);
+                    if (distance >= maxDistance || numSamples >= times.length)
+                    {
+                        driveBase.stop();
+                        phaseStartTime = -1.0;
+                        if (state == State.QUASISTATIC)
+                        {
+                            timer.set(SETTLE_TIME, event);
+                            sm.waitForSingleEvent(event, State.DYNAMIC);
+                        }
+                        else
+                        {
+                            sm.setState(State.FIT);
+                        }
+                    }
+                    break;
+
+                case FIT:
+                    computeAccelerations(0, dynamicStartIndex);
+                    computeAccelerations(dynamicStartIndex, numSamples);
+                    for (int i = 0; i < numSamples; i++)
+                    {
+                        tracer.traceInfo(
+                            moduleName, "sample[%d]: t=%.3f,volts=%.3f,vel=%.2f,accel=%.1f",
+                            i, times[i], voltages[i], velocities[i], accelerations[i]);
+                    }
+                    feedforward = DriveFeedforward.fit(
+                        voltages, velocities, accelerations, numSamples, MIN_FIT_VELOCITY);
+                    tracer.traceInfo(moduleName, "Characterization: samples=%d,ff=%s", numSamples, feedforward);
+                    sm.setState(State.DONE);
+                    break;
+
+                default:
+                case DONE:
+                    cancel();
+                    break;
+            }
+        }
+
+        return !sm.isEnabled();
+    }   //cmdPeriodic
+
+    /**
+     * This method records the applied voltage and the robot relative forward velocity.
+     *
+     * @param currTime specifies the current time in seconds.
+     */
+    private void recordSample(double currTime)
+    {
+        if (numSamples < times.length)
+        {
+            TrcPose2D fieldVel = driveBase.getFieldVelocity();
+            double heading = Math.toRadians(driveBase.getHeading());
+            // Rotate the field velocity into the robot frame, heading is clockwise positive.
+            velocity = fieldVel.x*Math.sin(heading) + fieldVel.y*Math.cos(heading);
+            times[numSamples] = currTime;
+            voltages[numSamples] = voltage;
+            velocities[numSamples] = velocity;
+            numSamples++;
+        }
+    }   //recordSample
+
+    /**
+     * This method computes the accelerations of one test from the recorded velocities by central difference over
+     * a small window to keep the noise down.
+     *
+     * @param start specifies the index of the first sample of the test.
+     * @param end specifies the index after the last sample of the test.
+     */
+    private void computeAccelerations(int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            int prev = Math.max(i - ACCEL_HALF_WINDOW, start);
+            int next = Math.min(i + ACCEL_HALF_WINDOW, end - 1);
+            double dt = times[next] - times[prev];
+            accelerations[i] = dt > 0.0? (velocities[next] - velocities[prev])/dt: 0.0;
+        }
+    }   //computeAccelerations
+
+}   //class CmdDriveCharacterization
@@ -24,7 +24,6 @@ package teamcode.autocommands;
 
 
 import java.util.Arrays;
-import TrcCommonLib.trclib.TrcDashboard;
 import TrcCommonLib.trclib.TrcDbgTrace;
 import TrcCommonLib.trclib.TrcDriveBase;
 import TrcCommonLib.trclib.TrcEvent;
@@ -35,6 +34,8 @@ import TrcCommonLib.trclib.TrcPose2D;
 import TrcCommonLib.trclib.TrcRobot;
 import TrcCommonLib.trclib.TrcStateMachine;
 import TrcCommonLib.trclib.TrcTimer;
+import teamcode.logging.AsyncTraceLog;
+import teamcode.telemetry.ChangeDrivenDashboard;
 
 /**
  * This class implements a generic PID control drive command. It is agnostic to the PID controller sensors.
@@ -54,9 +55,9 @@ public class CmdMyPidDrive implements TrcRobot.RobotCommand
     }   //enum State
 
     private static final String moduleName = CmdMyPidDrive.class.getSimpleName();
-    private final TrcDashboard dashboard = TrcDashboard.getInstance();
 
     private final TrcDbgTrace tracer;
+    private final ChangeDrivenDashboard display;
     private final TrcDriveBase driveBase;
     private final TrcPidDrive pidDrive;
     private final boolean useSensorOdometry;
@@ -85,11 +86,14 @@ public class CmdMyPidDrive implements TrcRobot.RobotCommand
      *
      * @param driveBase specifies the drive base object.
      * @param pidDrive specifies the PID drive object to be used for PID controlled drive.
+     * @param display specifies the dashboard to display the state on.
      * @param useSensorOdometry specifies true to use the sensor odometry, false to use drive base odometry.
      */
-    public CmdMyPidDrive(TrcDriveBase driveBase, TrcPidDrive pidDrive, boolean useSensorOdometry)
+    public CmdMyPidDrive(
+        TrcDriveBase driveBase, TrcPidDrive pidDrive, ChangeDrivenDashboard display, boolean useSensorOdometry)
     {
         this.tracer = new TrcDbgTrace();
+        this.display = display;
         this.driveBase = driveBase;
         this.pidDrive = pidDrive;
         this.useSensorOdometry = useSensorOdometry;
@@ -112,10 +116,11 @@ public class CmdMyPidDrive implements TrcRobot.RobotCommand
      *
      * @param driveBase specifies the drive base object.
      * @param pidDrive specifies the PID drive object to be used for PID controlled drive.
+     * @param display specifies the dashboard to display the state on.
      */
-    public CmdMyPidDrive(TrcDriveBase driveBase, TrcPidDrive pidDrive)
+    public CmdMyPidDrive(TrcDriveBase driveBase, TrcPidDrive pidDrive, ChangeDrivenDashboard display)
     {
-        this(driveBase, pidDrive, false);
+        this(driveBase, pidDrive, display, false);
     }   //CmdPidDrive
 
     /**
@@ -235,12 +240,19 @@ public class CmdMyPidDrive implements TrcRobot.RobotCommand
 
         if (state == null)
         {
-            dashboard.displayPrintf(1, "State: disabled or waiting...");
+            display.displayText(1, "State: disabled or waiting...");
         }
         else
         {
-            dashboard.displayPrintf(1, "State: " + state);
-            tracer.tracePreStateInfo(sm.toString(), state);
+            display.displayPrintf(1, "State: %s", state);
+            if (AsyncTraceLog.isTraceLogOpened())
+            {
+                AsyncTraceLog.getTraceLog().tracePreStateInfo(sm.toString(), state);
+            }
+            else
+            {
+                tracer.tracePreStateInfo(sm.toString(), state);
+            }
             switch (state)
             {
                 case DO_DELAY:
@@ -293,7 +305,14 @@ public class CmdMyPidDrive implements TrcRobot.RobotCommand
                     cancel();
                     break;
             }
-            tracer.tracePostStateInfo(sm.toString(), state, driveBase, pidDrive);
+            if (AsyncTraceLog.isTraceLogOpened())
+            {
+                AsyncTraceLog.getTraceLog().tracePostStateInfo(sm.toString(), state, driveBase, pidDrive, null);
+            }
+            else
+            {
+                tracer.tracePostStateInfo(sm.toString(), state, driveBase, pidDrive);
+            }
         }
 
         return !sm.isEnabled();
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.autocommands;
+
+import TrcCommonLib.trclib.TrcEvent;
+import TrcCommonLib.trclib.TrcPath;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcStateMachine;
+import TrcCommonLib.trclib.TrcTimer;
+import teamcode.RobotParams;
+import teamcode.drivebases.RobotDrive;
+import teamcode.trajectory.Trajectory;
+
+/**
+ * This class implements a command that follows a pregenerated trajectory after an optional delay. It uses the
+ * feedforward trajectory follower if the robot drive has one, Pure Pursuit Drive otherwise. The trajectory should be
+ * generated (or loaded from the trajectory cache) at init so that starting the command costs nothing.
+ */
+public class CmdTrajectoryDrive implements TrcRobot.RobotCommand
+{
+    private static final String moduleName = CmdTrajectoryDrive.class.getSimpleName();
+
+    private enum State
+    {
+        DO_DELAY,
+        DRIVE,
+        DONE
+    }   //enum State
+
+    private final RobotDrive robotDrive;
+    private final double delay;
+    private final Trajectory trajectory;
+    private final TrcPath path;
+    private final TrcTimer timer;
+    private final TrcEvent event;
+    private final TrcStateMachine<State> sm;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param robotDrive specifies the robot drive object.
+     * @param delay specifies delay in seconds before the drive starts. 0 means no delay.
+     * @param trajectory specifies the trajectory to follow in absolute field coordinates.
+     */
+    public CmdTrajectoryDrive(RobotDrive robotDrive, double delay, Trajectory trajectory)
+    {
+        this.robotDrive = robotDrive;
+        this.delay = delay;
+        this.trajectory = trajectory;
+        // Convert the trajectory now if Pure Pursuit Drive is going to follow it.
+        path = robotDrive.trajectoryFollower == null?
+            trajectory.toPath(RobotParams.TRAJECTORY_WAYPOINT_STRIDE): null;
+
+        timer = new TrcTimer(moduleName);
+        event = new TrcEvent(moduleName);
+        sm = new TrcStateMachine<>(moduleName);
+        sm.start(State.DO_DELAY);
+    }   //CmdTrajectoryDrive
+
+    //
+    // Implements the TrcRobot.RobotCommand interface.
+    //
+
+    /**
+     * This method checks if the current RobotCommand  is running.
+     *
+     * @return true if the command is running, false otherwise.
+     */
+    @Override
+    public boolean isActive()
+    {
+        return sm.isEnabled();
+    }   //isActive
+
+    /**
+     * This method cancels the command if it is active.
+     */
+    @Override
+    public void cancel()
+    {
+        timer.cancel();
+        robotDrive.cancel();
+        sm.stop();
+    }   //cancel
+
+    /**
+     * This method must be called periodically by the caller to drive the command sequence forward.
+     *
+     * @param elapsedTime specifies the elapsed time in seconds since the start of the robot mode.
+     * @return true if the command sequence is completed, false otherwise.
+     */
+    @Override
+    public boolean cmdPeriodic(double elapsedTime)
+    {
+        State state = sm.checkReadyAndGetState();
+
+        if (state != null)
+        {
+            switch (state)
+            {
+                case DO_DELAY:
+                    if (delay > 0.0)
+                    {
+                        timer.set(delay, event);
+                        sm.waitForSingleEvent(event, State.DRIVE);
+                    }
+                    else
+                    {
+                        sm.setState(State.DRIVE);
+                    }
+                    break;
+
+                case DRIVE:
+                    if (robotDrive.trajectoryFollower != null)
+                    {
+                        robotDrive.trajectoryFollower.start(trajectory, event);
+                    }
+                    else
+                    {
+                        robotDrive.purePursuitDrive.start(path, event, 0.0);
+                    }
+                    sm.waitForSingleEvent(event, State.DONE);
+                    break;
+
+                default:
+                case DONE:
+                    cancel();
+                    break;
+            }
+        }
+
+        return !sm.isEnabled();
+    }   //cmdPeriodic
+
+}   //class CmdTrajectoryDrive
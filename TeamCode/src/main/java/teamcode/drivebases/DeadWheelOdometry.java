@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleSupplier;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcDriveBaseOdometry;
+import TrcCommonLib.trclib.TrcMotor;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import teamcode.hardware.BulkReadCache;
+import teamcode.hardware.HubTransactionMonitor;
+
+/**
+ * This class implements a dead wheel odometry engine that runs on its own fixed rate thread instead of the robot
+ * loop. Every period it reads the X (lateral) and the two Y (forward) odometry wheel encoders and integrates the
+ * step as a constant curvature arc (pose exponential) instead of a straight line, so the pose stays accurate when
+ * turning while driving and does not depend on how long the rest of the loop takes. The heading change of a step
+ * comes from the difference of the two Y wheels, or from a heading supplier (e.g. a sampled IMU) if one is given.
+ *
+ * The pose lives in a single-writer slot guarded by a StampedLock so the loop reads it without blocking the
+ * engine. When bound to a drive base, the engine must be the odometry source of the drive base (with odometry
+ * scales of 1.0) instead of an odometry device that reads the same encoders again. It hands the drive base a zero
+ * position delta, so the drive base does not integrate the pose itself, and the robot velocity of the last engine
+ * step. A pre-periodic task writes the latest x, y and heading to the drive base together at the top of every loop,
+ * so everything that reads the drive base pose (PID drive, pure pursuit) follows the engine. The drive base pose is
+ * overwritten every loop, so relocalization must go through setFieldPose (RobotDrive setFieldPosition does that).
+ *
+ * Every step reads the encoders from the hub, so the engine takes hub time away from the robot loop. The engine
+ * measures the time it spends reading, getHubLoad is the fraction of the elapsed time the hub was busy with it.
+ *
+ * Positions are in inches, headings in degrees, clockwise positive like the drive base. The robot frame has x to
+ * the right and y forward.
+ */
+public class DeadWheelOdometry implements TrcDriveBaseOdometry
+{
+    private static final String moduleName = DeadWheelOdometry.class.getSimpleName();
+    private static final double DEG_TO_RAD = Math.PI/180.0;
+    private static final double SMALL_ANGLE = 1.0e-6;
+
+    private final String instanceName;
+    private final TrcDriveBase driveBase;
+    private final TrcMotor xSensor, y1Sensor, y2Sensor;
+    private final double xSensorYOffset, y1SensorXOffset, y2SensorXOffset;
+    private final double inchesPerCount;
+    private final DoubleSupplier headingSupplier;
+    private final long periodNanos;
+    private final StampedLock poseLock = new StampedLock();
+    private final TrcTaskMgr.TaskObject publishTaskObj;
+    private final TrcPose2D publishedPose = new TrcPose2D();
+    // Handed to the drive base every odometry update, the position delta stays zero.
+    private final TrcDriveBase.Odometry sourceDelta = new TrcDriveBase.Odometry();
+    // Pose slot, written by the engine thread and setFieldPose.
+    private double x = 0.0, y = 0.0, heading = 0.0;
+    // Robot velocity of the last step, written by the engine thread under the pose lock.
+    private double xVel = 0.0, yVel = 0.0, turnRate = 0.0;
+    // Engine thread state: robot frame travel of the last integrated step.
+    private double stepX, stepY, stepHeading;
+    // Engine thread state: sensor readings of the current and the previous step.
+    private double xPos, y1Pos, y2Pos, headingPos;
+    private double lastXPos, lastY1Pos, lastY2Pos, lastHeading;
+    private DoubleSupplier xReader, y1Reader, y2Reader;
+    private BulkReadCache.Hub[] hubs = null;
+    private Thread engineThread = null;
+    private volatile boolean enabled = false;
+    private volatile long stepCount = 0;
+    private volatile long overrunCount = 0;
+    private volatile long readNanos = 0;
+    private volatile long startNanos = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param driveBase specifies the drive base to publish the pose to, null to read the pose manually. The engine
+     *        must be set as the odometry source of the drive base.
+     * @param xSensor specifies the motor port of the X odometry wheel encoder.
+     * @param xSensorYOffset specifies the forward offset of the X odometry wheel from the robot center.
+     * @param y1Sensor specifies the motor port of the left Y odometry wheel encoder.
+     * @param y1SensorXOffset specifies the right offset of the left Y odometry wheel from the robot center.
+     * @param y2Sensor specifies the motor port of the right Y odometry wheel encoder.
+     * @param y2SensorXOffset specifies the right offset of the right Y odometry wheel from the robot center.
+     * @param inchesPerCount specifies the odometry wheel travel per encoder count.
+     * @param headingSupplier specifies the heading supplier for the heading change of a step, null to use the Y
+     *        odometry wheels.
+     * @param period specifies the integration period in seconds.
+     */
+    public DeadWheelOdometry(
+        String instanceName, TrcDriveBase driveBase, TrcMotor xSensor, double xSensorYOffset, TrcMotor y1Sensor,
+        double y1SensorXOffset, TrcMotor y2Sensor, double y2SensorXOffset, double inchesPerCount,
+        DoubleSupplier headingSupplier, double period)
+    {
+        if (y1SensorXOffset == y2SensorXOffset)
+        {
+            throw new IllegalArgumentException("Y odometry wheels must have different X offsets.");
+        }
+
+        this.instanceName = instanceName;
+        this.driveBase = driveBase;
+        this.xSensor = xSensor;
+        this.xSensorYOffset = xSensorYOffset;
+        this.y1Sensor = y1Sensor;
+        this.y1SensorXOffset = y1SensorXOffset;
+        this.y2Sensor = y2Sensor;
+        this.y2SensorXOffset = y2SensorXOffset;
+        this.inchesPerCount = inchesPerCount;
+        this.headingSupplier = headingSupplier;
+        this.periodNanos = (long) (period*1.0e9);
+        xReader = xSensor != null? xSensor::getPosition: null;
+        y1Reader = y1Sensor != null? y1Sensor::getPosition: null;
+        y2Reader = y2Sensor != null? y2Sensor::getPosition: null;
+        publishTaskObj =
+            driveBase != null? TrcTaskMgr.createTask(instanceName + ".publishTask", this::publishTask): null;
+    }   //DeadWheelOdometry
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the transaction monitor that accounts for the encoder reads. It must be set before the
+     * engine is started.
+     *
+     * @param monitor specifies the transaction monitor.
+     */
+    public synchronized void setTransactionMonitor(HubTransactionMonitor monitor)
+    {
+        xReader = monitor.getDevice(xSensor.toString()).instrumentRead(xSensor::getPosition);
+        y1Reader = monitor.getDevice(y1Sensor.toString()).instrumentRead(y1Sensor::getPosition);
+        y2Reader = monitor.getDevice(y2Sensor.toString()).instrumentRead(y2Sensor::getPosition);
+    }   //setTransactionMonitor
+
+    /**
+     * This method sets the hubs whose bulk data is invalidated before every step. It is needed when the hubs are in
+     * MANUAL bulk caching mode, because the engine does not run at the top of the loop where the bulk data is
+     * normally invalidated. Only the hubs of the odometry wheel encoders should be given, invalidating another hub
+     * makes the loop read it again.
+     *
+     * @param hubs specifies the hubs of the odometry wheel encoders, null if bulk caching is not used.
+     */
+    public synchronized void setBulkCacheHubs(BulkReadCache.Hub[] hubs)
+    {
+        this.hubs = hubs;
+    }   //setBulkCacheHubs
+
+    /**
+     * This method starts/stops the engine thread. On start, the engine begins at the current drive base pose.
+     *
+     * @param enabled specifies true to start the engine, false to stop it.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            if (driveBase != null)
+            {
+                setPose(driveBase.getXPosition(), driveBase.getYPosition(), driveBase.getHeading());
+            }
+            readSensors();
+            lastXPos = xPos;
+            lastY1Pos = y1Pos;
+            lastY2Pos = y2Pos;
+            lastHeading = headingPos;
+            stepCount = 0;
+            overrunCount = 0;
+            readNanos = 0;
+            startNanos = System.nanoTime();
+            this.enabled = true;
+            engineThread = new Thread(this::engineLoop, instanceName);
+            engineThread.setDaemon(true);
+            engineThread.setPriority(Thread.MAX_PRIORITY);
+            engineThread.start();
+            if (publishTaskObj != null)
+            {
+                publishTaskObj.registerTask(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK);
+            }
+        }
+        else if (!enabled && this.enabled)
+        {
+            if (publishTaskObj != null)
+            {
+                publishTaskObj.unregisterTask();
+            }
+            this.enabled = false;
+            LockSupport.unpark(engineThread);
+            try
+            {
+                engineThread.join(1000);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            engineThread = null;
+            // The drive base keeps reading the velocity, it must not see the robot moving while the engine stops.
+            stepX = stepY = stepHeading = 0.0;
+            setVelocity(1.0);
+        }
+    }   //setEnabled
+
+    /**
+     * This method checks if the engine is running.
+     *
+     * @return true if running, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method sets the field pose of the engine and the drive base, e.g. the autonomous start pose or a
+     * relocalized pose. The engine continues integrating from it.
+     *
+     * @param pose specifies the field pose.
+     */
+    public void setFieldPose(TrcPose2D pose)
+    {
+        setPose(pose.x, pose.y, pose.angle);
+        if (driveBase != null)
+        {
+            driveBase.setFieldPosition(pose, true);
+        }
+    }   //setFieldPose
+
+    /**
+     * This method returns the latest field pose of the engine.
+     *
+     * @param pose specifies the pose to fill in.
+     * @return the given pose filled in.
+     */
+    public TrcPose2D getFieldPose(TrcPose2D pose)
+    {
+        long stamp = poseLock.tryOptimisticRead();
+
+        pose.x = x;
+        pose.y = y;
+        pose.angle = heading;
+        if (!poseLock.validate(stamp))
+        {
+            // The engine wrote while we were reading, read again under the lock.
+            stamp = poseLock.readLock();
+            try
+            {
+                pose.x = x;
+                pose.y = y;
+                pose.angle = heading;
+            }
+            finally
+            {
+                poseLock.unlockRead(stamp);
+            }
+        }
+
+        return pose;
+    }   //getFieldPose
+
+    /**
+     * This method is called by the drive base to reset the odometry device. The engine tracks its own encoder
+     * deltas and keeps its pose, the pose is set through setFieldPose.
+     *
+     * @param resetPositionOdometry specifies true for resetting position odometry, false otherwise.
+     * @param resetHeadingOdometry specifies true for resetting heading odometry, false otherwise.
+     */
+    @Override
+    public void resetOdometry(boolean resetPositionOdometry, boolean resetHeadingOdometry)
+    {
+    }   //resetOdometry
+
+    /**
+     * This method is called by the drive base on every odometry update. The drive base gets a zero position delta
+     * so that it keeps the pose published by the engine, and the robot velocity of the last engine step.
+     *
+     * @return odometry delta for the drive base.
+     */
+    @Override
+    public TrcDriveBase.Odometry getOdometryDelta()
+    {
+        long stamp = poseLock.readLock();
+
+        try
+        {
+            sourceDelta.velocity.x = xVel;
+            sourceDelta.velocity.y = yVel;
+            sourceDelta.velocity.angle = turnRate;
+        }
+        finally
+        {
+            poseLock.unlockRead(stamp);
+        }
+
+        return sourceDelta;
+    }   //getOdometryDelta
+
+    /**
+     * This method returns the number of steps integrated since the engine was started.
+     *
+     * @return number of steps.
+     */
+    public long getStepCount()
+    {
+        return stepCount;
+    }   //getStepCount
+
+    /**
+     * This method returns the number of steps that took longer than the period.
+     *
+     * @return number of overruns.
+     */
+    public long getOverrunCount()
+    {
+        return overrunCount;
+    }   //getOverrunCount
+
+    /**
+     * This method returns the average time the engine spent reading the sensors in a step.
+     *
+     * @return average read time in seconds.
+     */
+    public double getAverageReadTime()
+    {
+        long steps = stepCount;
+
+        return steps > 0? readNanos/1.0e9/steps: 0.0;
+    }   //getAverageReadTime
+
+    /**
+     * This method returns the fraction of the time since the engine was started that it spent reading the sensors,
+     * i.e. the share of the hub time the engine takes from the robot loop.
+     *
+     * @return hub load between 0.0 and 1.0.
+     */
+    public double getHubLoad()
+    {
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        return elapsedNanos > 0? (double) readNanos/elapsedNanos: 0.0;
+    }   //getHubLoad
+
+    /**
+     * This method integrates one step from odometry wheel travel. It does not touch hardware so it can be called
+     * directly by a caller that runs its own loop (e.g. simulation).
+     *
+     * @param dX specifies the X odometry wheel travel in inches.
+     * @param dY1 specifies the left Y odometry wheel travel in inches.
+     * @param dY2 specifies the right Y odometry wheel travel in inches.
+     * @param dHeading specifies the heading change in degrees, NaN to compute it from the Y odometry wheels.
+     */
+    public void integrate(double dX, double dY1, double dY2, double dHeading)
+    {
+        // A clockwise turn of dTheta moves a wheel at (x, y) by (y, -x)*dTheta.
+        double dTheta = Double.isNaN(dHeading)?
+            (dY1 - dY2)/(y2SensorXOffset - y1SensorXOffset): dHeading*DEG_TO_RAD;
+        double dyRobot = (dY1*y2SensorXOffset - dY2*y1SensorXOffset)/(y2SensorXOffset - y1SensorXOffset);
+        double dxRobot = dX - xSensorYOffset*dTheta;
+        double s, c;
+
+        if (Math.abs(dTheta) < SMALL_ANGLE)
+        {
+            s = 1.0 - dTheta*dTheta/6.0;
+            c = dTheta/2.0;
+        }
+        else
+        {
+            s = Math.sin(dTheta)/dTheta;
+            c = (1.0 - Math.cos(dTheta))/dTheta;
+        }
+        // Pose exponential: the arc of the step in the robot frame at the start of the step.
+        double arcX = dxRobot*s + dyRobot*c;
+        double arcY = -dxRobot*c + dyRobot*s;
+        stepX = dxRobot;
+        stepY = dyRobot;
+        stepHeading = dTheta/DEG_TO_RAD;
+        long stamp = poseLock.writeLock();
+
+        try
+        {
+            double h = heading*DEG_TO_RAD;
+            double cos = Math.cos(h), sin = Math.sin(h);
+
+            x += arcX*cos + arcY*sin;
+            y += -arcX*sin + arcY*cos;
+            heading += dTheta/DEG_TO_RAD;
+        }
+        finally
+        {
+            poseLock.unlockWrite(stamp);
+        }
+        stepCount++;
+    }   //integrate
+
+    /**
+     * This method sets the pose slot.
+     *
+     * @param x specifies the x position.
+     * @param y specifies the y position.
+     * @param heading specifies the heading.
+     */
+    private void setPose(double x, double y, double heading)
+    {
+        long stamp = poseLock.writeLock();
+
+        try
+        {
+            this.x = x;
+            this.y = y;
+            this.heading = heading;
+        }
+        finally
+        {
+            poseLock.unlockWrite(stamp);
+        }
+    }   //setPose
+
+    /**
+     * This method sets the velocity from the travel of the last integrated step.
+     *
+     * @param stepTime specifies the time between the sensor reads of the step in seconds.
+     */
+    private void setVelocity(double stepTime)
+    {
+        if (stepTime > 0.0)
+        {
+            long stamp = poseLock.writeLock();
+
+            try
+            {
+                xVel = stepX/stepTime;
+                yVel = stepY/stepTime;
+                turnRate = stepHeading/stepTime;
+            }
+            finally
+            {
+                poseLock.unlockWrite(stamp);
+            }
+        }
+    }   //setVelocity
+
+    /**
+     * This method reads the odometry wheel encoders and the heading supplier.
+     */
+    private void readSensors()
+    {
+        BulkReadCache.Hub[] hubs = this.hubs;
+
+        if (hubs != null)
+        {
+            for (BulkReadCache.Hub hub: hubs)
+            {
+                hub.clearBulkCache();
+            }
+        }
+        xPos = xReader.getAsDouble()*inchesPerCount;
+        y1Pos = y1Reader.getAsDouble()*inchesPerCount;
+        y2Pos = y2Reader.getAsDouble()*inchesPerCount;
+        headingPos = headingSupplier != null? headingSupplier.getAsDouble(): Double.NaN;
+    }   //readSensors
+
+    /**
+     * This method runs on the engine thread. It integrates a step every period until the engine is stopped. The
+     * period is kept on a fixed schedule; if a step overruns, the schedule restarts from now.
+     */
+    private void engineLoop()
+    {
+        long nextNanos = System.nanoTime();
+        long lastReadNanos = nextNanos;
+
+        while (enabled)
+        {
+            long readStartNanos = System.nanoTime();
+            readSensors();
+            readNanos += System.nanoTime() - readStartNanos;
+            integrate(xPos - lastXPos, y1Pos - lastY1Pos, y2Pos - lastY2Pos, headingPos - lastHeading);
+            lastXPos = xPos;
+            lastY1Pos = y1Pos;
+            lastY2Pos = y2Pos;
+            lastHeading = headingPos;
+            setVelocity((readStartNanos - lastReadNanos)/1.0e9);
+            lastReadNanos = readStartNanos;
+
+            nextNanos += periodNanos;
+            long remainingNanos = nextNanos - System.nanoTime();
+            if (remainingNanos > 0)
+            {
+                LockSupport.parkNanos(remainingNanos);
+            }
+            else
+            {
+                overrunCount++;
+                nextNanos = System.nanoTime();
+            }
+        }
+    }   //engineLoop
+
+    /**
+     * This method is called at the top of every loop to write the latest x, y and heading to the drive base.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void publishTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        // The drive base only integrates zero deltas, so the heading is published with the position.
+        driveBase.setFieldPosition(getFieldPose(publishedPose), true);
+    }   //publishTask
+
+}   //class DeadWheelOdometry
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+import java.util.Locale;
+
+/**
+ * This class implements the drive train feedforward model V = kS*sign(v) + kV*v + kA*a, where V is the applied
+ * voltage, v is the velocity and a is the acceleration. kS is the voltage to overcome static friction, kV the
+ * voltage per unit velocity and kA the voltage per unit acceleration. The constants are fitted from a
+ * characterization run by least squares. Below the velocity deadband the kS term is zero, otherwise a target
+ * velocity hovering around zero (e.g. holding position) flips the full static friction voltage back and forth
+ * every loop and the drive chatters.
+ */
+public class DriveFeedforward
+{
+    public final double kS;
+    public final double kV;
+    public final double kA;
+    public final double velocityDeadband;
+    public final double rSquared;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param kS specifies the static friction voltage in volts.
+     * @param kV specifies the velocity gain in volts per unit per second.
+     * @param kA specifies the acceleration gain in volts per unit per second squared.
+     * @param velocityDeadband specifies the velocity magnitude in units per second below which kS is not applied.
+     * @param rSquared specifies the coefficient of determination of the fit, 1.0 if not fitted.
+     */
+    public DriveFeedforward(double kS, double kV, double kA, double velocityDeadband, double rSquared)
+    {
+        this.kS = kS;
+        this.kV = kV;
+        this.kA = kA;
+        this.velocityDeadband = velocityDeadband;
+        this.rSquared = rSquared;
+    }   //DriveFeedforward
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param kS specifies the static friction voltage in volts.
+     * @param kV specifies the velocity gain in volts per unit per second.
+     * @param kA specifies the acceleration gain in volts per unit per second squared.
+     * @param velocityDeadband specifies the velocity magnitude in units per second below which kS is not applied.
+     */
+    public DriveFeedforward(double kS, double kV, double kA, double velocityDeadband)
+    {
+        this(kS, kV, kA, velocityDeadband, 1.0);
+    }   //DriveFeedforward
+
+    /**
+     * This method returns the feedforward constants.
+     *
+     * @return feedforward constants string.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.US, "kS=%.4f,kV=%.5f,kA=%.5f,deadband=%.2f,r2=%.4f", kS, kV, kA, velocityDeadband,
+            rSquared);
+    }   //toString
+
+    /**
+     * This method calculates the voltage needed to reach the given velocity and acceleration. The static friction
+     * term is only applied when the velocity magnitude is above the velocity deadband.
+     *
+     * @param velocity specifies the target velocity.
+     * @param acceleration specifies the target acceleration.
+     * @return feedforward voltage.
+     */
+    public double calculate(double velocity, double acceleration)
+    {
+        double staticVoltage = Math.abs(velocity) > velocityDeadband? kS*Math.signum(velocity): 0.0;
+
+        return staticVoltage + kV*velocity + kA*acceleration;
+    }   //calculate
+
+    /**
+     * This method fits the feedforward constants to the samples by linear least squares. Samples with a velocity
+     * below minVelocity are skipped because static friction is not modeled at rest, minVelocity also becomes the
+     * velocity deadband of the result.
+     *
+     * @param voltages specifies the applied voltages.
+     * @param velocities specifies the measured velocities.
+     * @param accelerations specifies the measured accelerations.
+     * @param numSamples specifies the number of valid samples in the arrays.
+     * @param minVelocity specifies the minimum velocity magnitude for a sample to be used.
+     * @return fitted feedforward, null if the samples do not determine all three constants.
+     */
+    public static DriveFeedforward fit(
+        double[] voltages, double[] velocities, double[] accelerations, int numSamples, double minVelocity)
+    {
+        // Normal equations A'A x = A'b with rows (sign(v), v, a).
+        double[] ata = new double[9];
+        double[] atb = new double[3];
+        double sumV = 0.0, sumV2 = 0.0;
+        int n = 0;
+
+        for (int i = 0; i < numSamples; i++)
+        {
+            double v = velocities[i];
+
+            if (Math.abs(v) >= minVelocity)
+            {
+                double[] row = {Math.signum(v), v, accelerations[i]};
+                double b = voltages[i];
+
+                for (int r = 0; r < 3; r++)
+                {
+                    for (int c = 0; c < 3; c++)
+                    {
+                        ata[r*3 + c] += row[r]*row[c];
+                    }
+                    atb[r] += row[r]*b;
+                }
+                sumV += b;
+                sumV2 += b*b;
+                n++;
+            }
+        }
+
+        double[] x = solve3(ata, atb);
+        if (n < 3 || x == null)
+        {
+            return null;
+        }
+        // Residual sum of squares from the normal equations: b'b - x'A'b.
+        double ssRes = sumV2 - (x[0]*atb[0] + x[1]*atb[1] + x[2]*atb[2]);
+        double ssTot = sumV2 - sumV*sumV/n;
+
+        return new DriveFeedforward(x[0], x[1], x[2], minVelocity, ssTot > 0.0? 1.0 - ssRes/ssTot: 1.0);
+    }   //fit
+
+    /**
+     * This method solves the 3x3 linear system m x = b by Cramer's rule.
+     *
+     * @param m specifies the row major matrix.
+     * @param b specifies the right hand side.
+     * @return solution, null if the matrix is singular.
+     */
+    private static double[] solve3(double[] m, double[] b)
+    {
+        double det = det3(m[0], m[1], m[2], m[3], m[4], m[5], m[6], m[7], m[8]);
+
+        if (Math.abs(det) < 1.0e-12)
+        {
+            return null;
+        }
+
+        return new double[] {
+            det3(b[0], m[1], m[2], b[1], m[4], m[5], b[2], m[7], m[8])/det,
+            det3(m[0], b[0], m[2], m[3], b[1], m[5], m[6], b[2], m[8])/det,
+            det3(m[0], m[1], b[0], m[3], m[4], b[1], m[6], m[7], b[2])/det};
+    }   //solve3
+
+    /**
+     * This method calculates the determinant of a 3x3 matrix given in row major order.
+     *
+     * @param a specifies row 0 column 0.
+     * @param b specifies row 0 column 1.
+     * @param c specifies row 0 column 2.
+     * @param d specifies row 1 column 0.
+     * @param e specifies row 1 column 1.
+     * @param f specifies row 1 column 2.
+     * @param g specifies row 2 column 0.
+     * @param h specifies row 2 column 1.
+     * @param i specifies row 2 column 2.
+     * @return determinant.
+     */
+    private static double det3(
+        double a, double b, double c, double d, double e, double f, double g, double h, double i)
+    {
+        return a*(e*i - f*h) - b*(d*i - f*g) + c*(d*h - e*g);
+    }   //det3
+
+}   //class DriveFeedforward
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+import TrcCommonLib.trclib.TrcPidController;
+import TrcCommonLib.trclib.TrcUtil;
+
+/**
+ * This class implements a velocity controller that adds PID feedback on the velocity error to the characterized
+ * feedforward. The feedforward does most of the work, so PID only has to correct for model error and disturbances
+ * and can be tuned much softer than a PID-only controller. The output is a motor power for motors with voltage
+ * compensation enabled at the nominal battery voltage, so one unit of power is always the same voltage. The kF of
+ * the PID coefficients is not used, the feedforward replaces it.
+ */
+public class FeedforwardVelocityController
+{
+    private final DriveFeedforward feedforward;
+    private final TrcPidController.PidCoefficients pidCoeffs;
+    private double integral = 0.0;
+    private double prevError = 0.0;
+    private double prevTime = 0.0;
+    private boolean hasPrevError = false;
+    private double feedforwardPower = 0.0;
+    private double feedbackPower = 0.0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param feedforward specifies the characterized feedforward in volts.
+     * @param pidCoeffs specifies the PID coefficients on the velocity error, in power per unit of velocity.
+     */
+    public FeedforwardVelocityController(DriveFeedforward feedforward, TrcPidController.PidCoefficients pidCoeffs)
+    {
+        this.feedforward = feedforward;
+        this.pidCoeffs = pidCoeffs;
+    }   //FeedforwardVelocityController
+
+    /**
+     * This method returns the controller state.
+     *
+     * @return controller state string.
+     */
+    @Override
+    public String toString()
+    {
+        return "ff=" + feedforwardPower + ",fb=" + feedbackPower + ",err=" + prevError;
+    }   //toString
+
+    /**
+     * This method resets the PID state. It should be called before starting to track a new profile.
+     */
+    public void reset()
+    {
+        integral = 0.0;
+        prevError = 0.0;
+        prevTime = 0.0;
+        hasPrevError = false;
+        feedforwardPower = 0.0;
+        feedbackPower = 0.0;
+    }   //reset
+
+    /**
+     * This method calculates the motor power to track the target velocity and acceleration.
+     *
+     * @param targetVelocity specifies the target velocity.
+     * @param targetAcceleration specifies the target acceleration.
+     * @param measuredVelocity specifies the measured velocity.
+     * @param timestamp specifies the time of the measurement in seconds.
+     * @return motor power in the range of -1.0 to 1.0.
+     */
+    public double calculate(
+        double targetVelocity, double targetAcceleration, double measuredVelocity, double timestamp)
+    {
+        double error = targetVelocity - measuredVelocity;
+        double dt = hasPrevError? timestamp - prevTime: 0.0;
+        double derivative = dt > 0.0? (error - prevError)/dt: 0.0;
+        double power;
+
+        feedforwardPower = feedforward.calculate(targetVelocity, targetAcceleration)/TrcUtil.BATTERY_NOMINAL_VOLTAGE;
+        feedbackPower = pidCoeffs.kP*error + pidCoeffs.kI*(integral + error*dt) + pidCoeffs.kD*derivative;
+        power = feedforwardPower + feedbackPower;
+        // Only integrate when the output is not saturated so the integral does not wind up.
+        if (Math.abs(power) < 1.0)
+        {
+            integral += error*dt;
+        }
+
+        prevError = error;
+        prevTime = timestamp;
+        hasPrevError = true;
+
+        return Math.max(-1.0, Math.min(1.0, power));
+    }   //calculate
+
+    /**
+     * This method returns the feedforward part of the last output.
+     *
+     * @return feedforward power.
+     */
+    public double getFeedforwardPower()
+    {
+        return feedforwardPower;
+    }   //getFeedforwardPower
+
+    /**
+     * This method returns the feedback part of the last output.
+     *
+     * @return feedback power.
+     */
+    public double getFeedbackPower()
+    {
+        return feedbackPower;
+    }   //getFeedbackPower
+
+}   //class FeedforwardVelocityController
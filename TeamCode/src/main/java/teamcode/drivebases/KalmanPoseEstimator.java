@@ -0,0 +1,771 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+import java.util.function.DoubleSupplier;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcDriveBaseOdometry;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+
+/**
+ * This class implements an extended Kalman filter that estimates the robot field pose (x, y, heading) from odometry
+ * deltas, IMU heading and AprilTag vision poses. Odometry drives the prediction every loop, the IMU heading and
+ * vision poses are measurements. A vision pose describes where the robot was when the frame was captured, so the
+ * filter keeps a short history of its steps and applies the measurement at capture time, then replays the odometry
+ * deltas recorded since then. Vision poses that are too far from the estimate are rejected by a chi-square gate.
+ *
+ * When bound to a drive base, the estimator is the odometry source of the drive base. It wraps the odometry device
+ * (e.g. the odometry wheels): every odometry update of the drive base feeds the raw delta of the device to the
+ * filter and hands the drive base a zero position delta, so the drive base does not integrate the pose itself. A
+ * pre-periodic task applies any new vision pose and writes the filtered x, y and heading to the drive base together,
+ * so everything that reads the drive base pose (PID drive, pure pursuit) follows the filtered pose instead of jumping
+ * when vision relocalizes. The velocity of the device is passed through to the drive base unchanged.
+ *
+ * Headings are in degrees, clockwise positive like the drive base, positions in inches and time stamps in
+ * System.nanoTime() units like the camera frame time. All state lives in arrays allocated at construction, the
+ * per-loop path does not allocate.
+ */
+public class KalmanPoseEstimator implements TrcDriveBaseOdometry
+{
+    private static final String moduleName = KalmanPoseEstimator.class.getSimpleName();
+    private static final double DEG_TO_RAD = Math.PI/180.0;
+    // Chi-square 99.9% threshold with 3 degrees of freedom.
+    private static final double VISION_GATE = 16.27;
+
+    /**
+     * This interface is implemented by a provider of vision poses, e.g. Vision with AprilTags.
+     */
+    public interface VisionPoseSource
+    {
+        /**
+         * This method returns the latest robot field pose from vision.
+         *
+         * @return robot field pose, null if none.
+         */
+        TrcPose2D getPose();
+
+        /**
+         * This method returns the capture time of the frame of the last pose returned by getPose.
+         *
+         * @return frame capture time in nanoseconds.
+         */
+        long getPoseTime();
+
+        /**
+         * This method returns the covariance of the last pose returned by getPose.
+         *
+         * @return row major 3x3 covariance of (x, y, heading), null to use the default vision noise.
+         */
+        double[] getPoseCovariance();
+
+    }   //interface VisionPoseSource
+
+    private final String instanceName;
+    private final TrcDriveBase driveBase;
+    private final TrcDriveBaseOdometry odometry;
+    private final double xScale, yScale;
+    private final DoubleSupplier imuHeadingSupplier;
+    private final TrcTaskMgr.TaskObject estimatorTaskObj;
+    private final TrcPose2D publishedPose = new TrcPose2D();
+    // Handed to the drive base every odometry update, the position delta stays zero.
+    private final TrcDriveBase.Odometry sourceDelta = new TrcDriveBase.Odometry();
+    // Noise model.
+    private double transNoise = 0.02, rotNoise = 0.01, posDrift = 0.005, headingDrift = 0.005;
+    private double imuStdDev = 0.5, visionPosStdDev = 2.0, visionHeadingStdDev = 3.0;
+    // State and covariance (row major 3x3).
+    private final double[] state = new double[3];
+    private final double[] cov = new double[9];
+    // Step history ring buffer: odometry delta in robot frame, IMU heading (NaN if none), posterior state and cov.
+    private final int historySize;
+    private final long[] histTime;
+    private final double[] histDx, histDy, histDh, histImu;
+    private final double[] histState, histCov;
+    private int histHead = 0;
+    private int histCount = 0;
+    // Scratch matrices for the vision update.
+    private final double[] s = new double[9];
+    private final double[] sInv = new double[9];
+    private final double[] gain = new double[9];
+    private final double[] tmp = new double[9];
+    private final double[] innovation = new double[3];
+    private final double[] measCov = new double[9];
+    // Drive base binding.
+    private VisionPoseSource visionSource = null;
+    private double imuOffset = 0.0;
+    private long lastVisionTime = 0;
+    private boolean lastVisionAccepted = false;
+    private boolean enabled = false;
+    // Statistics.
+    private long visionAccepted = 0;
+    private long visionRejected = 0;
+    private long visionTooOld = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param driveBase specifies the drive base to be bound to, null to use the filter standalone.
+     * @param odometry specifies the odometry device the estimator wraps, null if not bound to a drive base.
+     * @param xScale specifies the odometry scale of the drive base in inches per x unit of the device.
+     * @param yScale specifies the odometry scale of the drive base in inches per y unit of the device.
+     * @param imuHeadingSupplier specifies the method to read the IMU heading, null if no IMU measurement.
+     * @param historySize specifies the number of loops of history kept for latency compensation.
+     */
+    public KalmanPoseEstimator(
+        String instanceName, TrcDriveBase driveBase, TrcDriveBaseOdometry odometry, double xScale, double yScale,
+        DoubleSupplier imuHeadingSupplier, int historySize)
+    {
+        if ((driveBase == null) != (odometry == null))
+        {
+            throw new IllegalArgumentException("A bound estimator needs both the drive base and its odometry.");
+        }
+
+        this.instanceName = instanceName;
+        this.driveBase = driveBase;
+        this.odometry = odometry;
+        this.xScale = xScale;
+        this.yScale = yScale;
+        this.imuHeadingSupplier = imuHeadingSupplier;
+        this.historySize = historySize;
+        histTime = new long[historySize];
+        histDx = new double[historySize];
+        histDy = new double[historySize];
+        histDh = new double[historySize];
+        histImu = new double[historySize];
+        histState = new double[historySize*3];
+        histCov = new double[historySize*9];
+        estimatorTaskObj = driveBase != null?
+            TrcTaskMgr.createTask(instanceName + ".estimatorTask", this::estimatorTask): null;
+    }   //KalmanPoseEstimator
+
+    /**
+     * Constructor: Create an instance of the object that is not bound to a drive base.
+     *
+     * @param instanceName specifies the instance name.
+     * @param imuHeadingSupplier specifies the method to read the IMU heading, null if no IMU measurement.
+     * @param historySize specifies the number of loops of history kept for latency compensation.
+     */
+    public KalmanPoseEstimator(String instanceName, DoubleSupplier imuHeadingSupplier, int historySize)
+    {
+        this(instanceName, null, null, 1.0, 1.0, imuHeadingSupplier, historySize);
+    }   //KalmanPoseEstimator
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the process noise of the odometry.
+     *
+     * @param transNoise specifies the position standard deviation per inch travelled.
+     * @param rotNoise specifies the heading standard deviation per degree turned.
+     * @param posDrift specifies the position standard deviation added every step in inches.
+     * @param headingDrift specifies the heading standard deviation added every step in degrees.
+     */
+    public synchronized void setProcessNoise(double transNoise, double rotNoise, double posDrift, double headingDrift)
+    {
+        this.transNoise = transNoise;
+        this.rotNoise = rotNoise;
+        this.posDrift = posDrift;
+        this.headingDrift = headingDrift;
+    }   //setProcessNoise
+
+    /**
+     * This method sets the measurement noise.
+     *
+     * @param imuStdDev specifies the IMU heading standard deviation in degrees.
+     * @param visionPosStdDev specifies the default vision position standard deviation in inches.
+     * @param visionHeadingStdDev specifies the default vision heading standard deviation in degrees.
+     */
+    public synchronized void setMeasurementNoise(double imuStdDev, double visionPosStdDev, double visionHeadingStdDev)
+    {
+        this.imuStdDev = imuStdDev;
+        this.visionPosStdDev = visionPosStdDev;
+        this.visionHeadingStdDev = visionHeadingStdDev;
+    }   //setMeasurementNoise
+
+    /**
+     * This method sets the vision pose source polled by the estimator task.
+     *
+     * @param visionSource specifies the vision pose source, null to disable.
+     */
+    public synchronized void setVisionPoseSource(VisionPoseSource visionSource)
+    {
+        this.visionSource = visionSource;
+    }   //setVisionPoseSource
+
+    /**
+     * This method enables/disables the estimator. When enabled, the filter is reset to the current pose of the drive
+     * base. While disabled, the odometry deltas of the device are passed through to the drive base unchanged.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (estimatorTaskObj == null)
+        {
+            throw new IllegalStateException("Estimator is not bound to a drive base.");
+        }
+
+        if (enabled && !this.enabled)
+        {
+            resetPose(driveBase.getXPosition(), driveBase.getYPosition(), driveBase.getHeading(), System.nanoTime());
+            estimatorTaskObj.registerTask(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            estimatorTaskObj.unregisterTask();
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method checks if the estimator task is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method resets the filter and the bound drive base to a known pose, e.g. when the driver forces a
+     * relocalization that the filter would reject as an outlier.
+     *
+     * @param pose specifies the new field pose.
+     */
+    public synchronized void setFieldPose(TrcPose2D pose)
+    {
+        resetPose(pose.x, pose.y, pose.angle, System.nanoTime());
+        if (driveBase != null)
+        {
+            driveBase.setFieldPosition(pose, true);
+        }
+    }   //setFieldPose
+
+    /**
+     * This method resets the filter to a known pose with a small uncertainty and clears the history. It also
+     * aligns the IMU heading to the given heading.
+     *
+     * @param x specifies the x position.
+     * @param y specifies the y position.
+     * @param heading specifies the heading.
+     * @param timestamp specifies the time of the pose in nanoseconds.
+     */
+    public synchronized void resetPose(double x, double y, double heading, long timestamp)
+    {
+        state[0] = x;
+        state[1] = y;
+        state[2] = heading;
+        for (int i = 0; i < 9; i++)
+        {
+            cov[i] = 0.0;
+        }
+        cov[0] = cov[4] = posDrift*posDrift;
+        cov[8] = headingDrift*headingDrift;
+        if (imuHeadingSupplier != null)
+        {
+            imuOffset = heading - imuHeadingSupplier.getAsDouble();
+        }
+        histCount = 0;
+        histHead = 0;
+        lastVisionTime = 0;
+        record(timestamp, 0.0, 0.0, 0.0, Double.NaN);
+    }   //resetPose
+
+    /**
+     * This method advances the filter by one odometry step and optionally applies an IMU heading measurement.
+     *
+     * @param dxRobot specifies the x displacement in the robot frame at the start of the step.
+     * @param dyRobot specifies the y displacement in the robot frame at the start of the step.
+     * @param dHeading specifies the heading change.
+     * @param imuHeading specifies the IMU heading in the field frame, NaN if none.
+     * @param timestamp specifies the time of the step in nanoseconds.
+     */
+    public synchronized void step(double dxRobot, double dyRobot, double dHeading, double imuHeading, long timestamp)
+    {
+        predict(dxRobot, dyRobot, dHeading);
+        if (!Double.isNaN(imuHeading))
+        {
+            updateHeading(imuHeading, imuStdDev*imuStdDev);
+        }
+        record(timestamp, dxRobot, dyRobot, dHeading, imuHeading);
+    }   //step
+
+    /**
+     * This method applies a vision pose captured at an earlier time. The filter is rewound to the step at the
+     * capture time, corrected and the odometry steps since then are replayed. A pose of the same frame as the last
+     * one is not applied twice.
+     *
+     * @param x specifies the x position.
+     * @param y specifies the y position.
+     * @param heading specifies the heading.
+     * @param captureTime specifies the frame capture time in nanoseconds.
+     * @param poseCov specifies the row major 3x3 covariance of the pose, null to use the default vision noise.
+     * @return true if the pose is accepted, false if it is rejected or older than the history.
+     */
+    public synchronized boolean addVisionMeasurement(
+        double x, double y, double heading, long captureTime, double[] poseCov)
+    {
+        if (captureTime == lastVisionTime)
+        {
+            return lastVisionAccepted;
+        }
+
+        // Find the newest step at or before the capture time.
+        int back = -1;
+        for (int i = 0; i < histCount; i++)
+        {
+            if (histTime[index(i)] <= captureTime)
+            {
+                back = i;
+                break;
+            }
+        }
+
+        if (back == -1)
+        {
+            visionTooOld++;
+            return false;
+        }
+
+        // Rewind to the step at capture time.
+        int idx = index(back);
+        System.arraycopy(histState, idx*3, state, 0, 3);
+        System.arraycopy(histCov, idx*9, cov, 0, 9);
+
+        if (poseCov != null)
+        {
+            System.arraycopy(poseCov, 0, measCov, 0, 9);
+        }
+        else
+        {
+            for (int i = 0; i < 9; i++)
+            {
+                measCov[i] = 0.0;
+            }
+            measCov[0] = measCov[4] = visionPosStdDev*visionPosStdDev;
+            measCov[8] = visionHeadingStdDev*visionHeadingStdDev;
+        }
+
+        boolean accepted = updatePose(x, y, heading);
+        lastVisionTime = captureTime;
+        lastVisionAccepted = accepted;
+        if (accepted)
+        {
+            visionAccepted++;
+            System.arraycopy(state, 0, histState, idx*3, 3);
+            System.arraycopy(cov, 0, histCov, idx*9, 9);
+        }
+        else
+        {
+            visionRejected++;
+        }
+
+        // Replay the steps since the capture time from the (possibly corrected) state.
+        for (int i = back - 1; i >= 0; i--)
+        {
+            int j = index(i);
+            predict(histDx[j], histDy[j], histDh[j]);
+            if (!Double.isNaN(histImu[j]))
+            {
+                updateHeading(histImu[j], imuStdDev*imuStdDev);
+            }
+            System.arraycopy(state, 0, histState, j*3, 3);
+            System.arraycopy(cov, 0, histCov, j*9, 9);
+        }
+
+        return accepted;
+    }   //addVisionMeasurement
+
+    /**
+     * This method returns the estimated x position.
+     *
+     * @return x position in inches.
+     */
+    public synchronized double getX()
+    {
+        return state[0];
+    }   //getX
+
+    /**
+     * This method returns the estimated y position.
+     *
+     * @return y position in inches.
+     */
+    public synchronized double getY()
+    {
+        return state[1];
+    }   //getY
+
+    /**
+     * This method returns the estimated heading.
+     *
+     * @return heading in degrees.
+     */
+    public synchronized double getHeading()
+    {
+        return state[2];
+    }   //getHeading
+
+    /**
+     * This method copies the covariance of the estimate.
+     *
+     * @param covariance specifies the array to receive the row major 3x3 covariance.
+     */
+    public synchronized void getCovariance(double[] covariance)
+    {
+        System.arraycopy(cov, 0, covariance, 0, 9);
+    }   //getCovariance
+
+    /**
+     * This method returns the estimator statistics.
+     *
+     * @return statistics string.
+     */
+    public synchronized String getStatistics()
+    {
+        return "vision accepted=" + visionAccepted + ", rejected=" + visionRejected + ", tooOld=" + visionTooOld +
+               ", stdDev=(" + Math.sqrt(cov[0]) + ", " + Math.sqrt(cov[4]) + ", " + Math.sqrt(cov[8]) + ")";
+    }   //getStatistics
+
+    /**
+     * This method resets the wrapped odometry device. The filter keeps its pose, it is set through setFieldPose.
+     *
+     * @param resetPositionOdometry specifies true for resetting position odometry, false otherwise.
+     * @param resetHeadingOdometry specifies true for resetting heading odometry, false otherwise.
+     */
+    @Override
+    public void resetOdometry(boolean resetPositionOdometry, boolean resetHeadingOdometry)
+    {
+        odometry.resetOdometry(resetPositionOdometry, resetHeadingOdometry);
+    }   //resetOdometry
+
+    /**
+     * This method is called by the drive base on every odometry update. It feeds the delta of the wrapped odometry
+     * device and the IMU heading to the filter. The drive base gets a zero position delta so that it keeps the pose
+     * published by the estimator, and the velocity of the device.
+     *
+     * @return odometry delta for the drive base.
+     */
+    @Override
+    public TrcDriveBase.Odometry getOdometryDelta()
+    {
+        TrcDriveBase.Odometry odometryDelta = odometry.getOdometryDelta();
+
+        synchronized (this)
+        {
+            if (!enabled)
+            {
+                return odometryDelta;
+            }
+
+            double imuHeading =
+                imuHeadingSupplier != null? imuHeadingSupplier.getAsDouble() + imuOffset: Double.NaN;
+
+            step(
+                odometryDelta.position.x*xScale, odometryDelta.position.y*yScale, odometryDelta.position.angle,
+                imuHeading, System.nanoTime());
+        }
+        sourceDelta.velocity.setAs(odometryDelta.velocity);
+
+        return sourceDelta;
+    }   //getOdometryDelta
+
+    /**
+     * This method runs every loop before the periodic methods. It applies any new vision pose and writes the
+     * estimated x, y and heading to the drive base.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void estimatorTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        VisionPoseSource source;
+
+        synchronized (this)
+        {
+            source = visionSource;
+        }
+
+        if (source != null)
+        {
+            TrcPose2D visionPose = source.getPose();
+            if (visionPose != null)
+            {
+                addVisionMeasurement(
+                    visionPose.x, visionPose.y, visionPose.angle, source.getPoseTime(), source.getPoseCovariance());
+            }
+        }
+
+        synchronized (this)
+        {
+            publishedPose.x = state[0];
+            publishedPose.y = state[1];
+            publishedPose.angle = state[2];
+        }
+        // The drive base only integrates zero deltas, so the heading is published with the position.
+        driveBase.setFieldPosition(publishedPose, true);
+    }   //estimatorTask
+
+    /**
+     * This method propagates the state and covariance by one odometry step.
+     *
+     * @param dxr specifies the x displacement in the robot frame.
+     * @param dyr specifies the y displacement in the robot frame.
+     * @param dh specifies the heading change.
+     */
+    private void predict(double dxr, double dyr, double dh)
+    {
+        double h = state[2]*DEG_TO_RAD;
+        double c = Math.cos(h), sn = Math.sin(h);
+        // Robot to field rotation for a clockwise heading.
+        double dxf = dxr*c + dyr*sn;
+        double dyf = -dxr*sn + dyr*c;
+
+        state[0] += dxf;
+        state[1] += dyf;
+        state[2] += dh;
+
+        // F = [1 0 a; 0 1 b; 0 0 1] where a and b are the derivatives of the field displacement by heading.
+        double a = dyf*DEG_TO_RAD;
+        double b = -dxf*DEG_TO_RAD;
+        double p00 = cov[0], p01 = cov[1], p02 = cov[2], p11 = cov[4], p12 = cov[5], p22 = cov[8];
+        double dist = Math.sqrt(dxr*dxr + dyr*dyr);
+        double qPos = transNoise*dist + posDrift;
+        double qHeading = rotNoise*Math.abs(dh) + headingDrift;
+
+        cov[0] = p00 + 2.0*a*p02 + a*a*p22 + qPos*qPos;
+        cov[1] = cov[3] = p01 + a*p12 + b*p02 + a*b*p22;
+        cov[2] = cov[6] = p02 + a*p22;
+        cov[4] = p11 + 2.0*b*p12 + b*b*p22 + qPos*qPos;
+        cov[5] = cov[7] = p12 + b*p22;
+        cov[8] = p22 + qHeading*qHeading;
+    }   //predict
+
+    /**
+     * This method applies a heading measurement.
+     *
+     * @param heading specifies the measured heading.
+     * @param variance specifies the measurement variance.
+     */
+    private void updateHeading(double heading, double variance)
+    {
+        double nu = wrapAngle(heading - state[2]);
+        double sv = cov[8] + variance;
+        double k0 = cov[2]/sv, k1 = cov[5]/sv, k2 = cov[8]/sv;
+        double p20 = cov[6], p21 = cov[7], p22 = cov[8];
+
+        state[0] += k0*nu;
+        state[1] += k1*nu;
+        state[2] += k2*nu;
+        // P = P - K * P[2,:]
+        cov[0] -= k0*p20;
+        cov[1] -= k0*p21;
+        cov[2] -= k0*p22;
+        cov[3] -= k1*p20;
+        cov[4] -= k1*p21;
+        cov[5] -= k1*p22;
+        cov[6] -= k2*p20;
+        cov[7] -= k2*p21;
+        cov[8] -= k2*p22;
+    }   //updateHeading
+
+    /**
+     * This method applies a full pose measurement with the covariance in measCov.
+     *
+     * @param x specifies the measured x position.
+     * @param y specifies the measured y position.
+     * @param heading specifies the measured heading.
+     * @return true if the measurement passes the gate and is applied, false otherwise.
+     */
+    private boolean updatePose(double x, double y, double heading)
+    {
+        innovation[0] = x - state[0];
+        innovation[1] = y - state[1];
+        innovation[2] = wrapAngle(heading - state[2]);
+        for (int i = 0; i < 9; i++)
+        {
+            s[i] = cov[i] + measCov[i];
+        }
+
+        if (!invert3x3(s, sInv))
+        {
+            return false;
+        }
+
+        double chiSq = 0.0;
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                chiSq += innovation[i]*sInv[i*3 + j]*innovation[j];
+            }
+        }
+
+        if (chiSq > VISION_GATE)
+        {
+            return false;
+        }
+
+        // K = P * S^-1, x = x + K * nu, P = P - K * P
+        multiply3x3(cov, sInv, gain);
+        for (int i = 0; i < 3; i++)
+        {
+            state[i] += gain[i*3]*innovation[0] + gain[i*3 + 1]*innovation[1] + gain[i*3 + 2]*innovation[2];
+        }
+        multiply3x3(gain, cov, tmp);
+        for (int i = 0; i < 9; i++)
+        {
+            cov[i] -= tmp[i];
+        }
+        // Keep it symmetric against rounding.
+        cov[1] = cov[3] = (cov[1] + cov[3])/2.0;
+        cov[2] = cov[6] = (cov[2] + cov[6])/2.0;
+        cov[5] = cov[7] = (cov[5] + cov[7])/2.0;
+
+        return true;
+    }   //updatePose
+
+    /**
+     * This method records the current step in the history.
+     *
+     * @param timestamp specifies the time of the step.
+     * @param dx specifies the robot frame x displacement of the step.
+     * @param dy specifies the robot frame y displacement of the step.
+     * @param dh specifies the heading change of the step.
+     * @param imuHeading specifies the IMU heading of the step, NaN if none.
+     */
+    private void record(long timestamp, double dx, double dy, double dh, double imuHeading)
+    {
+        histHead = (histHead + 1)%historySize;
+        if (histCount < historySize)
+        {
+            histCount++;
+        }
+        histTime[histHead] = timestamp;
+        histDx[histHead] = dx;
+        histDy[histHead] = dy;
+        histDh[histHead] = dh;
+        histImu[histHead] = imuHeading;
+        System.arraycopy(state, 0, histState, histHead*3, 3);
+        System.arraycopy(cov, 0, histCov, histHead*9, 9);
+    }   //record
+
+    /**
+     * This method returns the ring buffer index of a history entry.
+     *
+     * @param back specifies how many steps back from the newest, 0 being the newest.
+     * @return ring buffer index.
+     */
+    private int index(int back)
+    {
+        return (histHead - back + historySize)%historySize;
+    }   //index
+
+    /**
+     * This method multiplies two 3x3 matrices.
+     *
+     * @param a specifies the left matrix.
+     * @param b specifies the right matrix.
+     * @param result specifies the array to receive a * b, must not be a or b.
+     */
+    private static void multiply3x3(double[] a, double[] b, double[] result)
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                result[i*3 + j] = a[i*3]*b[j] + a[i*3 + 1]*b[3 + j] + a[i*3 + 2]*b[6 + j];
+            }
+        }
+    }   //multiply3x3
+
+    /**
+     * This method inverts a 3x3 matrix.
+     *
+     * @param m specifies the matrix.
+     * @param result specifies the array to receive the inverse.
+     * @return true if inverted, false if the matrix is singular.
+     */
+    private static boolean invert3x3(double[] m, double[] result)
+    {
+        double c00 = m[4]*m[8] - m[5]*m[7];
+        double c01 = m[5]*m[6] - m[3]*m[8];
+        double c02 = m[3]*m[7] - m[4]*m[6];
+        double det = m[0]*c00 + m[1]*c01 + m[2]*c02;
+
+        if (Math.abs(det) < 1e-12)
+        {
+            return false;
+        }
+
+        double invDet = 1.0/det;
+        result[0] = c00*invDet;
+        result[1] = (m[2]*m[7] - m[1]*m[8])*invDet;
+        result[2] = (m[1]*m[5] - m[2]*m[4])*invDet;
+        result[3] = c01*invDet;
+        result[4] = (m[0]*m[8] - m[2]*m[6])*invDet;
+        result[5] = (m[2]*m[3] - m[0]*m[5])*invDet;
+        result[6] = c02*invDet;
+        result[7] = (m[1]*m[6] - m[0]*m[7])*invDet;
+        result[8] = (m[0]*m[4] - m[1]*m[3])*invDet;
+
+        return true;
+    }   //invert3x3
+
+    /**
+     * This method wraps an angle difference to the range of -180 to 180 degrees.
+     *
+     * @param angle specifies the angle difference.
+     * @return wrapped angle difference.
+     */
+    private static double wrapAngle(double angle)
+    {
+        angle %= 360.0;
+        if (angle >= 180.0)
+        {
+            angle -= 360.0;
+        }
+        else if (angle < -180.0)
+        {
+            angle += 360.0;
+        }
+
+        return angle;
+    }   //wrapAngle
+
+}   //class KalmanPoseEstimator
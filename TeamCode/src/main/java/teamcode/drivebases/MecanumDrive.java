@@ -47,23 +47,31 @@ public class MecanumDrive extends RobotDrive
             driveMotors[INDEX_RIGHT_FRONT], driveMotors[INDEX_RIGHT_BACK], gyro);
         if (RobotParams.Preferences.useExternalOdometry)
         {
-            // Create the external odometry device that uses the right back encoder port as the X odometry and
-            // the left and right front encoder ports as the Y1 and Y2 odometry. Gyro will serve as the angle
-            // odometry.
-            TrcOdometryWheels driveBaseOdometry = new TrcOdometryWheels(
-                new TrcOdometryWheels.AxisSensor(
-                    driveMotors[INDEX_RIGHT_FRONT], RobotParams.X_ODWHEEL_Y_OFFSET, RobotParams.X_ODWHEEL_X_OFFSET),
-                new TrcOdometryWheels.AxisSensor[] {
+            // Integrate the odometry wheels on a fixed rate thread if enabled. The thread becomes the odometry of the
+            // drive base, the odometry wheels are only installed without it.
+            createDeadWheelOdometry(
+                driveMotors[INDEX_RIGHT_FRONT], driveMotors[INDEX_LEFT_BACK], driveMotors[INDEX_RIGHT_BACK]);
+            if (deadWheelOdometry == null)
+            {
+                // Create the external odometry device that uses the right back encoder port as the X odometry and
+                // the left and right front encoder ports as the Y1 and Y2 odometry. Gyro will serve as the angle
+                // odometry.
+                odometryWheels = new TrcOdometryWheels(
                     new TrcOdometryWheels.AxisSensor(
-                        driveMotors[INDEX_LEFT_BACK], RobotParams.YLEFT_ODWHEEL_X_OFFSET,
-                        RobotParams.YLEFT_ODWHEEL_Y_OFFSET),
-                    new TrcOdometryWheels.AxisSensor(
-                        driveMotors[INDEX_RIGHT_BACK], RobotParams.YRIGHT_ODWHEEL_X_OFFSET,
-                        RobotParams.YRIGHT_ODWHEEL_Y_OFFSET)},
-                gyro);
-            // Set the drive base to use the external odometry device overriding the built-in one.
-            driveBase.setDriveBaseOdometry(driveBaseOdometry);
-            driveBase.setOdometryScales(RobotParams.ODWHEEL_INCHES_PER_COUNT, RobotParams.ODWHEEL_INCHES_PER_COUNT);
+                        driveMotors[INDEX_RIGHT_FRONT], RobotParams.X_ODWHEEL_Y_OFFSET,
+                        RobotParams.X_ODWHEEL_X_OFFSET),
+                    new TrcOdometryWheels.AxisSensor[] {
+                        new TrcOdometryWheels.AxisSensor(
+                            driveMotors[INDEX_LEFT_BACK], RobotParams.YLEFT_ODWHEEL_X_OFFSET,
+                            RobotParams.YLEFT_ODWHEEL_Y_OFFSET),
+                        new TrcOdometryWheels.AxisSensor(
+                            driveMotors[INDEX_RIGHT_BACK], RobotParams.YRIGHT_ODWHEEL_X_OFFSET,
+                            RobotParams.YRIGHT_ODWHEEL_Y_OFFSET)},
+                    gyro);
+                // Set the drive base to use the external odometry device overriding the built-in one.
+                driveBase.setDriveBaseOdometry(odometryWheels);
+                driveBase.setOdometryScales(RobotParams.ODWHEEL_INCHES_PER_COUNT, RobotParams.ODWHEEL_INCHES_PER_COUNT);
+            }
         }
         else
         {
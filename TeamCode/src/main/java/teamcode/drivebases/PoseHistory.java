@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+import java.util.function.Consumer;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+
+/**
+ * This class implements a fixed capacity ring buffer of timestamped odometry poses. It answers "where was the robot
+ * at time t" by interpolating between the two recorded poses around t, which is what a vision pose needs: it
+ * describes where the robot was when the frame was captured, often 50 to 150 msec before it is available.
+ * Relocalizing with it applies the vision pose at capture time and carries the odometry motion since then over to
+ * the corrected pose, instead of throwing that motion away.
+ *
+ * Inserting is O(1) and lookup is a binary search over the ring, O(log n). Nothing is allocated after
+ * construction. Time stamps are in System.nanoTime() units like the camera frame time, headings are in degrees,
+ * clockwise positive like the drive base.
+ */
+public class PoseHistory
+{
+    private static final String moduleName = PoseHistory.class.getSimpleName();
+    private static final double DEG_TO_RAD = Math.PI/180.0;
+
+    private final TrcDriveBase driveBase;
+    private final TrcTaskMgr.TaskObject recordTaskObj;
+    private final int capacity;
+    private final long[] timestamps;
+    private final double[] xs, ys, headings;
+    private final double[] lookupPose = new double[3];
+    private final TrcPose2D correctedPose = new TrcPose2D();
+    private Consumer<TrcPose2D> poseSetter;
+    private int head = -1;
+    private int count = 0;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param driveBase specifies the drive base to record, null to record poses manually.
+     * @param capacity specifies the number of poses kept.
+     */
+    public PoseHistory(TrcDriveBase driveBase, int capacity)
+    {
+        this.driveBase = driveBase;
+        this.capacity = capacity;
+        timestamps = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+        recordTaskObj = driveBase != null? TrcTaskMgr.createTask(moduleName + ".recordTask", this::recordTask): null;
+        poseSetter = driveBase != null? pose -> driveBase.setFieldPosition(pose, false): null;
+    }   //PoseHistory
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method sets the method that applies a relocalized pose. By default, it is set on the drive base without
+     * resetting the heading, the heading of a relocalized pose is the recorded one.
+     *
+     * @param poseSetter specifies the method that sets the robot field pose.
+     */
+    public synchronized void setPoseSetter(Consumer<TrcPose2D> poseSetter)
+    {
+        this.poseSetter = poseSetter;
+    }   //setPoseSetter
+
+    /**
+     * This method enables/disables recording the drive base pose at the top of every loop.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (recordTaskObj == null)
+        {
+            throw new IllegalStateException("History is not bound to a drive base.");
+        }
+
+        if (enabled && !this.enabled)
+        {
+            clear();
+            recordTaskObj.registerTask(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            recordTaskObj.unregisterTask();
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method checks if recording is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method removes all poses.
+     */
+    public synchronized void clear()
+    {
+        head = -1;
+        count = 0;
+    }   //clear
+
+    /**
+     * This method returns the number of poses in the history.
+     *
+     * @return number of poses.
+     */
+    public synchronized int size()
+    {
+        return count;
+    }   //size
+
+    /**
+     * This method adds a pose to the history, overwriting the oldest one if full. Time stamps must not go
+     * backwards, a pose older than the newest one is ignored.
+     *
+     * @param timestamp specifies the time of the pose in nanoseconds.
+     * @param x specifies the x position.
+     * @param y specifies the y position.
+     * @param heading specifies the heading.
+     */
+    public synchronized void add(long timestamp, double x, double y, double heading)
+    {
+        if (count > 0 && timestamp < timestamps[head])
+        {
+            return;
+        }
+
+        head = (head + 1)%capacity;
+        if (count < capacity)
+        {
+            count++;
+        }
+        timestamps[head] = timestamp;
+        xs[head] = x;
+        ys[head] = y;
+        headings[head] = heading;
+    }   //add
+
+    /**
+     * This method returns the pose at the given time, interpolated between the recorded poses around it.
+     *
+     * @param timestamp specifies the time in nanoseconds.
+     * @param pose specifies the array to receive (x, y, heading).
+     * @return true if the time is within the history, false otherwise (pose is not touched).
+     */
+    public synchronized boolean getPose(long timestamp, double[] pose)
+    {
+        if (count == 0 || timestamp < timestamps[index(0)] || timestamp > timestamps[head])
+        {
+            return false;
+        }
+
+        // Binary search for the last entry at or before the time, in logical order (0 is the oldest).
+        int low = 0, high = count - 1;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (timestamps[index(mid)] <= timestamp)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        int i0 = index(low);
+        if (low == count - 1 || timestamps[i0] == timestamp)
+        {
+            pose[0] = xs[i0];
+            pose[1] = ys[i0];
+            pose[2] = headings[i0];
+        }
+        else
+        {
+            int i1 = index(low + 1);
+            double t = (double) (timestamp - timestamps[i0])/(timestamps[i1] - timestamps[i0]);
+            pose[0] = xs[i0] + (xs[i1] - xs[i0])*t;
+            pose[1] = ys[i0] + (ys[i1] - ys[i0])*t;
+            pose[2] = headings[i0] + (headings[i1] - headings[i0])*t;
+        }
+
+        return true;
+    }   //getPose
+
+    /**
+     * This method applies a pose that was true at an earlier time. Every recorded pose since then is moved rigidly
+     * so that its motion relative to the pose at that time is kept, and the corrected newest pose is returned.
+     *
+     * @param x specifies the x position at capture time.
+     * @param y specifies the y position at capture time.
+     * @param heading specifies the heading at capture time.
+     * @param captureTime specifies the capture time in nanoseconds.
+     * @param pose specifies the array to receive the corrected newest (x, y, heading).
+     * @return true if applied, false if the capture time is not within the history.
+     */
+    public synchronized boolean relocalize(double x, double y, double heading, long captureTime, double[] pose)
+    {
+        if (!getPose(captureTime, lookupPose))
+        {
+            return false;
+        }
+
+        // Rigid transform taking the odometry pose at capture time to the given pose.
+        double dHeading = heading - lookupPose[2];
+        double c = Math.cos(dHeading*DEG_TO_RAD);
+        double s = Math.sin(dHeading*DEG_TO_RAD);
+
+        for (int i = count - 1; i >= 0; i--)
+        {
+            int j = index(i);
+            if (timestamps[j] < captureTime)
+            {
+                break;
+            }
+
+            // Rotate the offset from the capture pose clockwise by dHeading, then move it to the new pose.
+            double ox = xs[j] - lookupPose[0];
+            double oy = ys[j] - lookupPose[1];
+            xs[j] = x + ox*c + oy*s;
+            ys[j] = y - ox*s + oy*c;
+            headings[j] += dHeading;
+        }
+
+        pose[0] = xs[head];
+        pose[1] = ys[head];
+        pose[2] = headings[head];
+
+        return true;
+    }   //relocalize
+
+    /**
+     * This method applies the position of a vision pose at its capture time and sets the corrected current pose with
+     * the pose setter. The heading of the vision pose is not used, the gyro heading is kept like it is when a vision
+     * pose is applied without history, so the recorded poses are only translated.
+     *
+     * @param visionPose specifies the robot field pose from vision.
+     * @param captureTime specifies the frame capture time in nanoseconds.
+     * @return true if applied, false if the capture time is not within the history.
+     */
+    public synchronized boolean relocalize(TrcPose2D visionPose, long captureTime)
+    {
+        // Relocalize with the recorded heading at capture time, so dHeading is zero.
+        boolean applied =
+            getPose(captureTime, lookupPose) &&
+            relocalize(visionPose.x, visionPose.y, lookupPose[2], captureTime, lookupPose);
+
+        if (applied && poseSetter != null)
+        {
+            correctedPose.x = lookupPose[0];
+            correctedPose.y = lookupPose[1];
+            correctedPose.angle = lookupPose[2];
+            poseSetter.accept(correctedPose);
+        }
+
+        return applied;
+    }   //relocalize
+
+    /**
+     * This method is called at the top of every loop to record the drive base pose.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void recordTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        add(System.nanoTime(), driveBase.getXPosition(), driveBase.getYPosition(), driveBase.getHeading());
+    }   //recordTask
+
+    /**
+     * This method returns the ring buffer index of a logical position.
+     *
+     * @param i specifies the logical position, 0 being the oldest.
+     * @return ring buffer index.
+     */
+    private int index(int i)
+    {
+        return (head - count + 1 + i + capacity)%capacity;
+    }   //index
+
+}   //class PoseHistory
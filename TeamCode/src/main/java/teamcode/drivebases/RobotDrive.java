@@ -22,13 +22,22 @@
 
 package teamcode.drivebases;
 
+import java.util.function.DoubleSupplier;
+
 import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcMotor;
+import TrcCommonLib.trclib.TrcOdometryWheels;
 import TrcCommonLib.trclib.TrcPidDrive;
+import TrcCommonLib.trclib.TrcPose2D;
 import TrcCommonLib.trclib.TrcPurePursuitDrive;
+import TrcCommonLib.trclib.TrcTimer;
 import TrcCommonLib.trclib.TrcUtil;
 import TrcFtcLib.ftclib.FtcDcMotor;
 import TrcFtcLib.ftclib.FtcImu;
 import teamcode.RobotParams;
+import teamcode.hardware.SampledImu;
+import teamcode.trajectory.TrajectoryFollower;
+import teamcode.trajectory.TrajectoryGenerator;
 
 /**
  * This class is intended to be extended by subclasses implementing different robot drive bases.
@@ -49,6 +58,10 @@ public class RobotDrive
     // Sensors.
     //
     public final FtcImu gyro;
+    //
+    // Trajectory generator, trajectories should be generated at init.
+    //
+    public final TrajectoryGenerator trajectoryGenerator;
 
     //
     // Subclass needs to initialize the following variables.
@@ -57,16 +70,33 @@ public class RobotDrive
     public FtcDcMotor[] driveMotors;
     // Drive Base.
     public TrcDriveBase driveBase;
+    // External odometry wheels, null if the drive base odometry uses the drive motor encoders.
+    public TrcOdometryWheels odometryWheels;
     // Drive Controllers.
     public TrcPidDrive pidDrive;
     public TrcPurePursuitDrive purePursuitDrive;
+    // Pose estimator and pose history, null if not used.
+    public KalmanPoseEstimator poseEstimator;
+    public PoseHistory poseHistory;
+    // Feedforward trajectory follower, null if not used (PurePursuitDrive follows trajectories instead).
+    public TrajectoryFollower trajectoryFollower;
+    // Dead wheel odometry thread, null if the drive base odometry is updated by the robot loop.
+    public DeadWheelOdometry deadWheelOdometry;
 
     /**
      * Constructor: Create an instance of the object.
      */
     public RobotDrive()
     {
-        gyro = new FtcImu(RobotParams.HWNAME_IMU, RobotParams.hubLogoDirection, RobotParams.hubUsbDirection);
+        gyro = RobotParams.Preferences.useImuSampler?
+            new SampledImu(
+                RobotParams.HWNAME_IMU, RobotParams.hubLogoDirection, RobotParams.hubUsbDirection,
+                RobotParams.IMU_SAMPLE_PERIOD, RobotParams.IMU_MAX_EXTRAPOLATION):
+            new FtcImu(RobotParams.HWNAME_IMU, RobotParams.hubLogoDirection, RobotParams.hubUsbDirection);
+        trajectoryGenerator = new TrajectoryGenerator(
+            RobotParams.TRAJECTORY_MAX_VELOCITY, RobotParams.TRAJECTORY_MAX_ACCELERATION,
+            RobotParams.TRAJECTORY_MAX_JERK, RobotParams.TRAJECTORY_MAX_LATERAL_ACCEL,
+            RobotParams.TRAJECTORY_TIME_STEP);
     }   //RobotDrive
 
     /**
@@ -86,6 +116,11 @@ public class RobotDrive
             purePursuitDrive.cancel(owner);
         }
 
+        if (trajectoryFollower != null && trajectoryFollower.isActive())
+        {
+            trajectoryFollower.cancel();
+        }
+
         driveBase.stop(owner);
     }   //cancel
 
@@ -97,6 +132,141 @@ public class RobotDrive
         cancel(null);
     }   //cancel
 
+    /**
+     * This method sets the robot field position. It must be used instead of setting the drive base field position
+     * directly, because the pose estimator and the dead wheel odometry overwrite the drive base pose every loop.
+     *
+     * @param pose specifies the robot field pose.
+     * @param resetHeading specifies true to also reset the heading, false otherwise.
+     */
+    public void setFieldPosition(TrcPose2D pose, boolean resetHeading)
+    {
+        if (poseEstimator != null && poseEstimator.isEnabled())
+        {
+            poseEstimator.setFieldPose(
+                resetHeading? pose: new TrcPose2D(pose.x, pose.y, poseEstimator.getHeading()));
+        }
+        else if (deadWheelOdometry != null)
+        {
+            deadWheelOdometry.setFieldPose(
+                resetHeading? pose: new TrcPose2D(pose.x, pose.y, driveBase.getHeading()));
+        }
+        else
+        {
+            driveBase.setFieldPosition(pose, resetHeading);
+        }
+    }   //setFieldPosition
+
+    /**
+     * This method sets the robot field position. It must be used instead of setting the drive base field position
+     * directly, because the pose estimator and the dead wheel odometry overwrite the drive base pose every loop.
+     *
+     * @param pose specifies the robot field pose.
+     */
+    public void setFieldPosition(TrcPose2D pose)
+    {
+        if (poseEstimator != null && poseEstimator.isEnabled())
+        {
+            poseEstimator.setFieldPose(pose);
+        }
+        else if (deadWheelOdometry != null)
+        {
+            deadWheelOdometry.setFieldPose(pose);
+        }
+        else
+        {
+            driveBase.setFieldPosition(pose);
+        }
+    }   //setFieldPosition
+
+    /**
+     * This method creates the Kalman filter pose estimator on top of the odometry wheels and makes it the odometry
+     * source of the drive base. It must be called after the subclass has created the drive base.
+     *
+     * @throws IllegalStateException if the drive base has no external odometry wheels.
+     */
+    public void createPoseEstimator()
+    {
+        if (odometryWheels == null)
+        {
+            throw new IllegalStateException("The pose estimator needs the external odometry wheels.");
+        }
+
+        // The estimator reads the heading every loop. The sampled IMU serves it from the sample slot without
+        // allocating, a plain FtcImu allocates a SensorData on every read.
+        SampledImu sampledImu = gyro instanceof SampledImu? (SampledImu) gyro: null;
+        DoubleSupplier headingSupplier = sampledImu != null?
+            () -> sampledImu.getHeading(TrcTimer.getCurrentTime()): () -> gyro.getZHeading().value;
+
+        poseEstimator = new KalmanPoseEstimator(
+            "poseEstimator", driveBase, odometryWheels, RobotParams.ODWHEEL_INCHES_PER_COUNT,
+            RobotParams.ODWHEEL_INCHES_PER_COUNT, headingSupplier, RobotParams.POSE_EKF_HISTORY_SIZE);
+        poseEstimator.setProcessNoise(
+            RobotParams.POSE_EKF_TRANS_NOISE, RobotParams.POSE_EKF_ROT_NOISE, RobotParams.POSE_EKF_POS_DRIFT,
+            RobotParams.POSE_EKF_HEADING_DRIFT);
+        poseEstimator.setMeasurementNoise(
+            RobotParams.POSE_EKF_IMU_STDDEV, RobotParams.POSE_EKF_VISION_POS_STDDEV,
+            RobotParams.POSE_EKF_VISION_HEADING_STDDEV);
+        driveBase.setDriveBaseOdometry(poseEstimator);
+    }   //createPoseEstimator
+
+    /**
+     * This method creates the odometry pose history used to apply vision poses at frame capture time. It must be
+     * called after the subclass has created the drive base.
+     */
+    public void createPoseHistory()
+    {
+        poseHistory = new PoseHistory(driveBase, RobotParams.POSE_HISTORY_SIZE);
+        poseHistory.setPoseSetter(pose -> setFieldPosition(pose, false));
+    }   //createPoseHistory
+
+    /**
+     * This method creates the feedforward trajectory follower with the characterized drive feedforward. It must be
+     * called after the subclass has created the drive base.
+     */
+    public void createTrajectoryFollower()
+    {
+        DriveFeedforward feedforward = new DriveFeedforward(
+            RobotParams.DRIVE_KS, RobotParams.DRIVE_KV, RobotParams.DRIVE_KA, RobotParams.DRIVE_KS_DEADBAND);
+
+        trajectoryFollower = new TrajectoryFollower(
+            driveBase,
+            new FeedforwardVelocityController(feedforward, RobotParams.driveFeedforwardVelPidCoeff),
+            new FeedforwardVelocityController(feedforward, RobotParams.driveFeedforwardVelPidCoeff),
+            RobotParams.TRAJECTORY_FOLLOWER_POS_GAIN, RobotParams.TRAJECTORY_FOLLOWER_TURN_GAIN,
+            RobotParams.PPD_POS_TOLERANCE, RobotParams.PPD_TURN_TOLERANCE,
+            RobotParams.TRAJECTORY_FOLLOWER_SETTLE_TIME);
+    }   //createTrajectoryFollower
+
+    /**
+     * This method creates the dead wheel odometry thread if it is enabled in preferences and makes it the odometry
+     * source of the drive base. It must be called by the subclass after it has created the drive base, instead of
+     * installing the odometry wheels, so that the encoders are not read and integrated twice. The thread is not used
+     * with the pose estimator, which wraps the odometry wheels itself.
+     *
+     * @param xSensor specifies the motor port of the X odometry wheel encoder.
+     * @param y1Sensor specifies the motor port of the left Y odometry wheel encoder.
+     * @param y2Sensor specifies the motor port of the right Y odometry wheel encoder.
+     */
+    protected void createDeadWheelOdometry(TrcMotor xSensor, TrcMotor y1Sensor, TrcMotor y2Sensor)
+    {
+        if (RobotParams.Preferences.useOdometryThread && !RobotParams.Preferences.usePoseEstimator)
+        {
+            // The sampled IMU heading is fresher than the Y wheel difference, use it for the heading change.
+            SampledImu sampledImu = gyro instanceof SampledImu? (SampledImu) gyro: null;
+
+            deadWheelOdometry = new DeadWheelOdometry(
+                "deadWheelOdometry", driveBase, xSensor, RobotParams.X_ODWHEEL_Y_OFFSET,
+                y1Sensor, RobotParams.YLEFT_ODWHEEL_X_OFFSET, y2Sensor, RobotParams.YRIGHT_ODWHEEL_X_OFFSET,
+                RobotParams.ODWHEEL_INCHES_PER_COUNT,
+                sampledImu != null? () -> sampledImu.getHeading(TrcTimer.getCurrentTime()): null,
+                RobotParams.ODOMETRY_THREAD_PERIOD);
+            // The engine hands the drive base inches and degrees.
+            driveBase.setDriveBaseOdometry(deadWheelOdometry);
+            driveBase.setOdometryScales(1.0, 1.0);
+        }
+    }   //createDeadWheelOdometry
+
     /**
      * This method creates and configures all drive motors.
      *
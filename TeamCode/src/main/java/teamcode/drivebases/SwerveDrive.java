@@ -68,8 +68,14 @@ public class SwerveDrive extends RobotDrive
     public final FtcAnalogEncoder[] steerEncoders;
     public final FtcCRServo[] steerServos;
     public final TrcSwerveModule[] swerveModules;
+    public final SwerveKinematics kinematics;
+    // Batched steering controller, null if the steer servos run their own software PID.
+    public final SwerveSteeringController steeringController;
+    private final double[] currentSteerAngles;
     public int calibrationCount = 0;
     private String xModeOwner = null;
+    private boolean xModeEnabled = false;
+    private boolean batchedSteeringAllowed = false;
 
     /**
      * Constructor: Create an instance of the object.
@@ -84,6 +90,19 @@ public class SwerveDrive extends RobotDrive
             RobotParams.Preferences.doSwervePhysicalAlignment ? new double[] {0.0, 0.0, 0.0, 0.0} : zeroPositions);
         steerServos = createSteerServos(steerServoNames, steerServoInverted, steerEncoders);
         swerveModules = createSwerveModules(swerveModuleNames, driveMotors, steerServos);
+        kinematics = SwerveKinematics.createRectangular(RobotParams.DRIVE_BASE_WIDTH, RobotParams.DRIVE_BASE_LENGTH);
+        currentSteerAngles = new double[swerveModules.length];
+        steeringController = RobotParams.Preferences.useBatchedSteering?
+            new SwerveSteeringController(
+                "steeringController", steerEncoders, steerServos,
+                RobotParams.STEER_SERVO_KP, RobotParams.STEER_SERVO_KI,
+                RobotParams.STEER_SERVO_KD, RobotParams.STEER_SERVO_KF,
+                RobotParams.STEER_SERVO_IZONE, RobotParams.STEER_SERVO_TOLERANCE): null;
+        if (steeringController != null)
+        {
+            // A drive base controller steers through the swerve modules, so it takes the steer servos back.
+            steeringController.setSuspendCondition(this::isDriveControllerActive);
+        }
 
         driveBase = new TrcSwerveDriveBase(
             swerveModules[INDEX_LEFT_FRONT], swerveModules[INDEX_LEFT_BACK],
@@ -93,27 +112,36 @@ public class SwerveDrive extends RobotDrive
 
          if (RobotParams.Preferences.useExternalOdometry)
          {
-             //
-             // Create the external odometry device that uses the right back encoder port as the X odometry and
-             // the left and right front encoder ports as the Y1 and Y2 odometry. Gyro will serve as the angle
-             // odometry.
-             //
-             TrcOdometryWheels driveBaseOdometry = new TrcOdometryWheels(
-                 new TrcOdometryWheels.AxisSensor(
-                     driveMotors[INDEX_RIGHT_BACK], RobotParams.X_ODWHEEL_Y_OFFSET, RobotParams.X_ODWHEEL_X_OFFSET),
-                 new TrcOdometryWheels.AxisSensor[] {
-                     new TrcOdometryWheels.AxisSensor(
-                         driveMotors[INDEX_LEFT_FRONT], RobotParams.YLEFT_ODWHEEL_X_OFFSET,
-                         RobotParams.YLEFT_ODWHEEL_Y_OFFSET),
+             // Integrate the odometry wheels on a fixed rate thread if enabled. The thread becomes the odometry of the
+             // drive base, the odometry wheels are only installed without it.
+             createDeadWheelOdometry(
+                 driveMotors[INDEX_RIGHT_BACK], driveMotors[INDEX_LEFT_FRONT], driveMotors[INDEX_RIGHT_FRONT]);
+             if (deadWheelOdometry == null)
+             {
+                 //
+                 // Create the external odometry device that uses the right back encoder port as the X odometry and
+                 // the left and right front encoder ports as the Y1 and Y2 odometry. Gyro will serve as the angle
+                 // odometry.
+                 //
+                 odometryWheels = new TrcOdometryWheels(
                      new TrcOdometryWheels.AxisSensor(
-                         driveMotors[INDEX_RIGHT_FRONT], RobotParams.YRIGHT_ODWHEEL_X_OFFSET,
-                         RobotParams.YRIGHT_ODWHEEL_Y_OFFSET)},
-                 gyro);
-             //
-             // Set the drive base to use the external odometry device overriding the built-in one.
-             //
-             driveBase.setDriveBaseOdometry(driveBaseOdometry);
-             driveBase.setOdometryScales(RobotParams.ODWHEEL_INCHES_PER_COUNT, RobotParams.ODWHEEL_INCHES_PER_COUNT);
+                         driveMotors[INDEX_RIGHT_BACK], RobotParams.X_ODWHEEL_Y_OFFSET,
+                         RobotParams.X_ODWHEEL_X_OFFSET),
+                     new TrcOdometryWheels.AxisSensor[] {
+                         new TrcOdometryWheels.AxisSensor(
+                             driveMotors[INDEX_LEFT_FRONT], RobotParams.YLEFT_ODWHEEL_X_OFFSET,
+                             RobotParams.YLEFT_ODWHEEL_Y_OFFSET),
+                         new TrcOdometryWheels.AxisSensor(
+                             driveMotors[INDEX_RIGHT_FRONT], RobotParams.YRIGHT_ODWHEEL_X_OFFSET,
+                             RobotParams.YRIGHT_ODWHEEL_Y_OFFSET)},
+                     gyro);
+                 //
+                 // Set the drive base to use the external odometry device overriding the built-in one.
+                 //
+                 driveBase.setDriveBaseOdometry(odometryWheels);
+                 driveBase.setOdometryScales(
+                     RobotParams.ODWHEEL_INCHES_PER_COUNT, RobotParams.ODWHEEL_INCHES_PER_COUNT);
+             }
          }
          else
          {
@@ -222,12 +250,74 @@ public class SwerveDrive extends RobotDrive
     }   //createSwerveModules
 
     /**
-     * This method enables/disables performance monitoring of all steering servo motors.
+     * This method allows/disallows batched steering. While allowed, kinematicDrive switches batched steering on
+     * whenever it drives, unless X mode or a drive base controller (PidDrive, PurePursuitDrive or
+     * TrajectoryFollower) is steering through the drive base. The steering controller switches itself off as soon
+     * as such a controller becomes active, so the controller always gets the servos back. Only TeleOp should allow
+     * it, anything that steers through the drive base by other means (e.g. timed drive) must leave it disallowed.
+     * It does nothing if batched steering is not used.
+     *
+     * @param allowed specifies true to allow, false to disallow.
+     */
+    public void setBatchedSteeringAllowed(boolean allowed)
+    {
+        batchedSteeringAllowed = allowed;
+        if (!allowed)
+        {
+            setBatchedSteeringEnabled(false);
+        }
+    }   //setBatchedSteeringAllowed
+
+    /**
+     * This method enables/disables batched steering. While enabled, the steering controller owns the steer servos
+     * and only kinematicDrive and setSteerAngle of this class can steer. It is normally switched by kinematicDrive,
+     * see setBatchedSteeringAllowed. It does nothing if batched steering is not used.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    private void setBatchedSteeringEnabled(boolean enabled)
+    {
+        if (steeringController != null)
+        {
+            steeringController.setEnabled(enabled);
+        }
+    }   //setBatchedSteeringEnabled
+
+    /**
+     * This method checks if a drive base controller is steering through the drive base.
+     *
+     * @return true if PidDrive, PurePursuitDrive or TrajectoryFollower is active, false otherwise.
+     */
+    private boolean isDriveControllerActive()
+    {
+        return pidDrive != null && pidDrive.isActive() ||
+               purePursuitDrive != null && purePursuitDrive.isActive() ||
+               trajectoryFollower != null && trajectoryFollower.isActive();
+    }   //isDriveControllerActive
+
+    /**
+     * This method checks if batched steering is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isBatchedSteeringEnabled()
+    {
+        return steeringController != null && steeringController.isEnabled();
+    }   //isBatchedSteeringEnabled
+
+    /**
+     * This method enables/disables performance monitoring of all steering servo motors. With batched steering, it
+     * monitors the steering batch as a whole.
      *
      * @param enabled specifies true to enable, false to disable.
      */
     public void setSteerPerformanceMonitorEnabled(boolean enabled)
     {
+        if (steeringController != null)
+        {
+            steeringController.setPerformanceMonitorEnabled(enabled);
+        }
+
         for (FtcCRServo servo: steerServos)
         {
             servo.setPerformanceMonitorEnabled(enabled);
@@ -239,14 +329,22 @@ public class SwerveDrive extends RobotDrive
      */
     public void printSteerPerformanceInfo()
     {
-        for (FtcCRServo servo : steerServos)
+        if (isBatchedSteeringEnabled())
         {
-            servo.printPidControlTaskPerformance();
+            steeringController.tracePerformance(globalTracer);
+        }
+        else
+        {
+            for (FtcCRServo servo : steerServos)
+            {
+                servo.printPidControlTaskPerformance();
+            }
         }
     }   //printSteerPerformanceInfo
 
     /**
-     * This method sets the steering angle of all swerve modules.
+     * This method sets the steering angle of all swerve modules. With batched steering, the angle is always held and
+     * not optimized because there is no drive power to reverse.
      *
      * @param angle specifies the steer angle.
      * @param optimize specifies true to optimize (only turns within +/- 90 degrees), false otherwse.
@@ -254,16 +352,91 @@ public class SwerveDrive extends RobotDrive
      */
     public void setSteerAngle(double angle, boolean optimize, boolean hold)
     {
-        for (TrcSwerveModule module: swerveModules)
+        if (isBatchedSteeringEnabled())
         {
-            module.setSteerAngle(angle, optimize, hold);
+            for (int i = 0; i < swerveModules.length; i++)
+            {
+                steeringController.setTarget(i, angle);
+            }
+        }
+        else
+        {
+            for (TrcSwerveModule module: swerveModules)
+            {
+                module.setSteerAngle(angle, optimize, hold);
+            }
         }
     }   //setSteerAngle
 
+    /**
+     * This method drives the robot with the swerve kinematics of this class instead of the drive base. The angles
+     * are optimized against the current steer angles and drive powers are scaled by steer error, so the slow
+     * steering servos turn as little as possible. The modules hold their angles when the robot is not moving. If
+     * batched steering is allowed, it is switched on here unless something else is steering through the drive base.
+     * With batched steering, the current steer angles are the ones read by the last steering batch, so no extra
+     * encoder reads are made. Like the drive methods of the drive base, it does nothing if the caller does not own
+     * the drive base, and it does not drive while X mode is holding the wheels.
+     *
+     * @param owner specifies the ID string of the caller for checking ownership, can be null if caller is not
+     *        ownership aware.
+     * @param x specifies the strafe power, right is positive.
+     * @param y specifies the forward power.
+     * @param rotation specifies the rotation power, clockwise is positive.
+     * @param gyroAngle specifies the robot heading for field oriented drive, 0.0 for robot oriented drive.
+     */
+    public void kinematicDrive(String owner, double x, double y, double rotation, double gyroAngle)
+    {
+        if (xModeEnabled || !driveBase.validateOwnership(owner))
+        {
+            return;
+        }
+
+        if (gyroAngle != 0.0)
+        {
+            // Rotate field oriented powers into the robot frame, heading is clockwise positive.
+            double cos = Math.cos(Math.toRadians(gyroAngle));
+            double sin = Math.sin(Math.toRadians(gyroAngle));
+            double robotX = x*cos - y*sin;
+
+            y = x*sin + y*cos;
+            x = robotX;
+        }
+
+        boolean batched = batchedSteeringAllowed && !xModeEnabled && !isDriveControllerActive();
+
+        if (batched != isBatchedSteeringEnabled())
+        {
+            setBatchedSteeringEnabled(batched);
+        }
+
+        for (int i = 0; i < swerveModules.length; i++)
+        {
+            currentSteerAngles[i] = batched? steeringController.getPosition(i): swerveModules[i].getSteerAngle();
+        }
+
+        kinematics.calculate(x, y, rotation, currentSteerAngles);
+        for (int i = 0; i < swerveModules.length; i++)
+        {
+            if (kinematics.isMoving())
+            {
+                if (batched)
+                {
+                    steeringController.setTarget(i, kinematics.getAngle(i));
+                }
+                else
+                {
+                    swerveModules[i].setSteerAngle(kinematics.getAngle(i), false, true);
+                }
+            }
+            swerveModules[i].driveMotor.setPower(kinematics.getPower(i));
+        }
+    }   //kinematicDrive
+
     /**
      * This method set all the wheels into an X configuration so that nobody can bump us out of position. If owner
      * is specifies, it will acquire execlusive ownership of the drivebase on behalf of the specified owner. On
-     * disable, it will release the ownership.
+     * disable, it will release the ownership. X mode steers through the drive base, so batched steering is off while
+     * it is on.
      *
      * @param owner specifies the ID string of the caller for checking ownership, can be null if caller is not
      *        ownership aware.
@@ -278,12 +451,19 @@ public class SwerveDrive extends RobotDrive
                 xModeOwner = owner;
             }
 
+            xModeEnabled = true;
+            setBatchedSteeringEnabled(false);
             ((TrcSwerveDriveBase) driveBase).setXMode(owner);
         }
-        else if (xModeOwner != null)
+        else
         {
-            driveBase.releaseExclusiveAccess(xModeOwner);
-            xModeOwner = null;
+            if (xModeOwner != null)
+            {
+                driveBase.releaseExclusiveAccess(xModeOwner);
+                xModeOwner = null;
+            }
+            // The next kinematicDrive switches batched steering back on if it is allowed.
+            xModeEnabled = false;
         }
     }   //setXModeEnabled
 
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+/**
+ * This class implements swerve drive inverse kinematics in preallocated arrays. It converts robot relative chassis
+ * powers (x strafe, y forward, clockwise rotation) into a steer angle and a drive power for each module. Wheel
+ * powers are scaled down together if any exceeds 1.0 so the robot keeps its direction of travel. Each angle is
+ * optimized against the current steer angle: if the module would have to turn more than 90 degrees, it turns to the
+ * opposite angle and drives backward instead. The drive power is then scaled by the cosine of the remaining steer
+ * error so that a module does not push the robot sideways while it is still turning. When the chassis is not
+ * moving, the modules hold their current angles instead of snapping back to zero. Angles are in degrees, 0 is
+ * forward and clockwise is positive, and target angles are continuous (current angle plus the shortest turn) to
+ * suit continuous steer encoders.
+ */
+public class SwerveKinematics
+{
+    private static final double DEF_ZERO_THRESHOLD = 0.01;
+
+    private final int numModules;
+    private final double[] xTurnFactors;
+    private final double[] yTurnFactors;
+    private final double[] angles;
+    private final double[] powers;
+    private final double[] steerErrors;
+    private double zeroThreshold = DEF_ZERO_THRESHOLD;
+    private boolean cosineScalingEnabled = true;
+    private boolean moving = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param moduleX specifies the x position of each module relative to the robot center (right is positive).
+     * @param moduleY specifies the y position of each module relative to the robot center (forward is positive).
+     */
+    public SwerveKinematics(double[] moduleX, double[] moduleY)
+    {
+        if (moduleX.length != moduleY.length || moduleX.length == 0)
+        {
+            throw new IllegalArgumentException("Module position arrays must have the same non-zero length.");
+        }
+
+        numModules = moduleX.length;
+        xTurnFactors = new double[numModules];
+        yTurnFactors = new double[numModules];
+        angles = new double[numModules];
+        powers = new double[numModules];
+        steerErrors = new double[numModules];
+        //
+        // Normalize the rotation so the module farthest from the center turns at full power for rotation 1.0.
+        // A clockwise rotation moves a module at (x, y) in the direction (y, -x).
+        //
+        double maxRadius = 0.0;
+        for (int i = 0; i < numModules; i++)
+        {
+            maxRadius = Math.max(maxRadius, Math.hypot(moduleX[i], moduleY[i]));
+        }
+
+        for (int i = 0; i < numModules; i++)
+        {
+            xTurnFactors[i] = maxRadius > 0.0? moduleY[i]/maxRadius: 0.0;
+            yTurnFactors[i] = maxRadius > 0.0? -moduleX[i]/maxRadius: 0.0;
+        }
+    }   //SwerveKinematics
+
+    /**
+     * This method creates the kinematics of a rectangular drive base with modules in the order of left front,
+     * right front, left back and right back.
+     *
+     * @param width specifies the distance between the left and right wheels.
+     * @param length specifies the distance between the front and back wheels.
+     * @return swerve kinematics.
+     */
+    public static SwerveKinematics createRectangular(double width, double length)
+    {
+        return new SwerveKinematics(
+            new double[] {-width/2.0, width/2.0, -width/2.0, width/2.0},
+            new double[] {length/2.0, length/2.0, -length/2.0, -length/2.0});
+    }   //createRectangular
+
+    /**
+     * This method sets the chassis power magnitude below which the robot is considered stopped.
+     *
+     * @param threshold specifies the zero threshold.
+     */
+    public void setZeroThreshold(double threshold)
+    {
+        zeroThreshold = threshold;
+    }   //setZeroThreshold
+
+    /**
+     * This method enables/disables the cosine scaling of drive power by steer error.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public void setCosineScalingEnabled(boolean enabled)
+    {
+        cosineScalingEnabled = enabled;
+    }   //setCosineScalingEnabled
+
+    /**
+     * This method computes the module states for the given chassis powers.
+     *
+     * @param x specifies the strafe power, right is positive.
+     * @param y specifies the forward power.
+     * @param rotation specifies the rotation power, clockwise is positive.
+     * @param currentAngles specifies the current steer angle of each module in degrees.
+     */
+    public void calculate(double x, double y, double rotation, double[] currentAngles)
+    {
+        moving = Math.abs(x) > zeroThreshold || Math.abs(y) > zeroThreshold || Math.abs(rotation) > zeroThreshold;
+
+        if (!moving)
+        {
+            // Hold the current angles, turning the wheels back to zero would only cost steering travel.
+            for (int i = 0; i < numModules; i++)
+            {
+                angles[i] = currentAngles[i];
+                powers[i] = 0.0;
+                steerErrors[i] = 0.0;
+            }
+            return;
+        }
+        //
+        // Module vectors and desaturation.
+        //
+        double maxPower = 1.0;
+        for (int i = 0; i < numModules; i++)
+        {
+            double vx = x + rotation*xTurnFactors[i];
+            double vy = y + rotation*yTurnFactors[i];
+
+            powers[i] = Math.hypot(vx, vy);
+            angles[i] = Math.toDegrees(Math.atan2(vx, vy));
+            maxPower = Math.max(maxPower, powers[i]);
+        }
+        //
+        // Angle optimization and cosine scaling.
+        //
+        for (int i = 0; i < numModules; i++)
+        {
+            double power = powers[i]/maxPower;
+            double delta = wrapAngle(angles[i] - currentAngles[i]);
+
+            if (delta > 90.0)
+            {
+                delta -= 180.0;
+                power = -power;
+            }
+            else if (delta < -90.0)
+            {
+                delta += 180.0;
+                power = -power;
+            }
+
+            steerErrors[i] = delta;
+            angles[i] = currentAngles[i] + delta;
+            powers[i] = cosineScalingEnabled? power*Math.cos(Math.toRadians(delta)): power;
+        }
+    }   //calculate
+
+    /**
+     * This method returns the number of modules.
+     *
+     * @return number of modules.
+     */
+    public int getNumModules()
+    {
+        return numModules;
+    }   //getNumModules
+
+    /**
+     * This method checks if the last calculated chassis powers move the robot.
+     *
+     * @return true if moving, false if the modules are holding.
+     */
+    public boolean isMoving()
+    {
+        return moving;
+    }   //isMoving
+
+    /**
+     * This method returns the target steer angle of the specified module.
+     *
+     * @param index specifies the module index.
+     * @return target steer angle in degrees, continuous with the current angle.
+     */
+    public double getAngle(int index)
+    {
+        return angles[index];
+    }   //getAngle
+
+    /**
+     * This method returns the drive power of the specified module.
+     *
+     * @param index specifies the module index.
+     * @return drive power in the range of -1.0 to 1.0.
+     */
+    public double getPower(int index)
+    {
+        return powers[index];
+    }   //getPower
+
+    /**
+     * This method returns the steer error of the specified module, the turn it still has to do.
+     *
+     * @param index specifies the module index.
+     * @return steer error in degrees, within +/- 90 degrees.
+     */
+    public double getSteerError(int index)
+    {
+        return steerErrors[index];
+    }   //getSteerError
+
+    /**
+     * This method wraps an angle into the range of -180 to 180 degrees.
+     *
+     * @param angle specifies the angle in degrees.
+     * @return wrapped angle.
+     */
+    private static double wrapAngle(double angle)
+    {
+        angle %= 360.0;
+
+        if (angle > 180.0)
+        {
+            angle -= 360.0;
+        }
+        else if (angle <= -180.0)
+        {
+            angle += 360.0;
+        }
+
+        return angle;
+    }   //wrapAngle
+
+}   //class SwerveKinematics
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.drivebases;
+
+import java.util.function.BooleanSupplier;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+import TrcFtcLib.ftclib.FtcAnalogEncoder;
+import TrcFtcLib.ftclib.FtcCRServo;
+import teamcode.hardware.HubTransactionMonitor;
+import teamcode.telemetry.LatencyHistogram;
+
+/**
+ * This class implements a batched position controller for the steering servos of all swerve modules. Instead of
+ * each servo running its own software PID task, one post periodic task reads all steer encoders in one pass,
+ * computes all PID outputs in a tight array loop and then writes all servo powers together. A servo power is only
+ * written when it changed, and a follower servo (dual servo steering) is written through its master. The whole
+ * batch is timed by a single latency histogram. While the controller is enabled, it owns the steering: the software
+ * PID of the servos is disabled, so steering commands must go through setTarget and not through the swerve modules.
+ * On disable, the software PID of the servos is re-enabled. Angles are in degrees and continuous, as reported by
+ * the steer encoders.
+ */
+public class SwerveSteeringController
+{
+    private static final String moduleName = SwerveSteeringController.class.getSimpleName();
+    private static final long HIGHEST_MICROS = 1000000L;        // 1 second
+
+    private final String instanceName;
+    private final FtcAnalogEncoder[] encoders;
+    private final FtcCRServo[] servos;
+    private final int numModules;
+    private final double kP, kI, kD, kF;
+    private final double iZone;
+    private final double tolerance;
+    private final double[] targets;
+    private final double[] positions;
+    private final double[] prevErrors;
+    private final double[] totalErrors;
+    private final double[] outputs;
+    private final double[] prevOutputs;
+    private final LatencyHistogram batchTimes = new LatencyHistogram(HIGHEST_MICROS);
+    private final TrcTaskMgr.TaskObject steerTaskObj;
+    private BooleanSupplier suspendCondition = null;
+    private HubTransactionMonitor.Device[] encoderDevices = null;
+    private HubTransactionMonitor.Device[] servoDevices = null;
+    private double prevTimestamp = 0.0;
+    private long writeCount = 0;
+    private boolean performanceMonitorEnabled = false;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param encoders specifies the steer encoder of each module.
+     * @param servos specifies the steer servo of each module, in the same order as the encoders.
+     * @param kP specifies the proportional coefficient.
+     * @param kI specifies the integral coefficient.
+     * @param kD specifies the derivative coefficient.
+     * @param kF specifies the feedforward coefficient.
+     * @param iZone specifies the error zone in which error is integrated, 0.0 to always integrate.
+     * @param tolerance specifies the on target tolerance in degrees, servo power is zero within tolerance.
+     */
+    public SwerveSteeringController(
+        String instanceName, FtcAnalogEncoder[] encoders, FtcCRServo[] servos, double kP, double kI, double kD,
+        double kF, double iZone, double tolerance)
+    {
+        if (encoders.length != servos.length)
+        {
+            throw new IllegalArgumentException("Encoder and servo arrays must have the same length.");
+        }
+
+        this.instanceName = instanceName;
+        this.encoders = encoders;
+        this.servos = servos;
+        this.numModules = servos.length;
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+        this.kF = kF;
+        this.iZone = iZone;
+        this.tolerance = tolerance;
+        targets = new double[numModules];
+        positions = new double[numModules];
+        prevErrors = new double[numModules];
+        totalErrors = new double[numModules];
+        outputs = new double[numModules];
+        prevOutputs = new double[numModules];
+        steerTaskObj = TrcTaskMgr.createTask(instanceName + ".steerTask", this::steerTask);
+    }   //SwerveSteeringController
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method enables/disables the controller. On enable, the software PID of the servos is disabled and the
+     * modules hold their current angles. On disable, the servos are stopped and their software PID is re-enabled.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            for (int i = 0; i < numModules; i++)
+            {
+                servos[i].setSoftwarePidEnabled(false);
+                targets[i] = encoders[i].getScaledPosition();
+                positions[i] = targets[i];
+                prevErrors[i] = 0.0;
+                totalErrors[i] = 0.0;
+                outputs[i] = 0.0;
+                prevOutputs[i] = Double.NaN;
+            }
+            prevTimestamp = 0.0;
+            steerTaskObj.registerTask(TrcTaskMgr.TaskType.POST_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            steerTaskObj.unregisterTask();
+            for (FtcCRServo servo: servos)
+            {
+                servo.setPower(0.0);
+                servo.setSoftwarePidEnabled(true);
+            }
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method sets the condition under which the controller disables itself at the next batch, e.g. when
+     * another controller starts steering through the swerve modules.
+     *
+     * @param suspendCondition specifies the condition, null if the controller is only disabled by the caller.
+     */
+    public synchronized void setSuspendCondition(BooleanSupplier suspendCondition)
+    {
+        this.suspendCondition = suspendCondition;
+    }   //setSuspendCondition
+
+    /**
+     * This method checks if the controller is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method sets the target steer angle of a module. It takes effect on the next batch.
+     *
+     * @param index specifies the module index.
+     * @param angle specifies the target angle in degrees.
+     */
+    public synchronized void setTarget(int index, double angle)
+    {
+        targets[index] = angle;
+    }   //setTarget
+
+    /**
+     * This method returns the target steer angle of a module.
+     *
+     * @param index specifies the module index.
+     * @return target angle in degrees.
+     */
+    public synchronized double getTarget(int index)
+    {
+        return targets[index];
+    }   //getTarget
+
+    /**
+     * This method returns the steer angle of a module read by the last batch. It saves a sensor read for callers
+     * that only need the angle as of the current loop.
+     *
+     * @param index specifies the module index.
+     * @return steer angle in degrees.
+     */
+    public synchronized double getPosition(int index)
+    {
+        return positions[index];
+    }   //getPosition
+
+    /**
+     * This method returns the servo power of a module computed by the last batch.
+     *
+     * @param index specifies the module index.
+     * @return servo power.
+     */
+    public synchronized double getOutput(int index)
+    {
+        return outputs[index];
+    }   //getOutput
+
+    /**
+     * This method returns the number of servo writes issued so far.
+     *
+     * @return number of servo writes.
+     */
+    public synchronized long getWriteCount()
+    {
+        return writeCount;
+    }   //getWriteCount
+
+    /**
+     * This method enables/disables the timing of the batches. Enabling it clears the previous timing data.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setPerformanceMonitorEnabled(boolean enabled)
+    {
+        if (enabled)
+        {
+            batchTimes.reset();
+        }
+        performanceMonitorEnabled = enabled;
+    }   //setPerformanceMonitorEnabled
+
+    /**
+     * This method sets the transaction monitor that accounts for the encoder reads and servo writes of the batch.
+     *
+     * @param monitor specifies the transaction monitor, null to stop accounting.
+     */
+    public synchronized void setTransactionMonitor(HubTransactionMonitor monitor)
+    {
+        if (monitor != null)
+        {
+            encoderDevices = new HubTransactionMonitor.Device[numModules];
+            servoDevices = new HubTransactionMonitor.Device[numModules];
+            for (int i = 0; i < numModules; i++)
+            {
+                encoderDevices[i] = monitor.getDevice(encoders[i].toString());
+                servoDevices[i] = monitor.getDevice(servos[i].toString());
+            }
+        }
+        else
+        {
+            encoderDevices = null;
+            servoDevices = null;
+        }
+    }   //setTransactionMonitor
+
+    /**
+     * This method returns the latency histogram of the batches in microseconds.
+     *
+     * @return batch latency histogram.
+     */
+    public LatencyHistogram getBatchTimes()
+    {
+        return batchTimes;
+    }   //getBatchTimes
+
+    /**
+     * This method writes the batch timing to the trace log.
+     *
+     * @param tracer specifies the tracer to write to.
+     */
+    public synchronized void tracePerformance(TrcDbgTrace tracer)
+    {
+        tracer.traceInfo(
+            moduleName, "%s: batches=%d, writes=%d, avg=%.3f, p99=%.3f, max=%.3f ms",
+            instanceName, batchTimes.getCount(), writeCount, batchTimes.getMean()/1000.0,
+            batchTimes.getPercentile(99.0)/1000.0, batchTimes.getMax()/1000.0);
+    }   //tracePerformance
+
+    /**
+     * This method computes the servo powers of all modules from their steer angles. It does not touch hardware so
+     * it can be called directly by a caller that runs its own loop (e.g. simulation).
+     *
+     * @param steerAngles specifies the steer angle of each module in degrees.
+     * @param timestamp specifies the time the steer angles were read in seconds.
+     */
+    public synchronized void calculate(double[] steerAngles, double timestamp)
+    {
+        double dt = prevTimestamp != 0.0? timestamp - prevTimestamp: 0.0;
+
+        for (int i = 0; i < numModules; i++)
+        {
+            double error = targets[i] - steerAngles[i];
+
+            positions[i] = steerAngles[i];
+            if (Math.abs(error) <= tolerance)
+            {
+                // On target, stop the servo so it does not hunt around the target.
+                totalErrors[i] = 0.0;
+                outputs[i] = 0.0;
+            }
+            else
+            {
+                if (kI != 0.0 && dt > 0.0 && (iZone == 0.0 || Math.abs(error) <= iZone))
+                {
+                    totalErrors[i] += error*dt;
+                }
+
+                double output =
+                    kP*error + kI*totalErrors[i] + (dt > 0.0? kD*(error - prevErrors[i])/dt: 0.0) + kF*targets[i];
+                outputs[i] = Math.max(-1.0, Math.min(1.0, output));
+            }
+            prevErrors[i] = error;
+        }
+        prevTimestamp = timestamp;
+    }   //calculate
+
+    /**
+     * This method runs one batch: it reads all steer encoders, computes all servo powers and writes the ones that
+     * changed.
+     */
+    public synchronized void update()
+    {
+        long startNanos = performanceMonitorEnabled? System.nanoTime(): 0L;
+
+        for (int i = 0; i < numModules; i++)
+        {
+            if (encoderDevices != null)
+            {
+                long readNanos = System.nanoTime();
+                positions[i] = encoders[i].getScaledPosition();
+                encoderDevices[i].recordRead(readNanos);
+            }
+            else
+            {
+                positions[i] = encoders[i].getScaledPosition();
+            }
+        }
+
+        calculate(positions, TrcTimer.getCurrentTime());
+        for (int i = 0; i < numModules; i++)
+        {
+            if (outputs[i] != prevOutputs[i])
+            {
+                // A follower servo is written by its master.
+                if (servoDevices != null)
+                {
+                    long writeNanos = System.nanoTime();
+                    servos[i].setPower(outputs[i]);
+                    servoDevices[i].recordWrite(writeNanos);
+                }
+                else
+                {
+                    servos[i].setPower(outputs[i]);
+                }
+                prevOutputs[i] = outputs[i];
+                writeCount++;
+            }
+        }
+
+        if (performanceMonitorEnabled)
+        {
+            batchTimes.recordValue((System.nanoTime() - startNanos)/1000);
+        }
+    }   //update
+
+    /**
+     * This method is called after the periodic method of every loop to run one batch with the targets set by it. If
+     * the suspend condition is true, the controller disables itself instead.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void steerTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        if (suspendCondition != null && suspendCondition.getAsBoolean())
+        {
+            // Somebody else is steering, hand the servos back to their software PID instead of fighting it.
+            setEnabled(false);
+        }
+        else
+        {
+            update();
+        }
+    }   //steerTask
+
+}   //class SwerveSteeringController
@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.hardware;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import TrcCommonLib.trclib.TrcMotor;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+
+/**
+ * This class implements a per-loop sensor snapshot. At the top of each robot loop, it invalidates the bulk data of
+ * all hubs (MANUAL bulk caching mode) and reads every registered channel exactly once. On a REV hub, all encoder
+ * positions and velocities of a hub come back in a single bulk read transaction, so the whole snapshot costs one
+ * round trip per hub instead of one per call. Consumers read from the snapshot for the rest of the loop. The
+ * snapshot is refreshed in place at the start of the next loop, a reader that needs values across loops gets a copy
+ * with getSnapshot. Only bulk data is read eagerly. Motor power and current are not part of the bulk data and cost
+ * a transaction each, so they are only read when asked for and at most once per loop.
+ */
+public class BulkReadCache
+{
+    private static final String moduleName = BulkReadCache.class.getSimpleName();
+
+    /**
+     * This interface is implemented by a hub that supports bulk reads. It can be a real Lynx module or a
+     * simulated hub.
+     */
+    public interface Hub
+    {
+        /**
+         * This method returns the hub name in the hardware map.
+         *
+         * @return hub name.
+         */
+        String getName();
+
+        /**
+         * This method invalidates the bulk data so that the next read will fetch fresh data from the hub.
+         */
+        void clearBulkCache();
+
+    }   //interface Hub
+
+    /**
+     * This class wraps a Lynx module (Control Hub or Expansion Hub) and puts it in MANUAL bulk caching mode.
+     */
+    public static class LynxHub implements Hub
+    {
+        private final String name;
+        private final LynxModule lynxModule;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param name specifies the hub name in the hardware map.
+         * @param lynxModule specifies the Lynx module.
+         */
+        public LynxHub(String name, LynxModule lynxModule)
+        {
+            this.name = name;
+            this.lynxModule = lynxModule;
+            lynxModule.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }   //LynxHub
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }   //getName
+
+        @Override
+        public void clearBulkCache()
+        {
+            lynxModule.clearBulkCache();
+        }   //clearBulkCache
+
+    }   //class LynxHub
+
+    /**
+     * This class contains the snapshot of all channels taken at the top of a loop. It has no setters, only the
+     * owning cache can update it or copy into it.
+     */
+    public static class Snapshot
+    {
+        private double[] values = new double[16];
+        private double timestamp = 0.0;
+        private long loopCount = 0;
+
+        /**
+         * This method copies the specified snapshot into this one.
+         *
+         * @param snapshot specifies the snapshot to copy from.
+         */
+        private void copyFrom(Snapshot snapshot)
+        {
+            if (values.length < snapshot.values.length)
+            {
+                values = new double[snapshot.values.length];
+            }
+            System.arraycopy(snapshot.values, 0, values, 0, snapshot.values.length);
+            timestamp = snapshot.timestamp;
+            loopCount = snapshot.loopCount;
+        }   //copyFrom
+
+        /**
+         * This method returns the snapshot value of the specified channel.
+         *
+         * @param channel specifies the channel handle returned by addChannel.
+         * @return snapshot value of the channel.
+         */
+        public double getValue(int channel)
+        {
+            return values[channel];
+        }   //getValue
+
+        /**
+         * This method returns the time the snapshot was taken.
+         *
+         * @return snapshot timestamp in seconds.
+         */
+        public double getTimestamp()
+        {
+            return timestamp;
+        }   //getTimestamp
+
+        /**
+         * This method returns the loop count of the snapshot. It is incremented every time the snapshot is
+         * refreshed.
+         *
+         * @return snapshot loop count.
+         */
+        public long getLoopCount()
+        {
+            return loopCount;
+        }   //getLoopCount
+
+    }   //class Snapshot
+
+    /**
+     * This class provides cached access to the commonly read values of a motor. Position and velocity come from the
+     * snapshot. Power and current are read on the first call of a loop and the value is reused for the rest of it.
+     */
+    public class CachedMotor
+    {
+        public final TrcMotor motor;
+        private final int positionChannel;
+        private final int velocityChannel;
+        private final DoubleSupplier powerReader;
+        private final DoubleSupplier currentReader;
+        private double power = 0.0;
+        private long powerLoopCount = -1;
+        private double current = 0.0;
+        private long currentLoopCount = -1;
+
+        /**
+         * Constructor: Create an instance of the object. The reads are accounted against the hardware name of the
+         * motor so that they add up with its writes.
+         *
+         * @param name specifies the name of the motor.
+         * @param motor specifies the motor.
+         */
+        private CachedMotor(String name, TrcMotor motor)
+        {
+            String deviceName = motor.toString();
+
+            this.motor = motor;
+            positionChannel = addChannel(name + ".pos", deviceName, motor::getPosition);
+            velocityChannel = addChannel(name + ".vel", deviceName, motor::getVelocity);
+            synchronized (BulkReadCache.this)
+            {
+                powerReader =
+                    monitor != null? monitor.getDevice(deviceName).instrumentRead(motor::getPower): motor::getPower;
+                currentReader =
+                    monitor != null? monitor.getDevice(deviceName).instrumentRead(motor::getCurrent): motor::getCurrent;
+            }
+        }   //CachedMotor
+
+        /**
+         * This method returns the motor position in the snapshot.
+         *
+         * @return motor position in scaled unit.
+         */
+        public double getPosition()
+        {
+            return snapshot.getValue(positionChannel);
+        }   //getPosition
+
+        /**
+         * This method returns the motor velocity in the snapshot.
+         *
+         * @return motor velocity in scaled unit per second.
+         */
+        public double getVelocity()
+        {
+            return snapshot.getValue(velocityChannel);
+        }   //getVelocity
+
+        /**
+         * This method returns the motor power. It is read from the motor on the first call of a loop.
+         *
+         * @return motor power.
+         */
+        public double getPower()
+        {
+            if (powerLoopCount != snapshot.loopCount)
+            {
+                power = powerReader.getAsDouble();
+                powerLoopCount = snapshot.loopCount;
+            }
+
+            return power;
+        }   //getPower
+
+        /**
+         * This method returns the motor current. It is read from the motor on the first call of a loop.
+         *
+         * @return motor current in amps.
+         */
+        public double getCurrent()
+        {
+            if (currentLoopCount != snapshot.loopCount)
+            {
+                current = currentReader.getAsDouble();
+                currentLoopCount = snapshot.loopCount;
+            }
+
+            return current;
+        }   //getCurrent
+
+    }   //class CachedMotor
+
+    private final Hub[] hubs;
+    private final ArrayList<String> channelNames = new ArrayList<>();
+    private final ArrayList<DoubleSupplier> channelReaders = new ArrayList<>();
+    private final Snapshot snapshot = new Snapshot();
+    private final TrcTaskMgr.TaskObject refreshTaskObj;
+    private DoubleSupplier[] readers = new DoubleSupplier[0];
+    private HubTransactionMonitor monitor = null;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param hubs specifies the hubs to be bulk read.
+     */
+    public BulkReadCache(Hub... hubs)
+    {
+        this.hubs = hubs;
+        refreshTaskObj = TrcTaskMgr.createTask(moduleName + ".refreshTask", this::refreshTask);
+    }   //BulkReadCache
+
+    /**
+     * This method creates hub wrappers for all the Lynx modules in the hardware map. Devices in the hardware map
+     * that already implement the Hub interface (e.g. simulated hubs) are returned as is.
+     *
+     * @param hardwareMap specifies the hardware map.
+     * @return array of hubs.
+     */
+    public static Hub[] getLynxHubs(HardwareMap hardwareMap)
+    {
+        List<LynxModule> modules = hardwareMap.getAll(LynxModule.class);
+        List<Hub> otherHubs = hardwareMap.getAll(Hub.class);
+        Hub[] hubs = new Hub[modules.size() + otherHubs.size()];
+
+        for (int i = 0; i < modules.size(); i++)
+        {
+            LynxModule module = modules.get(i);
+            hubs[i] = new LynxHub(hardwareMap.getNamesOf(module).iterator().next(), module);
+        }
+
+        for (int i = 0; i < otherHubs.size(); i++)
+        {
+            hubs[modules.size() + i] = otherHubs.get(i);
+        }
+
+        return hubs;
+    }   //getLynxHubs
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method returns the hubs of the cache with the specified names, e.g. for a reader on another thread that
+     * has to invalidate the bulk data of the hubs its devices are on.
+     *
+     * @param names specifies the hub names.
+     * @return hubs with the specified names.
+     * @throws IllegalArgumentException if the cache has no hub with one of the names.
+     */
+    public Hub[] getHubs(String... names)
+    {
+        Hub[] namedHubs = new Hub[names.length];
+
+        for (int i = 0; i < names.length; i++)
+        {
+            for (Hub hub: hubs)
+            {
+                if (hub.getName().equals(names[i]))
+                {
+                    namedHubs[i] = hub;
+                    break;
+                }
+            }
+
+            if (namedHubs[i] == null)
+            {
+                throw new IllegalArgumentException("Hub " + names[i] + " not found.");
+            }
+        }
+
+        return namedHubs;
+    }   //getHubs
+
+    /**
+     * This method sets the transaction monitor that accounts for the channel reads. It must be set before channels
+     * are added, only channels added after it is set are accounted.
+     *
+     * @param monitor specifies the transaction monitor, null if not accounting.
+     */
+    public synchronized void setTransactionMonitor(HubTransactionMonitor monitor)
+    {
+        this.monitor = monitor;
+    }   //setTransactionMonitor
+
+    /**
+     * This method adds a channel to the snapshot. Channels must be added before the cache is enabled.
+     *
+     * @param name specifies the channel name.
+     * @param reader specifies the method to read the channel from hardware.
+     * @return channel handle for reading the snapshot value.
+     */
+    public int addChannel(String name, DoubleSupplier reader)
+    {
+        return addChannel(name, name, reader);
+    }   //addChannel
+
+    /**
+     * This method adds a channel of the specified device to the snapshot. Channels must be added before the cache
+     * is enabled.
+     *
+     * @param name specifies the channel name.
+     * @param deviceName specifies the name of the device the channel is read from.
+     * @param reader specifies the method to read the channel from hardware.
+     * @return channel handle for reading the snapshot value.
+     */
+    private synchronized int addChannel(String name, String deviceName, DoubleSupplier reader)
+    {
+        if (enabled)
+        {
+            throw new IllegalStateException("Cannot add channel " + name + " while the cache is enabled.");
+        }
+
+        channelNames.add(name);
+        channelReaders.add(monitor != null? monitor.getDevice(deviceName).instrumentRead(reader): reader);
+        readers = channelReaders.toArray(readers);
+        if (snapshot.values.length < readers.length)
+        {
+            double[] values = new double[readers.length*2];
+            System.arraycopy(snapshot.values, 0, values, 0, snapshot.values.length);
+            snapshot.values = values;
+        }
+
+        return readers.length - 1;
+    }   //addChannel
+
+    /**
+     * This method adds a motor to the snapshot.
+     *
+     * @param name specifies the motor name.
+     * @param motor specifies the motor.
+     * @return cached motor for reading the snapshot values.
+     */
+    public CachedMotor addMotor(String name, TrcMotor motor)
+    {
+        return new CachedMotor(name, motor);
+    }   //addMotor
+
+    /**
+     * This method returns the name of the specified channel.
+     *
+     * @param channel specifies the channel handle.
+     * @return channel name.
+     */
+    public String getChannelName(int channel)
+    {
+        return channelNames.get(channel);
+    }   //getChannelName
+
+    /**
+     * This method returns the number of channels in the snapshot.
+     *
+     * @return number of channels.
+     */
+    public int getNumChannels()
+    {
+        return readers.length;
+    }   //getNumChannels
+
+    /**
+     * This method enables/disables the cache. When enabled, the snapshot is refreshed at the top of every loop.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            refresh();
+            refreshTaskObj.registerTask(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            refreshTaskObj.unregisterTask();
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method checks if the cache is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method copies the current snapshot into the specified one. The copy is not touched by later refreshes,
+     * so it can be kept across loops.
+     *
+     * @param copy specifies the snapshot to copy into, null to allocate a new one.
+     * @return copy of the current snapshot.
+     */
+    public Snapshot getSnapshot(Snapshot copy)
+    {
+        if (copy == null)
+        {
+            copy = new Snapshot();
+        }
+        copy.copyFrom(snapshot);
+
+        return copy;
+    }   //getSnapshot
+
+    /**
+     * This method invalidates the bulk data of all hubs and reads all channels into the snapshot. It is normally
+     * called by the refresh task at the top of the loop, but it can be called directly by a caller that runs its
+     * own loop (e.g. simulation).
+     */
+    public void refresh()
+    {
+        for (Hub hub: hubs)
+        {
+            hub.clearBulkCache();
+        }
+
+        for (int i = 0; i < readers.length; i++)
+        {
+            snapshot.values[i] = readers[i].getAsDouble();
+        }
+        snapshot.timestamp = TrcTimer.getCurrentTime();
+        snapshot.loopCount++;
+    }   //refresh
+
+    /**
+     * This method is called at the top of every loop to refresh the snapshot.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void refreshTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        refresh();
+    }   //refreshTask
+
+}   //class BulkReadCache
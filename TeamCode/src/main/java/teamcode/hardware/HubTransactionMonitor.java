@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.hardware;
+
+import java.util.ArrayList;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+import teamcode.telemetry.LatencyHistogram;
+
+/**
+ * This class accounts for the hub transactions of every device. Reads and writes are instrumented by wrapping the
+ * device accessors that the BulkReadCache, WriteCache, SensorScheduler and background threads call, so the wrapper
+ * measures the time of each call and counts it against the device. Devices are keyed by their hardware name, so all
+ * reads and writes of one motor, servo or sensor add up in one row no matter which cache made them. A read that
+ * returns faster than the cached read threshold was served from the bulk data and is counted as a cache hit, not as
+ * a transaction. Calls made outside of these wrappers (e.g. by TrcLib internally) are not seen.
+ *
+ * Transactions made on the robot thread and on background threads (e.g. the IMU sampler and the odometry thread)
+ * are budgeted separately. A pre periodic task closes the loop at the top of every loop: it adds up the robot thread
+ * transactions of the loop just ended and flags the loop if the total is over the loop budget. Background threads
+ * are paced by their own period rather than by the loop, so their transactions are added up over one second windows
+ * and a window is flagged if the rate is over the background budget.
+ *
+ * Devices must be added on the robot thread before the monitor is enabled. Transactions can be recorded from any
+ * thread, the robot thread is the one that enables the monitor.
+ */
+public class HubTransactionMonitor
+{
+    private static final String moduleName = HubTransactionMonitor.class.getSimpleName();
+    private static final long HIGHEST_MICROS = 1000000L;
+    private static final double WARNING_INTERVAL = 1.0;
+    private static final double BACKGROUND_WINDOW = 1.0;
+
+    /**
+     * This class contains the transaction accounting of one device.
+     */
+    public class Device
+    {
+        private final String name;
+        private final LatencyHistogram readTimes = new LatencyHistogram(HIGHEST_MICROS);
+        private final LatencyHistogram writeTimes = new LatencyHistogram(HIGHEST_MICROS);
+        private long readCount = 0;
+        private long writeCount = 0;
+        private long cacheHitCount = 0;
+        private long backgroundCount = 0;
+        private int loopTransactions = 0;
+        private int maxLoopTransactions = 0;
+        private int windowBackgroundTransactions = 0;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param name specifies the device name.
+         */
+        private Device(String name)
+        {
+            this.name = name;
+        }   //Device
+
+        /**
+         * This method returns the device name.
+         *
+         * @return device name.
+         */
+        @Override
+        public String toString()
+        {
+            return name;
+        }   //toString
+
+        /**
+         * This method records a read that started at the specified time and just completed.
+         *
+         * @param startNanos specifies the System.nanoTime when the read started.
+         */
+        public synchronized void recordRead(long startNanos)
+        {
+            long elapsedNanos = System.nanoTime() - startNanos;
+
+            if (elapsedNanos < cachedReadNanos)
+            {
+                cacheHitCount++;
+            }
+            else
+            {
+                readTimes.recordValue(elapsedNanos/1000);
+                readCount++;
+                countTransaction();
+            }
+        }   //recordRead
+
+        /**
+         * This method records a write that started at the specified time and just completed.
+         *
+         * @param startNanos specifies the System.nanoTime when the write started.
+         */
+        public synchronized void recordWrite(long startNanos)
+        {
+            writeTimes.recordValue((System.nanoTime() - startNanos)/1000);
+            writeCount++;
+            countTransaction();
+        }   //recordWrite
+
+        /**
+         * This method returns a reader that calls the specified reader and records the read against the device.
+         *
+         * @param reader specifies the method that reads the hardware.
+         * @return instrumented reader.
+         */
+        public DoubleSupplier instrumentRead(DoubleSupplier reader)
+        {
+            return () ->
+            {
+                long startNanos = System.nanoTime();
+                double value = reader.getAsDouble();
+                recordRead(startNanos);
+                return value;
+            };
+        }   //instrumentRead
+
+        /**
+         * This method returns a writer that calls the specified writer and records the write against the device.
+         *
+         * @param writer specifies the method that writes the hardware.
+         * @return instrumented writer.
+         */
+        public DoubleConsumer instrumentWrite(DoubleConsumer writer)
+        {
+            return value ->
+            {
+                long startNanos = System.nanoTime();
+                writer.accept(value);
+                recordWrite(startNanos);
+            };
+        }   //instrumentWrite
+
+        /**
+         * This method counts a transaction against the robot loop if it is made on the robot thread and against the
+         * background window otherwise.
+         */
+        private void countTransaction()
+        {
+            if (Thread.currentThread() == robotThread)
+            {
+                loopTransactions++;
+            }
+            else
+            {
+                backgroundCount++;
+                windowBackgroundTransactions++;
+            }
+        }   //countTransaction
+
+        /**
+         * This method returns the background transactions of the window in progress and starts counting a new
+         * window.
+         *
+         * @return number of background transactions of the window just ended.
+         */
+        private synchronized int closeBackgroundWindow()
+        {
+            int transactions = windowBackgroundTransactions;
+
+            windowBackgroundTransactions = 0;
+            return transactions;
+        }   //closeBackgroundWindow
+
+        /**
+         * This method returns the robot thread transactions of the loop in progress and starts counting a new loop.
+         *
+         * @return number of transactions of the loop just ended.
+         */
+        private synchronized int closeLoop()
+        {
+            int transactions = loopTransactions;
+
+            loopTransactions = 0;
+            if (transactions > maxLoopTransactions)
+            {
+                maxLoopTransactions = transactions;
+            }
+
+            return transactions;
+        }   //closeLoop
+
+        /**
+         * This method clears all counters of the device.
+         */
+        private synchronized void reset()
+        {
+            readTimes.reset();
+            writeTimes.reset();
+            readCount = writeCount = cacheHitCount = backgroundCount = 0;
+            loopTransactions = maxLoopTransactions = windowBackgroundTransactions = 0;
+        }   //reset
+
+        /**
+         * This method returns the accounting of the device as a row of the device table.
+         *
+         * @param loops specifies the number of loops accounted.
+         * @return device table row.
+         */
+        private synchronized String getRow(long loops)
+        {
+            return String.format(
+                "%-16s reads=%d, hits=%d, writes=%d, background=%d, perLoop(avg=%.2f, max=%d), " +
+                "readUs(p50=%d, p99=%d, max=%d), writeUs(p50=%d, p99=%d, max=%d)",
+                name, readCount, cacheHitCount, writeCount, backgroundCount,
+                loops > 0? (double) (readCount + writeCount - backgroundCount)/loops: 0.0, maxLoopTransactions,
+                readTimes.getPercentile(50.0), readTimes.getPercentile(99.0), readTimes.getMax(),
+                writeTimes.getPercentile(50.0), writeTimes.getPercentile(99.0), writeTimes.getMax());
+        }   //getRow
+
+    }   //class Device
+
+    private final ArrayList<Device> devices = new ArrayList<>();
+    private final TrcTaskMgr.TaskObject loopTaskObj;
+    private final int transactionBudget;
+    private final double backgroundBudget;
+    private final long cachedReadNanos;
+    private final TrcDbgTrace tracer;
+    private volatile Thread robotThread = null;
+    private long loopCount = 0;
+    private long overBudgetCount = 0;
+    private long totalTransactions = 0;
+    private int maxLoopTransactions = 0;
+    private double nextWarningTime = 0.0;
+    private double windowStartTime = 0.0;
+    private long backgroundWindowCount = 0;
+    private long overBackgroundBudgetCount = 0;
+    private long totalBackgroundTransactions = 0;
+    private double maxBackgroundRate = 0.0;
+    private double backgroundTime = 0.0;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param transactionBudget specifies the maximum number of robot thread hub transactions in a loop.
+     * @param backgroundBudget specifies the maximum rate of background thread hub transactions per second.
+     * @param cachedReadTime specifies the time in seconds below which a read is counted as served from the bulk
+     *        data.
+     * @param tracer specifies the tracer to warn about loops and windows that are over budget, null if not warning.
+     */
+    public HubTransactionMonitor(
+        int transactionBudget, double backgroundBudget, double cachedReadTime, TrcDbgTrace tracer)
+    {
+        this.transactionBudget = transactionBudget;
+        this.backgroundBudget = backgroundBudget;
+        this.cachedReadNanos = (long) (cachedReadTime*1.0e9);
+        this.tracer = tracer;
+        loopTaskObj = TrcTaskMgr.createTask(moduleName + ".loopTask", this::loopTask);
+    }   //HubTransactionMonitor
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method returns the accounting of the specified device, creating it if it does not exist yet. Channels
+     * of the same device (e.g. position, velocity and power of a motor) share one device, so callers must pass the
+     * hardware name of the device (e.g. the instance name of the TrcMotor), not a channel name.
+     *
+     * @param name specifies the hardware name of the device.
+     * @return device accounting.
+     */
+    public synchronized Device getDevice(String name)
+    {
+        for (int i = 0; i < devices.size(); i++)
+        {
+            if (devices.get(i).name.equals(name))
+            {
+                return devices.get(i);
+            }
+        }
+
+        Device device = new Device(name);
+        devices.add(device);
+        return device;
+    }   //getDevice
+
+    /**
+     * This method enables/disables the monitor. On enable, all counters are cleared and the calling thread becomes
+     * the robot thread, so it must be called on the robot thread. The monitor should be enabled before the other pre
+     * periodic tasks so that their transactions are counted in the loop they are made in.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            for (int i = 0; i < devices.size(); i++)
+            {
+                devices.get(i).reset();
+            }
+            loopCount = overBudgetCount = totalTransactions = 0;
+            maxLoopTransactions = 0;
+            nextWarningTime = 0.0;
+            backgroundWindowCount = overBackgroundBudgetCount = totalBackgroundTransactions = 0;
+            maxBackgroundRate = backgroundTime = 0.0;
+            windowStartTime = TrcTimer.getCurrentTime();
+            robotThread = Thread.currentThread();
+            loopTaskObj.registerTask(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            loopTaskObj.unregisterTask();
+            closeLoop();
+            closeBackgroundWindow(TrcTimer.getCurrentTime());
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method checks if the monitor is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method returns the number of loops accounted.
+     *
+     * @return number of loops.
+     */
+    public synchronized long getLoopCount()
+    {
+        return loopCount;
+    }   //getLoopCount
+
+    /**
+     * This method returns the number of loops that were over the transaction budget.
+     *
+     * @return number of loops over budget.
+     */
+    public synchronized long getOverBudgetCount()
+    {
+        return overBudgetCount;
+    }   //getOverBudgetCount
+
+    /**
+     * This method returns the number of background windows that were over the background budget.
+     *
+     * @return number of background windows over budget.
+     */
+    public synchronized long getOverBackgroundBudgetCount()
+    {
+        return overBackgroundBudgetCount;
+    }   //getOverBackgroundBudgetCount
+
+    /**
+     * This method writes the loop summary and the transaction table of every device to the trace log.
+     *
+     * @param tracer specifies the tracer to write to.
+     */
+    public synchronized void traceStatistics(TrcDbgTrace tracer)
+    {
+        tracer.traceInfo(
+            moduleName, "Total: loops=%d, overBudget=%d (budget=%d), perLoop(avg=%.2f, max=%d)",
+            loopCount, overBudgetCount, transactionBudget,
+            loopCount > 0? (double) totalTransactions/loopCount: 0.0, maxLoopTransactions);
+        tracer.traceInfo(
+            moduleName, "Background: windows=%d, overBudget=%d (budget=%.0f/s), rate(avg=%.1f/s, max=%.1f/s)",
+            backgroundWindowCount, overBackgroundBudgetCount, backgroundBudget,
+            backgroundTime > 0.0? totalBackgroundTransactions/backgroundTime: 0.0, maxBackgroundRate);
+        for (int i = 0; i < devices.size(); i++)
+        {
+            tracer.traceInfo(moduleName, devices.get(i).getRow(loopCount));
+        }
+    }   //traceStatistics
+
+    /**
+     * This method adds up the robot thread transactions of the loop just ended and flags it if it is over budget.
+     * Warnings are rate limited so that a loop that is always over budget does not flood the trace log. It also
+     * closes the background window once it is long enough.
+     */
+    private synchronized void closeLoop()
+    {
+        int transactions = 0;
+        Device worstDevice = null;
+        int worstTransactions = 0;
+
+        for (int i = 0; i < devices.size(); i++)
+        {
+            Device device = devices.get(i);
+            int deviceTransactions = device.closeLoop();
+
+            transactions += deviceTransactions;
+            if (deviceTransactions > worstTransactions)
+            {
+                worstDevice = device;
+                worstTransactions = deviceTransactions;
+            }
+        }
+
+        loopCount++;
+        totalTransactions += transactions;
+        if (transactions > maxLoopTransactions)
+        {
+            maxLoopTransactions = transactions;
+        }
+
+        double currTime = TrcTimer.getCurrentTime();
+        if (transactions > transactionBudget)
+        {
+            overBudgetCount++;
+            if (tracer != null && currTime >= nextWarningTime)
+            {
+                tracer.traceWarn(
+                    moduleName, "Loop %d over budget: transactions=%d/%d, worst=%s(%d), overBudget=%d",
+                    loopCount, transactions, transactionBudget, worstDevice, worstTransactions, overBudgetCount);
+                nextWarningTime = currTime + WARNING_INTERVAL;
+            }
+        }
+
+        if (currTime - windowStartTime >= BACKGROUND_WINDOW)
+        {
+            closeBackgroundWindow(currTime);
+        }
+    }   //closeLoop
+
+    /**
+     * This method adds up the background thread transactions of the window just ended and flags it if the rate is
+     * over the background budget. One window is at least a second long, so there is at most one warning a second.
+     *
+     * @param currTime specifies the current time in seconds.
+     */
+    private synchronized void closeBackgroundWindow(double currTime)
+    {
+        double windowTime = currTime - windowStartTime;
+        int transactions = 0;
+        Device worstDevice = null;
+        int worstTransactions = 0;
+
+        for (int i = 0; i < devices.size(); i++)
+        {
+            Device device = devices.get(i);
+            int deviceTransactions = device.closeBackgroundWindow();
+
+            transactions += deviceTransactions;
+            if (deviceTransactions > worstTransactions)
+            {
+                worstDevice = device;
+                worstTransactions = deviceTransactions;
+            }
+        }
+        windowStartTime = currTime;
+
+        if (windowTime > 0.0)
+        {
+            double rate = transactions/windowTime;
+
+            backgroundWindowCount++;
+            totalBackgroundTransactions += transactions;
+            backgroundTime += windowTime;
+            if (rate > maxBackgroundRate)
+            {
+                maxBackgroundRate = rate;
+            }
+
+            if (rate > backgroundBudget)
+            {
+                overBackgroundBudgetCount++;
+                if (tracer != null)
+                {
+                    tracer.traceWarn(
+                        moduleName,
+                        "Background over budget: rate=%.1f/%.0f per sec, worst=%s(%d), overBudget=%d",
+                        rate, backgroundBudget, worstDevice, worstTransactions, overBackgroundBudgetCount);
+                }
+            }
+        }
+    }   //closeBackgroundWindow
+
+    /**
+     * This method is called at the top of every loop to close the accounting of the previous loop.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void loopTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        closeLoop();
+    }   //loopTask
+
+}   //class HubTransactionMonitor
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.hardware;
+
+import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
+import com.qualcomm.robotcore.hardware.IMU;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+import TrcCommonLib.trclib.TrcSensor;
+import TrcCommonLib.trclib.TrcTimer;
+import TrcFtcLib.ftclib.FtcImu;
+import TrcFtcLib.ftclib.FtcOpMode;
+
+/**
+ * This class implements an IMU that is sampled by its own background thread at a fixed rate instead of being read
+ * by every caller in the robot loop. Each sample is two I2C transactions (heading and rotation rate, the SDK IMU
+ * interface has no call that reads both), so the sample period must leave room on the bus for everything else.
+ * Apart from resetYaw, the sampler thread is the only one that talks to the hardware. It publishes the latest two
+ * samples of heading, rotation rate and timestamp through a single-writer slot guarded by a StampedLock: readers use
+ * optimistic reads and retry only if the sampler wrote in the meantime, so they never block the sampler or each
+ * other. getHeading returns the heading interpolated between the two samples, or extrapolated from the latest one
+ * by its rotation rate up to a limit, to the given time. getZHeading and getZRotationRate (e.g. getDriveGyroAngle of
+ * the drive base) return the latest sample with its timestamp in a SensorData reused per caller thread, holding the
+ * values boxed once per sample, so they do not allocate. While the sampler is disabled, reads go straight to the IMU.
+ * resetYaw invalidates the slot, samples taken before the reset are dropped and reads go straight to the IMU until
+ * the sampler has published a sample taken after it. The yaw must be reset through this class for that to work.
+ */
+public class SampledImu extends FtcImu
+{
+    private static final String moduleName = SampledImu.class.getSimpleName();
+
+    private final IMU imu;
+    private final StampedLock sampleLock = new StampedLock();
+    private final long samplePeriodNanos;
+    private final double maxExtrapolation;
+    // Sample slot, written by the sampler thread only.
+    private double heading = 0.0;
+    private double rate = 0.0;
+    private double timestamp = 0.0;
+    private double prevHeading = 0.0;
+    private double prevTimestamp = 0.0;
+    private Double headingValue = 0.0;
+    private Double rateValue = 0.0;
+    private int validSamples = 0;
+    // Incremented under the write lock by every reset, samples read before it are dropped.
+    private volatile int resetCount = 0;
+    private volatile long sampleCount = 0;
+    private volatile boolean samplerEnabled = false;
+    private Thread samplerThread = null;
+    private volatile HubTransactionMonitor.Device device = null;
+    private double samplerStartTime = 0.0;
+    // SensorData returned by getZHeading and getZRotationRate, one per caller thread.
+    private final ThreadLocal<TrcSensor.SensorData<Double>> callerHeadingData =
+        new ThreadLocal<TrcSensor.SensorData<Double>>()
+        {
+            @Override
+            protected TrcSensor.SensorData<Double> initialValue()
+            {
+                return new TrcSensor.SensorData<>(0.0, 0.0);
+            }   //initialValue
+        };
+    private final ThreadLocal<TrcSensor.SensorData<Double>> callerRateData =
+        new ThreadLocal<TrcSensor.SensorData<Double>>()
+        {
+            @Override
+            protected TrcSensor.SensorData<Double> initialValue()
+            {
+                return new TrcSensor.SensorData<>(0.0, 0.0);
+            }   //initialValue
+        };
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param logoDirection specifies the REV Hub logo direction on the robot.
+     * @param usbDirection specifies the REV Hub USB direction on the robot.
+     * @param samplePeriod specifies the minimum time between samples in seconds, 0.0 to sample back to back.
+     * @param maxExtrapolation specifies the maximum time in seconds the heading is extrapolated past the latest
+     *        sample.
+     */
+    public SampledImu(
+        String instanceName, RevHubOrientationOnRobot.LogoFacingDirection logoDirection,
+        RevHubOrientationOnRobot.UsbFacingDirection usbDirection, double samplePeriod, double maxExtrapolation)
+    {
+        super(instanceName, logoDirection, usbDirection);
+        this.imu = FtcOpMode.getInstance().hardwareMap.get(IMU.class, instanceName);
+        this.samplePeriodNanos = (long) (samplePeriod*1.0e9);
+        this.maxExtrapolation = maxExtrapolation;
+    }   //SampledImu
+
+    /**
+     * This method starts/stops the sampler thread. On start, one sample is taken before returning so that readers
+     * never see an empty slot. The cardinal to cartesian converter must be enabled before the sampler is started.
+     *
+     * @param enabled specifies true to start the sampler, false to stop it.
+     */
+    public synchronized void setSamplerEnabled(boolean enabled)
+    {
+        if (enabled && !samplerEnabled)
+        {
+            sample();
+            sample();
+            sampleCount = 0;
+            samplerStartTime = TrcTimer.getCurrentTime();
+            samplerEnabled = true;
+            samplerThread = new Thread(this::samplerLoop, moduleName);
+            samplerThread.setDaemon(true);
+            samplerThread.setPriority(Thread.MAX_PRIORITY);
+            samplerThread.start();
+        }
+        else if (!enabled && samplerEnabled)
+        {
+            samplerEnabled = false;
+            LockSupport.unpark(samplerThread);
+            try
+            {
+                samplerThread.join(1000);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            samplerThread = null;
+        }
+    }   //setSamplerEnabled
+
+    /**
+     * This method resets the yaw of the IMU and invalidates the sample slot so that no reader interpolates or
+     * extrapolates across the reset.
+     */
+    public synchronized void resetYaw()
+    {
+        HubTransactionMonitor.Device device = this.device;
+        long writeNanos = System.nanoTime();
+        long stamp;
+
+        imu.resetYaw();
+        if (device != null)
+        {
+            device.recordWrite(writeNanos);
+        }
+
+        stamp = sampleLock.writeLock();
+        try
+        {
+            resetCount++;
+            validSamples = 0;
+        }
+        finally
+        {
+            sampleLock.unlockWrite(stamp);
+        }
+    }   //resetYaw
+
+    /**
+     * This method sets the transaction monitor that accounts for the IMU reads of the sampler.
+     *
+     * @param monitor specifies the transaction monitor, null to stop accounting.
+     */
+    public void setTransactionMonitor(HubTransactionMonitor monitor)
+    {
+        device = monitor != null? monitor.getDevice(toString()): null;
+    }   //setTransactionMonitor
+
+    /**
+     * This method checks if the sampler is running.
+     *
+     * @return true if the sampler is running, false otherwise.
+     */
+    public boolean isSamplerEnabled()
+    {
+        return samplerEnabled;
+    }   //isSamplerEnabled
+
+    /**
+     * This method returns the number of samples taken since the sampler was started.
+     *
+     * @return number of samples.
+     */
+    public long getSampleCount()
+    {
+        return sampleCount;
+    }   //getSampleCount
+
+    /**
+     * This method returns the average sample rate since the sampler was started.
+     *
+     * @return sample rate in Hz.
+     */
+    public double getSampleRate()
+    {
+        double elapsedTime = TrcTimer.getCurrentTime() - samplerStartTime;
+
+        return elapsedTime > 0.0? sampleCount/elapsedTime: 0.0;
+    }   //getSampleRate
+
+    /**
+     * This method returns the heading at the specified time. It is interpolated between the latest two samples if
+     * the time falls between them and extrapolated from the latest sample by its rotation rate otherwise, up to the
+     * maximum extrapolation time. If the slot has been invalidated by a reset and the sampler has not published a
+     * new sample yet, the heading is read from the IMU.
+     *
+     * @param time specifies the time in seconds.
+     * @return heading in degrees.
+     */
+    public double getHeading(double time)
+    {
+        double h, r, t, ph, pt;
+        int n;
+        long stamp = sampleLock.tryOptimisticRead();
+
+        h = heading;
+        r = rate;
+        t = timestamp;
+        ph = prevHeading;
+        pt = prevTimestamp;
+        n = validSamples;
+        if (!sampleLock.validate(stamp))
+        {
+            // The sampler wrote while we were reading, read again under the lock.
+            stamp = sampleLock.readLock();
+            try
+            {
+                h = heading;
+                r = rate;
+                t = timestamp;
+                ph = prevHeading;
+                pt = prevTimestamp;
+                n = validSamples;
+            }
+            finally
+            {
+                sampleLock.unlockRead(stamp);
+            }
+        }
+
+        double result;
+        if (n == 0)
+        {
+            result = super.getZHeading().value;
+        }
+        else if (n == 2 && time < t && time > pt)
+        {
+            result = ph + (h - ph)*(time - pt)/(t - pt);
+        }
+        else
+        {
+            result = h + r*Math.max(0.0, Math.min(time - t, maxExtrapolation));
+        }
+
+        return result;
+    }   //getHeading
+
+    /**
+     * This method returns the rotation rate of the latest sample, or reads it from the IMU if the slot has been
+     * invalidated by a reset and the sampler has not published a new sample yet.
+     *
+     * @return rotation rate in degrees per second.
+     */
+    public double getRate()
+    {
+        long stamp = sampleLock.tryOptimisticRead();
+        double r = rate;
+        int n = validSamples;
+
+        if (!sampleLock.validate(stamp))
+        {
+            stamp = sampleLock.readLock();
+            try
+            {
+                r = rate;
+                n = validSamples;
+            }
+            finally
+            {
+                sampleLock.unlockRead(stamp);
+            }
+        }
+
+        return n > 0? r: super.getZRotationRate().value;
+    }   //getRate
+
+    /**
+     * This method returns the Z heading. While the sampler is running, it is the latest sample, otherwise it is read
+     * from the IMU. The returned object is reused by the next call on the same thread.
+     *
+     * @return Z heading.
+     */
+    @Override
+    public TrcSensor.SensorData<Double> getZHeading()
+    {
+        TrcSensor.SensorData<Double> data = samplerEnabled? callerHeadingData.get(): null;
+
+        return data != null && getLatestSample(data, true)? data: super.getZHeading();
+    }   //getZHeading
+
+    /**
+     * This method returns the Z rotation rate. While the sampler is running, it is the rate of the latest sample,
+     * otherwise it is read from the IMU. The returned object is reused by the next call on the same thread.
+     *
+     * @return Z rotation rate.
+     */
+    @Override
+    public TrcSensor.SensorData<Double> getZRotationRate()
+    {
+        TrcSensor.SensorData<Double> data = samplerEnabled? callerRateData.get(): null;
+
+        return data != null && getLatestSample(data, false)? data: super.getZRotationRate();
+    }   //getZRotationRate
+
+    /**
+     * This method fills in the heading or the rotation rate of the latest sample with its timestamp.
+     *
+     * @param data specifies the sensor data to fill in.
+     * @param heading specifies true for the heading, false for the rotation rate.
+     * @return true if filled in, false if the slot has been invalidated by a reset.
+     */
+    private boolean getLatestSample(TrcSensor.SensorData<Double> data, boolean heading)
+    {
+        long stamp = sampleLock.tryOptimisticRead();
+        double t = timestamp;
+        Double value = heading? headingValue: rateValue;
+        int n = validSamples;
+
+        if (!sampleLock.validate(stamp))
+        {
+            stamp = sampleLock.readLock();
+            try
+            {
+                t = timestamp;
+                value = heading? headingValue: rateValue;
+                n = validSamples;
+            }
+            finally
+            {
+                sampleLock.unlockRead(stamp);
+            }
+        }
+
+        if (n > 0)
+        {
+            data.timestamp = t;
+            data.value = value;
+        }
+
+        return n > 0;
+    }   //getLatestSample
+
+    /**
+     * This method reads the IMU and publishes the sample. It is called on the sampler thread only, except for the
+     * initial samples taken before the thread starts. The sample is dropped if the yaw was reset while it was read.
+     */
+    private void sample()
+    {
+        HubTransactionMonitor.Device device = this.device;
+        int resetCount = this.resetCount;
+        long readNanos = System.nanoTime();
+        TrcSensor.SensorData<Double> headingData = super.getZHeading();
+
+        if (device != null)
+        {
+            device.recordRead(readNanos);
+            readNanos = System.nanoTime();
+        }
+        TrcSensor.SensorData<Double> rateData = super.getZRotationRate();
+        if (device != null)
+        {
+            device.recordRead(readNanos);
+        }
+
+        long stamp = sampleLock.writeLock();
+
+        try
+        {
+            if (resetCount == this.resetCount)
+            {
+                prevHeading = heading;
+                prevTimestamp = timestamp;
+                heading = headingData.value;
+                rate = rateData.value;
+                headingValue = headingData.value;
+                rateValue = rateData.value;
+                timestamp = headingData.timestamp;
+                validSamples = Math.min(validSamples + 1, 2);
+                sampleCount++;
+            }
+        }
+        finally
+        {
+            sampleLock.unlockWrite(stamp);
+        }
+    }   //sample
+
+    /**
+     * This method runs on the sampler thread. It samples the IMU until the sampler is disabled, waiting out the
+     * rest of the sample period after each read.
+     */
+    private void samplerLoop()
+    {
+        while (samplerEnabled)
+        {
+            long startNanos = System.nanoTime();
+
+            sample();
+
+            long remainingNanos = samplePeriodNanos - (System.nanoTime() - startNanos);
+            if (remainingNanos > 0)
+            {
+                LockSupport.parkNanos(remainingNanos);
+            }
+        }
+    }   //samplerLoop
+
+}   //class SampledImu
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.hardware;
+
+import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+
+/**
+ * This class implements a multi-rate sensor scheduler for slow changing inputs (e.g. battery voltage, limit
+ * switches) that do not need to be read every loop. Each sensor is registered with a target rate. A pre periodic task
+ * reads the sensors that are due, at most a fixed number per loop, so that the reads are spread across loops instead
+ * of all landing in the same one. When more sensors are due than the loop allows, the most overdue ones relative to
+ * their period go first and the rest wait for the next loop. The first read time of each sensor is staggered within
+ * its period for the same reason. Consumers get the latest value and its age without touching the hardware.
+ *
+ * Fast inputs (e.g. drive encoders) belong in the BulkReadCache, which reads them every loop. The scheduler should be
+ * enabled after the BulkReadCache so that a scheduled read of bulk data (e.g. launcher velocity) is served from the
+ * bulk data of the loop. That does not hold for a device on a hub the odometry thread invalidates between its steps
+ * (RobotParams.HWNAME_ODOMETRY_HUBS), a scheduled read of it may cost a bulk read of its own. All methods must be
+ * called on the robot thread.
+ */
+public class SensorScheduler
+{
+    private static final String moduleName = SensorScheduler.class.getSimpleName();
+    // Golden ratio fraction, successive multiples of it are evenly spread over [0, 1).
+    private static final double PHASE_STEP = 0.6180339887498949;
+
+    /**
+     * This class implements one scheduled sensor.
+     */
+    public class Sensor
+    {
+        private final String name;
+        private final double period;
+        private final double phase;
+        private final DoubleSupplier reader;
+        private double value = 0.0;
+        private double timestamp = 0.0;
+        private double nextReadTime = 0.0;
+        private double maxAge = 0.0;
+        private long readCount = 0;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param name specifies the sensor name.
+         * @param rate specifies the target read rate in Hz.
+         * @param phase specifies the fraction of the period the first scheduled read is delayed by.
+         * @param reader specifies the method to read the sensor from hardware.
+         */
+        private Sensor(String name, double rate, double phase, DoubleSupplier reader)
+        {
+            this.name = name;
+            this.period = 1.0/rate;
+            this.phase = phase;
+            this.reader = reader;
+        }   //Sensor
+
+        /**
+         * This method returns the sensor name.
+         *
+         * @return sensor name.
+         */
+        @Override
+        public String toString()
+        {
+            return name;
+        }   //toString
+
+        /**
+         * This method returns the latest value read.
+         *
+         * @return latest sensor value.
+         */
+        public double getValue()
+        {
+            return value;
+        }   //getValue
+
+        /**
+         * This method returns the latest value read as a boolean, for digital sensors registered with a reader that
+         * returns 1.0 for active and 0.0 for inactive.
+         *
+         * @return true if the latest value is not zero, false otherwise.
+         */
+        public boolean isActive()
+        {
+            return value != 0.0;
+        }   //isActive
+
+        /**
+         * This method returns the time the latest value was read.
+         *
+         * @return timestamp in seconds.
+         */
+        public double getTimestamp()
+        {
+            return timestamp;
+        }   //getTimestamp
+
+        /**
+         * This method returns the age of the latest value.
+         *
+         * @return age in seconds.
+         */
+        public double getAge()
+        {
+            return TrcTimer.getCurrentTime() - timestamp;
+        }   //getAge
+
+        /**
+         * This method returns the number of reads since the scheduler was enabled.
+         *
+         * @return number of reads.
+         */
+        public long getReadCount()
+        {
+            return readCount;
+        }   //getReadCount
+
+        /**
+         * This method reads the sensor from hardware and schedules the next read one period later. If the sensor
+         * fell behind by more than a period, it is rescheduled from now instead of catching up with a burst.
+         *
+         * @param currTime specifies the current time in seconds.
+         */
+        private void read(double currTime)
+        {
+            value = reader.getAsDouble();
+            if (readCount > 0 && currTime - timestamp > maxAge)
+            {
+                maxAge = currTime - timestamp;
+            }
+            timestamp = currTime;
+            readCount++;
+            nextReadTime += period;
+            if (nextReadTime <= currTime)
+            {
+                nextReadTime = currTime + period;
+            }
+        }   //read
+
+    }   //class Sensor
+
+    private final ArrayList<Sensor> sensors = new ArrayList<>();
+    private final int maxReadsPerLoop;
+    private final TrcTaskMgr.TaskObject scheduleTaskObj;
+    private HubTransactionMonitor monitor = null;
+    private double startTime = 0.0;
+    private long deferredCount = 0;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param maxReadsPerLoop specifies the maximum number of sensors read in one loop.
+     */
+    public SensorScheduler(int maxReadsPerLoop)
+    {
+        this.maxReadsPerLoop = maxReadsPerLoop;
+        scheduleTaskObj = TrcTaskMgr.createTask(moduleName + ".scheduleTask", this::scheduleTask);
+    }   //SensorScheduler
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method sets the transaction monitor that accounts for the sensor reads. It must be set before sensors
+     * are added, only sensors added after it is set are accounted.
+     *
+     * @param monitor specifies the transaction monitor, null if not accounting.
+     */
+    public void setTransactionMonitor(HubTransactionMonitor monitor)
+    {
+        this.monitor = monitor;
+    }   //setTransactionMonitor
+
+    /**
+     * This method adds a sensor that is read from a device with a different hardware name (e.g. the velocity of a
+     * motor). Sensors must be added before the scheduler is enabled.
+     *
+     * @param name specifies the sensor name.
+     * @param deviceName specifies the hardware name of the device the sensor is read from.
+     * @param rate specifies the target read rate in Hz.
+     * @param reader specifies the method to read the sensor from hardware.
+     * @return scheduled sensor for reading the latest value.
+     */
+    public Sensor addSensor(String name, String deviceName, double rate, DoubleSupplier reader)
+    {
+        if (enabled)
+        {
+            throw new IllegalStateException("Cannot add sensor " + name + " while the scheduler is enabled.");
+        }
+
+        Sensor sensor = new Sensor(
+            name, rate, (sensors.size()*PHASE_STEP)%1.0,
+            monitor != null? monitor.getDevice(deviceName).instrumentRead(reader): reader);
+
+        sensors.add(sensor);
+        return sensor;
+    }   //addSensor
+
+    /**
+     * This method adds a sensor whose name is its hardware name. Sensors must be added before the scheduler is
+     * enabled.
+     *
+     * @param name specifies the sensor name.
+     * @param rate specifies the target read rate in Hz.
+     * @param reader specifies the method to read the sensor from hardware.
+     * @return scheduled sensor for reading the latest value.
+     */
+    public Sensor addSensor(String name, double rate, DoubleSupplier reader)
+    {
+        return addSensor(name, name, rate, reader);
+    }   //addSensor
+
+    /**
+     * This method adds a digital sensor, its value is 1.0 when the sensor is active and 0.0 otherwise.
+     *
+     * @param name specifies the sensor name.
+     * @param rate specifies the target read rate in Hz.
+     * @param reader specifies the method to read the sensor state from hardware.
+     * @return scheduled sensor for reading the latest state.
+     */
+    public Sensor addDigitalSensor(String name, double rate, BooleanSupplier reader)
+    {
+        return addSensor(name, rate, () -> reader.getAsBoolean()? 1.0: 0.0);
+    }   //addDigitalSensor
+
+    /**
+     * This method enables/disables the scheduler. On enable, every sensor is read once so that consumers never see
+     * an unread value, then the scheduled reads start at their staggered phase.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            double currTime = TrcTimer.getCurrentTime();
+
+            startTime = currTime;
+            deferredCount = 0;
+            for (int i = 0; i < sensors.size(); i++)
+            {
+                Sensor sensor = sensors.get(i);
+
+                sensor.readCount = 0;
+                sensor.maxAge = 0.0;
+                sensor.nextReadTime = currTime;
+                sensor.read(currTime);
+                sensor.nextReadTime = currTime + sensor.period*(1.0 + sensor.phase);
+            }
+            scheduleTaskObj.registerTask(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            scheduleTaskObj.unregisterTask();
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method checks if the scheduler is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method reads the sensors that are due, most overdue first, up to the maximum reads per loop. It is
+     * normally called by the schedule task at the top of the loop, but it can be called directly by a caller that
+     * runs its own loop (e.g. simulation).
+     *
+     * @return number of sensors read.
+     */
+    public int schedule()
+    {
+        double currTime = TrcTimer.getCurrentTime();
+        int numReads = 0;
+
+        while (numReads < maxReadsPerLoop)
+        {
+            Sensor nextSensor = null;
+            double maxLateness = 0.0;
+
+            for (int i = 0; i < sensors.size(); i++)
+            {
+                Sensor sensor = sensors.get(i);
+                // Lateness in periods, so a 50 Hz sensor that is 10 msec late goes before a 2 Hz one that is 20.
+                double lateness = (currTime - sensor.nextReadTime)/sensor.period;
+
+                if (lateness >= maxLateness)
+                {
+                    nextSensor = sensor;
+                    maxLateness = lateness;
+                }
+            }
+
+            if (nextSensor == null)
+            {
+                break;
+            }
+            nextSensor.read(currTime);
+            numReads++;
+        }
+
+        if (numReads == maxReadsPerLoop)
+        {
+            for (int i = 0; i < sensors.size(); i++)
+            {
+                if (sensors.get(i).nextReadTime <= currTime)
+                {
+                    deferredCount++;
+                }
+            }
+        }
+
+        return numReads;
+    }   //schedule
+
+    /**
+     * This method returns the number of times a due sensor was deferred to the next loop because the loop had
+     * reached its maximum reads.
+     *
+     * @return number of deferred reads.
+     */
+    public long getDeferredCount()
+    {
+        return deferredCount;
+    }   //getDeferredCount
+
+    /**
+     * This method writes the target and achieved rate of every sensor to the trace log.
+     *
+     * @param tracer specifies the tracer to write to.
+     */
+    public void traceStatistics(TrcDbgTrace tracer)
+    {
+        double elapsedTime = TrcTimer.getCurrentTime() - startTime;
+
+        tracer.traceInfo(moduleName, "Total: sensors=%d, deferred=%d", sensors.size(), deferredCount);
+        for (int i = 0; i < sensors.size(); i++)
+        {
+            Sensor sensor = sensors.get(i);
+            tracer.traceInfo(
+                moduleName, "%s: rate=%.1f/%.1f Hz, reads=%d, maxAge=%.3f s",
+                sensor.name, elapsedTime > 0.0? sensor.readCount/elapsedTime: 0.0, 1.0/sensor.period,
+                sensor.readCount, sensor.maxAge);
+        }
+    }   //traceStatistics
+
+    /**
+     * This method is called at the top of every loop to read the sensors that are due.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void scheduleTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        schedule();
+    }   //scheduleTask
+
+}   //class SensorScheduler
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.hardware;
+
+import java.util.ArrayList;
+import java.util.function.DoubleConsumer;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcEvent;
+import TrcCommonLib.trclib.TrcMotor;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcServo;
+import TrcCommonLib.trclib.TrcTaskMgr;
+
+/**
+ * This class implements a write cache in front of motor powers and servo positions. Every hub write is a round
+ * trip, and code that sets the same output every loop (e.g. TeleOp sending the same stick value or the same servo
+ * position) wastes most of them. Each output is a channel that remembers the last value written to the hardware.
+ * While the cache is enabled, a value within the channel epsilon of it is dropped, and the rest are held until a
+ * post periodic task flushes them all at the end of the loop, so an output set several times in a loop is only
+ * written once. A zero is always written if the last value was not exactly zero, so a motor always stops. While
+ * disabled, values are written through immediately.
+ *
+ * The cache only knows about writes that go through it. If other code writes the same output (e.g. a PID
+ * controller), the next cached write of the old value is dropped. Channels are invalidated when the cache is
+ * enabled so that the first write of a mode always goes through. All methods must be called on the robot thread.
+ */
+public class WriteCache
+{
+    private static final String moduleName = WriteCache.class.getSimpleName();
+
+    /**
+     * This class implements one cached output.
+     */
+    public class Channel
+    {
+        private final String name;
+        private final double epsilon;
+        private final DoubleConsumer writer;
+        private double lastValue = Double.NaN;
+        private double pendingValue = 0.0;
+        private boolean dirty = false;
+        private long issuedCount = 0;
+        private long suppressedCount = 0;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param name specifies the channel name.
+         * @param epsilon specifies the change below which a value is not written.
+         * @param writer specifies the method that writes the value to the hardware.
+         */
+        private Channel(String name, double epsilon, DoubleConsumer writer)
+        {
+            this.name = name;
+            this.epsilon = epsilon;
+            this.writer = writer;
+        }   //Channel
+
+        /**
+         * This method returns the channel name.
+         *
+         * @return channel name.
+         */
+        @Override
+        public String toString()
+        {
+            return name;
+        }   //toString
+
+        /**
+         * This method sets the output value. It is written at the end of the loop unless it is within epsilon of
+         * the value already written.
+         *
+         * @param value specifies the output value.
+         */
+        public void set(double value)
+        {
+            if (!enabled)
+            {
+                write(value);
+            }
+            else if ((value != 0.0 || lastValue == 0.0) && Math.abs(value - lastValue) <= epsilon)
+            {
+                // The hardware already has it, drop any pending write too.
+                dirty = false;
+                suppressedCount++;
+            }
+            else
+            {
+                if (dirty)
+                {
+                    // The pending write is superseded.
+                    suppressedCount++;
+                }
+                pendingValue = value;
+                dirty = true;
+            }
+        }   //set
+
+        /**
+         * This method writes the output value immediately, bypassing the cache, e.g. for a write that is waited
+         * on. The cache remembers it as the last value written.
+         *
+         * @param value specifies the output value.
+         */
+        public void write(double value)
+        {
+            writer.accept(value);
+            markWritten(value);
+        }   //write
+
+        /**
+         * This method returns the last value written to the hardware.
+         *
+         * @return last value written, NaN if nothing is written since the channel was invalidated.
+         */
+        public double getLastValue()
+        {
+            return lastValue;
+        }   //getLastValue
+
+        /**
+         * This method returns the number of writes issued to the hardware.
+         *
+         * @return number of writes issued.
+         */
+        public long getIssuedCount()
+        {
+            return issuedCount;
+        }   //getIssuedCount
+
+        /**
+         * This method returns the number of writes dropped or superseded.
+         *
+         * @return number of writes suppressed.
+         */
+        public long getSuppressedCount()
+        {
+            return suppressedCount;
+        }   //getSuppressedCount
+
+        /**
+         * This method records a value written to the hardware.
+         *
+         * @param value specifies the value written.
+         */
+        private void markWritten(double value)
+        {
+            lastValue = value;
+            dirty = false;
+            issuedCount++;
+        }   //markWritten
+
+        /**
+         * This method writes the pending value if there is one.
+         */
+        private void flush()
+        {
+            if (dirty)
+            {
+                write(pendingValue);
+            }
+        }   //flush
+
+        /**
+         * This method forgets the last value written so that the next value is always written.
+         */
+        private void invalidate()
+        {
+            lastValue = Double.NaN;
+        }   //invalidate
+
+    }   //class Channel
+
+    /**
+     * This class implements a cached servo position output.
+     */
+    public class ServoOutput
+    {
+        public final TrcServo servo;
+        public final Channel channel;
+        private final HubTransactionMonitor.Device device;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param name specifies the output name.
+         * @param servo specifies the servo.
+         * @param epsilon specifies the position change below which a position is not written.
+         */
+        private ServoOutput(String name, TrcServo servo, double epsilon)
+        {
+            this.servo = servo;
+            this.channel = addChannel(name, servo.toString(), epsilon, servo::setPosition);
+            this.device = monitor != null? monitor.getDevice(servo.toString()): null;
+        }   //ServoOutput
+
+        /**
+         * This method sets the servo position through the cache.
+         *
+         * @param position specifies the servo position.
+         */
+        public void setPosition(double position)
+        {
+            channel.set(position);
+        }   //setPosition
+
+        /**
+         * This method sets the servo position. If an event is given, the caller is waiting for the servo, so the
+         * position is written immediately and the event is signaled after the given time as usual. Otherwise, it is
+         * set through the cache.
+         *
+         * @param position specifies the servo position.
+         * @param event specifies the event to signal when the servo is done, can be null.
+         * @param timeout specifies the time in seconds for the servo to reach the position.
+         */
+        public void setPosition(double position, TrcEvent event, double timeout)
+        {
+            if (event != null)
+            {
+                long startNanos = System.nanoTime();
+
+                servo.setPosition(position, event, timeout);
+                if (device != null)
+                {
+                    device.recordWrite(startNanos);
+                }
+                channel.markWritten(position);
+            }
+            else
+            {
+                channel.set(position);
+            }
+        }   //setPosition
+
+    }   //class ServoOutput
+
+    private final ArrayList<Channel> channels = new ArrayList<>();
+    private final TrcTaskMgr.TaskObject flushTaskObj;
+    private HubTransactionMonitor monitor = null;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     */
+    public WriteCache()
+    {
+        flushTaskObj = TrcTaskMgr.createTask(moduleName + ".flushTask", this::flushTask);
+    }   //WriteCache
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method sets the transaction monitor that accounts for the channel writes. It must be set before channels
+     * are added, only channels added after it is set are accounted.
+     *
+     * @param monitor specifies the transaction monitor, null if not accounting.
+     */
+    public void setTransactionMonitor(HubTransactionMonitor monitor)
+    {
+        this.monitor = monitor;
+    }   //setTransactionMonitor
+
+    /**
+     * This method adds an output channel.
+     *
+     * @param name specifies the channel name.
+     * @param deviceName specifies the hardware name of the device the channel is written to.
+     * @param epsilon specifies the change below which a value is not written.
+     * @param writer specifies the method that writes the value to the hardware.
+     * @return channel for setting the output.
+     */
+    public Channel addChannel(String name, String deviceName, double epsilon, DoubleConsumer writer)
+    {
+        Channel channel = new Channel(
+            name, epsilon, monitor != null? monitor.getDevice(deviceName).instrumentWrite(writer): writer);
+
+        channels.add(channel);
+        return channel;
+    }   //addChannel
+
+    /**
+     * This method adds an output channel whose name is the hardware name of the device it is written to.
+     *
+     * @param name specifies the channel name.
+     * @param epsilon specifies the change below which a value is not written.
+     * @param writer specifies the method that writes the value to the hardware.
+     * @return channel for setting the output.
+     */
+    public Channel addChannel(String name, double epsilon, DoubleConsumer writer)
+    {
+        return addChannel(name, name, epsilon, writer);
+    }   //addChannel
+
+    /**
+     * This method adds a motor power output. It works for both DC motors and continuous servos.
+     *
+     * @param name specifies the output name.
+     * @param motor specifies the motor.
+     * @param epsilon specifies the power change below which a power is not written.
+     * @return channel for setting the motor power.
+     */
+    public Channel addMotor(String name, TrcMotor motor, double epsilon)
+    {
+        return addChannel(name, motor.toString(), epsilon, motor::setPower);
+    }   //addMotor
+
+    /**
+     * This method adds a servo position output.
+     *
+     * @param name specifies the output name.
+     * @param servo specifies the servo.
+     * @param epsilon specifies the position change below which a position is not written.
+     * @return servo output for setting the servo position.
+     */
+    public ServoOutput addServo(String name, TrcServo servo, double epsilon)
+    {
+        return new ServoOutput(name, servo, epsilon);
+    }   //addServo
+
+    /**
+     * This method enables/disables the cache. On enable, all channels are invalidated. On disable, pending writes
+     * are flushed.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            for (int i = 0; i < channels.size(); i++)
+            {
+                channels.get(i).invalidate();
+            }
+            flushTaskObj.registerTask(TrcTaskMgr.TaskType.POST_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            flushTaskObj.unregisterTask();
+            flush();
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method checks if the cache is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method writes all pending values. It is normally called by the flush task at the end of the loop.
+     */
+    public void flush()
+    {
+        for (int i = 0; i < channels.size(); i++)
+        {
+            channels.get(i).flush();
+        }
+    }   //flush
+
+    /**
+     * This method returns the total number of writes issued to the hardware by all channels.
+     *
+     * @return number of writes issued.
+     */
+    public long getIssuedCount()
+    {
+        long count = 0;
+
+        for (int i = 0; i < channels.size(); i++)
+        {
+            count += channels.get(i).issuedCount;
+        }
+
+        return count;
+    }   //getIssuedCount
+
+    /**
+     * This method returns the total number of writes suppressed by all channels.
+     *
+     * @return number of writes suppressed.
+     */
+    public long getSuppressedCount()
+    {
+        long count = 0;
+
+        for (int i = 0; i < channels.size(); i++)
+        {
+            count += channels.get(i).suppressedCount;
+        }
+
+        return count;
+    }   //getSuppressedCount
+
+    /**
+     * This method writes the issued and suppressed counts of every channel to the trace log.
+     *
+     * @param tracer specifies the tracer to write to.
+     */
+    public void traceStatistics(TrcDbgTrace tracer)
+    {
+        tracer.traceInfo(
+            moduleName, "Total: issued=%d, suppressed=%d", getIssuedCount(), getSuppressedCount());
+        for (int i = 0; i < channels.size(); i++)
+        {
+            Channel channel = channels.get(i);
+            tracer.traceInfo(
+                moduleName, "%s: issued=%d, suppressed=%d",
+                channel.name, channel.issuedCount, channel.suppressedCount);
+        }
+    }   //traceStatistics
+
+    /**
+     * This method is called at the end of every loop to write all pending values.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void flushTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        flush();
+    }   //flushTask
+
+}   //class WriteCache
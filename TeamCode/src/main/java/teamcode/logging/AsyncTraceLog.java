@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.logging;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcPidController;
+import TrcCommonLib.trclib.TrcPidDrive;
+import TrcCommonLib.trclib.TrcPurePursuitDrive;
+import TrcCommonLib.trclib.TrcTimer;
+import teamcode.telemetry.StatusLine;
+
+/**
+ * This class implements an asynchronous trace log file. The robot loop thread only copies a preformatted record
+ * into a preallocated slot of a lock-free ring buffer, which never blocks and never allocates. A background writer
+ * thread drains the ring in batches and writes them to the log file. If the writer falls behind, the oldest
+ * records are overwritten and the number of dropped records is written to the log and reported by
+ * getOverflowCount.
+ *
+ * Each slot carries a sequence number. A producer claims the next sequence, marks the slot as being written, fills
+ * it and then publishes the sequence. The writer checks the sequence before and after copying a slot, so a slot
+ * overwritten by a producer that lapped the writer is detected and counted as dropped instead of being written
+ * torn. Both the mark and the check use atomic read-modify-write operations, which order the plain record accesses
+ * between them (Java 8 has no explicit fences).
+ */
+public class AsyncTraceLog
+{
+    private static final String moduleName = AsyncTraceLog.class.getSimpleName();
+    public static final int DEF_CAPACITY = 4096;            // Must be a power of 2.
+    public static final int DEF_RECORD_LENGTH = 256;
+    private static final long WRITER_IDLE_NANOS = 20000000L;    // 20 msec
+    private static final int WRITER_BATCH_CHARS = 64*1024;
+    // Slot sequence states: a published record holds its sequence (>= 0), a record being written holds -seq - 1.
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    public enum Level
+    {
+        ERR,
+        WARN,
+        INFO,
+        DEBUG
+    }   //enum Level
+
+    /**
+     * This class is one slot of the ring buffer. All fields are preallocated.
+     */
+    private static class Record
+    {
+        final char[] text;
+        int length;
+        double timestamp;
+        Level level;
+        String source;
+
+        Record(int recordLength)
+        {
+            text = new char[recordLength];
+        }   //Record
+
+    }   //class Record
+
+    private static AsyncTraceLog traceLog = null;
+
+    private final String filePath;
+    private final Record[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong overflowCount = new AtomicLong(0);
+    private final AtomicLong writtenCount = new AtomicLong(0);
+    private final ThreadLocal<StatusLine> scratchLine = new ThreadLocal<StatusLine>()
+    {
+        @Override
+        protected StatusLine initialValue()
+        {
+            return new StatusLine(DEF_RECORD_LENGTH);
+        }   //initialValue
+    };
+    private final Thread writerThread;
+    private volatile boolean enabled = false;
+    private volatile boolean closing = false;
+    private long tail = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param filePath specifies the log file path.
+     * @param capacity specifies the number of records in the ring buffer, must be a power of 2.
+     * @param recordLength specifies the maximum length of a record, longer records are truncated.
+     */
+    public AsyncTraceLog(String filePath, int capacity, int recordLength)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity must be a power of 2.");
+        }
+
+        this.filePath = filePath;
+        records = new Record[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++)
+        {
+            records[i] = new Record(recordLength);
+            sequences.set(i, EMPTY);
+        }
+        writerThread = new Thread(this::writerLoop, moduleName);
+        writerThread.setDaemon(true);
+        writerThread.setPriority(Thread.MIN_PRIORITY);
+    }   //AsyncTraceLog
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName + "(" + filePath + ")";
+    }   //toString
+
+    /**
+     * This method opens the global trace log file and starts its writer thread.
+     *
+     * @param folderPath specifies the folder path of the log file.
+     * @param filePrefix specifies the file name prefix, a timestamp is appended.
+     * @return true if the log file is opened, false otherwise.
+     */
+    public static synchronized boolean openTraceLog(String folderPath, String filePrefix)
+    {
+        if (traceLog == null)
+        {
+            File folder = new File(folderPath);
+
+            if (folder.isDirectory() || folder.mkdirs())
+            {
+                String fileName =
+                    filePrefix + "_" + new SimpleDateFormat("yyyyMMdd@HHmmss", Locale.US).format(new Date()) +
+                    ".log";
+                traceLog = new AsyncTraceLog(
+                    folderPath + "/" + fileName, DEF_CAPACITY, DEF_RECORD_LENGTH);
+                traceLog.writerThread.start();
+            }
+        }
+
+        return traceLog != null;
+    }   //openTraceLog
+
+    /**
+     * This method flushes all pending records, closes the global trace log file and stops its writer thread.
+     */
+    public static synchronized void closeTraceLog()
+    {
+        if (traceLog != null)
+        {
+            traceLog.enabled = false;
+            traceLog.closing = true;
+            LockSupport.unpark(traceLog.writerThread);
+            try
+            {
+                traceLog.writerThread.join(1000);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            traceLog = null;
+        }
+    }   //closeTraceLog
+
+    /**
+     * This method checks if the global trace log is opened.
+     *
+     * @return true if opened, false otherwise.
+     */
+    public static boolean isTraceLogOpened()
+    {
+        return traceLog != null;
+    }   //isTraceLogOpened
+
+    /**
+     * This method returns the global trace log.
+     *
+     * @return global trace log, null if not opened.
+     */
+    public static AsyncTraceLog getTraceLog()
+    {
+        return traceLog;
+    }   //getTraceLog
+
+    /**
+     * This method enables/disables logging. Records are silently discarded while disabled.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method returns the number of records dropped because the writer fell behind.
+     *
+     * @return number of dropped records.
+     */
+    public long getOverflowCount()
+    {
+        return overflowCount.get();
+    }   //getOverflowCount
+
+    /**
+     * This method returns the number of records written to the file.
+     *
+     * @return number of written records.
+     */
+    public long getWrittenCount()
+    {
+        return writtenCount.get();
+    }   //getWrittenCount
+
+    /**
+     * This method enqueues a record. It never blocks and does not allocate.
+     *
+     * @param level specifies the message level.
+     * @param source specifies the source of the record, typically the module name.
+     * @param text specifies the preformatted record text.
+     */
+    public void log(Level level, String source, CharSequence text)
+    {
+        if (enabled)
+        {
+            long seq = head.getAndIncrement();
+            int index = (int) (seq & mask);
+            Record record = records[index];
+            int length = Math.min(text.length(), record.text.length);
+
+            // Mark the slot as being written so the writer does not copy a torn record. getAndSet is a volatile read
+            // as well as a write, so the record writes below cannot be reordered before the mark.
+            sequences.getAndSet(index, -seq - 1);
+            for (int i = 0; i < length; i++)
+            {
+                record.text[i] = text.charAt(i);
+            }
+            record.length = length;
+            record.timestamp = TrcTimer.getCurrentTime();
+            record.level = level;
+            record.source = source;
+            sequences.set(index, seq);
+        }
+    }   //log
+
+    /**
+     * This method enqueues an INFO record.
+     *
+     * @param source specifies the source of the record, typically the module name.
+     * @param text specifies the preformatted record text.
+     */
+    public void traceInfo(String source, CharSequence text)
+    {
+        log(Level.INFO, source, text);
+    }   //traceInfo
+
+    /**
+     * This method enqueues a WARN record.
+     *
+     * @param source specifies the source of the record, typically the module name.
+     * @param text specifies the preformatted record text.
+     */
+    public void traceWarn(String source, CharSequence text)
+    {
+        log(Level.WARN, source, text);
+    }   //traceWarn
+
+    /**
+     * This method enqueues an ERR record.
+     *
+     * @param source specifies the source of the record, typically the module name.
+     * @param text specifies the preformatted record text.
+     */
+    public void traceErr(String source, CharSequence text)
+    {
+        log(Level.ERR, source, text);
+    }   //traceErr
+
+    /**
+     * This method logs the state of a state machine before it is processed. It is the asynchronous equivalent of
+     * TrcDbgTrace.tracePreStateInfo.
+     *
+     * @param smName specifies the state machine name.
+     * @param state specifies the current state.
+     */
+    public void tracePreStateInfo(String smName, Enum<?> state)
+    {
+        if (enabled)
+        {
+            StatusLine line = scratchLine.get();
+
+            line.clear().append(">>>>> ").append(smName).append('.').append(state);
+            log(Level.INFO, smName, line);
+        }
+    }   //tracePreStateInfo
+
+    /**
+     * This method logs the state of a state machine and the drive base after the state is processed. It is the
+     * asynchronous equivalent of TrcDbgTrace.tracePostStateInfo.
+     *
+     * @param smName specifies the state machine name.
+     * @param state specifies the current state.
+     * @param driveBase specifies the drive base, can be null.
+     * @param pidDrive specifies the PID drive, can be null.
+     * @param purePursuitDrive specifies the pure pursuit drive, can be null.
+     */
+    public void tracePostStateInfo(
+        String smName, Enum<?> state, TrcDriveBase driveBase, TrcPidDrive pidDrive,
+        TrcPurePursuitDrive purePursuitDrive)
+    {
+        if (enabled)
+        {
+            StatusLine line = scratchLine.get();
+
+            line.clear().append("<<<<< ").append(smName).append('.').append(state);
+            if (driveBase != null)
+            {
+                line.append(": RobotPose=").appendPose(
+                    driveBase.getXPosition(), driveBase.getYPosition(), driveBase.getHeading(), 2);
+            }
+
+            if (pidDrive != null && pidDrive.isActive())
+            {
+                appendPidInfo(line, "xPid", pidDrive.getXPidCtrl());
+                appendPidInfo(line, "yPid", pidDrive.getYPidCtrl());
+                appendPidInfo(line, "turnPid", pidDrive.getTurnPidCtrl());
+            }
+
+            if (purePursuitDrive != null && purePursuitDrive.isActive())
+            {
+                appendPidInfo(line, "xPid", purePursuitDrive.getXPosPidCtrl());
+                appendPidInfo(line, "yPid", purePursuitDrive.getYPosPidCtrl());
+                appendPidInfo(line, "turnPid", purePursuitDrive.getTurnPidCtrl());
+            }
+            log(Level.INFO, smName, line);
+        }
+    }   //tracePostStateInfo
+
+    /**
+     * This method appends the error and output of a PID controller to a record.
+     *
+     * @param line specifies the record being built.
+     * @param name specifies the label of the PID controller.
+     * @param pidCtrl specifies the PID controller, can be null.
+     */
+    private void appendPidInfo(StatusLine line, String name, TrcPidController pidCtrl)
+    {
+        if (pidCtrl != null)
+        {
+            line.append(", ").append(name).append("=(err=").append(pidCtrl.getError(), 2)
+                .append(",out=").append(pidCtrl.getOutput(), 3).append(')');
+        }
+    }   //appendPidInfo
+
+    /**
+     * This method runs on the writer thread. It drains the ring buffer in batches until the log is closed.
+     */
+    private void writerLoop()
+    {
+        StringBuilder batch = new StringBuilder(WRITER_BATCH_CHARS);
+        StatusLine timestamp = new StatusLine(16);
+        long reportedOverflow = 0;
+
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8), WRITER_BATCH_CHARS))
+        {
+            while (true)
+            {
+                boolean closingNow = closing;
+                int count = drain(batch, timestamp);
+                long overflow = overflowCount.get();
+
+                if (overflow != reportedOverflow)
+                {
+                    batch.append("***** ").append(overflow - reportedOverflow)
+                         .append(" trace records dropped, writer fell behind *****\n");
+                    reportedOverflow = overflow;
+                }
+
+                if (batch.length() > 0)
+                {
+                    writer.append(batch);
+                    writer.flush();
+                    batch.setLength(0);
+                    writtenCount.addAndGet(count);
+                }
+
+                if (closingNow && count == 0)
+                {
+                    // Everything published before close has been written.
+                    break;
+                }
+                else if (count == 0)
+                {
+                    LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // There is nowhere to log the failure of the log, give up and let records be discarded.
+            enabled = false;
+        }
+    }   //writerLoop
+
+    /**
+     * This method copies the published records into the batch buffer.
+     *
+     * @param batch specifies the batch buffer.
+     * @param timestamp specifies the scratch buffer for formatting timestamps.
+     * @return number of records copied.
+     */
+    private int drain(StringBuilder batch, StatusLine timestamp)
+    {
+        int count = 0;
+        long currHead = head.get();
+
+        if (currHead - tail > records.length)
+        {
+            // The producers lapped us, the oldest records are gone.
+            overflowCount.addAndGet(currHead - records.length - tail);
+            tail = currHead - records.length;
+        }
+
+        while (tail < currHead && batch.length() < WRITER_BATCH_CHARS)
+        {
+            int index = (int) (tail & mask);
+            long seq = sequences.get(index);
+            // The latest sequence claimed for this slot, whether published or still being written.
+            long claimedSeq = seq == EMPTY? EMPTY: seq >= 0? seq: -seq - 1;
+
+            if (seq == tail)
+            {
+                Record record = records[index];
+                int start = batch.length();
+
+                timestamp.clear().append(record.timestamp, 3);
+                batch.append(timestamp).append(' ').append(record.level).append(' ').append(record.source).append(": ")
+                     .append(record.text, 0, record.length).append('\n');
+
+                // Validate with a CAS of the same value rather than a plain volatile read: its volatile write side
+                // keeps the record reads above from being reordered after the check.
+                if (sequences.compareAndSet(index, tail, tail))
+                {
+                    count++;
+                }
+                else
+                {
+                    // Overwritten while we were copying it.
+                    batch.setLength(start);
+                    overflowCount.incrementAndGet();
+                }
+                tail++;
+            }
+            else if (claimedSeq > tail)
+            {
+                // Already overwritten by a newer record.
+                overflowCount.incrementAndGet();
+                tail++;
+            }
+            else
+            {
+                // The producer has claimed the slot but not finished writing it yet.
+                break;
+            }
+        }
+
+        return count;
+    }   //drain
+
+}   //class AsyncTraceLog
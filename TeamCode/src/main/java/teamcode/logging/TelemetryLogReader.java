@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.logging;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * This class loads a recording written by TelemetryRecorder. It has no dependency on the FTC SDK or TrcLib, so it
+ * runs on a desktop JVM. The file is memory-mapped and each column of a chunk is bulk copied into one contiguous
+ * array per channel, so a full match loads in milliseconds. A recording that was not closed properly is read up to
+ * the last complete chunk.
+ */
+public class TelemetryLogReader
+{
+    private final String filePath;
+    private final long startEpochMillis;
+    private final String[] channelNames;
+    private final String[] channelUnits;
+    private final double[] timestamps;
+    private final float[][] channels;
+    private final int numChunks;
+
+    /**
+     * Constructor: Create an instance of the object and load the recording.
+     *
+     * @param filePath specifies the recording file path.
+     * @throws IOException if the file cannot be read or is not a recording.
+     */
+    public TelemetryLogReader(String filePath) throws IOException
+    {
+        this.filePath = filePath;
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r"))
+        {
+            FileChannel fileChannel = file.getChannel();
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < 4*Integer.BYTES + Long.BYTES || buffer.getInt() != TelemetryRecorder.FILE_MAGIC)
+            {
+                throw new IOException(filePath + " is not a telemetry recording.");
+            }
+
+            int version = buffer.getInt();
+            if (version != TelemetryRecorder.FORMAT_VERSION)
+            {
+                throw new IOException("Unsupported recording version " + version + ".");
+            }
+
+            int numChannels = buffer.getInt();
+            buffer.getInt();    // chunkSize, only needed by the writer.
+            startEpochMillis = buffer.getLong();
+            channelNames = new String[numChannels];
+            channelUnits = new String[numChannels];
+            for (int i = 0; i < numChannels; i++)
+            {
+                channelNames[i] = readString(buffer);
+                channelUnits[i] = readString(buffer);
+            }
+            //
+            // First pass: walk the chunk headers to size the arrays.
+            //
+            int dataStart = buffer.position();
+            int totalSamples = 0;
+            int chunkCount = 0;
+            int chunkStart = dataStart;
+            int sampleBytes = Double.BYTES + numChannels*Float.BYTES;
+            while (buffer.limit() - chunkStart >= TelemetryRecorder.CHUNK_HEADER_SIZE &&
+                   buffer.getInt(chunkStart) == TelemetryRecorder.CHUNK_MAGIC)
+            {
+                int n = buffer.getInt(chunkStart + Integer.BYTES);
+                int chunkBytes = TelemetryRecorder.CHUNK_HEADER_SIZE + n*sampleBytes;
+
+                if (n <= 0 || buffer.limit() - chunkStart < chunkBytes)
+                {
+                    break;
+                }
+                totalSamples += n;
+                chunkCount++;
+                chunkStart += chunkBytes;
+            }
+            numChunks = chunkCount;
+            timestamps = new double[totalSamples];
+            channels = new float[numChannels][totalSamples];
+            //
+            // Second pass: bulk copy the columns.
+            //
+            int offset = 0;
+            chunkStart = dataStart;
+            for (int chunk = 0; chunk < chunkCount; chunk++)
+            {
+                int n = buffer.getInt(chunkStart + Integer.BYTES);
+                int columnStart = chunkStart + TelemetryRecorder.CHUNK_HEADER_SIZE;
+
+                buffer.position(columnStart);
+                buffer.asDoubleBuffer().get(timestamps, offset, n);
+                columnStart += n*Double.BYTES;
+                for (int i = 0; i < numChannels; i++)
+                {
+                    buffer.position(columnStart);
+                    buffer.asFloatBuffer().get(channels[i], offset, n);
+                    columnStart += n*Float.BYTES;
+                }
+                offset += n;
+                chunkStart = columnStart;
+            }
+        }
+    }   //TelemetryLogReader
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return filePath;
+    }   //toString
+
+    /**
+     * This method returns the wall clock time the recording was started.
+     *
+     * @return start time in milliseconds since epoch.
+     */
+    public long getStartEpochMillis()
+    {
+        return startEpochMillis;
+    }   //getStartEpochMillis
+
+    /**
+     * This method returns the number of channels.
+     *
+     * @return number of channels.
+     */
+    public int getNumChannels()
+    {
+        return channelNames.length;
+    }   //getNumChannels
+
+    /**
+     * This method returns the name of the specified channel.
+     *
+     * @param channel specifies the channel index.
+     * @return channel name.
+     */
+    public String getChannelName(int channel)
+    {
+        return channelNames[channel];
+    }   //getChannelName
+
+    /**
+     * This method returns the unit of the specified channel.
+     *
+     * @param channel specifies the channel index.
+     * @return channel unit.
+     */
+    public String getChannelUnit(int channel)
+    {
+        return channelUnits[channel];
+    }   //getChannelUnit
+
+    /**
+     * This method returns the index of the channel with the specified name.
+     *
+     * @param name specifies the channel name.
+     * @return channel index, -1 if not found.
+     */
+    public int getChannelIndex(String name)
+    {
+        for (int i = 0; i < channelNames.length; i++)
+        {
+            if (channelNames[i].equals(name))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }   //getChannelIndex
+
+    /**
+     * This method returns the number of samples.
+     *
+     * @return number of samples.
+     */
+    public int getNumSamples()
+    {
+        return timestamps.length;
+    }   //getNumSamples
+
+    /**
+     * This method returns the number of complete chunks loaded.
+     *
+     * @return number of chunks.
+     */
+    public int getNumChunks()
+    {
+        return numChunks;
+    }   //getNumChunks
+
+    /**
+     * This method returns the sample timestamps.
+     *
+     * @return timestamps in seconds, one per sample.
+     */
+    public double[] getTimestamps()
+    {
+        return timestamps;
+    }   //getTimestamps
+
+    /**
+     * This method returns the values of the specified channel.
+     *
+     * @param channel specifies the channel index.
+     * @return channel values, one per sample.
+     */
+    public float[] getChannel(int channel)
+    {
+        return channels[channel];
+    }   //getChannel
+
+    /**
+     * This method returns the values of the channel with the specified name.
+     *
+     * @param name specifies the channel name.
+     * @return channel values, one per sample, null if not found.
+     */
+    public float[] getChannel(String name)
+    {
+        int channel = getChannelIndex(name);
+        return channel != -1? channels[channel]: null;
+    }   //getChannel
+
+    /**
+     * This method reads a length prefixed UTF-8 string from the header.
+     *
+     * @param buffer specifies the header buffer.
+     * @return string read.
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }   //readString
+
+    /**
+     * This method loads each recording given on the command line and prints its load time and a summary of every
+     * channel.
+     *
+     * @param args specifies the recording file paths.
+     * @throws IOException if a file cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        for (String filePath: args)
+        {
+            long startNanos = System.nanoTime();
+            TelemetryLogReader reader = new TelemetryLogReader(filePath);
+            double loadMsec = (System.nanoTime() - startNanos)/1000000.0;
+            double[] timestamps = reader.getTimestamps();
+            double duration = timestamps.length > 0? timestamps[timestamps.length - 1] - timestamps[0]: 0.0;
+
+            System.out.printf(
+                Locale.US, "%s: %d channels, %d samples in %d chunks, %.3f sec, loaded in %.3f msec\n",
+                filePath, reader.getNumChannels(), reader.getNumSamples(), reader.getNumChunks(), duration, loadMsec);
+            for (int i = 0; i < reader.getNumChannels(); i++)
+            {
+                float[] values = reader.getChannel(i);
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0.0;
+
+                for (float value: values)
+                {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                }
+                System.out.printf(
+                    Locale.US, "  %-24s %-8s min=%.3f, max=%.3f, avg=%.3f\n",
+                    reader.getChannelName(i), reader.getChannelUnit(i), min, max,
+                    values.length > 0? sum/values.length: 0.0);
+            }
+        }
+    }   //main
+
+}   //class TelemetryLogReader
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.logging;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.function.DoubleSupplier;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+
+/**
+ * This class implements a binary telemetry recorder. A declared set of channels is sampled every loop into
+ * preallocated column arrays. When a chunk of samples is full, it is copied column by column into a memory-mapped
+ * region of the file, so sampling never allocates and never makes a file system call. TelemetryLogReader loads the
+ * file on a desktop.
+ *
+ * File format (little endian):
+ * <pre>
+ * Header: int FILE_MAGIC, int FORMAT_VERSION, int numChannels, int chunkSize, long startEpochMillis,
+ *         numChannels x (short nameLength, byte[] name, short unitLength, byte[] unit) in UTF-8.
+ * Chunk:  int CHUNK_MAGIC, int numSamples, double firstTimestamp, double lastTimestamp,
+ *         double[numSamples] timestamps, numChannels x float[numSamples] values.
+ * </pre>
+ * A file that was not closed (e.g. the robot lost power) ends with zero padding of the last mapped region. The
+ * reader stops at the first chunk without CHUNK_MAGIC, so all completed chunks are still readable.
+ */
+public class TelemetryRecorder
+{
+    private static final String moduleName = TelemetryRecorder.class.getSimpleName();
+    public static final int FILE_MAGIC = 0x544c4d31;            // "TLM1"
+    public static final int CHUNK_MAGIC = 0x43484e4b;           // "CHNK"
+    public static final int FORMAT_VERSION = 1;
+    public static final int CHUNK_HEADER_SIZE = 2*Integer.BYTES + 2*Double.BYTES;
+    public static final int DEF_CHUNK_SIZE = 256;
+    private static final int MAP_REGION_SIZE = 1024*1024;
+
+    private final TrcDbgTrace tracer = TrcDbgTrace.getGlobalTracer();
+    private final int chunkSize;
+    private final ArrayList<String> channelNames = new ArrayList<>();
+    private final ArrayList<String> channelUnits = new ArrayList<>();
+    private final ArrayList<DoubleSupplier> channelReaders = new ArrayList<>();
+    private final TrcTaskMgr.TaskObject sampleTaskObj;
+    private DoubleSupplier[] readers = null;
+    private double[] timestamps = null;
+    private float[][] columns = null;
+    private int numSamples = 0;
+    private RandomAccessFile file = null;
+    private FileChannel fileChannel = null;
+    private MappedByteBuffer mappedRegion = null;
+    private long filePosition = 0;
+    private long totalSamples = 0;
+    private int totalChunks = 0;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param chunkSize specifies the number of samples in a chunk.
+     */
+    public TelemetryRecorder(int chunkSize)
+    {
+        this.chunkSize = chunkSize;
+        sampleTaskObj = TrcTaskMgr.createTask(moduleName + ".sampleTask", this::sampleTask);
+    }   //TelemetryRecorder
+
+    /**
+     * Constructor: Create an instance of the object.
+     */
+    public TelemetryRecorder()
+    {
+        this(DEF_CHUNK_SIZE);
+    }   //TelemetryRecorder
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method adds a channel. Channels must be added before the recorder is opened.
+     *
+     * @param name specifies the channel name.
+     * @param unit specifies the unit of the channel value.
+     * @param reader specifies the method to read the channel value.
+     * @return channel index.
+     */
+    public synchronized int addChannel(String name, String unit, DoubleSupplier reader)
+    {
+        if (fileChannel != null)
+        {
+            throw new IllegalStateException("Cannot add channel " + name + " while the recorder is opened.");
+        }
+
+        channelNames.add(name);
+        channelUnits.add(unit);
+        channelReaders.add(reader);
+
+        return channelReaders.size() - 1;
+    }   //addChannel
+
+    /**
+     * This method returns the number of channels.
+     *
+     * @return number of channels.
+     */
+    public int getNumChannels()
+    {
+        return channelReaders.size();
+    }   //getNumChannels
+
+    /**
+     * This method creates the recording file and writes the schema header. All sample buffers are allocated here.
+     *
+     * @param filePath specifies the recording file path.
+     * @return true if the file is opened, false otherwise.
+     */
+    public synchronized boolean open(String filePath)
+    {
+        if (fileChannel == null)
+        {
+            int numChannels = channelReaders.size();
+            readers = channelReaders.toArray(new DoubleSupplier[numChannels]);
+            timestamps = new double[chunkSize];
+            columns = new float[numChannels][chunkSize];
+            numSamples = 0;
+            totalSamples = 0;
+            totalChunks = 0;
+            try
+            {
+                file = new RandomAccessFile(filePath, "rw");
+                file.setLength(0);
+                fileChannel = file.getChannel();
+                ByteBuffer header = createHeader();
+                while (header.hasRemaining())
+                {
+                    fileChannel.write(header);
+                }
+                filePosition = fileChannel.position();
+                mappedRegion = null;
+                tracer.traceInfo(moduleName, "Recording " + numChannels + " channels to " + filePath);
+            }
+            catch (IOException e)
+            {
+                tracer.traceErr(moduleName, "Failed to open " + filePath + ": " + e.getMessage());
+                closeFile();
+            }
+        }
+
+        return fileChannel != null;
+    }   //open
+
+    /**
+     * This method writes the pending samples, trims the unused part of the last mapped region and closes the file.
+     */
+    public synchronized void close()
+    {
+        if (fileChannel != null)
+        {
+            setEnabled(false);
+            try
+            {
+                writeChunk();
+                if (mappedRegion != null)
+                {
+                    mappedRegion.force();
+                }
+                fileChannel.truncate(filePosition);
+            }
+            catch (IOException e)
+            {
+                tracer.traceErr(moduleName, "Failed to close recording: " + e.getMessage());
+            }
+            closeFile();
+        }
+    }   //close
+
+    /**
+     * This method checks if the recording file is opened.
+     *
+     * @return true if opened, false otherwise.
+     */
+    public synchronized boolean isOpened()
+    {
+        return fileChannel != null;
+    }   //isOpened
+
+    /**
+     * This method enables/disables sampling at the end of every loop. The file must be opened first.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled && fileChannel != null)
+        {
+            sampleTaskObj.registerTask(TrcTaskMgr.TaskType.POST_PERIODIC_TASK);
+            this.enabled = true;
+        }
+        else if (!enabled && this.enabled)
+        {
+            sampleTaskObj.unregisterTask();
+            this.enabled = false;
+        }
+    }   //setEnabled
+
+    /**
+     * This method returns the number of samples recorded since the file was opened.
+     *
+     * @return number of samples.
+     */
+    public synchronized long getSampleCount()
+    {
+        return totalSamples;
+    }   //getSampleCount
+
+    /**
+     * This method returns the number of chunks written since the file was opened.
+     *
+     * @return number of chunks.
+     */
+    public synchronized int getChunkCount()
+    {
+        return totalChunks;
+    }   //getChunkCount
+
+    /**
+     * This method reads all channels into the current chunk. When the chunk is full, it is written to the file.
+     * It is normally called by the sample task at the end of the loop, but it can be called directly by a caller
+     * that runs its own loop (e.g. simulation).
+     *
+     * @param timestamp specifies the sample timestamp in seconds.
+     */
+    public synchronized void sample(double timestamp)
+    {
+        if (fileChannel != null)
+        {
+            timestamps[numSamples] = timestamp;
+            for (int i = 0; i < readers.length; i++)
+            {
+                columns[i][numSamples] = (float) readers[i].getAsDouble();
+            }
+            numSamples++;
+            totalSamples++;
+
+            if (numSamples == chunkSize)
+            {
+                try
+                {
+                    writeChunk();
+                }
+                catch (IOException e)
+                {
+                    tracer.traceErr(moduleName, "Failed to write recording, stop recording: " + e.getMessage());
+                    setEnabled(false);
+                    closeFile();
+                }
+            }
+        }
+    }   //sample
+
+    /**
+     * This method creates the schema header.
+     *
+     * @return header buffer ready to be written.
+     */
+    private ByteBuffer createHeader()
+    {
+        byte[][] names = new byte[channelNames.size()][];
+        byte[][] units = new byte[channelUnits.size()][];
+        int size = 4*Integer.BYTES + Long.BYTES;
+
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = channelNames.get(i).getBytes(StandardCharsets.UTF_8);
+            units[i] = channelUnits.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 2*Short.BYTES + names[i].length + units[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FILE_MAGIC).putInt(FORMAT_VERSION).putInt(names.length).putInt(chunkSize);
+        header.putLong(System.currentTimeMillis());
+        for (int i = 0; i < names.length; i++)
+        {
+            header.putShort((short) names[i].length).put(names[i]);
+            header.putShort((short) units[i].length).put(units[i]);
+        }
+        header.flip();
+
+        return header;
+    }   //createHeader
+
+    /**
+     * This method copies the pending samples into the mapped region as one chunk. A new region is mapped when the
+     * current one cannot hold the chunk.
+     *
+     * @throws IOException if mapping the file failed.
+     */
+    private void writeChunk() throws IOException
+    {
+        if (numSamples > 0)
+        {
+            int chunkBytes = CHUNK_HEADER_SIZE + numSamples*(Double.BYTES + readers.length*Float.BYTES);
+
+            if (mappedRegion == null || mappedRegion.remaining() < chunkBytes)
+            {
+                if (mappedRegion != null)
+                {
+                    mappedRegion.force();
+                }
+                mappedRegion = fileChannel.map(
+                    FileChannel.MapMode.READ_WRITE, filePosition, Math.max(MAP_REGION_SIZE, chunkBytes));
+                mappedRegion.order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            mappedRegion.putInt(CHUNK_MAGIC).putInt(numSamples);
+            mappedRegion.putDouble(timestamps[0]).putDouble(timestamps[numSamples - 1]);
+            for (int i = 0; i < numSamples; i++)
+            {
+                mappedRegion.putDouble(timestamps[i]);
+            }
+
+            for (float[] column: columns)
+            {
+                for (int i = 0; i < numSamples; i++)
+                {
+                    mappedRegion.putFloat(column[i]);
+                }
+            }
+            filePosition += chunkBytes;
+            totalChunks++;
+            numSamples = 0;
+        }
+    }   //writeChunk
+
+    /**
+     * This method closes the file and releases the mapped region.
+     */
+    private void closeFile()
+    {
+        try
+        {
+            if (file != null)
+            {
+                file.close();
+            }
+        }
+        catch (IOException e)
+        {
+            tracer.traceErr(moduleName, "Failed to close file: " + e.getMessage());
+        }
+        file = null;
+        fileChannel = null;
+        mappedRegion = null;
+    }   //closeFile
+
+    /**
+     * This method is called at the end of every loop to take a sample.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void sampleTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        sample(TrcTimer.getCurrentTime());
+    }   //sampleTask
+
+}   //class TelemetryRecorder
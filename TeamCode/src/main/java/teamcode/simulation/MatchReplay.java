@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.function.Function;
+
+import TrcCommonLib.command.CmdPidDrive;
+import TrcCommonLib.trclib.TrcMotor;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import teamcode.Robot;
+import teamcode.RobotParams;
+import teamcode.logging.TelemetryLogReader;
+
+/**
+ * This class replays a telemetry recording through an autonomous command (e.g. CmdAuto, CmdMyPidDrive or
+ * CmdPidDrive) running on the simulated robot. Instead of stepping the physics, every loop feeds the recorded
+ * encoder counts of the drive motor ports (wheel encoders or odometry pods) and the recorded heading to the
+ * simulated sensors, runs the robot loop once and compares the resulting drive motor powers with the recorded ones.
+ * Because the sensor values are indexed by loop rather than by time, each loop of the replay sees exactly what the
+ * robot saw, so a change to the PID coefficients in RobotParams or to the command logic can be evaluated against a
+ * library of past matches.
+ *
+ * TrcLib timers and PID controllers use wall clock time and TrcTimer cannot be virtualized from here, so the replay
+ * is always paced like the match: each loop starts at its recorded time after the start of the replay. Running the
+ * loops faster would scale the derivative and integral terms and stretch TrcTimer based delays and timeouts, so
+ * the diff would no longer say anything about the match. Vision is not simulated, so recordings relying on
+ * AprilTag relocalization will diverge after the first relocalization.
+ */
+public class MatchReplay
+{
+    private static final String moduleName = MatchReplay.class.getSimpleName();
+    public static final double DEF_DIVERGENCE_THRESHOLD = 0.05;
+
+    /**
+     * This class accumulates the difference between the replayed and recorded power of one motor.
+     */
+    public static class MotorDiff
+    {
+        public final String name;
+        private int numSamples = 0;
+        private double sumSquaredError = 0.0;
+        private double maxError = 0.0;
+        private double maxErrorTime = 0.0;
+        private double divergenceTime = -1.0;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param name specifies the motor name.
+         */
+        MotorDiff(String name)
+        {
+            this.name = name;
+        }   //MotorDiff
+
+        /**
+         * This method returns the diff statistics in string form.
+         *
+         * @return diff statistics.
+         */
+        @Override
+        public String toString()
+        {
+            return String.format(
+                Locale.US, "%s: rms=%.4f, max=%.4f@%.3f, diverged=%s",
+                name, getRmsError(), maxError, maxErrorTime,
+                divergenceTime >= 0.0? String.format(Locale.US, "%.3f", divergenceTime): "never");
+        }   //toString
+
+        /**
+         * This method adds the power difference of one loop.
+         *
+         * @param time specifies the elapsed match time of the loop.
+         * @param error specifies the replayed power minus the recorded power.
+         * @param divergenceThreshold specifies the absolute error considered as divergence.
+         */
+        void addSample(double time, double error, double divergenceThreshold)
+        {
+            double absError = Math.abs(error);
+
+            numSamples++;
+            sumSquaredError += error*error;
+            if (absError > maxError)
+            {
+                maxError = absError;
+                maxErrorTime = time;
+            }
+
+            if (divergenceTime < 0.0 && absError > divergenceThreshold)
+            {
+                divergenceTime = time;
+            }
+        }   //addSample
+
+        /**
+         * This method returns the root mean square of the power difference.
+         *
+         * @return RMS error.
+         */
+        public double getRmsError()
+        {
+            return numSamples > 0? Math.sqrt(sumSquaredError/numSamples): 0.0;
+        }   //getRmsError
+
+        /**
+         * This method returns the largest absolute power difference.
+         *
+         * @return maximum error.
+         */
+        public double getMaxError()
+        {
+            return maxError;
+        }   //getMaxError
+
+        /**
+         * This method returns the elapsed match time of the first loop where the difference exceeded the
+         * divergence threshold.
+         *
+         * @return divergence time in seconds, -1.0 if never diverged.
+         */
+        public double getDivergenceTime()
+        {
+            return divergenceTime;
+        }   //getDivergenceTime
+
+    }   //class MotorDiff
+
+    /**
+     * This class contains the result of one replay.
+     */
+    public static class Result
+    {
+        public final String recordingPath;
+        public final int numLoops;
+        public final double matchTime;
+        public final double replayTime;
+        public final MotorDiff[] motorDiffs;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param recordingPath specifies the recording file path.
+         * @param numLoops specifies the number of loops replayed.
+         * @param matchTime specifies the recorded duration in seconds.
+         * @param replayTime specifies the wall clock duration of the replay in seconds.
+         * @param motorDiffs specifies the diff of each drive motor.
+         */
+        Result(String recordingPath, int numLoops, double matchTime, double replayTime, MotorDiff[] motorDiffs)
+        {
+            this.recordingPath = recordingPath;
+            this.numLoops = numLoops;
+            this.matchTime = matchTime;
+            this.replayTime = replayTime;
+            this.motorDiffs = motorDiffs;
+        }   //Result
+
+        /**
+         * This method returns the replay result in string form.
+         *
+         * @return replay result.
+         */
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(String.format(
+                Locale.US, "%s: %d loops, match=%.3f sec, replay=%.3f sec", recordingPath, numLoops, matchTime,
+                replayTime));
+
+            for (MotorDiff diff: motorDiffs)
+            {
+                sb.append("\n  ").append(diff);
+            }
+
+            return sb.toString();
+        }   //toString
+
+        /**
+         * This method returns the largest RMS error of all drive motors.
+         *
+         * @return worst RMS error.
+         */
+        public double getWorstRmsError()
+        {
+            double worst = 0.0;
+
+            for (MotorDiff diff: motorDiffs)
+            {
+                worst = Math.max(worst, diff.getRmsError());
+            }
+
+            return worst;
+        }   //getWorstRmsError
+
+    }   //class Result
+
+    private final double divergenceThreshold;
+    private int loopIndex = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param divergenceThreshold specifies the absolute power difference considered as divergence.
+     */
+    public MatchReplay(double divergenceThreshold)
+    {
+        this.divergenceThreshold = divergenceThreshold;
+    }   //MatchReplay
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method replays a recording through the command created by the given factory. The robot type and drive
+     * base configuration in RobotParams must match the robot the recording was made on.
+     *
+     * @param recordingPath specifies the telemetry recording file path.
+     * @param commandFactory specifies the method that creates the command on the replay robot.
+     * @return replay result.
+     * @throws IOException if the recording cannot be read.
+     */
+    public Result replay(String recordingPath, Function<Robot, TrcRobot.RobotCommand> commandFactory)
+        throws IOException
+    {
+        TelemetryLogReader recording = new TelemetryLogReader(recordingPath);
+        double[] timestamps = recording.getTimestamps();
+        float[] headings = getRecordedChannel(recording, "pose.heading");
+
+        RobotParams.Preferences.useTelemetryRecorder = false;
+        RobotParams.Preferences.tuneColorBlobVision = false;
+        RobotParams.Preferences.useAprilTagVision = false;
+        RobotParams.Preferences.useColorBlobVision = false;
+        RobotParams.Preferences.useTensorFlowVision = false;
+        SimRobot simRobot = new SimRobot(null);
+        simRobot.setTransactionTime(0);
+        loopIndex = 0;
+        // The IMU takes its yaw offset from the first recorded heading.
+        simRobot.driveModel.setPose(0.0, 0.0, headings[0]);
+        Robot robot = simRobot.createRobot(TrcRobot.RunMode.AUTO_MODE);
+
+        TrcMotor[] driveMotors = robot.robotDrive.driveMotors;
+        float[][] recordedPowers = new float[driveMotors.length][];
+        MotorDiff[] motorDiffs = new MotorDiff[driveMotors.length];
+        for (int i = 0; i < driveMotors.length; i++)
+        {
+            String name = driveMotors[i].toString();
+            SimDcMotor simMotor = simRobot.driveMotors[i];
+            float[] positions = getRecordedChannel(recording, name + ".pos");
+
+            recordedPowers[i] = getRecordedChannel(recording, name + ".power");
+            motorDiffs[i] = new MotorDiff(name);
+            // The recorded position has the motor direction applied, the encoder source is before it.
+            simMotor.setEncoderSource(
+                () -> (simMotor.getDirection() == DcMotorSimple.Direction.REVERSE? -1.0: 1.0)*positions[loopIndex]);
+        }
+
+        robot.startMode(TrcRobot.RunMode.AUTO_MODE);
+        TrcRobot.RobotCommand command = commandFactory.apply(robot);
+        long startNanos = System.nanoTime();
+        for (int loop = 0; loop < timestamps.length; loop++)
+        {
+            double elapsedTime = timestamps[loop] - timestamps[0];
+            long loopStartNanos = startNanos + (long) (elapsedTime*1.0e9);
+
+            while (System.nanoTime() < loopStartNanos)
+            {
+                Thread.yield();
+            }
+
+            loopIndex = loop;
+            simRobot.driveModel.setPose(0.0, 0.0, headings[loop]);
+            TrcTaskMgr.executeTaskType(TrcTaskMgr.TaskType.PRE_PERIODIC_TASK, TrcRobot.RunMode.AUTO_MODE, false);
+            if (command != null)
+            {
+                command.cmdPeriodic(elapsedTime);
+            }
+            TrcTaskMgr.executeTaskType(TrcTaskMgr.TaskType.POST_PERIODIC_TASK, TrcRobot.RunMode.AUTO_MODE, false);
+
+            for (int i = 0; i < driveMotors.length; i++)
+            {
+                motorDiffs[i].addSample(
+                    elapsedTime, driveMotors[i].getPower() - recordedPowers[i][loop], divergenceThreshold);
+            }
+        }
+        double replayTime = (System.nanoTime() - startNanos)/1.0e9;
+
+        if (command != null)
+        {
+            command.cancel();
+        }
+        robot.stopMode(TrcRobot.RunMode.AUTO_MODE);
+
+        return new Result(
+            recordingPath, timestamps.length,
+            timestamps.length > 0? timestamps[timestamps.length - 1] - timestamps[0]: 0.0, replayTime, motorDiffs);
+    }   //replay
+
+    /**
+     * This method returns the values of a channel that the replay needs.
+     *
+     * @param recording specifies the recording.
+     * @param name specifies the channel name.
+     * @return channel values.
+     * @throws IllegalArgumentException if the recording does not have the channel.
+     */
+    private static float[] getRecordedChannel(TelemetryLogReader recording, String name)
+    {
+        float[] values = recording.getChannel(name);
+
+        if (values == null || values.length == 0)
+        {
+            throw new IllegalArgumentException(recording + " has no samples of channel " + name + ".");
+        }
+
+        return values;
+    }   //getRecordedChannel
+
+    /**
+     * This method replays a set of recordings of the PID_DRIVE autonomous strategy with the current PID
+     * coefficients in RobotParams and prints the diff of each one.
+     *
+     * @param args specifies xTarget (ft), yTarget (ft), turnTarget (deg), drivePower followed by the recording file
+     *        paths.
+     * @throws IOException if a recording cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 5)
+        {
+            System.err.println(
+                "Usage: " + moduleName + " <xTargetFt> <yTargetFt> <turnTargetDeg> <drivePower> <recording>...");
+            System.exit(1);
+        }
+
+        TrcPose2D target = new TrcPose2D(
+            Double.parseDouble(args[0])*12.0, Double.parseDouble(args[1])*12.0, Double.parseDouble(args[2]));
+        double drivePower = Double.parseDouble(args[3]);
+        MatchReplay replay = new MatchReplay(DEF_DIVERGENCE_THRESHOLD);
+        double worstRmsError = 0.0;
+
+        for (int i = 4; i < args.length; i++)
+        {
+            // Same command as FtcAuto creates for the PID_DRIVE strategy.
+            Result result = replay.replay(
+                args[i], robot -> new CmdPidDrive(
+                    robot.robotDrive.driveBase, robot.robotDrive.pidDrive, 0.0, drivePower, null, target));
+            System.out.println(result);
+            worstRmsError = Math.max(worstRmsError, result.getWorstRmsError());
+        }
+        System.out.printf(Locale.US, "Worst RMS error of %d recordings: %.4f\n", args.length - 4, worstRmsError);
+        System.exit(0);
+    }   //main
+
+}   //class MatchReplay
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.AnalogInput;
+import com.qualcomm.robotcore.hardware.AnalogInputController;
+import com.qualcomm.robotcore.util.SerialNumber;
+
+/**
+ * This class implements a simulated absolute analog encoder (e.g. Axon or REV Through Bore in analog mode) on the
+ * output of a continuous rotation servo. The output angle of the SimCRServoModel, multiplied by the encoder gearing
+ * and shifted by the zero offset, is mapped to a voltage from 0 to the maximum analog input voltage. Each voltage
+ * read is charged to the SimHub as bulk data.
+ */
+public class SimAnalogEncoder implements AnalogInputController
+{
+    public static final double MAX_VOLTAGE = 3.3;
+
+    private final String instanceName;
+    private final SimHub hub;
+    private final SimCRServoModel model;
+    private final double encoderRevsPerRev;
+    private final double zeroOffset;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param hub specifies the hub the encoder is connected to.
+     * @param model specifies the servo model whose output angle is measured.
+     * @param encoderRevsPerRev specifies the encoder revolutions per servo output revolution, negative if the
+     *        encoder turns in the opposite direction.
+     * @param zeroOffset specifies the encoder reading at servo angle zero, in the range of 0.0 to 1.0.
+     */
+    public SimAnalogEncoder(
+        String instanceName, SimHub hub, SimCRServoModel model, double encoderRevsPerRev, double zeroOffset)
+    {
+        this.instanceName = instanceName;
+        this.hub = hub;
+        this.model = model;
+        this.encoderRevsPerRev = encoderRevsPerRev;
+        this.zeroOffset = zeroOffset;
+    }   //SimAnalogEncoder
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method creates an AnalogInput device that reads this encoder, for putting into the hardware map.
+     *
+     * @return analog input device.
+     */
+    public AnalogInput createAnalogInput()
+    {
+        return new AnalogInput(this, 0);
+    }   //createAnalogInput
+
+    //
+    // Implements AnalogInputController interface.
+    //
+
+    @Override
+    public double getAnalogInputVoltage(int channel)
+    {
+        double value = (zeroOffset + model.getAngle()*encoderRevsPerRev/360.0) % 1.0;
+
+        hub.bulkDataRead();
+        return (value < 0.0? value + 1.0: value)*MAX_VOLTAGE;
+    }   //getAnalogInputVoltage
+
+    @Override
+    public double getMaxAnalogInputVoltage()
+    {
+        return MAX_VOLTAGE;
+    }   //getMaxAnalogInputVoltage
+
+    @Override
+    public SerialNumber getSerialNumber()
+    {
+        return SerialNumber.createFake();
+    }   //getSerialNumber
+
+    //
+    // Implements HardwareDevice interface.
+    //
+
+    @Override
+    public Manufacturer getManufacturer()
+    {
+        return Manufacturer.Other;
+    }   //getManufacturer
+
+    @Override
+    public String getDeviceName()
+    {
+        return "Simulated Analog Encoder";
+    }   //getDeviceName
+
+    @Override
+    public String getConnectionInfo()
+    {
+        return hub.toString();
+    }   //getConnectionInfo
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }   //getVersion
+
+    @Override
+    public void resetDeviceConfigurationForOpMode()
+    {
+    }   //resetDeviceConfigurationForOpMode
+
+    @Override
+    public void close()
+    {
+    }   //close
+
+}   //class SimAnalogEncoder
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+/**
+ * This class implements a model of a continuous rotation servo with an absolute analog encoder on its output, as
+ * used for swerve steering. The output turns at a speed proportional to the applied power with a first order lag.
+ * It has no dependency on the FTC SDK so it can be stepped on a plain JVM.
+ */
+public class SimCRServoModel
+{
+    private final double maxDegreesPerSecond;
+    private final double timeConstant;
+    private double power = 0.0;
+    private double velocity = 0.0;
+    private double angle = 0.0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param maxDegreesPerSecond specifies the output speed at full power in degrees per second.
+     * @param timeConstant specifies the time constant in seconds.
+     */
+    public SimCRServoModel(double maxDegreesPerSecond, double timeConstant)
+    {
+        this.maxDegreesPerSecond = maxDegreesPerSecond;
+        this.timeConstant = timeConstant;
+    }   //SimCRServoModel
+
+    /**
+     * This method sets the servo power.
+     *
+     * @param power specifies the power in the range of -1.0 to 1.0.
+     */
+    public synchronized void setPower(double power)
+    {
+        this.power = Math.max(-1.0, Math.min(1.0, power));
+    }   //setPower
+
+    /**
+     * This method returns the servo power.
+     *
+     * @return servo power.
+     */
+    public synchronized double getPower()
+    {
+        return power;
+    }   //getPower
+
+    /**
+     * This method returns the output angle.
+     *
+     * @return output angle in degrees in the range of 0 to 360.
+     */
+    public synchronized double getAngle()
+    {
+        return angle;
+    }   //getAngle
+
+    /**
+     * This method sets the output angle, typically to set the initial state of a simulation.
+     *
+     * @param angle specifies the output angle in degrees.
+     */
+    public synchronized void setAngle(double angle)
+    {
+        this.angle = wrapAngle(angle);
+    }   //setAngle
+
+    /**
+     * This method advances the model by the specified time step.
+     *
+     * @param dt specifies the time step in seconds.
+     */
+    public synchronized void step(double dt)
+    {
+        double alpha = dt >= timeConstant? 1.0: dt/timeConstant;
+        double prevVelocity = velocity;
+
+        velocity += (power*maxDegreesPerSecond - velocity)*alpha;
+        angle = wrapAngle(angle + (prevVelocity + velocity)/2.0*dt);
+    }   //step
+
+    /**
+     * This method wraps the angle into the range of 0 to 360 degrees.
+     *
+     * @param angle specifies the angle in degrees.
+     * @return wrapped angle.
+     */
+    private static double wrapAngle(double angle)
+    {
+        angle %= 360.0;
+        return angle < 0.0? angle + 360.0: angle;
+    }   //wrapAngle
+
+}   //class SimCRServoModel
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.PIDCoefficients;
+import com.qualcomm.robotcore.hardware.PIDFCoefficients;
+import com.qualcomm.robotcore.hardware.configuration.typecontainers.MotorConfigurationType;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * This class implements a simulated DcMotorEx backed by a SimMotorModel. It is put into the hardware map in place
+ * of a real motor so that the FtcDcMotor wrapper and everything above it run unmodified. Every call that would talk
+ * to the hub is charged to the SimHub. The encoder source can be overridden so that a dead wheel odometry pod
+ * plugged into the encoder port of this motor can be simulated.
+ */
+public class SimDcMotor implements DcMotorEx
+{
+    private final String instanceName;
+    private final SimHub hub;
+    private final int portNumber;
+    private final SimMotorModel model;
+    private DoubleSupplier encoderSource = null;
+    private double encoderOffset = 0.0;
+    private Direction direction = Direction.FORWARD;
+    private RunMode runMode = RunMode.RUN_WITHOUT_ENCODER;
+    private ZeroPowerBehavior zeroPowerBehavior = ZeroPowerBehavior.BRAKE;
+    private MotorConfigurationType motorType = MotorConfigurationType.getUnspecifiedMotorType();
+    private boolean motorEnabled = true;
+    private double power = 0.0;
+    private int targetPosition = 0;
+    private int targetPositionTolerance = 5;
+    private double currentAlert = 0.0;
+    private PIDFCoefficients velocityPidf = new PIDFCoefficients(10.0, 3.0, 0.0, 0.0);
+    private PIDFCoefficients positionPidf = new PIDFCoefficients(10.0, 0.0, 0.0, 0.0);
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param hub specifies the hub the motor is connected to.
+     * @param portNumber specifies the motor port number on the hub.
+     * @param model specifies the motor model.
+     */
+    public SimDcMotor(String instanceName, SimHub hub, int portNumber, SimMotorModel model)
+    {
+        this.instanceName = instanceName;
+        this.hub = hub;
+        this.portNumber = portNumber;
+        this.model = model;
+    }   //SimDcMotor
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method returns the motor model.
+     *
+     * @return motor model.
+     */
+    public SimMotorModel getModel()
+    {
+        return model;
+    }   //getModel
+
+    /**
+     * This method overrides the encoder of this port with an external source, e.g. a dead wheel odometry pod.
+     *
+     * @param encoderSource specifies the method that returns the encoder count, null to use the motor encoder.
+     */
+    public synchronized void setEncoderSource(DoubleSupplier encoderSource)
+    {
+        this.encoderSource = encoderSource;
+        encoderOffset = 0.0;
+    }   //setEncoderSource
+
+    /**
+     * This method returns the raw encoder count from the encoder source.
+     *
+     * @return raw encoder count.
+     */
+    private double getRawEncoder()
+    {
+        return encoderSource != null? encoderSource.getAsDouble(): model.getPosition();
+    }   //getRawEncoder
+
+    /**
+     * This method returns the sign to apply to the motor direction.
+     *
+     * @return 1.0 for forward, -1.0 for reverse.
+     */
+    private double getDirectionSign()
+    {
+        return direction == Direction.REVERSE? -1.0: 1.0;
+    }   //getDirectionSign
+
+    /**
+     * This method applies the logical power to the model according to the run mode.
+     */
+    private void applyPower()
+    {
+        double modelPower = 0.0;
+
+        if (motorEnabled)
+        {
+            if (runMode == RunMode.RUN_TO_POSITION)
+            {
+                // The hub runs a P controller to the target, the logical power is the speed limit.
+                double error = targetPosition - getCurrentPosition();
+                double p = positionPidf.p/model.getMaxVelocity();
+                modelPower = Math.max(-Math.abs(power), Math.min(Math.abs(power), error*p));
+                if (Math.abs(error) <= targetPositionTolerance) modelPower = 0.0;
+            }
+            else if (runMode != RunMode.STOP_AND_RESET_ENCODER)
+            {
+                modelPower = power;
+            }
+        }
+
+        model.setPower(modelPower*getDirectionSign());
+    }   //applyPower
+
+    /**
+     * This method is called by the simulation every step to update the closed loop modes.
+     */
+    public synchronized void update()
+    {
+        if (runMode == RunMode.RUN_TO_POSITION)
+        {
+            applyPower();
+        }
+    }   //update
+
+    //
+    // Implements HardwareDevice interface.
+    //
+
+    @Override
+    public Manufacturer getManufacturer()
+    {
+        return Manufacturer.Other;
+    }   //getManufacturer
+
+    @Override
+    public String getDeviceName()
+    {
+        return "Simulated Motor";
+    }   //getDeviceName
+
+    @Override
+    public String getConnectionInfo()
+    {
+        return hub + ":" + portNumber;
+    }   //getConnectionInfo
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }   //getVersion
+
+    @Override
+    public synchronized void resetDeviceConfigurationForOpMode()
+    {
+        direction = Direction.FORWARD;
+        power = 0.0;
+        applyPower();
+    }   //resetDeviceConfigurationForOpMode
+
+    @Override
+    public void close()
+    {
+    }   //close
+
+    //
+    // Implements DcMotorSimple interface.
+    //
+
+    @Override
+    public synchronized void setDirection(Direction direction)
+    {
+        this.direction = direction;
+        applyPower();
+    }   //setDirection
+
+    @Override
+    public synchronized Direction getDirection()
+    {
+        return direction;
+    }   //getDirection
+
+    @Override
+    public synchronized void setPower(double power)
+    {
+        hub.registerWrite();
+        this.power = Math.max(-1.0, Math.min(1.0, power));
+        applyPower();
+    }   //setPower
+
+    @Override
+    public synchronized double getPower()
+    {
+        hub.registerRead();
+        return power;
+    }   //getPower
+
+    //
+    // Implements DcMotor interface.
+    //
+
+    @Override
+    public synchronized MotorConfigurationType getMotorType()
+    {
+        return motorType;
+    }   //getMotorType
+
+    @Override
+    public synchronized void setMotorType(MotorConfigurationType motorType)
+    {
+        this.motorType = motorType;
+    }   //setMotorType
+
+    @Override
+    public DcMotorController getController()
+    {
+        return null;
+    }   //getController
+
+    @Override
+    public int getPortNumber()
+    {
+        return portNumber;
+    }   //getPortNumber
+
+    @Override
+    public synchronized void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior)
+    {
+        hub.registerWrite();
+        this.zeroPowerBehavior = zeroPowerBehavior;
+        model.setBrakeModeEnabled(zeroPowerBehavior != ZeroPowerBehavior.FLOAT);
+    }   //setZeroPowerBehavior
+
+    @Override
+    public synchronized ZeroPowerBehavior getZeroPowerBehavior()
+    {
+        return zeroPowerBehavior;
+    }   //getZeroPowerBehavior
+
+    @Override
+    @Deprecated
+    public synchronized void setPowerFloat()
+    {
+        setZeroPowerBehavior(ZeroPowerBehavior.FLOAT);
+        setPower(0.0);
+    }   //setPowerFloat
+
+    @Override
+    public synchronized boolean getPowerFloat()
+    {
+        return zeroPowerBehavior == ZeroPowerBehavior.FLOAT && power == 0.0;
+    }   //getPowerFloat
+
+    @Override
+    public synchronized void setTargetPosition(int position)
+    {
+        hub.registerWrite();
+        targetPosition = position;
+        applyPower();
+    }   //setTargetPosition
+
+    @Override
+    public synchronized int getTargetPosition()
+    {
+        return targetPosition;
+    }   //getTargetPosition
+
+    @Override
+    public synchronized boolean isBusy()
+    {
+        hub.registerRead();
+        return runMode == RunMode.RUN_TO_POSITION &&
+               Math.abs(targetPosition - getCurrentPosition()) > targetPositionTolerance;
+    }   //isBusy
+
+    @Override
+    public synchronized int getCurrentPosition()
+    {
+        hub.bulkDataRead();
+        return (int) Math.round((getRawEncoder() - encoderOffset)*getDirectionSign());
+    }   //getCurrentPosition
+
+    @Override
+    public synchronized void setMode(RunMode mode)
+    {
+        hub.registerWrite();
+        if (mode == RunMode.STOP_AND_RESET_ENCODER)
+        {
+            encoderOffset = getRawEncoder();
+        }
+        runMode = mode;
+        applyPower();
+    }   //setMode
+
+    @Override
+    public synchronized RunMode getMode()
+    {
+        return runMode;
+    }   //getMode
+
+    //
+    // Implements DcMotorEx interface.
+    //
+
+    @Override
+    public synchronized void setMotorEnable()
+    {
+        hub.registerWrite();
+        motorEnabled = true;
+        applyPower();
+    }   //setMotorEnable
+
+    @Override
+    public synchronized void setMotorDisable()
+    {
+        hub.registerWrite();
+        motorEnabled = false;
+        applyPower();
+    }   //setMotorDisable
+
+    @Override
+    public synchronized boolean isMotorEnabled()
+    {
+        return motorEnabled;
+    }   //isMotorEnabled
+
+    @Override
+    public synchronized void setVelocity(double angularRate)
+    {
+        hub.registerWrite();
+        power = Math.max(-1.0, Math.min(1.0, angularRate/model.getMaxVelocity()));
+        applyPower();
+    }   //setVelocity
+
+    @Override
+    public synchronized void setVelocity(double angularRate, AngleUnit unit)
+    {
+        double countsPerRev = motorType.getTicksPerRev();
+        double revsPerSec = unit == AngleUnit.DEGREES? angularRate/360.0: angularRate/(2.0*Math.PI);
+
+        setVelocity(revsPerSec*countsPerRev);
+    }   //setVelocity
+
+    @Override
+    public synchronized double getVelocity()
+    {
+        hub.bulkDataRead();
+        return encoderSource != null? 0.0: model.getVelocity()*getDirectionSign();
+    }   //getVelocity
+
+    @Override
+    public synchronized double getVelocity(AngleUnit unit)
+    {
+        double revsPerSec = getVelocity()/motorType.getTicksPerRev();
+
+        return unit == AngleUnit.DEGREES? revsPerSec*360.0: revsPerSec*2.0*Math.PI;
+    }   //getVelocity
+
+    @Override
+    @Deprecated
+    public synchronized void setPIDCoefficients(RunMode mode, PIDCoefficients pidCoefficients)
+    {
+        setPIDFCoefficients(mode, new PIDFCoefficients(pidCoefficients.p, pidCoefficients.i, pidCoefficients.d, 0.0));
+    }   //setPIDCoefficients
+
+    @Override
+    public synchronized void setPIDFCoefficients(RunMode mode, PIDFCoefficients pidfCoefficients)
+    {
+        hub.registerWrite();
+        if (mode == RunMode.RUN_TO_POSITION)
+        {
+            positionPidf = new PIDFCoefficients(pidfCoefficients);
+        }
+        else
+        {
+            velocityPidf = new PIDFCoefficients(pidfCoefficients);
+        }
+    }   //setPIDFCoefficients
+
+    @Override
+    public synchronized void setVelocityPIDFCoefficients(double p, double i, double d, double f)
+    {
+        setPIDFCoefficients(RunMode.RUN_USING_ENCODER, new PIDFCoefficients(p, i, d, f));
+    }   //setVelocityPIDFCoefficients
+
+    @Override
+    public synchronized void setPositionPIDFCoefficients(double p)
+    {
+        setPIDFCoefficients(RunMode.RUN_TO_POSITION, new PIDFCoefficients(p, 0.0, 0.0, 0.0));
+    }   //setPositionPIDFCoefficients
+
+    @Override
+    @Deprecated
+    public synchronized PIDCoefficients getPIDCoefficients(RunMode mode)
+    {
+        PIDFCoefficients pidf = getPIDFCoefficients(mode);
+        return new PIDCoefficients(pidf.p, pidf.i, pidf.d);
+    }   //getPIDCoefficients
+
+    @Override
+    public synchronized PIDFCoefficients getPIDFCoefficients(RunMode mode)
+    {
+        return new PIDFCoefficients(mode == RunMode.RUN_TO_POSITION? positionPidf: velocityPidf);
+    }   //getPIDFCoefficients
+
+    @Override
+    public synchronized void setTargetPositionTolerance(int tolerance)
+    {
+        targetPositionTolerance = tolerance;
+    }   //setTargetPositionTolerance
+
+    @Override
+    public synchronized int getTargetPositionTolerance()
+    {
+        return targetPositionTolerance;
+    }   //getTargetPositionTolerance
+
+    @Override
+    public synchronized double getCurrent(CurrentUnit unit)
+    {
+        hub.registerRead();
+        return unit.convert(model.getCurrent(), CurrentUnit.AMPS);
+    }   //getCurrent
+
+    @Override
+    public synchronized double getCurrentAlert(CurrentUnit unit)
+    {
+        return unit.convert(currentAlert, CurrentUnit.AMPS);
+    }   //getCurrentAlert
+
+    @Override
+    public synchronized void setCurrentAlert(double current, CurrentUnit unit)
+    {
+        currentAlert = CurrentUnit.AMPS.convert(current, unit);
+    }   //setCurrentAlert
+
+    @Override
+    public synchronized boolean isOverCurrent()
+    {
+        return currentAlert > 0.0 && getCurrent(CurrentUnit.AMPS) > currentAlert;
+    }   //isOverCurrent
+
+}   //class SimDcMotor
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a kinematic model of a four wheel drive base on the field. It derives the chassis velocity
+ * from the wheel velocities (mecanum) or the module states (swerve), integrates the field pose and the distance seen
+ * by each dead wheel odometry pod. It follows the TrcLib conventions: robot X is to the right, robot Y is forward
+ * and heading is in degrees, clockwise positive. Wheel slip is not modeled. It has no dependency on the FTC SDK so
+ * it can be stepped on a plain JVM.
+ */
+public class SimDriveModel
+{
+    public static final int INDEX_LEFT_FRONT = 0;
+    public static final int INDEX_RIGHT_FRONT = 1;
+    public static final int INDEX_LEFT_BACK = 2;
+    public static final int INDEX_RIGHT_BACK = 3;
+
+    private final double[] moduleXOffsets;
+    private final double[] moduleYOffsets;
+    private final double moduleRadiusSquaredSum;
+    private double[] odWheelXOffsets = new double[0];
+    private double[] odWheelYOffsets = new double[0];
+    private boolean[] odWheelXAxis = new boolean[0];
+    private double[] odWheelPositions = new double[0];
+    // Chassis velocity in robot frame.
+    private double xVelocity = 0.0;
+    private double yVelocity = 0.0;
+    private double turnRate = 0.0;
+    // Field pose.
+    private double xPosition = 0.0;
+    private double yPosition = 0.0;
+    private double heading = 0.0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param trackWidth specifies the distance between the left and right wheels in inches.
+     * @param wheelBase specifies the distance between the front and back wheels in inches.
+     */
+    public SimDriveModel(double trackWidth, double wheelBase)
+    {
+        double halfWidth = trackWidth/2.0;
+        double halfBase = wheelBase/2.0;
+
+        moduleXOffsets = new double[] {-halfWidth, halfWidth, -halfWidth, halfWidth};
+        moduleYOffsets = new double[] {halfBase, halfBase, -halfBase, -halfBase};
+        moduleRadiusSquaredSum = 4.0*(halfWidth*halfWidth + halfBase*halfBase);
+    }   //SimDriveModel
+
+    /**
+     * This method adds a dead wheel odometry pod.
+     *
+     * @param xOffset specifies the X offset of the pod from the robot centroid in inches.
+     * @param yOffset specifies the Y offset of the pod from the robot centroid in inches.
+     * @param xAxis specifies true if the pod measures X (sideways) movement, false if it measures Y movement.
+     * @return index of the pod.
+     */
+    public synchronized int addOdometryWheel(double xOffset, double yOffset, boolean xAxis)
+    {
+        int index = odWheelPositions.length;
+
+        odWheelXOffsets = Arrays.copyOf(odWheelXOffsets, index + 1);
+        odWheelYOffsets = Arrays.copyOf(odWheelYOffsets, index + 1);
+        odWheelXAxis = Arrays.copyOf(odWheelXAxis, index + 1);
+        odWheelPositions = Arrays.copyOf(odWheelPositions, index + 1);
+        odWheelXOffsets[index] = xOffset;
+        odWheelYOffsets[index] = yOffset;
+        odWheelXAxis[index] = xAxis;
+
+        return index;
+    }   //addOdometryWheel
+
+    /**
+     * This method returns the distance travelled by the specified odometry pod.
+     *
+     * @param index specifies the index returned by addOdometryWheel.
+     * @return distance travelled in inches.
+     */
+    public synchronized double getOdometryWheelPosition(int index)
+    {
+        return odWheelPositions[index];
+    }   //getOdometryWheelPosition
+
+    /**
+     * This method sets the chassis velocity from the wheel surface velocities of a mecanum drive base.
+     *
+     * @param lf specifies the left front wheel velocity in inches per second.
+     * @param rf specifies the right front wheel velocity in inches per second.
+     * @param lb specifies the left back wheel velocity in inches per second.
+     * @param rb specifies the right back wheel velocity in inches per second.
+     */
+    public synchronized void setMecanumWheelVelocities(double lf, double rf, double lb, double rb)
+    {
+        double k = moduleXOffsets[INDEX_RIGHT_FRONT] + moduleYOffsets[INDEX_RIGHT_FRONT];
+
+        xVelocity = (lf - rf - lb + rb)/4.0;
+        yVelocity = (lf + rf + lb + rb)/4.0;
+        turnRate = Math.toDegrees((lf + lb - rf - rb)/(4.0*k));
+    }   //setMecanumWheelVelocities
+
+    /**
+     * This method sets the chassis velocity from the module states of a swerve drive base. The chassis velocity is
+     * the least squares fit of a rigid body motion to the module velocity vectors.
+     *
+     * @param speeds specifies the wheel velocities of the modules in inches per second, in the order of lf, rf, lb,
+     *        rb.
+     * @param angles specifies the steering angles of the modules in degrees, clockwise from forward.
+     */
+    public synchronized void setSwerveModuleStates(double[] speeds, double[] angles)
+    {
+        double sumVx = 0.0, sumVy = 0.0, sumCross = 0.0;
+
+        for (int i = 0; i < moduleXOffsets.length; i++)
+        {
+            double angle = Math.toRadians(angles[i]);
+            double vx = speeds[i]*Math.sin(angle);
+            double vy = speeds[i]*Math.cos(angle);
+
+            sumVx += vx;
+            sumVy += vy;
+            sumCross += vx*moduleYOffsets[i] - vy*moduleXOffsets[i];
+        }
+
+        xVelocity = sumVx/moduleXOffsets.length;
+        yVelocity = sumVy/moduleXOffsets.length;
+        turnRate = Math.toDegrees(sumCross/moduleRadiusSquaredSum);
+    }   //setSwerveModuleStates
+
+    /**
+     * This method sets the field pose of the robot, typically to set the starting pose of a simulation.
+     *
+     * @param x specifies the field X position in inches.
+     * @param y specifies the field Y position in inches.
+     * @param heading specifies the heading in degrees.
+     */
+    public synchronized void setPose(double x, double y, double heading)
+    {
+        xPosition = x;
+        yPosition = y;
+        this.heading = heading;
+    }   //setPose
+
+    /**
+     * This method returns the field X position.
+     *
+     * @return field X position in inches.
+     */
+    public synchronized double getXPosition()
+    {
+        return xPosition;
+    }   //getXPosition
+
+    /**
+     * This method returns the field Y position.
+     *
+     * @return field Y position in inches.
+     */
+    public synchronized double getYPosition()
+    {
+        return yPosition;
+    }   //getYPosition
+
+    /**
+     * This method returns the heading.
+     *
+     * @return heading in degrees, clockwise positive.
+     */
+    public synchronized double getHeading()
+    {
+        return heading;
+    }   //getHeading
+
+    /**
+     * This method returns the turn rate.
+     *
+     * @return turn rate in degrees per second, clockwise positive.
+     */
+    public synchronized double getTurnRate()
+    {
+        return turnRate;
+    }   //getTurnRate
+
+    /**
+     * This method returns the chassis X velocity in the robot frame.
+     *
+     * @return X velocity in inches per second.
+     */
+    public synchronized double getXVelocity()
+    {
+        return xVelocity;
+    }   //getXVelocity
+
+    /**
+     * This method returns the chassis Y velocity in the robot frame.
+     *
+     * @return Y velocity in inches per second.
+     */
+    public synchronized double getYVelocity()
+    {
+        return yVelocity;
+    }   //getYVelocity
+
+    /**
+     * This method advances the model by the specified time step. The pose is integrated at the mid-point heading of
+     * the step.
+     *
+     * @param dt specifies the time step in seconds.
+     */
+    public synchronized void step(double dt)
+    {
+        double turnRadians = Math.toRadians(turnRate);
+        double midHeading = Math.toRadians(heading + turnRate*dt/2.0);
+        double cos = Math.cos(midHeading);
+        double sin = Math.sin(midHeading);
+
+        xPosition += (xVelocity*cos + yVelocity*sin)*dt;
+        yPosition += (-xVelocity*sin + yVelocity*cos)*dt;
+        heading += turnRate*dt;
+
+        for (int i = 0; i < odWheelPositions.length; i++)
+        {
+            odWheelPositions[i] += (odWheelXAxis[i]?
+                xVelocity + turnRadians*odWheelYOffsets[i]: yVelocity - turnRadians*odWheelXOffsets[i])*dt;
+        }
+    }   //step
+
+}   //class SimDriveModel
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+
+import teamcode.hardware.BulkReadCache;
+
+/**
+ * This class simulates the transaction behavior of a REV hub so that the cost of hardware reads and writes can be
+ * measured off-robot. Each transaction burns a configurable amount of time. Reads of bulk data (encoder position
+ * and velocity) cost one transaction per hub until the bulk cache is cleared when bulk caching is on, and one
+ * transaction per read when it is off. Reads of non-bulk data (e.g. motor current) and writes always cost one
+ * transaction. It is put into the simulated hardware map the same way a Lynx module is in the real one, so the
+ * BulkReadCache finds it.
+ */
+public class SimHub implements BulkReadCache.Hub, HardwareDevice
+{
+    public static final long DEF_TRANSACTION_NANOS = 2000000L;  // ~2 msec per Lynx command on USB.
+
+    private final String instanceName;
+    private boolean bulkCachingEnabled = false;
+    private boolean bulkDataValid = false;
+    private long transactionNanos = DEF_TRANSACTION_NANOS;
+    private long bulkReadCount = 0;
+    private long readCount = 0;
+    private long writeCount = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     */
+    public SimHub(String instanceName)
+    {
+        this.instanceName = instanceName;
+    }   //SimHub
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method enables/disables bulk caching. This corresponds to the MANUAL and OFF modes of a Lynx module.
+     *
+     * @param enabled specifies true to enable bulk caching, false to disable.
+     */
+    public synchronized void setBulkCachingEnabled(boolean enabled)
+    {
+        bulkCachingEnabled = enabled;
+        bulkDataValid = false;
+    }   //setBulkCachingEnabled
+
+    /**
+     * This method sets the simulated time cost of one hub transaction. Set it to zero to run the simulation as
+     * fast as possible.
+     *
+     * @param nanos specifies the transaction time in nanoseconds.
+     */
+    public synchronized void setTransactionTime(long nanos)
+    {
+        transactionNanos = nanos;
+    }   //setTransactionTime
+
+    /**
+     * This method is called by a simulated device before it returns a value that is part of the bulk data.
+     */
+    public synchronized void bulkDataRead()
+    {
+        if (!bulkCachingEnabled)
+        {
+            readCount++;
+            doTransaction();
+        }
+        else if (!bulkDataValid)
+        {
+            bulkReadCount++;
+            bulkDataValid = true;
+            doTransaction();
+        }
+    }   //bulkDataRead
+
+    /**
+     * This method is called by a simulated device before it returns a value that is not part of the bulk data.
+     */
+    public synchronized void registerRead()
+    {
+        readCount++;
+        doTransaction();
+    }   //registerRead
+
+    /**
+     * This method is called by a simulated device when it sends a command to the hub.
+     */
+    public synchronized void registerWrite()
+    {
+        writeCount++;
+        doTransaction();
+    }   //registerWrite
+
+    /**
+     * This method returns the number of bulk read transactions so far.
+     *
+     * @return number of bulk read transactions.
+     */
+    public synchronized long getBulkReadCount()
+    {
+        return bulkReadCount;
+    }   //getBulkReadCount
+
+    /**
+     * This method returns the number of individual read transactions so far.
+     *
+     * @return number of read transactions.
+     */
+    public synchronized long getReadCount()
+    {
+        return readCount;
+    }   //getReadCount
+
+    /**
+     * This method returns the number of write transactions so far.
+     *
+     * @return number of write transactions.
+     */
+    public synchronized long getWriteCount()
+    {
+        return writeCount;
+    }   //getWriteCount
+
+    /**
+     * This method returns the total number of transactions so far.
+     *
+     * @return total number of transactions.
+     */
+    public synchronized long getTransactionCount()
+    {
+        return bulkReadCount + readCount + writeCount;
+    }   //getTransactionCount
+
+    /**
+     * This method resets all transaction counters.
+     */
+    public synchronized void resetCounters()
+    {
+        bulkReadCount = 0;
+        readCount = 0;
+        writeCount = 0;
+    }   //resetCounters
+
+    //
+    // Implements HardwareDevice interface.
+    //
+
+    @Override
+    public Manufacturer getManufacturer()
+    {
+        return Manufacturer.Other;
+    }   //getManufacturer
+
+    @Override
+    public String getDeviceName()
+    {
+        return "Simulated Hub";
+    }   //getDeviceName
+
+    @Override
+    public String getConnectionInfo()
+    {
+        return instanceName;
+    }   //getConnectionInfo
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }   //getVersion
+
+    @Override
+    public synchronized void resetDeviceConfigurationForOpMode()
+    {
+        bulkDataValid = false;
+    }   //resetDeviceConfigurationForOpMode
+
+    @Override
+    public void close()
+    {
+    }   //close
+
+    //
+    // Implements BulkReadCache.Hub interface.
+    //
+
+    /**
+     * This method returns the hub name.
+     *
+     * @return hub name.
+     */
+    @Override
+    public String getName()
+    {
+        return instanceName;
+    }   //getName
+
+    /**
+     * This method invalidates the bulk data so that the next bulk data read will cost a transaction.
+     */
+    @Override
+    public synchronized void clearBulkCache()
+    {
+        bulkDataValid = false;
+    }   //clearBulkCache
+
+    /**
+     * This method burns the transaction time. It busy waits because sleep is too coarse for sub-millisecond
+     * transaction times.
+     */
+    private void doTransaction()
+    {
+        if (transactionNanos > 0)
+        {
+            long expiredTime = System.nanoTime() + transactionNanos;
+            while (System.nanoTime() < expiredTime)
+            {
+                // Busy wait.
+            }
+        }
+    }   //doTransaction
+
+}   //class SimHub
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+/**
+ * This class implements a simulated IMU that reports the heading of a SimDriveModel. It follows the FTC SDK
+ * convention of yaw being counter-clockwise positive in the range of -180 to 180 degrees, so the FtcImu wrapper does
+ * the same conversion it does on the real robot. An optional constant drift rate can be added. Every read is charged
+ * to the SimHub because the IMU is an I2C device and not part of the bulk data.
+ */
+public class SimImu implements IMU
+{
+    private final String instanceName;
+    private final SimHub hub;
+    private final SimDriveModel driveModel;
+    private double yawOffset = 0.0;
+    private double driftRate = 0.0;
+    private long startNanos = System.nanoTime();
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param hub specifies the hub the IMU is connected to.
+     * @param driveModel specifies the drive model that provides the true heading.
+     */
+    public SimImu(String instanceName, SimHub hub, SimDriveModel driveModel)
+    {
+        this.instanceName = instanceName;
+        this.hub = hub;
+        this.driveModel = driveModel;
+    }   //SimImu
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the gyro drift rate.
+     *
+     * @param driftRate specifies the drift rate in degrees per second, counter-clockwise positive.
+     */
+    public synchronized void setDriftRate(double driftRate)
+    {
+        this.driftRate = driftRate;
+    }   //setDriftRate
+
+    /**
+     * This method returns the simulated yaw.
+     *
+     * @return yaw in degrees, counter-clockwise positive, in the range of -180 to 180.
+     */
+    private double getYawDegrees()
+    {
+        double drift = driftRate*(System.nanoTime() - startNanos)/1.0e9;
+        return AngleUnit.normalizeDegrees(-(driveModel.getHeading() - yawOffset) + drift);
+    }   //getYawDegrees
+
+    //
+    // Implements HardwareDevice interface.
+    //
+
+    @Override
+    public Manufacturer getManufacturer()
+    {
+        return Manufacturer.Other;
+    }   //getManufacturer
+
+    @Override
+    public String getDeviceName()
+    {
+        return "Simulated IMU";
+    }   //getDeviceName
+
+    @Override
+    public String getConnectionInfo()
+    {
+        return hub.toString();
+    }   //getConnectionInfo
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }   //getVersion
+
+    @Override
+    public void resetDeviceConfigurationForOpMode()
+    {
+    }   //resetDeviceConfigurationForOpMode
+
+    @Override
+    public void close()
+    {
+    }   //close
+
+    //
+    // Implements IMU interface.
+    //
+
+    @Override
+    public boolean initialize(Parameters parameters)
+    {
+        hub.registerWrite();
+        return true;
+    }   //initialize
+
+    @Override
+    public synchronized void resetYaw()
+    {
+        hub.registerWrite();
+        yawOffset = driveModel.getHeading();
+        startNanos = System.nanoTime();
+    }   //resetYaw
+
+    @Override
+    public synchronized YawPitchRollAngles getRobotYawPitchRollAngles()
+    {
+        hub.registerRead();
+        return new YawPitchRollAngles(AngleUnit.DEGREES, getYawDegrees(), 0.0, 0.0, System.nanoTime());
+    }   //getRobotYawPitchRollAngles
+
+    @Override
+    public synchronized Orientation getRobotOrientation(AxesReference reference, AxesOrder order, AngleUnit angleUnit)
+    {
+        hub.registerRead();
+        return new Orientation(
+            AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES, (float) getYawDegrees(), 0.0f, 0.0f,
+            System.nanoTime()).toAxesReference(reference).toAxesOrder(order).toAngleUnit(angleUnit);
+    }   //getRobotOrientation
+
+    @Override
+    public synchronized Quaternion getRobotOrientationAsQuaternion()
+    {
+        hub.registerRead();
+        double halfYaw = Math.toRadians(getYawDegrees())/2.0;
+        return new Quaternion((float) Math.cos(halfYaw), 0.0f, 0.0f, (float) Math.sin(halfYaw), System.nanoTime());
+    }   //getRobotOrientationAsQuaternion
+
+    @Override
+    public synchronized AngularVelocity getRobotAngularVelocity(AngleUnit angleUnit)
+    {
+        hub.registerRead();
+        float zRate = (float) angleUnit.fromDegrees(-driveModel.getTurnRate() + driftRate);
+        return new AngularVelocity(angleUnit, 0.0f, 0.0f, zRate, System.nanoTime());
+    }   //getRobotAngularVelocity
+
+}   //class SimImu
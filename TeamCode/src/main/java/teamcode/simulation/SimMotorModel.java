@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+/**
+ * This class implements a first order model of a DC motor with an encoder. The motor accelerates toward the
+ * steady state velocity of the applied power with the given time constant. Current draw is proportional to the
+ * difference between the applied power and the back EMF. It has no dependency on the FTC SDK so it can be stepped
+ * on a plain JVM.
+ */
+public class SimMotorModel
+{
+    private final double maxVelocity;
+    private final double timeConstant;
+    private final double stallCurrent;
+    private double power = 0.0;
+    private double velocity = 0.0;
+    private double position = 0.0;
+    private double load = 0.0;
+    private boolean brakeMode = true;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param maxVelocity specifies the free speed of the motor in encoder counts per second.
+     * @param timeConstant specifies the mechanical time constant in seconds (time to reach 63% of the target
+     *        velocity).
+     * @param stallCurrent specifies the stall current in amps.
+     */
+    public SimMotorModel(double maxVelocity, double timeConstant, double stallCurrent)
+    {
+        this.maxVelocity = maxVelocity;
+        this.timeConstant = timeConstant;
+        this.stallCurrent = stallCurrent;
+    }   //SimMotorModel
+
+    /**
+     * This method sets the motor power.
+     *
+     * @param power specifies the motor power in the range of -1.0 to 1.0.
+     */
+    public synchronized void setPower(double power)
+    {
+        this.power = Math.max(-1.0, Math.min(1.0, power));
+    }   //setPower
+
+    /**
+     * This method returns the motor power.
+     *
+     * @return motor power.
+     */
+    public synchronized double getPower()
+    {
+        return power;
+    }   //getPower
+
+    /**
+     * This method sets the zero power behavior of the motor.
+     *
+     * @param enabled specifies true for brake mode, false for float mode.
+     */
+    public synchronized void setBrakeModeEnabled(boolean enabled)
+    {
+        brakeMode = enabled;
+    }   //setBrakeModeEnabled
+
+    /**
+     * This method sets a constant opposing load as a fraction of the stall torque, for example gravity on an
+     * elevator.
+     *
+     * @param load specifies the load in the range of -1.0 to 1.0.
+     */
+    public synchronized void setLoad(double load)
+    {
+        this.load = load;
+    }   //setLoad
+
+    /**
+     * This method returns the encoder position.
+     *
+     * @return encoder position in counts.
+     */
+    public synchronized double getPosition()
+    {
+        return position;
+    }   //getPosition
+
+    /**
+     * This method sets the encoder position, typically to reset the encoder.
+     *
+     * @param position specifies the encoder position in counts.
+     */
+    public synchronized void setPosition(double position)
+    {
+        this.position = position;
+    }   //setPosition
+
+    /**
+     * This method returns the encoder velocity.
+     *
+     * @return encoder velocity in counts per second.
+     */
+    public synchronized double getVelocity()
+    {
+        return velocity;
+    }   //getVelocity
+
+    /**
+     * This method returns the free speed of the motor.
+     *
+     * @return free speed in counts per second.
+     */
+    public double getMaxVelocity()
+    {
+        return maxVelocity;
+    }   //getMaxVelocity
+
+    /**
+     * This method returns the current draw of the motor.
+     *
+     * @return current in amps.
+     */
+    public synchronized double getCurrent()
+    {
+        return Math.abs(power - velocity/maxVelocity)*stallCurrent;
+    }   //getCurrent
+
+    /**
+     * This method advances the model by the specified time step.
+     *
+     * @param dt specifies the time step in seconds.
+     */
+    public synchronized void step(double dt)
+    {
+        double targetVelocity;
+        double tau;
+
+        if (power == 0.0 && !brakeMode)
+        {
+            // Coasting, only friction slows it down.
+            targetVelocity = 0.0;
+            tau = timeConstant*4.0;
+        }
+        else
+        {
+            targetVelocity = (power - load)*maxVelocity;
+            tau = timeConstant;
+        }
+
+        double alpha = dt >= tau? 1.0: dt/tau;
+        double prevVelocity = velocity;
+
+        velocity += (targetVelocity - velocity)*alpha;
+        position += (prevVelocity + velocity)/2.0*dt;
+    }   //step
+
+}   //class SimMotorModel
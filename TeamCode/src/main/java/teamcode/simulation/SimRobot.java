@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.util.ArrayList;
+
+import TrcCommonLib.trclib.TrcRobot;
+import TrcFtcLib.ftclib.FtcOpMode;
+import teamcode.Robot;
+import teamcode.RobotParams;
+
+/**
+ * This class implements a headless simulation of the robot. It builds a hardware map of simulated devices under the
+ * same names as the robot configuration, installs it in a stand-in op mode and then lets the real Robot class be
+ * constructed on top of it. All code above the FTC SDK device interfaces (FtcLib wrappers, drive base, odometry,
+ * PID control, subsystems) runs unmodified, so autonomous routines and subsystem logic can be exercised and
+ * benchmarked on a desktop JVM or in CI. The caller runs the robot loop and calls step() to advance the physics.
+ *
+ * Note that TrcLib uses wall clock time, so the physics should be stepped by the real elapsed time of the loop.
+ * Vision is not simulated, the vision preferences must be off.
+ */
+public class SimRobot
+{
+    private static final String moduleName = SimRobot.class.getSimpleName();
+
+    /**
+     * This class contains the physical parameters of the simulated robot.
+     */
+    public static class Params
+    {
+        public double driveWheelDiameter = 4.0;                 // inches
+        public double driveMotorMaxVelocity = RobotParams.DRIVE_MOTOR_MAX_VELOCITY_PPS;
+        public double driveMotorEncoderPpr = RobotParams.GOBILDA_5203_312_ENCODER_PPR;
+        public double driveMotorTimeConstant = 0.1;             // seconds
+        public double driveMotorStallCurrent = 9.2;             // amps
+        public double mechanismMotorMaxVelocity = RobotParams.GOBILDA_5203_312_MAX_VELOCITY_PPS;
+        public double mechanismMotorTimeConstant = 0.05;        // seconds
+        public double mechanismMotorStallCurrent = 9.2;         // amps
+        public double elevatorGravityLoad = 0.1;                // fraction of stall torque
+        public double launcherMaxVelocity = RobotParams.LAUNCHER_MAX_VEL/60.0/RobotParams.LAUNCHER_REV_PER_COUNT;
+        public double servoFullTravelTime = 0.5;                // seconds
+        public double steerServoMaxDegreesPerSecond = 450.0;
+        public double steerServoTimeConstant = 0.02;            // seconds
+        public double steerEncoderRevsPerRev = -2.0;            // FtcAnalogEncoder scale is 180 deg per rev.
+        public long transactionNanos = SimHub.DEF_TRANSACTION_NANOS;
+    }   //class Params
+
+    /**
+     * This class is a stand-in op mode that owns the simulated hardware map. Robot and all FtcLib wrappers get the
+     * hardware map from FtcOpMode.getInstance().
+     */
+    private static class SimOpMode extends FtcOpMode
+    {
+        @Override
+        public void robotInit()
+        {
+        }   //robotInit
+
+    }   //class SimOpMode
+
+    public final Params params;
+    public final SimHub controlHub;
+    public final SimHub expansionHub;
+    public final HardwareMap hardwareMap;
+    public final SimDriveModel driveModel;
+    public final SimDcMotor[] driveMotors = new SimDcMotor[4];
+    public final SimCRServoModel[] steerModels = new SimCRServoModel[4];
+    private final double[] driveWheelSigns = new double[4];
+    private final double driveInchesPerCount;
+    private final ArrayList<SimDcMotor> motors = new ArrayList<>();
+    private final ArrayList<SimServo> servos = new ArrayList<>();
+    private final ArrayList<SimCRServoModel> crServoModels = new ArrayList<>();
+    private final double[] moduleSpeeds = new double[4];
+    private final double[] moduleAngles = new double[4];
+    private final SimOpMode opMode;
+
+    /**
+     * Constructor: Create an instance of the object. It creates the simulated devices for the drive base and the
+     * subsystems enabled in RobotParams.Preferences.
+     *
+     * @param params specifies the physical parameters, null to use defaults.
+     */
+    public SimRobot(Params params)
+    {
+        this.params = params != null? params: new Params();
+        controlHub = new SimHub(RobotParams.HWNAME_CONTROL_HUB);
+        expansionHub = new SimHub(RobotParams.HWNAME_EXPANSION_HUB);
+        controlHub.setTransactionTime(this.params.transactionNanos);
+        expansionHub.setTransactionTime(this.params.transactionNanos);
+        hardwareMap = new HardwareMap(null, null);
+        hardwareMap.put(controlHub.toString(), controlHub);
+        hardwareMap.put(expansionHub.toString(), expansionHub);
+        driveModel = new SimDriveModel(RobotParams.DRIVE_BASE_WIDTH, RobotParams.DRIVE_BASE_LENGTH);
+        driveInchesPerCount = Math.PI*this.params.driveWheelDiameter/this.params.driveMotorEncoderPpr;
+
+        hardwareMap.put(RobotParams.HWNAME_IMU, new SimImu(RobotParams.HWNAME_IMU, controlHub, driveModel));
+        createDriveBase();
+        if (RobotParams.Preferences.useSubsystems)
+        {
+            createSubsystems();
+        }
+
+        opMode = new SimOpMode();
+        opMode.hardwareMap = hardwareMap;
+    }   //SimRobot
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method creates the simulated drive base devices according to the robot type.
+     */
+    private void createDriveBase()
+    {
+        String[] motorNames = {
+            RobotParams.HWNAME_LFDRIVE_MOTOR, RobotParams.HWNAME_RFDRIVE_MOTOR,
+            RobotParams.HWNAME_LBDRIVE_MOTOR, RobotParams.HWNAME_RBDRIVE_MOTOR};
+        boolean[] motorInverted = {
+            RobotParams.LFDRIVE_INVERTED, RobotParams.RFDRIVE_INVERTED,
+            RobotParams.LBDRIVE_INVERTED, RobotParams.RBDRIVE_INVERTED};
+
+        for (int i = 0; i < driveMotors.length; i++)
+        {
+            driveMotors[i] = addMotor(
+                motorNames[i], controlHub, i,
+                new SimMotorModel(
+                    params.driveMotorMaxVelocity, params.driveMotorTimeConstant, params.driveMotorStallCurrent));
+            // Wheel forward is the logical forward of the motor.
+            driveWheelSigns[i] = motorInverted[i]? -1.0: 1.0;
+        }
+
+        if (RobotParams.Preferences.robotType == RobotParams.RobotType.SwerveRobot)
+        {
+            String[] servoNames = {
+                RobotParams.HWNAME_LFSTEER_SERVO, RobotParams.HWNAME_RFSTEER_SERVO,
+                RobotParams.HWNAME_LBSTEER_SERVO, RobotParams.HWNAME_RBSTEER_SERVO};
+            String[] encoderNames = {
+                RobotParams.HWNAME_LFSTEER_ENCODER, RobotParams.HWNAME_RFSTEER_ENCODER,
+                RobotParams.HWNAME_LBSTEER_ENCODER, RobotParams.HWNAME_RBSTEER_ENCODER};
+            double[] zeroPositions = {
+                RobotParams.LFSTEER_ZERO_POS, RobotParams.RFSTEER_ZERO_POS,
+                RobotParams.LBSTEER_ZERO_POS, RobotParams.RBSTEER_ZERO_POS};
+
+            for (int i = 0; i < steerModels.length; i++)
+            {
+                steerModels[i] = new SimCRServoModel(
+                    params.steerServoMaxDegreesPerSecond, params.steerServoTimeConstant);
+                crServoModels.add(steerModels[i]);
+                hardwareMap.put(servoNames[i], new SimCRServo(servoNames[i], expansionHub, i, steerModels[i]));
+                if (RobotParams.Preferences.swerveDualServoSteering)
+                {
+                    // The slave servo drives the same module.
+                    String slaveName = servoNames[i] + ".slave";
+                    hardwareMap.put(slaveName, new SimCRServo(slaveName, expansionHub, i + 4, steerModels[i]));
+                }
+                hardwareMap.put(
+                    encoderNames[i],
+                    new SimAnalogEncoder(
+                        encoderNames[i], controlHub, steerModels[i], params.steerEncoderRevsPerRev,
+                        zeroPositions[i]).createAnalogInput());
+            }
+        }
+
+        if (RobotParams.Preferences.useExternalOdometry)
+        {
+            // Odometry pods are plugged into the encoder ports of the drive motors, same as the real robot.
+            int xIndex, yLeftIndex, yRightIndex;
+
+            if (RobotParams.Preferences.robotType == RobotParams.RobotType.SwerveRobot)
+            {
+                xIndex = SimDriveModel.INDEX_RIGHT_BACK;
+                yLeftIndex = SimDriveModel.INDEX_LEFT_FRONT;
+                yRightIndex = SimDriveModel.INDEX_RIGHT_FRONT;
+            }
+            else
+            {
+                xIndex = SimDriveModel.INDEX_RIGHT_FRONT;
+                yLeftIndex = SimDriveModel.INDEX_LEFT_BACK;
+                yRightIndex = SimDriveModel.INDEX_RIGHT_BACK;
+            }
+
+            setOdometryWheel(
+                xIndex, driveModel.addOdometryWheel(
+                    RobotParams.X_ODWHEEL_X_OFFSET, RobotParams.X_ODWHEEL_Y_OFFSET, true));
+            setOdometryWheel(
+                yLeftIndex, driveModel.addOdometryWheel(
+                    RobotParams.YLEFT_ODWHEEL_X_OFFSET, RobotParams.YLEFT_ODWHEEL_Y_OFFSET, false));
+            setOdometryWheel(
+                yRightIndex, driveModel.addOdometryWheel(
+                    RobotParams.YRIGHT_ODWHEEL_X_OFFSET, RobotParams.YRIGHT_ODWHEEL_Y_OFFSET, false));
+        }
+    }   //createDriveBase
+
+    /**
+     * This method redirects the encoder port of a drive motor to an odometry pod.
+     *
+     * @param motorIndex specifies the index of the drive motor.
+     * @param odWheelIndex specifies the index of the odometry pod in the drive model.
+     */
+    private void setOdometryWheel(int motorIndex, int odWheelIndex)
+    {
+        final double sign = driveWheelSigns[motorIndex];
+
+        driveMotors[motorIndex].setEncoderSource(
+            () -> sign*driveModel.getOdometryWheelPosition(odWheelIndex)/RobotParams.ODWHEEL_INCHES_PER_COUNT);
+    }   //setOdometryWheel
+
+    /**
+     * This method creates the simulated devices of the subsystems enabled in RobotParams.Preferences.
+     */
+    private void createSubsystems()
+    {
+        if (RobotParams.Preferences.useIntake)
+        {
+            addServo(RobotParams.HWNAME_INTAKE + ".leftServo", expansionHub, 0);
+            addServo(RobotParams.HWNAME_INTAKE + ".rightServo", expansionHub, 2);
+        }
+
+        if (RobotParams.Preferences.useLauncher)
+        {
+            addMotor(
+                RobotParams.HWNAME_LAUNCHER + ".motor", expansionHub, 0,
+                new SimMotorModel(
+                    params.launcherMaxVelocity, params.mechanismMotorTimeConstant,
+                    params.mechanismMotorStallCurrent));
+            addServo(RobotParams.HWNAME_LAUNCHER + ".servo", expansionHub, 4);
+        }
+
+        if (RobotParams.Preferences.useHang)
+        {
+            addMotor(
+                RobotParams.HWNAME_HANG + ".motor", expansionHub, 3,
+                new SimMotorModel(
+                    params.mechanismMotorMaxVelocity, params.mechanismMotorTimeConstant,
+                    params.mechanismMotorStallCurrent));
+        }
+
+        if (RobotParams.Preferences.useElevator)
+        {
+            SimMotorModel elevatorModel = new SimMotorModel(
+                params.mechanismMotorMaxVelocity, params.mechanismMotorTimeConstant,
+                params.mechanismMotorStallCurrent);
+            // Gravity pulls the elevator down. The motor is inverted, so down is positive in motor direction.
+            elevatorModel.setLoad(RobotParams.ELEVATOR_MOTOR_INVERTED? -params.elevatorGravityLoad:
+                                                                      params.elevatorGravityLoad);
+            addMotor(RobotParams.HWNAME_ELEVATOR + ".motor", expansionHub, 1, elevatorModel);
+        }
+
+        if (RobotParams.Preferences.useWrist)
+        {
+            addServo(RobotParams.HWNAME_WRIST + ".upDown", expansionHub, 1);
+            addServo(RobotParams.HWNAME_WRIST + ".leftRight", expansionHub, 3);
+        }
+    }   //createSubsystems
+
+    /**
+     * This method creates a simulated motor and puts it into the hardware map.
+     *
+     * @param name specifies the hardware name.
+     * @param hub specifies the hub the motor is connected to.
+     * @param port specifies the motor port.
+     * @param model specifies the motor model.
+     * @return simulated motor.
+     */
+    private SimDcMotor addMotor(String name, SimHub hub, int port, SimMotorModel model)
+    {
+        SimDcMotor motor = new SimDcMotor(name, hub, port, model);
+
+        hardwareMap.put(name, motor);
+        motors.add(motor);
+
+        return motor;
+    }   //addMotor
+
+    /**
+     * This method creates a simulated servo and puts it into the hardware map.
+     *
+     * @param name specifies the hardware name.
+     * @param hub specifies the hub the servo is connected to.
+     * @param port specifies the servo port.
+     */
+    private void addServo(String name, SimHub hub, int port)
+    {
+        SimServo servo = new SimServo(name, hub, port, new SimServoModel(params.servoFullTravelTime));
+
+        hardwareMap.put(name, servo);
+        servos.add(servo);
+    }   //addServo
+
+    /**
+     * This method creates the Robot object on top of the simulated hardware.
+     *
+     * @param runMode specifies the robot run mode.
+     * @return created robot.
+     */
+    public Robot createRobot(TrcRobot.RunMode runMode)
+    {
+        return new Robot(runMode);
+    }   //createRobot
+
+    /**
+     * This method returns the simulated device with the specified hardware name.
+     *
+     * @param name specifies the hardware name.
+     * @return simulated device, null if not found.
+     */
+    public HardwareDevice getDevice(String name)
+    {
+        return hardwareMap.tryGet(HardwareDevice.class, name);
+    }   //getDevice
+
+    /**
+     * This method sets the transaction time of both hubs.
+     *
+     * @param nanos specifies the transaction time in nanoseconds, zero to run as fast as possible.
+     */
+    public void setTransactionTime(long nanos)
+    {
+        controlHub.setTransactionTime(nanos);
+        expansionHub.setTransactionTime(nanos);
+    }   //setTransactionTime
+
+    /**
+     * This method returns the total number of hub transactions so far.
+     *
+     * @return total number of transactions of both hubs.
+     */
+    public long getTransactionCount()
+    {
+        return controlHub.getTransactionCount() + expansionHub.getTransactionCount();
+    }   //getTransactionCount
+
+    /**
+     * This method advances the physics of all simulated devices by the specified time step.
+     *
+     * @param dt specifies the time step in seconds.
+     */
+    public void step(double dt)
+    {
+        for (SimDcMotor motor: motors)
+        {
+            motor.update();
+            motor.getModel().step(dt);
+        }
+
+        for (SimServo servo: servos)
+        {
+            servo.getModel().step(dt);
+        }
+
+        for (SimCRServoModel model: crServoModels)
+        {
+            model.step(dt);
+        }
+
+        for (int i = 0; i < driveMotors.length; i++)
+        {
+            moduleSpeeds[i] = driveWheelSigns[i]*driveMotors[i].getModel().getVelocity()*driveInchesPerCount;
+        }
+
+        if (RobotParams.Preferences.robotType == RobotParams.RobotType.SwerveRobot)
+        {
+            for (int i = 0; i < steerModels.length; i++)
+            {
+                moduleAngles[i] = steerModels[i].getAngle()*params.steerEncoderRevsPerRev/2.0;
+            }
+            driveModel.setSwerveModuleStates(moduleSpeeds, moduleAngles);
+        }
+        else
+        {
+            driveModel.setMecanumWheelVelocities(
+                moduleSpeeds[SimDriveModel.INDEX_LEFT_FRONT], moduleSpeeds[SimDriveModel.INDEX_RIGHT_FRONT],
+                moduleSpeeds[SimDriveModel.INDEX_LEFT_BACK], moduleSpeeds[SimDriveModel.INDEX_RIGHT_BACK]);
+        }
+        driveModel.step(dt);
+    }   //step
+
+}   //class SimRobot
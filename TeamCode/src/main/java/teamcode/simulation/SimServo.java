@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.ServoController;
+
+/**
+ * This class implements a simulated Servo backed by a SimServoModel. It is put into the hardware map in place of a
+ * real servo so that the FtcServo wrapper and everything above it run unmodified. Every command is charged to the
+ * SimHub.
+ */
+public class SimServo implements Servo
+{
+    private final String instanceName;
+    private final SimHub hub;
+    private final int portNumber;
+    private final SimServoModel model;
+    private Direction direction = Direction.FORWARD;
+    private double minPosition = MIN_POSITION;
+    private double maxPosition = MAX_POSITION;
+    private double position = 0.0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param hub specifies the hub the servo is connected to.
+     * @param portNumber specifies the servo port number on the hub.
+     * @param model specifies the servo model.
+     */
+    public SimServo(String instanceName, SimHub hub, int portNumber, SimServoModel model)
+    {
+        this.instanceName = instanceName;
+        this.hub = hub;
+        this.portNumber = portNumber;
+        this.model = model;
+    }   //SimServo
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method returns the servo model.
+     *
+     * @return servo model.
+     */
+    public SimServoModel getModel()
+    {
+        return model;
+    }   //getModel
+
+    //
+    // Implements HardwareDevice interface.
+    //
+
+    @Override
+    public Manufacturer getManufacturer()
+    {
+        return Manufacturer.Other;
+    }   //getManufacturer
+
+    @Override
+    public String getDeviceName()
+    {
+        return "Simulated Servo";
+    }   //getDeviceName
+
+    @Override
+    public String getConnectionInfo()
+    {
+        return hub + ":" + portNumber;
+    }   //getConnectionInfo
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }   //getVersion
+
+    @Override
+    public synchronized void resetDeviceConfigurationForOpMode()
+    {
+        direction = Direction.FORWARD;
+        minPosition = MIN_POSITION;
+        maxPosition = MAX_POSITION;
+    }   //resetDeviceConfigurationForOpMode
+
+    @Override
+    public void close()
+    {
+    }   //close
+
+    //
+    // Implements Servo interface.
+    //
+
+    @Override
+    public ServoController getController()
+    {
+        return null;
+    }   //getController
+
+    @Override
+    public int getPortNumber()
+    {
+        return portNumber;
+    }   //getPortNumber
+
+    @Override
+    public synchronized void setDirection(Direction direction)
+    {
+        this.direction = direction;
+    }   //setDirection
+
+    @Override
+    public synchronized Direction getDirection()
+    {
+        return direction;
+    }   //getDirection
+
+    @Override
+    public synchronized void setPosition(double position)
+    {
+        hub.registerWrite();
+        this.position = Math.max(MIN_POSITION, Math.min(MAX_POSITION, position));
+
+        double scaled = minPosition + this.position*(maxPosition - minPosition);
+        model.setTargetPosition(direction == Direction.REVERSE? MAX_POSITION - scaled: scaled);
+    }   //setPosition
+
+    @Override
+    public synchronized double getPosition()
+    {
+        // The hub does not read back servo position, it returns the last commanded position.
+        return position;
+    }   //getPosition
+
+    @Override
+    public synchronized void scaleRange(double min, double max)
+    {
+        if (min < MIN_POSITION || max > MAX_POSITION || min >= max)
+        {
+            throw new IllegalArgumentException("Invalid servo range [" + min + ", " + max + "].");
+        }
+        minPosition = min;
+        maxPosition = max;
+    }   //scaleRange
+
+}   //class SimServo
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.simulation;
+
+/**
+ * This class implements a model of a position servo. The servo moves toward the commanded position at a constant
+ * slew rate. It has no dependency on the FTC SDK so it can be stepped on a plain JVM.
+ */
+public class SimServoModel
+{
+    private final double fullTravelTime;
+    private double targetPosition = 0.0;
+    private double position = 0.0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param fullTravelTime specifies the time in seconds for the servo to travel from 0.0 to 1.0.
+     */
+    public SimServoModel(double fullTravelTime)
+    {
+        this.fullTravelTime = fullTravelTime;
+    }   //SimServoModel
+
+    /**
+     * This method sets the commanded servo position.
+     *
+     * @param position specifies the commanded position in the range of 0.0 to 1.0.
+     */
+    public synchronized void setTargetPosition(double position)
+    {
+        targetPosition = Math.max(0.0, Math.min(1.0, position));
+    }   //setTargetPosition
+
+    /**
+     * This method returns the commanded servo position.
+     *
+     * @return commanded position.
+     */
+    public synchronized double getTargetPosition()
+    {
+        return targetPosition;
+    }   //getTargetPosition
+
+    /**
+     * This method returns the actual servo position.
+     *
+     * @return actual position.
+     */
+    public synchronized double getPosition()
+    {
+        return position;
+    }   //getPosition
+
+    /**
+     * This method advances the model by the specified time step.
+     *
+     * @param dt specifies the time step in seconds.
+     */
+    public synchronized void step(double dt)
+    {
+        double maxDelta = fullTravelTime > 0.0? dt/fullTravelTime: 1.0;
+        double delta = targetPosition - position;
+
+        position += Math.max(-maxDelta, Math.min(maxDelta, delta));
+    }   //step
+
+}   //class SimServoModel
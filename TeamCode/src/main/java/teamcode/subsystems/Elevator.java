@@ -36,7 +36,13 @@ public class Elevator {
         return elevator;
     }
 
-    private double getPowerComp(double power)
+    /**
+     * This method is called by the elevator PID controller to compute the gravity compensation power.
+     *
+     * @param power specifies the current PID output power.
+     * @return power compensation.
+     */
+    public double getPowerComp(double power)
     {
         double elevatorPos = elevator.getPosition();
         double distanceToTop = Math.abs(RobotParams.ELEVATOR_MAX - elevatorPos);
@@ -5,6 +5,7 @@ import TrcCommonLib.trclib.TrcEvent;
 import TrcFtcLib.ftclib.FtcServo;
 import teamcode.Robot;
 import teamcode.RobotParams;
+import teamcode.hardware.WriteCache;
 
 public class Intake {
     private final TrcDbgTrace tracer;
@@ -12,6 +13,9 @@ public class Intake {
     private final Robot robot;
     private final FtcServo intakeServoLeft;
     private final FtcServo intakeServoRight;
+    // Claw positions are written through the cache so repeated bumper events do not resend them.
+    private final WriteCache.ServoOutput leftOutput;
+    private final WriteCache.ServoOutput rightOutput;
     private boolean leftClawClosed;
     private boolean rightClawClosed;
 
@@ -23,6 +27,10 @@ public class Intake {
         intakeServoLeft.setInverted(RobotParams.INTAKE_SERVO_LEFT_INVERTED);
         intakeServoRight = new FtcServo(instanceName + ".rightServo");
         intakeServoRight.setInverted(RobotParams.INTAKE_SERVO_RIGHT_INVERTED);
+        leftOutput = robot.writeCache.addServo(
+            instanceName + ".leftServo", intakeServoLeft, RobotParams.WRITE_CACHE_SERVO_EPSILON);
+        rightOutput = robot.writeCache.addServo(
+            instanceName + ".rightServo", intakeServoRight, RobotParams.WRITE_CACHE_SERVO_EPSILON);
         closeClaw(null);
     }
 
@@ -39,41 +47,41 @@ public class Intake {
 
     public void openClaw(TrcEvent event)
     {
-        intakeServoLeft.setPosition(RobotParams.INTAKE_SERVO_LEFT_MAX_POS, event, RobotParams.INTAKE_SERVO_TIME);
-        intakeServoRight.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MAX_POS);
+        leftOutput.setPosition(RobotParams.INTAKE_SERVO_LEFT_MAX_POS, event, RobotParams.INTAKE_SERVO_TIME);
+        rightOutput.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MAX_POS);
         leftClawClosed = false;
         rightClawClosed = false;
     }
 
     public void closeClaw(TrcEvent event)
     {
-        intakeServoLeft.setPosition(RobotParams.INTAKE_SERVO_LEFT_MIN_POS, event, RobotParams.INTAKE_SERVO_TIME);
-        intakeServoRight.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MIN_POS);
+        leftOutput.setPosition(RobotParams.INTAKE_SERVO_LEFT_MIN_POS, event, RobotParams.INTAKE_SERVO_TIME);
+        rightOutput.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MIN_POS);
         leftClawClosed = true;
         rightClawClosed = true;
     }
 
     public void openLeft(TrcEvent event)
     {
-        intakeServoLeft.setPosition(RobotParams.INTAKE_SERVO_LEFT_MAX_POS, event, RobotParams.INTAKE_SERVO_TIME);
+        leftOutput.setPosition(RobotParams.INTAKE_SERVO_LEFT_MAX_POS, event, RobotParams.INTAKE_SERVO_TIME);
         leftClawClosed = false;
     }
 
     public void closeLeft(TrcEvent event) {
-        intakeServoLeft.setPosition(RobotParams.INTAKE_SERVO_LEFT_MIN_POS, event, RobotParams.INTAKE_SERVO_TIME);
+        leftOutput.setPosition(RobotParams.INTAKE_SERVO_LEFT_MIN_POS, event, RobotParams.INTAKE_SERVO_TIME);
         leftClawClosed = true;
     }
 
     public void openRight(TrcEvent event)
     {
-        intakeServoRight.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MAX_POS, event, RobotParams.INTAKE_SERVO_TIME);
+        rightOutput.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MAX_POS, event, RobotParams.INTAKE_SERVO_TIME);
         rightClawClosed = false;
 
     }
 
     public void closeRight(TrcEvent event)
     {
-        intakeServoRight.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MIN_POS, event, RobotParams.INTAKE_SERVO_TIME);
+        rightOutput.setPosition(RobotParams.INTAKE_SERVO_RIGHT_MIN_POS, event, RobotParams.INTAKE_SERVO_TIME);
         rightClawClosed = true;
     }
 }
\ No newline at end of file
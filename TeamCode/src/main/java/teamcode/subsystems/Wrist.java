@@ -6,6 +6,7 @@ import TrcCommonLib.trclib.TrcServo;
 import TrcFtcLib.ftclib.FtcServo;
 import teamcode.Robot;
 import teamcode.RobotParams;
+import teamcode.hardware.WriteCache;
 
 public class Wrist {
     private final TrcDbgTrace tracer;
@@ -13,6 +14,9 @@ public class Wrist {
     private final Robot robot;
     private final FtcServo wristUpDown;
     private final FtcServo wristLeftRight;
+    // TeleOp sets the wrist every loop, write through the cache so repeated positions are dropped.
+    private final WriteCache.ServoOutput upDownOutput;
+    private final WriteCache.ServoOutput leftRightOutput;
     private String upDownPosition;
     private boolean leftRightisFlat;
 
@@ -25,6 +29,10 @@ public class Wrist {
         wristUpDown.setInverted(RobotParams.WRIST_UPDWON_INVERTED);
         wristLeftRight = new FtcServo(instanceName + ".leftRight");
         wristLeftRight.setInverted(RobotParams.WRIST_LEFTRIGHT_INVERTED);
+        upDownOutput = robot.writeCache.addServo(
+            instanceName + ".upDown", wristUpDown, RobotParams.WRITE_CACHE_SERVO_EPSILON);
+        leftRightOutput = robot.writeCache.addServo(
+            instanceName + ".leftRight", wristLeftRight, RobotParams.WRITE_CACHE_SERVO_EPSILON);
         wristGround(null);
     }
 
@@ -40,23 +48,23 @@ public class Wrist {
 
     public void wristGround(TrcEvent event)
     {
-        wristUpDown.setPosition(RobotParams.WRIST_UPDWON_GROUNDED, event, RobotParams.WRIST_SERVO_TIME);
-        wristLeftRight.setPosition(RobotParams.WRIST_LEFTRIGHT_FLAT);
+        upDownOutput.setPosition(RobotParams.WRIST_UPDWON_GROUNDED, event, RobotParams.WRIST_SERVO_TIME);
+        leftRightOutput.setPosition(RobotParams.WRIST_LEFTRIGHT_FLAT);
         leftRightisFlat = true;
         upDownPosition = "GROUNDED";
     }
     public void wristUpSquare(TrcEvent event)
     {
-        wristLeftRight.setPosition(RobotParams.WRIST_LEFTRIGHT_FLAT);
-        wristUpDown.setPosition(RobotParams.WRIST_UPDWON_BOARD, event, RobotParams.WRIST_SERVO_TIME);
+        leftRightOutput.setPosition(RobotParams.WRIST_LEFTRIGHT_FLAT);
+        upDownOutput.setPosition(RobotParams.WRIST_UPDWON_BOARD, event, RobotParams.WRIST_SERVO_TIME);
         leftRightisFlat = true;
         upDownPosition = "BOARD";
     }
 
     public void wristUpInverted(TrcEvent event)
     {
-        wristLeftRight.setPosition(RobotParams.WRIST_LEFTRIGHT_INVERT);
-        wristUpDown.setPosition(RobotParams.WRIST_UPDWON_BOARDINVERT, event, RobotParams.WRIST_SERVO_TIME);
+        leftRightOutput.setPosition(RobotParams.WRIST_LEFTRIGHT_INVERT);
+        upDownOutput.setPosition(RobotParams.WRIST_UPDWON_BOARDINVERT, event, RobotParams.WRIST_SERVO_TIME);
         leftRightisFlat = false;
         upDownPosition = "BOARDINVERT";
     }
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.telemetry;
+
+import java.util.Formatter;
+
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+import TrcFtcLib.ftclib.FtcDashboard;
+
+/**
+ * This class implements a change driven layer on top of FtcDashboard. It remembers the text last sent on each line
+ * and only sends a line to the Driver Station when its text is different. A line that changes faster than its
+ * minimum interval is coalesced: the latest text is held as pending and sent by the flush task once the interval
+ * has elapsed, so intermediate values are dropped but the final value always gets through. Counters of sent and
+ * skipped lines are kept so that the savings can be measured. displayPrintf compares the format and the arguments
+ * with the ones last formatted on the line first, so an unchanged line is not even formatted.
+ *
+ * This layer must own the lines it manages. If other code writes to the same line directly through FtcDashboard,
+ * the remembered text is stale and a change may be missed.
+ */
+public class ChangeDrivenDashboard
+{
+    private static final String moduleName = ChangeDrivenDashboard.class.getSimpleName();
+    public static final int DEF_NUM_LINES = 16;
+
+    /**
+     * This class keeps the state of one dashboard line.
+     */
+    private static class Line
+    {
+        final StringBuilder pendingText = new StringBuilder();
+        final StringBuilder formatBuffer = new StringBuilder();
+        final Formatter formatter = new Formatter(formatBuffer);
+        // Format and arguments last formatted on the line, lastFormat is null if the line was set otherwise.
+        String lastFormat = null;
+        Object[] lastArgs = new Object[8];
+        int lastArgCount = 0;
+        double minInterval;
+        String sentText = null;
+        double sentTime = 0.0;
+        boolean pending = false;
+
+        Line(double minInterval)
+        {
+            this.minInterval = minInterval;
+        }   //Line
+
+    }   //class Line
+
+    private final FtcDashboard dashboard;
+    private final Line[] lines;
+    private final TrcTaskMgr.TaskObject flushTaskObj;
+    private long sentCount = 0;
+    private long skippedCount = 0;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param dashboard specifies the dashboard to send the lines to.
+     * @param numLines specifies the number of lines managed, lines beyond are passed through unchanged.
+     * @param minInterval specifies the default minimum interval in seconds between two sends of the same line.
+     */
+    public ChangeDrivenDashboard(FtcDashboard dashboard, int numLines, double minInterval)
+    {
+        this.dashboard = dashboard;
+        lines = new Line[numLines];
+        for (int i = 0; i < numLines; i++)
+        {
+            lines[i] = new Line(minInterval);
+        }
+        flushTaskObj = TrcTaskMgr.createTask(moduleName + ".flushTask", this::flushTask);
+    }   //ChangeDrivenDashboard
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param dashboard specifies the dashboard to send the lines to.
+     * @param minInterval specifies the default minimum interval in seconds between two sends of the same line.
+     */
+    public ChangeDrivenDashboard(FtcDashboard dashboard, double minInterval)
+    {
+        this(dashboard, DEF_NUM_LINES, minInterval);
+    }   //ChangeDrivenDashboard
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method enables/disables the flush task that sends pending lines at the end of every loop.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            flushTaskObj.registerTask(TrcTaskMgr.TaskType.POST_PERIODIC_TASK);
+        }
+        else if (!enabled && this.enabled)
+        {
+            flushTaskObj.unregisterTask();
+            flush(true);
+        }
+        this.enabled = enabled;
+    }   //setEnabled
+
+    /**
+     * This method sets the minimum interval between two sends of the specified line.
+     *
+     * @param lineNum specifies the line number.
+     * @param minInterval specifies the minimum interval in seconds, 0.0 to send every change.
+     */
+    public synchronized void setLineInterval(int lineNum, double minInterval)
+    {
+        lines[lineNum].minInterval = minInterval;
+    }   //setLineInterval
+
+    /**
+     * This method displays a line of text if it is different from what was last sent on the line.
+     *
+     * @param lineNum specifies the line number.
+     * @param text specifies the text.
+     */
+    public synchronized void displayText(int lineNum, CharSequence text)
+    {
+        if (lineNum < 0 || lineNum >= lines.length)
+        {
+            dashboard.displayText(lineNum, text.toString());
+            sentCount++;
+        }
+        else
+        {
+            lines[lineNum].lastFormat = null;
+            updateLine(lineNum, lines[lineNum], text);
+        }
+    }   //displayText
+
+    /**
+     * This method formats a line of text and displays it if it is different from what was last sent on the line.
+     * If the format and the arguments are the same as the ones last formatted on the line, the line is not formatted
+     * again. Only immutable arguments (boxed primitives, String and enum) are compared, a line with another argument
+     * is always formatted. The line is formatted into a per-line buffer, so only a changed line creates a new String.
+     *
+     * @param lineNum specifies the line number.
+     * @param format specifies the format string.
+     * @param args specifies variable number of arguments for the format string.
+     */
+    public synchronized void displayPrintf(int lineNum, String format, Object... args)
+    {
+        if (lineNum < 0 || lineNum >= lines.length)
+        {
+            dashboard.displayPrintf(lineNum, format, args);
+            sentCount++;
+        }
+        else
+        {
+            Line line = lines[lineNum];
+
+            if (sameArgs(line, format, args))
+            {
+                // Same text as last time, which is already sent or pending.
+                skippedCount++;
+            }
+            else
+            {
+                if (args.length > line.lastArgs.length)
+                {
+                    line.lastArgs = new Object[args.length];
+                }
+                System.arraycopy(args, 0, line.lastArgs, 0, args.length);
+                line.lastArgCount = args.length;
+                line.lastFormat = format;
+                line.formatBuffer.setLength(0);
+                line.formatter.format(format, args);
+                updateLine(lineNum, line, line.formatBuffer);
+            }
+        }
+    }   //displayPrintf
+
+    /**
+     * This method checks if the format and the arguments are the same as the ones last formatted on the line.
+     *
+     * @param line specifies the line.
+     * @param format specifies the format string.
+     * @param args specifies the arguments for the format string.
+     * @return true if the same, false if different or an argument cannot be compared.
+     */
+    private static boolean sameArgs(Line line, String format, Object[] args)
+    {
+        if (!format.equals(line.lastFormat) || args.length != line.lastArgCount)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < args.length; i++)
+        {
+            Object arg = args[i];
+
+            if (arg == null? line.lastArgs[i] != null: !isImmutable(arg) || !arg.equals(line.lastArgs[i]))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }   //sameArgs
+
+    /**
+     * This method checks if an argument is immutable, so that equal arguments always format to the same text.
+     *
+     * @param arg specifies the argument.
+     * @return true if immutable, false otherwise.
+     */
+    private static boolean isImmutable(Object arg)
+    {
+        return arg instanceof Double || arg instanceof Integer || arg instanceof Long || arg instanceof Float ||
+               arg instanceof Boolean || arg instanceof Character || arg instanceof Short || arg instanceof Byte ||
+               arg instanceof String || arg instanceof Enum;
+    }   //isImmutable
+
+    /**
+     * This method displays a managed line if the text is different from what was last sent on it.
+     *
+     * @param lineNum specifies the line number.
+     * @param line specifies the line.
+     * @param text specifies the text.
+     */
+    private void updateLine(int lineNum, Line line, CharSequence text)
+    {
+        if (line.sentText != null && line.sentText.contentEquals(text))
+        {
+            // Unchanged, or changed back before the pending text was sent.
+            line.pending = false;
+            skippedCount++;
+        }
+        else
+        {
+            double currTime = TrcTimer.getCurrentTime();
+
+            if (currTime - line.sentTime >= line.minInterval)
+            {
+                sendLine(lineNum, line, text.toString(), currTime);
+            }
+            else
+            {
+                line.pendingText.setLength(0);
+                line.pendingText.append(text);
+                line.pending = true;
+                skippedCount++;
+            }
+        }
+    }   //updateLine
+
+    /**
+     * This method clears the dashboard and forgets the text of all lines.
+     */
+    public synchronized void clearDisplay()
+    {
+        dashboard.clearDisplay();
+        for (Line line: lines)
+        {
+            line.sentText = null;
+            line.lastFormat = null;
+            line.pending = false;
+        }
+    }   //clearDisplay
+
+    /**
+     * This method sends the pending lines whose minimum interval has elapsed.
+     *
+     * @param force specifies true to send all pending lines regardless of their interval.
+     */
+    public synchronized void flush(boolean force)
+    {
+        double currTime = TrcTimer.getCurrentTime();
+
+        for (int i = 0; i < lines.length; i++)
+        {
+            Line line = lines[i];
+
+            if (line.pending && (force || currTime - line.sentTime >= line.minInterval))
+            {
+                sendLine(i, line, line.pendingText.toString(), currTime);
+            }
+        }
+    }   //flush
+
+    /**
+     * This method returns the number of lines sent to the dashboard.
+     *
+     * @return number of lines sent.
+     */
+    public synchronized long getSentCount()
+    {
+        return sentCount;
+    }   //getSentCount
+
+    /**
+     * This method returns the number of line updates skipped because the text did not change or was coalesced.
+     *
+     * @return number of lines skipped.
+     */
+    public synchronized long getSkippedCount()
+    {
+        return skippedCount;
+    }   //getSkippedCount
+
+    /**
+     * This method resets the sent and skipped counters.
+     */
+    public synchronized void resetCounters()
+    {
+        sentCount = 0;
+        skippedCount = 0;
+    }   //resetCounters
+
+    /**
+     * This method sends the text of a line to the dashboard.
+     *
+     * @param lineNum specifies the line number.
+     * @param line specifies the line state.
+     * @param text specifies the text to send.
+     * @param currTime specifies the current time.
+     */
+    private void sendLine(int lineNum, Line line, String text, double currTime)
+    {
+        dashboard.displayText(lineNum, text);
+        line.sentText = text;
+        line.sentTime = currTime;
+        line.pending = false;
+        sentCount++;
+    }   //sendLine
+
+    /**
+     * This method is called at the end of every loop to send the pending lines.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private void flushTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        flush(false);
+    }   //flushTask
+
+}   //class ChangeDrivenDashboard
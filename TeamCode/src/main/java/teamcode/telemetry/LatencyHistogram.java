@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.telemetry;
+
+/**
+ * This class implements a latency histogram with HDR style log-linear buckets. Each power of two range of values
+ * is split into 16 equal sub-buckets, so a percentile is reported to within 1/16 (about 6%) of its true value
+ * regardless of the magnitude, while the whole range from 1 usec to minutes fits in a few hundred counters. The
+ * counters are preallocated, so recording a value never allocates. The maximum is tracked exactly.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts;
+    private final long highestValue;
+    private long totalCount = 0;
+    private long totalValue = 0;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param highestValue specifies the highest value to be bucketed, larger values are counted in the last bucket
+     *        but still reported exactly as the maximum.
+     */
+    public LatencyHistogram(long highestValue)
+    {
+        this.highestValue = highestValue;
+        counts = new long[getBucketIndex(highestValue) + 1];
+    }   //LatencyHistogram
+
+    /**
+     * This method returns the bucket index of a value.
+     *
+     * @param value specifies the value.
+     * @return bucket index.
+     */
+    private static int getBucketIndex(long value)
+    {
+        int index;
+
+        if (value < SUB_BUCKETS)
+        {
+            // The first 16 values have a bucket each.
+            index = (int) Math.max(value, 0);
+        }
+        else
+        {
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+            index = SUB_BUCKETS + (msb - SUB_BUCKET_BITS)*SUB_BUCKETS + subBucket;
+        }
+
+        return index;
+    }   //getBucketIndex
+
+    /**
+     * This method returns the highest value that falls into a bucket.
+     *
+     * @param index specifies the bucket index.
+     * @return highest value of the bucket.
+     */
+    private static long getBucketUpperBound(int index)
+    {
+        long upperBound;
+
+        if (index < SUB_BUCKETS)
+        {
+            upperBound = index;
+        }
+        else
+        {
+            int msb = (index - SUB_BUCKETS)/SUB_BUCKETS + SUB_BUCKET_BITS;
+            int subBucket = (index - SUB_BUCKETS)%SUB_BUCKETS;
+            long lowerBound = (1L << msb) + ((long) subBucket << (msb - SUB_BUCKET_BITS));
+
+            upperBound = lowerBound + (1L << (msb - SUB_BUCKET_BITS)) - 1;
+        }
+
+        return upperBound;
+    }   //getBucketUpperBound
+
+    /**
+     * This method records a value.
+     *
+     * @param value specifies the value.
+     */
+    public void recordValue(long value)
+    {
+        counts[getBucketIndex(Math.min(value, highestValue))]++;
+        totalCount++;
+        totalValue += value;
+        if (value < minValue)
+        {
+            minValue = value;
+        }
+
+        if (value > maxValue)
+        {
+            maxValue = value;
+        }
+    }   //recordValue
+
+    /**
+     * This method clears all recorded values.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        totalValue = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }   //reset
+
+    /**
+     * This method returns the number of recorded values.
+     *
+     * @return number of values.
+     */
+    public long getCount()
+    {
+        return totalCount;
+    }   //getCount
+
+    /**
+     * This method returns the mean of the recorded values.
+     *
+     * @return mean value, 0.0 if nothing is recorded.
+     */
+    public double getMean()
+    {
+        return totalCount > 0? (double) totalValue/totalCount: 0.0;
+    }   //getMean
+
+    /**
+     * This method returns the smallest recorded value.
+     *
+     * @return minimum value, 0 if nothing is recorded.
+     */
+    public long getMin()
+    {
+        return totalCount > 0? minValue: 0;
+    }   //getMin
+
+    /**
+     * This method returns the largest recorded value.
+     *
+     * @return maximum value, 0 if nothing is recorded.
+     */
+    public long getMax()
+    {
+        return maxValue;
+    }   //getMax
+
+    /**
+     * This method returns the value at the specified percentile. The value is the upper bound of the bucket the
+     * percentile falls in, capped at the recorded maximum.
+     *
+     * @param percentile specifies the percentile (0.0 to 100.0).
+     * @return value at the percentile, 0 if nothing is recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+        long value = 0;
+
+        if (totalCount > 0)
+        {
+            long targetCount = Math.max(1, (long) Math.ceil(percentile/100.0*totalCount));
+            long count = 0;
+
+            for (int i = 0; i < counts.length; i++)
+            {
+                count += counts[i];
+                if (count >= targetCount)
+                {
+                    // Values above highestValue are all in the last bucket, only the maximum is known.
+                    value = i == counts.length - 1? maxValue: Math.min(getBucketUpperBound(i), maxValue);
+                    break;
+                }
+            }
+        }
+
+        return value;
+    }   //getPercentile
+
+}   //class LatencyHistogram
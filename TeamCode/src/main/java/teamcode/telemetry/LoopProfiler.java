@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.telemetry;
+
+import java.util.ArrayList;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+
+/**
+ * This class implements a loop profiler. The loop code is split into named phases and each phase is bracketed by
+ * start and stop calls that record its latency into a LatencyHistogram. Two phases are built in: LOOP is the
+ * period of the loop measured from the start of one periodic call to the next, and TASKS is the time between the
+ * end of one periodic call and the start of the next, which is spent running the TrcTaskMgr post and pre periodic
+ * tasks. Recording never allocates. The p50/p95/p99/max of every phase can be written to the trace log or the
+ * dashboard to see which phase blows the loop budget.
+ */
+public class LoopProfiler
+{
+    private static final String moduleName = LoopProfiler.class.getSimpleName();
+    public static final int PHASE_LOOP = 0;
+    public static final int PHASE_TASKS = 1;
+    private static final long HIGHEST_MICROS = 10000000L;      // 10 seconds
+
+    private final String instanceName;
+    private final ArrayList<String> phaseNames = new ArrayList<>();
+    private final ArrayList<LatencyHistogram> histograms = new ArrayList<>();
+    private final ArrayList<StatusLine> summaryLines = new ArrayList<>();
+    private long[] startNanos = new long[0];
+    private long loopStartNanos = 0;
+    private long loopEndNanos = 0;
+    private boolean enabled = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     */
+    public LoopProfiler(String instanceName)
+    {
+        this.instanceName = instanceName;
+        addPhase("Loop");
+        addPhase("Tasks");
+    }   //LoopProfiler
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method adds a phase. Phases should be added at init time, not in the loop.
+     *
+     * @param name specifies the phase name.
+     * @return phase handle for start and stop.
+     */
+    public int addPhase(String name)
+    {
+        phaseNames.add(name);
+        histograms.add(new LatencyHistogram(HIGHEST_MICROS));
+        summaryLines.add(new StatusLine());
+        startNanos = new long[phaseNames.size()];
+
+        return phaseNames.size() - 1;
+    }   //addPhase
+
+    /**
+     * This method returns the number of phases including the built-in ones.
+     *
+     * @return number of phases.
+     */
+    public int getNumPhases()
+    {
+        return phaseNames.size();
+    }   //getNumPhases
+
+    /**
+     * This method returns the name of a phase.
+     *
+     * @param phase specifies the phase handle.
+     * @return phase name.
+     */
+    public String getPhaseName(int phase)
+    {
+        return phaseNames.get(phase);
+    }   //getPhaseName
+
+    /**
+     * This method returns the latency histogram of a phase in microseconds.
+     *
+     * @param phase specifies the phase handle.
+     * @return latency histogram.
+     */
+    public LatencyHistogram getHistogram(int phase)
+    {
+        return histograms.get(phase);
+    }   //getHistogram
+
+    /**
+     * This method enables/disables profiling. Start and stop calls are ignored while disabled.
+     *
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        loopStartNanos = 0;
+        loopEndNanos = 0;
+    }   //setEnabled
+
+    /**
+     * This method checks if profiling is enabled.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method clears all histograms.
+     */
+    public void reset()
+    {
+        for (LatencyHistogram histogram: histograms)
+        {
+            histogram.reset();
+        }
+        loopStartNanos = 0;
+        loopEndNanos = 0;
+    }   //reset
+
+    /**
+     * This method is called at the start of the periodic method. It records the LOOP and TASKS phases.
+     */
+    public void beginLoop()
+    {
+        if (enabled)
+        {
+            long currNanos = System.nanoTime();
+
+            if (loopStartNanos != 0)
+            {
+                histograms.get(PHASE_LOOP).recordValue((currNanos - loopStartNanos)/1000);
+            }
+
+            if (loopEndNanos != 0)
+            {
+                histograms.get(PHASE_TASKS).recordValue((currNanos - loopEndNanos)/1000);
+            }
+            loopStartNanos = currNanos;
+        }
+    }   //beginLoop
+
+    /**
+     * This method is called at the end of the periodic method.
+     */
+    public void endLoop()
+    {
+        if (enabled)
+        {
+            loopEndNanos = System.nanoTime();
+        }
+    }   //endLoop
+
+    /**
+     * This method marks the start of a phase.
+     *
+     * @param phase specifies the phase handle.
+     */
+    public void start(int phase)
+    {
+        if (enabled)
+        {
+            startNanos[phase] = System.nanoTime();
+        }
+    }   //start
+
+    /**
+     * This method marks the end of a phase and records its latency.
+     *
+     * @param phase specifies the phase handle.
+     */
+    public void stop(int phase)
+    {
+        if (enabled && startNanos[phase] != 0)
+        {
+            histograms.get(phase).recordValue((System.nanoTime() - startNanos[phase])/1000);
+            startNanos[phase] = 0;
+        }
+    }   //stop
+
+    /**
+     * This method renders the summary of a phase into its summary line.
+     *
+     * @param phase specifies the phase handle.
+     * @return summary line.
+     */
+    public StatusLine getSummary(int phase)
+    {
+        LatencyHistogram histogram = histograms.get(phase);
+
+        return summaryLines.get(phase).clear()
+            .append(phaseNames.get(phase))
+            .append(": n=").append(histogram.getCount())
+            .append(" p50=").append(histogram.getPercentile(50.0)/1000.0, 2)
+            .append(" p95=").append(histogram.getPercentile(95.0)/1000.0, 2)
+            .append(" p99=").append(histogram.getPercentile(99.0)/1000.0, 2)
+            .append(" max=").append(histogram.getMax()/1000.0, 2)
+            .append(" ms");
+    }   //getSummary
+
+    /**
+     * This method writes the summary of all phases to the trace log.
+     *
+     * @param tracer specifies the tracer to write to.
+     */
+    public void traceSummary(TrcDbgTrace tracer)
+    {
+        for (int i = 0; i < phaseNames.size(); i++)
+        {
+            tracer.traceInfo(moduleName, instanceName + "." + getSummary(i).getText());
+        }
+    }   //traceSummary
+
+    /**
+     * This method displays the summary of all phases on the dashboard, one phase per line.
+     *
+     * @param display specifies the dashboard.
+     * @param firstLine specifies the first line number.
+     * @return the line number after the last phase.
+     */
+    public int displaySummary(ChangeDrivenDashboard display, int firstLine)
+    {
+        for (int i = 0; i < phaseNames.size(); i++)
+        {
+            display.displayText(firstLine + i, getSummary(i));
+        }
+
+        return firstLine + phaseNames.size();
+    }   //displaySummary
+
+}   //class LoopProfiler
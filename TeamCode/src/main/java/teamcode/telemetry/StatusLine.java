@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.telemetry;
+
+/**
+ * This class implements a reusable text buffer for one line of status display. A line is rendered by clearing it
+ * and appending labels and values. Numbers are formatted with a fixed number of decimal places directly into the
+ * buffer, so rendering does not allocate. The text of the line is only turned into a String when its content
+ * changed since the last time it was requested, so a line that renders the same values every update does not
+ * allocate either.
+ */
+public class StatusLine implements CharSequence
+{
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+
+    private final StringBuilder buffer;
+    private final char[] digits = new char[20];
+    private String text = "";
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param capacity specifies the initial capacity of the line buffer in characters.
+     */
+    public StatusLine(int capacity)
+    {
+        buffer = new StringBuilder(capacity);
+    }   //StatusLine
+
+    /**
+     * Constructor: Create an instance of the object.
+     */
+    public StatusLine()
+    {
+        this(80);
+    }   //StatusLine
+
+    /**
+     * This method clears the line buffer so that the line can be rendered again.
+     *
+     * @return this line for chaining.
+     */
+    public StatusLine clear()
+    {
+        buffer.setLength(0);
+        return this;
+    }   //clear
+
+    /**
+     * This method appends a string.
+     *
+     * @param s specifies the string to append.
+     * @return this line for chaining.
+     */
+    public StatusLine append(String s)
+    {
+        buffer.append(s);
+        return this;
+    }   //append
+
+    /**
+     * This method appends a character.
+     *
+     * @param c specifies the character to append.
+     * @return this line for chaining.
+     */
+    public StatusLine append(char c)
+    {
+        buffer.append(c);
+        return this;
+    }   //append
+
+    /**
+     * This method appends a boolean as "true" or "false".
+     *
+     * @param b specifies the boolean to append.
+     * @return this line for chaining.
+     */
+    public StatusLine append(boolean b)
+    {
+        buffer.append(b? "true": "false");
+        return this;
+    }   //append
+
+    /**
+     * This method appends the name of an enum constant.
+     *
+     * @param e specifies the enum constant to append, can be null.
+     * @return this line for chaining.
+     */
+    public StatusLine append(Enum<?> e)
+    {
+        buffer.append(e != null? e.name(): "null");
+        return this;
+    }   //append
+
+    /**
+     * This method appends an integer.
+     *
+     * @param value specifies the integer to append.
+     * @return this line for chaining.
+     */
+    public StatusLine append(long value)
+    {
+        if (value < 0)
+        {
+            buffer.append('-');
+            if (value == Long.MIN_VALUE)
+            {
+                // Cannot be negated, it is never a status value anyway.
+                buffer.append("9223372036854775808");
+                return this;
+            }
+            value = -value;
+        }
+        appendDigits(value, 0);
+
+        return this;
+    }   //append
+
+    /**
+     * This method appends a number with a fixed number of decimal places, rounded half up, the same as "%.nf".
+     *
+     * @param value specifies the number to append.
+     * @param decimals specifies the number of decimal places (0 to 9).
+     * @return this line for chaining.
+     */
+    public StatusLine append(double value, int decimals)
+    {
+        if (Double.isNaN(value))
+        {
+            buffer.append("NaN");
+        }
+        else if (Double.isInfinite(value))
+        {
+            buffer.append(value > 0.0? "Infinity": "-Infinity");
+        }
+        else
+        {
+            long scale = POWERS_OF_TEN[decimals];
+            double magnitude = Math.abs(value);
+
+            if (magnitude*scale >= Long.MAX_VALUE)
+            {
+                // Too big for fixed point, nothing on the dashboard should ever be this big.
+                buffer.append(value);
+            }
+            else
+            {
+                long scaled = Math.round(magnitude*scale);
+
+                if (value < 0.0 && scaled != 0)
+                {
+                    buffer.append('-');
+                }
+                appendDigits(scaled/scale, 0);
+                if (decimals > 0)
+                {
+                    buffer.append('.');
+                    appendDigits(scaled%scale, decimals);
+                }
+            }
+        }
+
+        return this;
+    }   //append
+
+    /**
+     * This method appends a pose in the same format as TrcPose2D.toString.
+     *
+     * @param x specifies the x position.
+     * @param y specifies the y position.
+     * @param angle specifies the angle.
+     * @param decimals specifies the number of decimal places.
+     * @return this line for chaining.
+     */
+    public StatusLine appendPose(double x, double y, double angle, int decimals)
+    {
+        buffer.append("(x=");
+        append(x, decimals);
+        buffer.append(",y=");
+        append(y, decimals);
+        buffer.append(",angle=");
+        append(angle, decimals);
+        buffer.append(')');
+
+        return this;
+    }   //appendPose
+
+    /**
+     * This method appends the digits of a non-negative number, zero padded to the minimum width.
+     *
+     * @param value specifies the non-negative number.
+     * @param minWidth specifies the minimum number of digits.
+     */
+    private void appendDigits(long value, int minWidth)
+    {
+        int pos = digits.length;
+
+        do
+        {
+            digits[--pos] = (char) ('0' + (value%10));
+            value /= 10;
+        } while (value != 0);
+
+        while (digits.length - pos < minWidth)
+        {
+            digits[--pos] = '0';
+        }
+
+        buffer.append(digits, pos, digits.length - pos);
+    }   //appendDigits
+
+    /**
+     * This method returns the text of the line. A new String is only created if the content changed since the last
+     * call.
+     *
+     * @return text of the line.
+     */
+    public String getText()
+    {
+        if (!text.contentEquals(buffer))
+        {
+            text = buffer.toString();
+        }
+
+        return text;
+    }   //getText
+
+    //
+    // Implements CharSequence interface.
+    //
+
+    @Override
+    public int length()
+    {
+        return buffer.length();
+    }   //length
+
+    @Override
+    public char charAt(int index)
+    {
+        return buffer.charAt(index);
+    }   //charAt
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return buffer.subSequence(start, end);
+    }   //subSequence
+
+    @Override
+    public String toString()
+    {
+        return getText();
+    }   //toString
+
+}   //class StatusLine
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.trajectory;
+
+import TrcCommonLib.trclib.TrcPath;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcWaypoint;
+
+/**
+ * This class contains a time parameterized trajectory sampled at a fixed time step into primitive arrays. Sample k
+ * is the state of the robot at time k*timeStep, so a follower finds the sample of the current time by a division
+ * instead of searching the path. A trajectory is immutable once generated.
+ */
+public class Trajectory
+{
+    private final double timeStep;
+    private final double[] x, y, heading, velocity, acceleration, curvature, distance;
+
+    /**
+     * Constructor: Create an instance of the object. The arrays are owned by the trajectory after this call.
+     *
+     * @param timeStep specifies the time between samples in seconds.
+     * @param x specifies the field x positions in inches.
+     * @param y specifies the field y positions in inches.
+     * @param heading specifies the robot headings in degrees.
+     * @param velocity specifies the path velocities in inches per second.
+     * @param acceleration specifies the path accelerations in inches per second squared.
+     * @param curvature specifies the path curvatures in 1/inch.
+     * @param distance specifies the distances travelled along the path in inches.
+     */
+    public Trajectory(
+        double timeStep, double[] x, double[] y, double[] heading, double[] velocity, double[] acceleration,
+        double[] curvature, double[] distance)
+    {
+        this.timeStep = timeStep;
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.velocity = velocity;
+        this.acceleration = acceleration;
+        this.curvature = curvature;
+        this.distance = distance;
+    }   //Trajectory
+
+    /**
+     * This method returns the trajectory info.
+     *
+     * @return trajectory info string.
+     */
+    @Override
+    public String toString()
+    {
+        return "Trajectory(samples=" + x.length + ", duration=" + getDuration() + ", length=" + getLength() + ")";
+    }   //toString
+
+    /**
+     * This method returns the time between samples.
+     *
+     * @return time step in seconds.
+     */
+    public double getTimeStep()
+    {
+        return timeStep;
+    }   //getTimeStep
+
+    /**
+     * This method returns the number of samples.
+     *
+     * @return number of samples.
+     */
+    public int getNumSamples()
+    {
+        return x.length;
+    }   //getNumSamples
+
+    /**
+     * This method returns the time it takes to run the trajectory.
+     *
+     * @return duration in seconds.
+     */
+    public double getDuration()
+    {
+        return (x.length - 1)*timeStep;
+    }   //getDuration
+
+    /**
+     * This method returns the length of the path.
+     *
+     * @return path length in inches.
+     */
+    public double getLength()
+    {
+        return distance[distance.length - 1];
+    }   //getLength
+
+    /**
+     * This method returns the index of the sample at the given time, clamped to the trajectory.
+     *
+     * @param time specifies the time since the start of the trajectory in seconds.
+     * @return sample index.
+     */
+    public int getIndex(double time)
+    {
+        int index = (int) (time/timeStep + 0.5);
+        return index < 0? 0: Math.min(index, x.length - 1);
+    }   //getIndex
+
+    /**
+     * This method returns the field x position of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return x position in inches.
+     */
+    public double getX(int index)
+    {
+        return x[index];
+    }   //getX
+
+    /**
+     * This method returns the field y position of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return y position in inches.
+     */
+    public double getY(int index)
+    {
+        return y[index];
+    }   //getY
+
+    /**
+     * This method returns the robot heading of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return heading in degrees.
+     */
+    public double getHeading(int index)
+    {
+        return heading[index];
+    }   //getHeading
+
+    /**
+     * This method returns the path velocity of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return velocity in inches per second.
+     */
+    public double getVelocity(int index)
+    {
+        return velocity[index];
+    }   //getVelocity
+
+    /**
+     * This method returns the path acceleration of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return acceleration in inches per second squared.
+     */
+    public double getAcceleration(int index)
+    {
+        return acceleration[index];
+    }   //getAcceleration
+
+    /**
+     * This method returns the path curvature of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return curvature in 1/inch, positive when turning counter-clockwise.
+     */
+    public double getCurvature(int index)
+    {
+        return curvature[index];
+    }   //getCurvature
+
+    /**
+     * This method returns the distance travelled along the path of the specified sample.
+     *
+     * @param index specifies the sample index.
+     * @return distance in inches.
+     */
+    public double getDistance(int index)
+    {
+        return distance[index];
+    }   //getDistance
+
+    /**
+     * This method returns the sample arrays in the order TrajectoryCache stores them. The arrays are not copied and
+     * must not be modified.
+     *
+     * @return sample arrays.
+     */
+    double[][] getSampleArrays()
+    {
+        return new double[][] {x, y, heading, velocity, acceleration, curvature, distance};
+    }   //getSampleArrays
+
+    /**
+     * This method converts the trajectory to a path for TrcPurePursuitDrive. Every stride'th sample becomes a
+     * waypoint carrying the precomputed velocity and acceleration, so the drive does not have to profile the path
+     * itself.
+     *
+     * @param stride specifies the number of samples between waypoints, 1 for every sample.
+     * @return path for TrcPurePursuitDrive.
+     */
+    public TrcPath toPath(int stride)
+    {
+        int numWaypoints = (x.length - 1)/stride + 1;
+        boolean hasEnd = (x.length - 1)%stride == 0;
+        TrcWaypoint[] waypoints = new TrcWaypoint[hasEnd? numWaypoints: numWaypoints + 1];
+
+        for (int i = 0; i < numWaypoints; i++)
+        {
+            waypoints[i] = toWaypoint(i*stride, stride*timeStep);
+        }
+
+        if (!hasEnd)
+        {
+            waypoints[numWaypoints] = toWaypoint(x.length - 1, timeStep);
+        }
+
+        return new TrcPath(true, waypoints);
+    }   //toPath
+
+    /**
+     * This method creates a waypoint from a sample.
+     *
+     * @param index specifies the sample index.
+     * @param waypointTimeStep specifies the time to the next waypoint.
+     * @return waypoint.
+     */
+    private TrcWaypoint toWaypoint(int index, double waypointTimeStep)
+    {
+        return new TrcWaypoint(
+            waypointTimeStep, new TrcPose2D(x[index], y[index], heading[index]), distance[index], velocity[index],
+            acceleration[index], 0.0);
+    }   //toWaypoint
+
+}   //class Trajectory
@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+
+/**
+ * This class implements a persistent cache of generated trajectories. Trajectories are stored by key in a compact
+ * binary file that is memory-mapped at init, so a cached trajectory is loaded by bulk copying its sample arrays
+ * instead of generating it again. The whole file is discarded and regenerated when the generator version or the
+ * params hash differs from the ones it was written with. The params hash should cover every constant the
+ * trajectories depend on (see computeParamsHash).
+ *
+ * File format (little endian):
+ * <pre>
+ * Header: int FILE_MAGIC, int FORMAT_VERSION, int generatorVersion, long paramsHash, int numEntries.
+ * Entry:  short keyLength, byte[] key in UTF-8, int numSamples, double timeStep,
+ *         7 x double[numSamples] (x, y, heading, velocity, acceleration, curvature, distance).
+ * </pre>
+ */
+public class TrajectoryCache
+{
+    private static final String moduleName = TrajectoryCache.class.getSimpleName();
+    public static final int FILE_MAGIC = 0x54524a43;            // "TRJC"
+    public static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4*Integer.BYTES + Long.BYTES;
+    private static final int NUM_ARRAYS = 7;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final TrcDbgTrace tracer = TrcDbgTrace.getGlobalTracer();
+    private final String filePath;
+    private final long paramsHash;
+    private final HashMap<String, Integer> fileEntries = new HashMap<>();
+    private final LinkedHashMap<String, Trajectory> trajectories = new LinkedHashMap<>();
+    private MappedByteBuffer buffer = null;
+    private boolean dirty = false;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Constructor: Create an instance of the object and map the cache file if it exists and is valid.
+     *
+     * @param filePath specifies the cache file path.
+     * @param paramsHash specifies the hash of the constants the trajectories depend on.
+     */
+    public TrajectoryCache(String filePath, long paramsHash)
+    {
+        this.filePath = filePath;
+        this.paramsHash = paramsHash;
+
+        File file = new File(filePath);
+        if (file.exists())
+        {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+            {
+                FileChannel fileChannel = raf.getChannel();
+                buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                indexEntries();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // A corrupted file can also fail with a runtime exception (e.g. BufferUnderflowException), it is
+                // discarded the same way and regenerated on the next save.
+                tracer.traceWarn(moduleName, "Discarding trajectory cache " + filePath + ": " + e);
+                buffer = null;
+                fileEntries.clear();
+                dirty = true;
+            }
+        }
+    }   //TrajectoryCache
+
+    /**
+     * This method returns the cache info.
+     *
+     * @return cache info string.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName + "(file=" + filePath + ", entries=" + (fileEntries.size() + countNewEntries()) +
+               ", hits=" + hitCount + ", misses=" + missCount + ")";
+    }   //toString
+
+    /**
+     * This method computes a hash of the generator version, the generator constraints and every static final
+     * primitive, String or enum constant of the given params class. Other constants (e.g. PID coefficient objects)
+     * are not covered. Fields are hashed in name order so the hash does not depend on reflection order.
+     *
+     * @param paramsClass specifies the class holding the robot constants (e.g. RobotParams).
+     * @param generator specifies the trajectory generator.
+     * @return params hash.
+     */
+    public static long computeParamsHash(Class<?> paramsClass, TrajectoryGenerator generator)
+    {
+        Field[] fields = paramsClass.getDeclaredFields();
+        long hash = hashString(FNV_OFFSET_BASIS, TrajectoryGenerator.VERSION + ";" + generator + ";");
+
+        Arrays.sort(fields, Comparator.comparing(Field::getName));
+        for (Field field: fields)
+        {
+            int modifiers = field.getModifiers();
+            Class<?> type = field.getType();
+
+            if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) &&
+                (type.isPrimitive() || type == String.class || type.isEnum()))
+            {
+                try
+                {
+                    hash = hashString(hash, field.getName() + "=" + field.get(null) + ";");
+                }
+                catch (IllegalAccessException e)
+                {
+                    // Not accessible, treat it as not covered.
+                }
+            }
+        }
+
+        return hash;
+    }   //computeParamsHash
+
+    /**
+     * This method returns the trajectory of the given key. If it is not in the cache, it is generated and added to
+     * the cache. The cache file is not written until save is called.
+     *
+     * @param key specifies the trajectory key, it must cover everything the trajectory depends on that is not
+     *        covered by the params hash (e.g. alliance, start position, strategy and auto choices).
+     * @param generator specifies the method to generate the trajectory on a miss.
+     * @return trajectory.
+     */
+    public synchronized Trajectory get(String key, Supplier<Trajectory> generator)
+    {
+        Trajectory trajectory = trajectories.get(key);
+
+        if (trajectory == null)
+        {
+            Integer position = fileEntries.get(key);
+
+            if (position != null)
+            {
+                trajectory = readEntry(position);
+                hitCount++;
+            }
+            else
+            {
+                trajectory = generator.get();
+                missCount++;
+                dirty = true;
+            }
+            trajectories.put(key, trajectory);
+        }
+        else
+        {
+            hitCount++;
+        }
+
+        return trajectory;
+    }   //get
+
+    /**
+     * This method writes the cache file if new trajectories were generated. The file is written to a temporary
+     * file first and then renamed, so an interrupted save never leaves a corrupted cache behind.
+     *
+     * @return true if the cache file is up to date, false if writing it failed.
+     */
+    public synchronized boolean save()
+    {
+        if (!dirty)
+        {
+            return true;
+        }
+        // Entries in the old file that are not used this time are kept.
+        for (Map.Entry<String, Integer> entry: fileEntries.entrySet())
+        {
+            if (!trajectories.containsKey(entry.getKey()))
+            {
+                trajectories.put(entry.getKey(), readEntry(entry.getValue()));
+            }
+        }
+
+        byte[][] keys = new byte[trajectories.size()][];
+        int size = HEADER_SIZE;
+        int i = 0;
+        for (Map.Entry<String, Trajectory> entry: trajectories.entrySet())
+        {
+            keys[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (keys[i].length > Short.MAX_VALUE)
+            {
+                tracer.traceErr(moduleName, "Trajectory key too long: " + entry.getKey());
+                return false;
+            }
+            size += Short.BYTES + keys[i].length + Integer.BYTES + Double.BYTES +
+                    NUM_ARRAYS*entry.getValue().getNumSamples()*Double.BYTES;
+            i++;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(FILE_MAGIC).putInt(FORMAT_VERSION).putInt(TrajectoryGenerator.VERSION).putLong(paramsHash);
+        data.putInt(trajectories.size());
+        i = 0;
+        for (Trajectory trajectory: trajectories.values())
+        {
+            data.putShort((short) keys[i].length).put(keys[i]);
+            writeTrajectory(data, trajectory);
+            i++;
+        }
+        data.flip();
+
+        File tempFile = new File(filePath + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw"))
+        {
+            FileChannel fileChannel = raf.getChannel();
+            raf.setLength(0);
+            while (data.hasRemaining())
+            {
+                fileChannel.write(data);
+            }
+            fileChannel.force(false);
+        }
+        catch (IOException e)
+        {
+            tracer.traceErr(moduleName, "Failed to write " + tempFile + ": " + e.getMessage());
+            return false;
+        }
+
+        if (!tempFile.renameTo(new File(filePath)))
+        {
+            tracer.traceErr(moduleName, "Failed to rename " + tempFile + " to " + filePath);
+            return false;
+        }
+
+        dirty = false;
+        tracer.traceInfo(moduleName, "Saved " + trajectories.size() + " trajectories to " + filePath);
+        return true;
+    }   //save
+
+    /**
+     * This method returns the number of trajectories found in the cache.
+     *
+     * @return number of cache hits.
+     */
+    public synchronized int getHitCount()
+    {
+        return hitCount;
+    }   //getHitCount
+
+    /**
+     * This method returns the number of trajectories that had to be generated.
+     *
+     * @return number of cache misses.
+     */
+    public synchronized int getMissCount()
+    {
+        return missCount;
+    }   //getMissCount
+
+    /**
+     * This method validates the file header and records the position of each entry by key. Only the entry headers
+     * are read, the sample arrays are left in the mapped file until they are asked for.
+     *
+     * @throws IOException if the file is not a valid trajectory cache.
+     */
+    private void indexEntries() throws IOException
+    {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != FILE_MAGIC)
+        {
+            throw new IOException("not a trajectory cache");
+        }
+
+        int formatVersion = buffer.getInt();
+        int generatorVersion = buffer.getInt();
+        long fileParamsHash = buffer.getLong();
+        if (formatVersion != FORMAT_VERSION || generatorVersion != TrajectoryGenerator.VERSION ||
+            fileParamsHash != paramsHash)
+        {
+            throw new IOException("stale (format=" + formatVersion + ", generator=" + generatorVersion + ")");
+        }
+
+        int numEntries = buffer.getInt();
+        for (int i = 0; i < numEntries; i++)
+        {
+            if (buffer.remaining() < Short.BYTES)
+            {
+                throw new IOException("truncated");
+            }
+
+            int keyLength = buffer.getShort();
+            if (keyLength < 0)
+            {
+                throw new IOException("bad key length " + keyLength);
+            }
+
+            if (buffer.remaining() < keyLength + Integer.BYTES + Double.BYTES)
+            {
+                throw new IOException("truncated");
+            }
+            byte[] key = new byte[keyLength];
+            buffer.get(key);
+
+            int position = buffer.position();
+            int numSamples = buffer.getInt(position);
+            // Long arithmetic so that a corrupted sample count can't overflow past the remaining check.
+            long entrySize = Integer.BYTES + Double.BYTES + (long) NUM_ARRAYS*numSamples*Double.BYTES;
+            if (numSamples <= 0 || buffer.remaining() < entrySize)
+            {
+                throw new IOException("truncated");
+            }
+            fileEntries.put(new String(key, StandardCharsets.UTF_8), position);
+            buffer.position(position + (int) entrySize);
+        }
+    }   //indexEntries
+
+    /**
+     * This method bulk copies the trajectory at the given position out of the mapped file.
+     *
+     * @param position specifies the position of the entry after its key.
+     * @return trajectory.
+     */
+    private Trajectory readEntry(int position)
+    {
+        buffer.position(position);
+        int numSamples = buffer.getInt();
+        double timeStep = buffer.getDouble();
+        double[][] arrays = new double[NUM_ARRAYS][numSamples];
+
+        for (double[] array: arrays)
+        {
+            buffer.asDoubleBuffer().get(array);
+            buffer.position(buffer.position() + numSamples*Double.BYTES);
+        }
+
+        return new Trajectory(
+            timeStep, arrays[0], arrays[1], arrays[2], arrays[3], arrays[4], arrays[5], arrays[6]);
+    }   //readEntry
+
+    /**
+     * This method writes the trajectory samples in the order of the file format.
+     *
+     * @param data specifies the buffer to write to.
+     * @param trajectory specifies the trajectory.
+     */
+    private static void writeTrajectory(ByteBuffer data, Trajectory trajectory)
+    {
+        data.putInt(trajectory.getNumSamples()).putDouble(trajectory.getTimeStep());
+        for (double[] array: trajectory.getSampleArrays())
+        {
+            data.asDoubleBuffer().put(array);
+            data.position(data.position() + array.length*Double.BYTES);
+        }
+    }   //writeTrajectory
+
+    /**
+     * This method counts the trajectories generated in this session that are not in the file.
+     *
+     * @return number of new trajectories.
+     */
+    private int countNewEntries()
+    {
+        int count = 0;
+
+        for (String key: trajectories.keySet())
+        {
+            if (!fileEntries.containsKey(key))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }   //countNewEntries
+
+    /**
+     * This method folds the string into a 64-bit FNV-1a hash.
+     *
+     * @param hash specifies the hash so far.
+     * @param s specifies the string.
+     * @return updated hash.
+     */
+    private static long hashString(long hash, String s)
+    {
+        for (byte b: s.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }   //hashString
+
+}   //class TrajectoryCache
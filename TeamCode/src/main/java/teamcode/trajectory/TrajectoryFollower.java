@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.trajectory;
+
+import TrcCommonLib.trclib.TrcDriveBase;
+import TrcCommonLib.trclib.TrcEvent;
+import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcRobot;
+import TrcCommonLib.trclib.TrcTaskMgr;
+import TrcCommonLib.trclib.TrcTimer;
+import teamcode.drivebases.FeedforwardVelocityController;
+
+/**
+ * This class implements a time indexed trajectory follower for a holonomic drive base. Every loop it looks up the
+ * trajectory sample of the elapsed time by index, adds a proportional position correction to the sample velocity
+ * and tracks the result with a feedforward plus PID velocity controller on each robot axis. Heading is held with a
+ * proportional controller. The follower is done when the trajectory time is up and the robot is within tolerance,
+ * or when the settle timeout expires after that.
+ */
+public class TrajectoryFollower
+{
+    private static final String moduleName = TrajectoryFollower.class.getSimpleName();
+
+    private final TrcDriveBase driveBase;
+    private final FeedforwardVelocityController xController;
+    private final FeedforwardVelocityController yController;
+    private final double posGain;
+    private final double turnGain;
+    private final double posTolerance;
+    private final double turnTolerance;
+    private final double settleTimeout;
+    private final TrcTaskMgr.TaskObject followTaskObj;
+    private Trajectory trajectory = null;
+    private TrcEvent completionEvent = null;
+    private double startTime = 0.0;
+    private double posError = 0.0;
+    private double turnError = 0.0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param driveBase specifies the holonomic drive base.
+     * @param xController specifies the robot x axis (strafe) velocity controller.
+     * @param yController specifies the robot y axis (forward) velocity controller.
+     * @param posGain specifies the position correction gain in inches per second per inch of error.
+     * @param turnGain specifies the heading correction gain in power per degree of error.
+     * @param posTolerance specifies the position tolerance in inches.
+     * @param turnTolerance specifies the heading tolerance in degrees.
+     * @param settleTimeout specifies the max time to settle after the trajectory time is up in seconds.
+     */
+    public TrajectoryFollower(
+        TrcDriveBase driveBase, FeedforwardVelocityController xController, FeedforwardVelocityController yController,
+        double posGain, double turnGain, double posTolerance, double turnTolerance, double settleTimeout)
+    {
+        this.driveBase = driveBase;
+        this.xController = xController;
+        this.yController = yController;
+        this.posGain = posGain;
+        this.turnGain = turnGain;
+        this.posTolerance = posTolerance;
+        this.turnTolerance = turnTolerance;
+        this.settleTimeout = settleTimeout;
+        followTaskObj = TrcTaskMgr.createTask(moduleName + ".followTask", this::followTask);
+    }   //TrajectoryFollower
+
+    /**
+     * This method returns the follower state.
+     *
+     * @return follower state string.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName + "(active=" + isActive() + ",posErr=" + posError + ",turnErr=" + turnError +
+               ",x=(" + xController + "),y=(" + yController + "))";
+    }   //toString
+
+    /**
+     * This method starts following the trajectory from its first sample. The robot should be at the start of the
+     * trajectory.
+     *
+     * @param trajectory specifies the trajectory in absolute field coordinates.
+     * @param event specifies the event to signal when done, can be null if not provided.
+     */
+    public synchronized void start(Trajectory trajectory, TrcEvent event)
+    {
+        this.trajectory = trajectory;
+        this.completionEvent = event;
+        xController.reset();
+        yController.reset();
+        startTime = TrcTimer.getCurrentTime();
+        followTaskObj.registerTask(TrcTaskMgr.TaskType.POST_PERIODIC_TASK);
+    }   //start
+
+    /**
+     * This method stops the follower and the drive base.
+     */
+    public synchronized void cancel()
+    {
+        if (trajectory != null)
+        {
+            stop();
+            if (completionEvent != null)
+            {
+                completionEvent.cancel();
+                completionEvent = null;
+            }
+        }
+    }   //cancel
+
+    /**
+     * This method checks if the follower is active.
+     *
+     * @return true if active, false otherwise.
+     */
+    public synchronized boolean isActive()
+    {
+        return trajectory != null;
+    }   //isActive
+
+    /**
+     * This method stops following.
+     */
+    private void stop()
+    {
+        followTaskObj.unregisterTask();
+        driveBase.stop();
+        trajectory = null;
+    }   //stop
+
+    /**
+     * This method is called every loop to drive the robot along the trajectory.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the competition mode (e.g. Autonomous, TeleOp, Test).
+     * @param slowPeriodicLoop specifies true if it is running the slow periodic loop on the main robot thread,
+     *        false otherwise.
+     */
+    private synchronized void followTask(
+        TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode, boolean slowPeriodicLoop)
+    {
+        if (trajectory == null)
+        {
+            return;
+        }
+
+        double currTime = TrcTimer.getCurrentTime();
+        double elapsedTime = currTime - startTime;
+        int index = trajectory.getIndex(elapsedTime);
+        int last = trajectory.getNumSamples() - 1;
+        double x = driveBase.getXPosition();
+        double y = driveBase.getYPosition();
+        double heading = driveBase.getHeading();
+        double xErr = trajectory.getX(index) - x;
+        double yErr = trajectory.getY(index) - y;
+
+        posError = Math.hypot(xErr, yErr);
+        turnError = trajectory.getHeading(index) - heading;
+        if (elapsedTime >= trajectory.getDuration() &&
+            (posError <= posTolerance && Math.abs(turnError) <= turnTolerance ||
+             elapsedTime >= trajectory.getDuration() + settleTimeout))
+        {
+            stop();
+            if (completionEvent != null)
+            {
+                completionEvent.signal();
+                completionEvent = null;
+            }
+            return;
+        }
+        //
+        // Path direction from the neighboring samples.
+        //
+        int next = Math.min(index + 1, last);
+        int prev = Math.max(next - 1, 0);
+        double dx = trajectory.getX(next) - trajectory.getX(prev);
+        double dy = trajectory.getY(next) - trajectory.getY(prev);
+        double length = Math.hypot(dx, dy);
+        double ux = length > 0.0? dx/length: 0.0;
+        double uy = length > 0.0? dy/length: 0.0;
+        double velocity = trajectory.getVelocity(index);
+        double acceleration = trajectory.getAcceleration(index);
+        double vxField = velocity*ux + posGain*xErr;
+        double vyField = velocity*uy + posGain*yErr;
+        //
+        // Rotate targets and measurements into the robot frame, heading is clockwise positive.
+        //
+        double cos = Math.cos(Math.toRadians(heading));
+        double sin = Math.sin(Math.toRadians(heading));
+        TrcPose2D fieldVel = driveBase.getFieldVelocity();
+        double xPower = xController.calculate(
+            vxField*cos - vyField*sin, acceleration*(ux*cos - uy*sin), fieldVel.x*cos - fieldVel.y*sin, currTime);
+        double yPower = yController.calculate(
+            vxField*sin + vyField*cos, acceleration*(ux*sin + uy*cos), fieldVel.x*sin + fieldVel.y*cos, currTime);
+        double turnPower = Math.max(-1.0, Math.min(1.0, turnGain*turnError));
+
+        driveBase.holonomicDrive(xPower, yPower, turnPower);
+    }   //followTask
+
+}   //class TrajectoryFollower
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.trajectory;
+
+import TrcCommonLib.trclib.TrcPose2D;
+
+/**
+ * This class generates time parameterized trajectories from waypoint lists. The path goes through the waypoints on
+ * a Catmull-Rom (cubic Hermite) spline. The robot heading is interpolated between the waypoint headings along the
+ * path distance, so it is independent of the path direction for a holonomic drive base. The velocity profile is
+ * bounded by the max velocity, the max acceleration and, on curves, by the max lateral acceleration. It is a
+ * trapezoid profile if max jerk is zero and an S-curve profile otherwise. The generator does all the work, including
+ * sampling the trajectory at a fixed time step, so it should be called at init and not in the robot loop.
+ */
+public class TrajectoryGenerator
+{
+    // Bump this whenever a change here changes the generated trajectories, so cached ones are regenerated.
+    public static final int VERSION = 1;
+    private static final int SUBSAMPLES_PER_SEGMENT = 100;
+    private static final double MIN_CURVATURE = 1.0e-6;
+
+    private final double maxVelocity;
+    private final double maxAcceleration;
+    private final double maxJerk;
+    private final double maxLateralAcceleration;
+    private final double timeStep;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param maxVelocity specifies the max velocity in inches per second.
+     * @param maxAcceleration specifies the max acceleration in inches per second squared.
+     * @param maxJerk specifies the max jerk in inches per second cubed, zero for a trapezoid profile.
+     * @param maxLateralAcceleration specifies the max lateral acceleration on curves in inches per second squared.
+     * @param timeStep specifies the time between trajectory samples in seconds.
+     */
+    public TrajectoryGenerator(
+        double maxVelocity, double maxAcceleration, double maxJerk, double maxLateralAcceleration, double timeStep)
+    {
+        if (maxVelocity <= 0.0 || maxAcceleration <= 0.0 || maxJerk < 0.0 || maxLateralAcceleration <= 0.0 ||
+            timeStep <= 0.0)
+        {
+            throw new IllegalArgumentException("Trajectory constraints must be positive.");
+        }
+
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+        this.maxLateralAcceleration = maxLateralAcceleration;
+        this.timeStep = timeStep;
+    }   //TrajectoryGenerator
+
+    /**
+     * This method returns the generator parameters.
+     *
+     * @return generator parameters string.
+     */
+    @Override
+    public String toString()
+    {
+        return "TrajectoryGenerator(maxVel=" + maxVelocity + ", maxAccel=" + maxAcceleration + ", maxJerk=" + maxJerk +
+               ", maxLatAccel=" + maxLateralAcceleration + ", timeStep=" + timeStep + ")";
+    }   //toString
+
+    /**
+     * This method generates a trajectory that starts and ends at rest and goes through all the waypoints.
+     *
+     * @param waypoints specifies the absolute field poses to go through, heading in degrees.
+     * @return generated trajectory.
+     */
+    public Trajectory generate(TrcPose2D... waypoints)
+    {
+        if (waypoints.length < 2)
+        {
+            throw new IllegalArgumentException("Trajectory must have at least two waypoints.");
+        }
+        //
+        // Sample the spline finely and accumulate path distance.
+        //
+        int numSegments = waypoints.length - 1;
+        int n = numSegments*SUBSAMPLES_PER_SEGMENT + 1;
+        double[] px = new double[n], py = new double[n], ph = new double[n], pk = new double[n], ps = new double[n];
+
+        for (int seg = 0; seg < numSegments; seg++)
+        {
+            TrcPose2D p0 = waypoints[seg];
+            TrcPose2D p1 = waypoints[seg + 1];
+            TrcPose2D prev = waypoints[Math.max(seg - 1, 0)];
+            TrcPose2D next = waypoints[Math.min(seg + 2, numSegments)];
+            // Catmull-Rom tangents, one sided at the ends of the path.
+            double scale0 = seg == 0? 1.0: 0.5;
+            double scale1 = seg + 1 == numSegments? 1.0: 0.5;
+            double m0x = (p1.x - prev.x)*scale0, m0y = (p1.y - prev.y)*scale0;
+            double m1x = (next.x - p0.x)*scale1, m1y = (next.y - p0.y)*scale1;
+            int start = seg == 0? 0: 1;
+
+            for (int j = start; j <= SUBSAMPLES_PER_SEGMENT; j++)
+            {
+                int i = seg*SUBSAMPLES_PER_SEGMENT + j;
+                double u = (double) j/SUBSAMPLES_PER_SEGMENT;
+                double u2 = u*u, u3 = u2*u;
+                double h00 = 2.0*u3 - 3.0*u2 + 1.0, h10 = u3 - 2.0*u2 + u;
+                double h01 = -2.0*u3 + 3.0*u2, h11 = u3 - u2;
+                double d00 = 6.0*u2 - 6.0*u, d10 = 3.0*u2 - 4.0*u + 1.0, d01 = -d00, d11 = 3.0*u2 - 2.0*u;
+                double e00 = 12.0*u - 6.0, e10 = 6.0*u - 4.0, e01 = -e00, e11 = 6.0*u - 2.0;
+                double dx = d00*p0.x + d10*m0x + d01*p1.x + d11*m1x;
+                double dy = d00*p0.y + d10*m0y + d01*p1.y + d11*m1y;
+                double ddx = e00*p0.x + e10*m0x + e01*p1.x + e11*m1x;
+                double ddy = e00*p0.y + e10*m0y + e01*p1.y + e11*m1y;
+                double speed2 = dx*dx + dy*dy;
+
+                px[i] = h00*p0.x + h10*m0x + h01*p1.x + h11*m1x;
+                py[i] = h00*p0.y + h10*m0y + h01*p1.y + h11*m1y;
+                pk[i] = speed2 > 0.0? (dx*ddy - dy*ddx)/(speed2*Math.sqrt(speed2)): 0.0;
+                ps[i] = i == 0? 0.0: ps[i - 1] + Math.hypot(px[i] - px[i - 1], py[i] - py[i - 1]);
+            }
+            // Interpolate heading along the segment distance.
+            int first = seg*SUBSAMPLES_PER_SEGMENT, last = first + SUBSAMPLES_PER_SEGMENT;
+            double segLength = ps[last] - ps[first];
+            for (int i = first; i <= last; i++)
+            {
+                double frac = segLength > 0.0? (ps[i] - ps[first])/segLength: (double) (i - first)/(last - first);
+                ph[i] = p0.angle + (p1.angle - p0.angle)*frac;
+            }
+        }
+        //
+        // Velocity profile: curvature limit, then forward (acceleration) and backward (deceleration) passes.
+        //
+        double[] pv = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            double k = Math.abs(pk[i]);
+            pv[i] = k > MIN_CURVATURE? Math.min(maxVelocity, Math.sqrt(maxLateralAcceleration/k)): maxVelocity;
+        }
+
+        pv[0] = 0.0;
+        limitAcceleration(ps, pv, true);
+        pv[n - 1] = 0.0;
+        limitAcceleration(ps, pv, false);
+        //
+        // Integrate time along the path.
+        //
+        double[] pt = new double[n];
+        for (int i = 1; i < n; i++)
+        {
+            double vSum = pv[i - 1] + pv[i];
+            pt[i] = pt[i - 1] + (vSum > 0.0? 2.0*(ps[i] - ps[i - 1])/vSum: 0.0);
+        }
+
+        return resample(pt, px, py, ph, pv, pk, ps);
+    }   //generate
+
+    /**
+     * This method limits the velocities so that the acceleration (or deceleration when going backward) between
+     * consecutive points does not exceed max acceleration.
+     *
+     * @param ps specifies the path distances.
+     * @param pv specifies the velocity limits, updated in place.
+     * @param forward specifies true for the forward pass, false for the backward pass.
+     */
+    private void limitAcceleration(double[] ps, double[] pv, boolean forward)
+    {
+        int n = pv.length;
+        int step = forward? 1: -1;
+
+        for (int i = forward? 1: n - 2; i >= 0 && i < n; i += step)
+        {
+            int prev = i - step;
+            double ds = Math.abs(ps[i] - ps[prev]);
+            double v = Math.sqrt(pv[prev]*pv[prev] + 2.0*maxAcceleration*ds);
+
+            if (v < pv[i])
+            {
+                pv[i] = v;
+            }
+        }
+    }   //limitAcceleration
+
+    /**
+     * This method samples the profiled path at the fixed time step into a trajectory. If max jerk is set, the
+     * sampled velocities are smoothed by a moving average as wide as the time it takes to ramp up to max
+     * acceleration. This turns each acceleration step of the trapezoid into a ramp of max jerk (S-curve) without
+     * exceeding max velocity or max acceleration, at the cost of that much extra time. Positions are then looked up
+     * from the distance travelled, so the robot stays on the same path. Since the average mixes velocities of nearby
+     * points, lateral acceleration on tight curves can overshoot its limit by a few percent.
+     *
+     * @param pt specifies the path times.
+     * @param px specifies the path x positions.
+     * @param py specifies the path y positions.
+     * @param ph specifies the path headings.
+     * @param pv specifies the path velocities.
+     * @param pk specifies the path curvatures.
+     * @param ps specifies the path distances.
+     * @return trajectory sampled at the fixed time step.
+     */
+    private Trajectory resample(
+        double[] pt, double[] px, double[] py, double[] ph, double[] pv, double[] pk, double[] ps)
+    {
+        int last = pt.length - 1;
+        int numProfileSamples = (int) Math.ceil(pt[last]/timeStep) + 1;
+        int window = maxJerk > 0.0? Math.max(1, (int) Math.round(maxAcceleration/maxJerk/timeStep)): 1;
+        int numSamples = numProfileSamples + window - 1;
+        double[] x = new double[numSamples], y = new double[numSamples], heading = new double[numSamples];
+        double[] velocity = new double[numSamples], acceleration = new double[numSamples];
+        double[] curvature = new double[numSamples], distance = new double[numSamples];
+        double[] profile = new double[numProfileSamples];
+        double sum = 0.0;
+        int j = 0;
+        //
+        // Sample the trapezoid velocity in time.
+        //
+        for (int k = 0; k < numProfileSamples; k++)
+        {
+            double t = Math.min(k*timeStep, pt[last]);
+
+            while (j < last - 1 && pt[j + 1] < t)
+            {
+                j++;
+            }
+
+            double dt = pt[j + 1] - pt[j];
+            double frac = dt > 0.0? Math.max(0.0, Math.min(1.0, (t - pt[j])/dt)): 1.0;
+            profile[k] = pv[j] + (pv[j + 1] - pv[j])*frac;
+        }
+        profile[numProfileSamples - 1] = 0.0;
+        //
+        // Smooth it with the moving average and integrate distance.
+        //
+        for (int k = 0; k < numSamples; k++)
+        {
+            sum += (k < numProfileSamples? profile[k]: 0.0) - (k >= window? profile[k - window]: 0.0);
+            velocity[k] = Math.max(0.0, sum/window);
+            distance[k] = k == 0? 0.0: distance[k - 1] + (velocity[k - 1] + velocity[k])*timeStep/2.0;
+        }
+        //
+        // Scale out the integration error so the trajectory ends exactly at the last waypoint, then look up the
+        // path at each distance.
+        //
+        double scale = distance[numSamples - 1] > 0.0? ps[last]/distance[numSamples - 1]: 1.0;
+        j = 0;
+        for (int k = 0; k < numSamples; k++)
+        {
+            distance[k] *= scale;
+
+            while (j < last - 1 && ps[j + 1] < distance[k])
+            {
+                j++;
+            }
+
+            double ds = ps[j + 1] - ps[j];
+            double frac = ds > 0.0? Math.max(0.0, Math.min(1.0, (distance[k] - ps[j])/ds)): 1.0;
+            x[k] = px[j] + (px[j + 1] - px[j])*frac;
+            y[k] = py[j] + (py[j + 1] - py[j])*frac;
+            heading[k] = ph[j] + (ph[j + 1] - ph[j])*frac;
+            curvature[k] = pk[j] + (pk[j + 1] - pk[j])*frac;
+        }
+
+        for (int k = 0; k < numSamples; k++)
+        {
+            int prev = Math.max(k - 1, 0), next = Math.min(k + 1, numSamples - 1);
+            acceleration[k] = (velocity[next] - velocity[prev])/((next - prev)*timeStep);
+        }
+
+        return new Trajectory(timeStep, x, y, heading, velocity, acceleration, curvature, distance);
+    }   //resample
+
+}   //class TrajectoryGenerator
@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.vision;
+
+import TrcCommonLib.trclib.TrcPose2D;
+
+/**
+ * This class fuses the robot poses computed from all the AprilTags in a frame into a single pose. Each tag gives an
+ * observation of the robot pose with an uncertainty that grows with the distance to the tag, more so along the line
+ * of sight than across it. Observations that disagree with the median of the frame are rejected as outliers, the
+ * rest are combined by weighted least squares, which for direct pose observations is the information weighted mean.
+ * The result comes with a 3x3 covariance (x, y, heading) scaled up by the residual spread when the tags disagree
+ * more than their noise model predicts.
+ *
+ * All the work is done on primitive arrays allocated at construction, so it can run on every frame. Headings are in
+ * degrees and positions in inches, in the same field coordinate system as RobotParams.APRILTAG_POSES.
+ */
+public class AprilTagLocalizer
+{
+    private static final String moduleName = AprilTagLocalizer.class.getSimpleName();
+    // Chi-square 99% thresholds with 2 and 1 degrees of freedom.
+    private static final double POSITION_GATE = 9.21;
+    private static final double HEADING_GATE = 6.63;
+
+    private final int maxObservations;
+    private final double posStdDev;
+    private final double rangeStdDevScale;
+    private final double lateralStdDevScale;
+    private final double headingStdDev;
+    private final double headingStdDevScale;
+    // Observations.
+    private final int[] tagIds;
+    private final double[] obsX, obsY, obsHeading;
+    // Inverse of the position covariance of each observation (symmetric 2x2: xx, xy, yy) and heading weight.
+    private final double[] infoXX, infoXY, infoYY, headingWeight;
+    private final boolean[] inliers;
+    private final double[] scratch;
+    private final double[] covariance = new double[9];
+    private int numObservations = 0;
+    private int numInliers = 0;
+    private double fusedX, fusedY, fusedHeading;
+    private boolean valid = false;
+
+    /**
+     * Constructor: Create an instance of the object. The standard deviation of a tag observation is modeled as a
+     * base value plus a value proportional to the distance of the tag from the camera.
+     *
+     * @param maxObservations specifies the maximum number of tags per frame.
+     * @param posStdDev specifies the base position standard deviation in inches.
+     * @param rangeStdDevScale specifies the position standard deviation along the line of sight per inch of distance.
+     * @param lateralStdDevScale specifies the position standard deviation across the line of sight per inch of
+     *        distance.
+     * @param headingStdDev specifies the base heading standard deviation in degrees.
+     * @param headingStdDevScale specifies the heading standard deviation in degrees per inch of distance.
+     */
+    public AprilTagLocalizer(
+        int maxObservations, double posStdDev, double rangeStdDevScale, double lateralStdDevScale,
+        double headingStdDev, double headingStdDevScale)
+    {
+        this.maxObservations = maxObservations;
+        this.posStdDev = posStdDev;
+        this.rangeStdDevScale = rangeStdDevScale;
+        this.lateralStdDevScale = lateralStdDevScale;
+        this.headingStdDev = headingStdDev;
+        this.headingStdDevScale = headingStdDevScale;
+        tagIds = new int[maxObservations];
+        obsX = new double[maxObservations];
+        obsY = new double[maxObservations];
+        obsHeading = new double[maxObservations];
+        infoXX = new double[maxObservations];
+        infoXY = new double[maxObservations];
+        infoYY = new double[maxObservations];
+        headingWeight = new double[maxObservations];
+        inliers = new boolean[maxObservations];
+        scratch = new double[maxObservations];
+    }   //AprilTagLocalizer
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method clears all observations, it is called at the start of every frame.
+     */
+    public void reset()
+    {
+        numObservations = 0;
+        numInliers = 0;
+        valid = false;
+    }   //reset
+
+    /**
+     * This method adds the robot pose observed from one tag. Observations beyond the maximum are ignored.
+     *
+     * @param tagId specifies the AprilTag ID.
+     * @param robotX specifies the robot field x position computed from the tag.
+     * @param robotY specifies the robot field y position computed from the tag.
+     * @param robotHeading specifies the robot field heading computed from the tag.
+     * @param tagX specifies the field x position of the tag.
+     * @param tagY specifies the field y position of the tag.
+     * @param tagDistance specifies the distance of the tag from the camera.
+     * @return true if the observation is added, false if there is no room for it.
+     */
+    public boolean addObservation(
+        int tagId, double robotX, double robotY, double robotHeading, double tagX, double tagY, double tagDistance)
+    {
+        if (numObservations >= maxObservations)
+        {
+            return false;
+        }
+
+        int i = numObservations++;
+        double rangeStdDev = posStdDev + rangeStdDevScale*tagDistance;
+        double lateralStdDev = posStdDev + lateralStdDevScale*tagDistance;
+        double hStdDev = headingStdDev + headingStdDevScale*tagDistance;
+        // Line of sight direction in the field frame.
+        double losX = tagX - robotX;
+        double losY = tagY - robotY;
+        double losLen = Math.sqrt(losX*losX + losY*losY);
+        double c = losLen > 0.0? losX/losLen: 1.0;
+        double s = losLen > 0.0? losY/losLen: 0.0;
+        // Information matrix R^-1 = U diag(1/rangeVar, 1/lateralVar) U^T with U = [los, perpendicular].
+        double rangeInfo = 1.0/(rangeStdDev*rangeStdDev);
+        double lateralInfo = 1.0/(lateralStdDev*lateralStdDev);
+
+        tagIds[i] = tagId;
+        obsX[i] = robotX;
+        obsY[i] = robotY;
+        obsHeading[i] = robotHeading;
+        infoXX[i] = rangeInfo*c*c + lateralInfo*s*s;
+        infoXY[i] = (rangeInfo - lateralInfo)*c*s;
+        infoYY[i] = rangeInfo*s*s + lateralInfo*c*c;
+        headingWeight[i] = 1.0/(hStdDev*hStdDev);
+        inliers[i] = true;
+
+        return true;
+    }   //addObservation
+
+    /**
+     * This method rejects the outliers and fuses the remaining observations.
+     *
+     * @return true if a pose is produced, false if there are no observations.
+     */
+    public boolean solve()
+    {
+        valid = false;
+        numInliers = 0;
+        if (numObservations == 0)
+        {
+            return false;
+        }
+
+        // Reject observations far from the median of the frame. The median survives up to half of them being bad.
+        double medianX = median(obsX);
+        double medianY = median(obsY);
+        double medianHeading = obsHeading[0];
+        double minDist = Double.MAX_VALUE;
+        for (int i = 0; i < numObservations; i++)
+        {
+            double dx = obsX[i] - medianX, dy = obsY[i] - medianY;
+            double dist = dx*dx + dy*dy;
+            if (dist < minDist)
+            {
+                minDist = dist;
+                medianHeading = obsHeading[i];
+            }
+        }
+        gate(medianX, medianY, medianHeading);
+
+        if (numInliers == 0)
+        {
+            // Nothing agrees (e.g. two tags far apart), trust the most certain one.
+            int best = 0;
+            for (int i = 1; i < numObservations; i++)
+            {
+                if (infoXX[i] + infoYY[i] > infoXX[best] + infoYY[best])
+                {
+                    best = i;
+                }
+            }
+            inliers[best] = true;
+            numInliers = 1;
+        }
+        fuse(medianHeading);
+
+        // Refine once against the fused pose, which is a better reference than the median.
+        if (numInliers > 2)
+        {
+            double refHeading = fusedHeading;
+            gate(fusedX, fusedY, refHeading);
+            if (numInliers == 0)
+            {
+                gate(medianX, medianY, medianHeading);
+            }
+            fuse(refHeading);
+        }
+        valid = true;
+
+        return true;
+    }   //solve
+
+    /**
+     * This method checks if solve has produced a pose.
+     *
+     * @return true if the pose is valid, false otherwise.
+     */
+    public boolean isValid()
+    {
+        return valid;
+    }   //isValid
+
+    /**
+     * This method returns the fused x position.
+     *
+     * @return fused x position in inches.
+     */
+    public double getX()
+    {
+        return fusedX;
+    }   //getX
+
+    /**
+     * This method returns the fused y position.
+     *
+     * @return fused y position in inches.
+     */
+    public double getY()
+    {
+        return fusedY;
+    }   //getY
+
+    /**
+     * This method returns the fused heading.
+     *
+     * @return fused heading in degrees.
+     */
+    public double getHeading()
+    {
+        return fusedHeading;
+    }   //getHeading
+
+    /**
+     * This method returns the fused pose as a new object.
+     *
+     * @return fused pose, null if not valid.
+     */
+    public TrcPose2D getPose()
+    {
+        return valid? new TrcPose2D(fusedX, fusedY, fusedHeading): null;
+    }   //getPose
+
+    /**
+     * This method returns the covariance of the fused pose. The array is owned by this object and is overwritten by
+     * the next solve.
+     *
+     * @return row major 3x3 covariance of (x, y, heading) in inches and degrees.
+     */
+    public double[] getCovariance()
+    {
+        return covariance;
+    }   //getCovariance
+
+    /**
+     * This method returns the number of observations of the frame.
+     *
+     * @return number of observations.
+     */
+    public int getNumObservations()
+    {
+        return numObservations;
+    }   //getNumObservations
+
+    /**
+     * This method returns the number of observations used in the fused pose.
+     *
+     * @return number of inliers.
+     */
+    public int getNumInliers()
+    {
+        return numInliers;
+    }   //getNumInliers
+
+    /**
+     * This method checks if an observation is used in the fused pose.
+     *
+     * @param index specifies the observation index in the order they were added.
+     * @return true if inlier, false if rejected.
+     */
+    public boolean isInlier(int index)
+    {
+        return inliers[index];
+    }   //isInlier
+
+    /**
+     * This method returns the tag ID of an observation.
+     *
+     * @param index specifies the observation index in the order they were added.
+     * @return tag ID.
+     */
+    public int getTagId(int index)
+    {
+        return tagIds[index];
+    }   //getTagId
+
+    /**
+     * This method marks the observations within the gates of the reference pose as inliers.
+     *
+     * @param refX specifies the reference x position.
+     * @param refY specifies the reference y position.
+     * @param refHeading specifies the reference heading.
+     */
+    private void gate(double refX, double refY, double refHeading)
+    {
+        numInliers = 0;
+        for (int i = 0; i < numObservations; i++)
+        {
+            double dx = obsX[i] - refX, dy = obsY[i] - refY;
+            double dh = angleDiff(obsHeading[i], refHeading);
+            double posChiSq = infoXX[i]*dx*dx + 2.0*infoXY[i]*dx*dy + infoYY[i]*dy*dy;
+
+            inliers[i] = posChiSq <= POSITION_GATE && headingWeight[i]*dh*dh <= HEADING_GATE;
+            if (inliers[i])
+            {
+                numInliers++;
+            }
+        }
+    }   //gate
+
+    /**
+     * This method computes the information weighted mean of the inliers and its covariance.
+     *
+     * @param refHeading specifies the heading the heading residuals are taken around, to handle wrap around.
+     */
+    private void fuse(double refHeading)
+    {
+        double sumXX = 0.0, sumXY = 0.0, sumYY = 0.0, sumBx = 0.0, sumBy = 0.0;
+        double sumHeadingWeight = 0.0, sumHeading = 0.0;
+
+        for (int i = 0; i < numObservations; i++)
+        {
+            if (inliers[i])
+            {
+                sumXX += infoXX[i];
+                sumXY += infoXY[i];
+                sumYY += infoYY[i];
+                sumBx += infoXX[i]*obsX[i] + infoXY[i]*obsY[i];
+                sumBy += infoXY[i]*obsX[i] + infoYY[i]*obsY[i];
+                sumHeadingWeight += headingWeight[i];
+                sumHeading += headingWeight[i]*angleDiff(obsHeading[i], refHeading);
+            }
+        }
+
+        // Position covariance is the inverse of the summed information matrix.
+        double det = sumXX*sumYY - sumXY*sumXY;
+        double covXX = sumYY/det, covXY = -sumXY/det, covYY = sumXX/det;
+        double headingVar = 1.0/sumHeadingWeight;
+
+        fusedX = covXX*sumBx + covXY*sumBy;
+        fusedY = covXY*sumBx + covYY*sumBy;
+        fusedHeading = refHeading + sumHeading*headingVar;
+
+        // Inflate the covariance when the inliers disagree more than the model says they should.
+        double scale = 1.0;
+        if (numInliers > 1)
+        {
+            double chiSq = 0.0;
+            for (int i = 0; i < numObservations; i++)
+            {
+                if (inliers[i])
+                {
+                    double dx = obsX[i] - fusedX, dy = obsY[i] - fusedY;
+                    double dh = angleDiff(obsHeading[i], fusedHeading);
+                    chiSq += infoXX[i]*dx*dx + 2.0*infoXY[i]*dx*dy + infoYY[i]*dy*dy + headingWeight[i]*dh*dh;
+                }
+            }
+            scale = Math.max(1.0, chiSq/(3.0*(numInliers - 1)));
+        }
+
+        covariance[0] = covXX*scale;
+        covariance[1] = covXY*scale;
+        covariance[2] = 0.0;
+        covariance[3] = covXY*scale;
+        covariance[4] = covYY*scale;
+        covariance[5] = 0.0;
+        covariance[6] = 0.0;
+        covariance[7] = 0.0;
+        covariance[8] = headingVar*scale;
+    }   //fuse
+
+    /**
+     * This method returns the median of the observations of the given array.
+     *
+     * @param values specifies the observation array.
+     * @return median value.
+     */
+    private double median(double[] values)
+    {
+        // Insertion sort into the scratch array, there are only a handful of tags.
+        for (int i = 0; i < numObservations; i++)
+        {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= 0 && scratch[j] > value)
+            {
+                scratch[j + 1] = scratch[j];
+                j--;
+            }
+            scratch[j + 1] = value;
+        }
+
+        int mid = numObservations/2;
+        return (numObservations & 1) == 1? scratch[mid]: (scratch[mid - 1] + scratch[mid])/2.0;
+    }   //median
+
+    /**
+     * This method returns the difference of two angles wrapped to the range of -180 to 180 degrees.
+     *
+     * @param angle specifies the angle.
+     * @param refAngle specifies the reference angle.
+     * @return angle - refAngle wrapped.
+     */
+    private static double angleDiff(double angle, double refAngle)
+    {
+        double diff = (angle - refAngle) % 360.0;
+
+        if (diff >= 180.0)
+        {
+            diff -= 360.0;
+        }
+        else if (diff < -180.0)
+        {
+            diff += 360.0;
+        }
+
+        return diff;
+    }   //angleDiff
+
+}   //class AprilTagLocalizer
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.vision;
+
+import android.graphics.Canvas;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+import java.util.function.Supplier;
+
+/**
+ * This class implements a detection result cache keyed on the camera frame. Vision results only change when a new
+ * frame is processed but consumers typically poll them every robot loop, which runs several times per frame. The
+ * first query after a new frame computes the result, the rest of the queries of the same frame return the memoized
+ * result. A result older than the maximum age is considered stale and the query returns null, so the consumer
+ * does not act on it.
+ *
+ * @param <T> specifies the type of the cached result.
+ */
+public class DetectionCache<T>
+{
+    /**
+     * This class implements a vision processor that does nothing but remember the capture time of the last frame.
+     * It should be registered with the vision portal after all the other processors so that its timestamp only
+     * changes after they have processed the frame.
+     */
+    public static class FrameClock implements VisionProcessor
+    {
+        private volatile long frameTimeNanos = 0;
+        private volatile long frameCount = 0;
+
+        /**
+         * This method returns the capture time of the last processed frame.
+         *
+         * @return frame capture time in nanoseconds (System.nanoTime() time base), 0 if no frame yet.
+         */
+        public long getFrameTime()
+        {
+            return frameTimeNanos;
+        }   //getFrameTime
+
+        /**
+         * This method returns the number of frames processed so far.
+         *
+         * @return frame count.
+         */
+        public long getFrameCount()
+        {
+            return frameCount;
+        }   //getFrameCount
+
+        @Override
+        public void init(int width, int height, CameraCalibration calibration)
+        {
+        }   //init
+
+        @Override
+        public Object processFrame(Mat frame, long captureTimeNanos)
+        {
+            frameTimeNanos = captureTimeNanos;
+            frameCount++;
+            return null;
+        }   //processFrame
+
+        @Override
+        public void onDrawFrame(
+            Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx,
+            float scaleCanvasDensity, Object userContext)
+        {
+        }   //onDrawFrame
+
+    }   //class FrameClock
+
+    private final FrameClock frameClock;
+    private final long maxAgeNanos;
+    private long cachedFrameTime = 0;
+    private T cachedResult = null;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long staleCount = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param frameClock specifies the frame clock of the vision portal.
+     * @param maxAge specifies the maximum age of a result in seconds.
+     */
+    public DetectionCache(FrameClock frameClock, double maxAge)
+    {
+        this.frameClock = frameClock;
+        this.maxAgeNanos = (long) (maxAge*1000000000.0);
+    }   //DetectionCache
+
+    /**
+     * This method returns the result of the current frame. It calls the given method to compute it if it has not
+     * been computed for this frame yet.
+     *
+     * @param computeResult specifies the method to compute the result.
+     * @return result of the current frame, null if there is no frame or the frame is older than the maximum age.
+     */
+    public synchronized T get(Supplier<T> computeResult)
+    {
+        long frameTime = frameClock.getFrameTime();
+        T result;
+
+        if (frameTime == 0 || System.nanoTime() - frameTime > maxAgeNanos)
+        {
+            staleCount++;
+            result = null;
+        }
+        else if (frameTime == cachedFrameTime)
+        {
+            hitCount++;
+            result = cachedResult;
+        }
+        else
+        {
+            missCount++;
+            cachedResult = computeResult.get();
+            cachedFrameTime = frameTime;
+            result = cachedResult;
+        }
+
+        return result;
+    }   //get
+
+    /**
+     * This method discards the cached result so that the next query computes it again.
+     */
+    public synchronized void invalidate()
+    {
+        cachedFrameTime = 0;
+        cachedResult = null;
+    }   //invalidate
+
+    /**
+     * This method returns the cache statistics.
+     *
+     * @return cache statistics string.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return "hits=" + hitCount + ", misses=" + missCount + ", stale=" + staleCount;
+    }   //toString
+
+}   //class DetectionCache
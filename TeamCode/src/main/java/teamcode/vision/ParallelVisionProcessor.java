@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.vision;
+
+import android.graphics.Canvas;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import TrcCommonLib.trclib.TrcDbgTrace;
+
+/**
+ * This class implements a vision processor that fans each camera frame out to a set of child processors running in
+ * parallel on a bounded worker pool. The VisionPortal normally runs its processors one after another on the frame
+ * thread, so the frame latency is the sum of all of them. With this processor registered as the only processor of
+ * the portal, the latency is bounded by the slowest child instead.
+ *
+ * All children share the same frame, so a child must treat it as read-only. A child that draws on the frame (e.g.
+ * a color blob pipeline with annotation enabled) must be added with readOnly set to false, it then processes its
+ * own copy of the frame, which is reused from frame to frame. The results of all children of a frame are merged
+ * into one DetectionBundle stamped with the frame capture time.
+ */
+public class ParallelVisionProcessor implements VisionProcessor
+{
+    private static final String moduleName = ParallelVisionProcessor.class.getSimpleName();
+
+    /**
+     * This class contains the results of all child processors for one frame.
+     */
+    public static class DetectionBundle
+    {
+        public final long captureTimeNanos;
+        public final Object[] results;
+        public final long[] processingNanos;
+        public long totalNanos;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param captureTimeNanos specifies the frame capture time.
+         * @param numProcessors specifies the number of child processors.
+         */
+        DetectionBundle(long captureTimeNanos, int numProcessors)
+        {
+            this.captureTimeNanos = captureTimeNanos;
+            results = new Object[numProcessors];
+            processingNanos = new long[numProcessors];
+        }   //DetectionBundle
+
+    }   //class DetectionBundle
+
+    /**
+     * This class runs one child processor on a frame.
+     */
+    private class ChildTask implements Callable<Void>
+    {
+        final int index;
+        final VisionProcessor processor;
+        final boolean readOnly;
+        volatile boolean enabled = false;
+        Mat frameCopy = null;
+        Mat frame;
+        DetectionBundle bundle;
+
+        ChildTask(int index, VisionProcessor processor, boolean readOnly)
+        {
+            this.index = index;
+            this.processor = processor;
+            this.readOnly = readOnly;
+        }   //ChildTask
+
+        @Override
+        public Void call()
+        {
+            long startNanos = System.nanoTime();
+            Mat input = frame;
+
+            try
+            {
+                if (!readOnly)
+                {
+                    if (frameCopy == null)
+                    {
+                        frameCopy = new Mat();
+                    }
+                    frame.copyTo(frameCopy);
+                    input = frameCopy;
+                }
+                bundle.results[index] = processor.processFrame(input, bundle.captureTimeNanos);
+            }
+            catch (Exception e)
+            {
+                tracer.traceErr(moduleName, "Processor " + index + " failed: " + e);
+            }
+            bundle.processingNanos[index] = System.nanoTime() - startNanos;
+
+            return null;
+        }   //call
+
+    }   //class ChildTask
+
+    private final TrcDbgTrace tracer = new TrcDbgTrace();
+    private final ArrayList<ChildTask> children = new ArrayList<>();
+    private final ArrayList<ChildTask> activeTasks = new ArrayList<>();
+    private final ArrayList<Future<Void>> pendingResults = new ArrayList<>();
+    private final AtomicReference<DetectionBundle> latestBundle = new AtomicReference<>();
+    private ExecutorService workerPool = null;
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName;
+    }   //toString
+
+    /**
+     * This method adds a child processor. Children must be added before the processor is given to the portal.
+     *
+     * @param processor specifies the child processor.
+     * @param readOnly specifies true if the processor does not modify the frame, false to give it its own copy.
+     * @return index of the child in the results of the detection bundle.
+     */
+    public synchronized int addProcessor(VisionProcessor processor, boolean readOnly)
+    {
+        children.add(new ChildTask(children.size(), processor, readOnly));
+        return children.size() - 1;
+    }   //addProcessor
+
+    /**
+     * This method enables/disables a child processor.
+     *
+     * @param processor specifies the child processor.
+     * @param enabled specifies true to enable, false to disable.
+     */
+    public void setProcessorEnabled(VisionProcessor processor, boolean enabled)
+    {
+        for (ChildTask child: children)
+        {
+            if (child.processor == processor)
+            {
+                child.enabled = enabled;
+            }
+        }
+    }   //setProcessorEnabled
+
+    /**
+     * This method checks if a child processor is enabled.
+     *
+     * @param processor specifies the child processor.
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isProcessorEnabled(VisionProcessor processor)
+    {
+        for (ChildTask child: children)
+        {
+            if (child.processor == processor)
+            {
+                return child.enabled;
+            }
+        }
+
+        return false;
+    }   //isProcessorEnabled
+
+    /**
+     * This method returns the detection bundle of the most recently processed frame.
+     *
+     * @return latest detection bundle, null if no frame has been processed.
+     */
+    public DetectionBundle getLatestBundle()
+    {
+        return latestBundle.get();
+    }   //getLatestBundle
+
+    /**
+     * This method stops the worker pool and releases the frame copies.
+     */
+    public synchronized void close()
+    {
+        if (workerPool != null)
+        {
+            workerPool.shutdownNow();
+            workerPool = null;
+        }
+
+        for (ChildTask child: children)
+        {
+            if (child.frameCopy != null)
+            {
+                child.frameCopy.release();
+                child.frameCopy = null;
+            }
+        }
+    }   //close
+
+    //
+    // Implements VisionProcessor interface.
+    //
+
+    @Override
+    public synchronized void init(int width, int height, CameraCalibration calibration)
+    {
+        for (ChildTask child: children)
+        {
+            child.processor.init(width, height, calibration);
+        }
+
+        if (workerPool == null)
+        {
+            // The frame thread runs one child, leave one core for the robot loop.
+            int numThreads = Math.max(
+                1, Math.min(children.size() - 1, Runtime.getRuntime().availableProcessors() - 2));
+            workerPool = Executors.newFixedThreadPool(
+                numThreads, runnable ->
+                {
+                    Thread thread = new Thread(runnable, moduleName);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+    }   //init
+
+    @Override
+    public synchronized Object processFrame(Mat frame, long captureTimeNanos)
+    {
+        long startNanos = System.nanoTime();
+        DetectionBundle bundle = new DetectionBundle(captureTimeNanos, children.size());
+
+        activeTasks.clear();
+        for (ChildTask child: children)
+        {
+            if (child.enabled)
+            {
+                child.frame = frame;
+                child.bundle = bundle;
+                activeTasks.add(child);
+            }
+        }
+
+        if (activeTasks.size() == 1 || workerPool == null)
+        {
+            // Not worth a thread hop.
+            for (ChildTask task: activeTasks)
+            {
+                task.call();
+            }
+        }
+        else if (!activeTasks.isEmpty())
+        {
+            // The frame thread runs the first child itself instead of sitting idle.
+            for (int i = 1; i < activeTasks.size(); i++)
+            {
+                pendingResults.add(workerPool.submit(activeTasks.get(i)));
+            }
+            activeTasks.get(0).call();
+
+            try
+            {
+                // Wait until all children are done with the frame, the portal may reuse it afterwards.
+                for (Future<Void> result: pendingResults)
+                {
+                    result.get();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                tracer.traceErr(moduleName, "Processor failed: " + e.getCause());
+            }
+            pendingResults.clear();
+        }
+
+        for (ChildTask task: activeTasks)
+        {
+            task.frame = null;
+            task.bundle = null;
+        }
+        bundle.totalNanos = System.nanoTime() - startNanos;
+        latestBundle.set(bundle);
+
+        return bundle;
+    }   //processFrame
+
+    @Override
+    public void onDrawFrame(
+        Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity,
+        Object userContext)
+    {
+        DetectionBundle bundle = (DetectionBundle) userContext;
+
+        for (ChildTask child: children)
+        {
+            if (bundle != null && bundle.results[child.index] != null)
+            {
+                child.processor.onDrawFrame(
+                    canvas, onscreenWidth, onscreenHeight, scaleBmpPxToCanvasPx, scaleCanvasDensity,
+                    bundle.results[child.index]);
+            }
+        }
+    }   //onDrawFrame
+
+}   //class ParallelVisionProcessor
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2024 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package teamcode.vision;
+
+import android.graphics.Canvas;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+import TrcCommonLib.trclib.TrcOpenCvColorBlobPipeline;
+import TrcFtcLib.ftclib.FtcEocvColorBlobProcessor;
+
+/**
+ * This class wraps a color blob processor so that it only processes a region of interest of the frame. By default,
+ * the region is the part of the frame covered by the homography mapping, pixels outside of it can't be mapped to
+ * the world anyway. Once a blob is found, the region shrinks to the area around the last detection and it falls
+ * back to the mapped region if the blob is lost or every FULL_SCAN_INTERVAL frames so that new blobs are picked up.
+ * In addition, the region can be downscaled while the robot is moving, when motion blur makes the full resolution
+ * useless anyway.
+ *
+ * The color conversion and contouring run on a sub-matrix of the frame without copying. The wrapped processor
+ * publishes its detected objects in region coordinates, so they must not be used directly. This class maps copies
+ * of them back to full frame coordinates and publishes those instead, getDetectedObjects returns them. While
+ * downscaled, the contour filter thresholds are scaled with the region (area by scale squared, lengths by scale)
+ * through the filter scaler, so a blob passes the filter at the same size on the field at either resolution.
+ */
+public class RoiColorBlobProcessor implements VisionProcessor
+{
+    private static final String moduleName = RoiColorBlobProcessor.class.getSimpleName();
+    private static final int FULL_SCAN_INTERVAL = 10;
+    private static final double TRACKING_MARGIN = 0.5;
+
+    private final FtcEocvColorBlobProcessor colorBlobProcessor;
+    private final Rect mappedRoi;
+    private final BooleanSupplier movingSupplier;
+    private final double movingScale;
+    private final DoubleConsumer filterScaler;
+    private final Size zeroSize = new Size();
+    private final Mat scaledFrame = new Mat();
+    private Rect imageRect = null;
+    private Rect trackingRoi = null;
+    private Rect lastRoi = null;
+    private double lastScale = 1.0;
+    private double filterScale = 1.0;
+    private int framesSinceFullScan = 0;
+    private volatile TrcOpenCvColorBlobPipeline.DetectedObject[] detectedObjects = null;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param colorBlobProcessor specifies the color blob processor to be wrapped.
+     * @param mappedRoi specifies the region of the frame covered by the homography mapping, null for the whole frame.
+     * @param movingSupplier specifies the method to check if the robot is moving, null to disable downscaling.
+     * @param movingScale specifies the scale factor of the region while the robot is moving (e.g. 0.5).
+     * @param filterScaler specifies the method to scale the contour filter thresholds of the wrapped processor
+     *        by the given scale factor, null to leave them alone.
+     */
+    public RoiColorBlobProcessor(
+        FtcEocvColorBlobProcessor colorBlobProcessor, Rect mappedRoi, BooleanSupplier movingSupplier,
+        double movingScale, DoubleConsumer filterScaler)
+    {
+        this.colorBlobProcessor = colorBlobProcessor;
+        this.mappedRoi = mappedRoi;
+        this.movingSupplier = movingSupplier;
+        this.movingScale = movingScale;
+        this.filterScaler = filterScaler;
+    }   //RoiColorBlobProcessor
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    @Override
+    public String toString()
+    {
+        return moduleName + "." + colorBlobProcessor;
+    }   //toString
+
+    /**
+     * This method returns the wrapped color blob processor.
+     *
+     * @return color blob processor.
+     */
+    public FtcEocvColorBlobProcessor getColorBlobProcessor()
+    {
+        return colorBlobProcessor;
+    }   //getColorBlobProcessor
+
+    /**
+     * This method returns the region of interest used on the last frame.
+     *
+     * @return region of interest in full frame coordinates, null if no frame has been processed.
+     */
+    public synchronized Rect getLastRoi()
+    {
+        return lastRoi;
+    }   //getLastRoi
+
+    /**
+     * This method returns the objects detected in the last frame in full frame coordinates. The array and its
+     * objects are not touched after they are published.
+     *
+     * @return detected objects, null if no frame has been processed.
+     */
+    public TrcOpenCvColorBlobPipeline.DetectedObject[] getDetectedObjects()
+    {
+        return detectedObjects;
+    }   //getDetectedObjects
+
+    /**
+     * This method returns the scale factor used on the last frame.
+     *
+     * @return scale factor.
+     */
+    public synchronized double getLastScale()
+    {
+        return lastScale;
+    }   //getLastScale
+
+    //
+    // Implements VisionProcessor interface.
+    //
+
+    @Override
+    public synchronized void init(int width, int height, CameraCalibration calibration)
+    {
+        Rect frameRect = new Rect(0, 0, width, height);
+
+        imageRect = mappedRoi != null? intersect(mappedRoi, frameRect): frameRect;
+        trackingRoi = null;
+        colorBlobProcessor.init(width, height, calibration);
+    }   //init
+
+    @Override
+    public synchronized Object processFrame(Mat frame, long captureTimeNanos)
+    {
+        if (imageRect == null)
+        {
+            imageRect = new Rect(0, 0, frame.cols(), frame.rows());
+        }
+
+        Rect roi = imageRect;
+        if (trackingRoi != null && framesSinceFullScan < FULL_SCAN_INTERVAL)
+        {
+            roi = trackingRoi;
+            framesSinceFullScan++;
+        }
+        else
+        {
+            framesSinceFullScan = 0;
+        }
+        double scale = movingSupplier != null && movingSupplier.getAsBoolean()? movingScale: 1.0;
+        if (filterScaler != null && scale != filterScale)
+        {
+            filterScaler.accept(scale);
+            filterScale = scale;
+        }
+
+        // The sub-matrix shares the frame buffer, no pixels are copied.
+        Mat roiFrame = frame.submat(roi);
+        Mat input = roiFrame;
+        if (scale < 1.0)
+        {
+            Imgproc.resize(roiFrame, scaledFrame, zeroSize, scale, scale, Imgproc.INTER_AREA);
+            input = scaledFrame;
+        }
+        Object result = colorBlobProcessor.processFrame(input, captureTimeNanos);
+        roiFrame.release();
+
+        trackingRoi = null;
+        if (result instanceof TrcOpenCvColorBlobPipeline.DetectedObject[])
+        {
+            TrcOpenCvColorBlobPipeline.DetectedObject[] roiObjects =
+                (TrcOpenCvColorBlobPipeline.DetectedObject[]) result;
+            TrcOpenCvColorBlobPipeline.DetectedObject[] frameObjects =
+                new TrcOpenCvColorBlobPipeline.DetectedObject[roiObjects.length];
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+            for (int i = 0; i < roiObjects.length; i++)
+            {
+                TrcOpenCvColorBlobPipeline.DetectedObject obj = toFrameCoordinates(roiObjects[i], roi, scale);
+
+                frameObjects[i] = obj;
+                minX = Math.min(minX, obj.rect.x);
+                minY = Math.min(minY, obj.rect.y);
+                maxX = Math.max(maxX, obj.rect.x + obj.rect.width);
+                maxY = Math.max(maxY, obj.rect.y + obj.rect.height);
+            }
+
+            if (frameObjects.length > 0)
+            {
+                int marginX = (int) ((maxX - minX)*TRACKING_MARGIN) + 1;
+                int marginY = (int) ((maxY - minY)*TRACKING_MARGIN) + 1;
+                trackingRoi = intersect(
+                    new Rect(minX - marginX, minY - marginY, maxX - minX + 2*marginX, maxY - minY + 2*marginY),
+                    imageRect);
+            }
+            detectedObjects = frameObjects;
+            // The annotation is drawn on the full frame, so it gets the objects in full frame coordinates.
+            result = frameObjects;
+        }
+        lastRoi = roi;
+        lastScale = scale;
+
+        return result;
+    }   //processFrame
+
+    @Override
+    public void onDrawFrame(
+        Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity,
+        Object userContext)
+    {
+        colorBlobProcessor.onDrawFrame(
+            canvas, onscreenWidth, onscreenHeight, scaleBmpPxToCanvasPx, scaleCanvasDensity, userContext);
+    }   //onDrawFrame
+
+    /**
+     * This method returns a copy of a detected object with its bounding rectangles mapped from region coordinates
+     * back to full frame coordinates. The original object is left alone, it has already been published by the
+     * wrapped processor.
+     *
+     * @param roiObj specifies the detected object in region coordinates.
+     * @param roi specifies the region of interest.
+     * @param scale specifies the scale factor of the region.
+     * @return copy of the detected object in full frame coordinates.
+     */
+    private TrcOpenCvColorBlobPipeline.DetectedObject toFrameCoordinates(
+        TrcOpenCvColorBlobPipeline.DetectedObject roiObj, Rect roi, double scale)
+    {
+        // The copy computes its own bounding rectangles from the contour, so they can be changed.
+        TrcOpenCvColorBlobPipeline.DetectedObject obj =
+            new TrcOpenCvColorBlobPipeline.DetectedObject(roiObj.label, roiObj.object);
+
+        obj.rect.x = (int) (obj.rect.x/scale) + roi.x;
+        obj.rect.y = (int) (obj.rect.y/scale) + roi.y;
+        obj.rect.width = (int) (obj.rect.width/scale);
+        obj.rect.height = (int) (obj.rect.height/scale);
+        obj.rotatedRect.center.x = obj.rotatedRect.center.x/scale + roi.x;
+        obj.rotatedRect.center.y = obj.rotatedRect.center.y/scale + roi.y;
+        obj.rotatedRect.size.width /= scale;
+        obj.rotatedRect.size.height /= scale;
+
+        return obj;
+    }   //toFrameCoordinates
+
+    /**
+     * This method returns the intersection of two rectangles.
+     *
+     * @param rect1 specifies the first rectangle.
+     * @param rect2 specifies the second rectangle.
+     * @return intersection, rect2 if they don't intersect.
+     */
+    private static Rect intersect(Rect rect1, Rect rect2)
+    {
+        int left = Math.max(rect1.x, rect2.x);
+        int top = Math.max(rect1.y, rect2.y);
+        int right = Math.min(rect1.x + rect1.width, rect2.x + rect2.width);
+        int bottom = Math.min(rect1.y + rect1.height, rect2.y + rect2.height);
+
+        return right > left && bottom > top? new Rect(left, top, right - left, bottom - top): rect2;
+    }   //intersect
+
+}   //class RoiColorBlobProcessor
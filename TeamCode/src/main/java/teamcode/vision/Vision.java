@@ -29,16 +29,21 @@ import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 import org.firstinspires.ftc.vision.VisionProcessor;
 import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
 import org.firstinspires.ftc.vision.tfod.TfodProcessor;
+import org.opencv.core.Rect;
 import org.opencv.imgproc.Imgproc;
 import org.openftc.easyopencv.OpenCvCamera;
 import org.openftc.easyopencv.OpenCvCameraFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Supplier;
 
 import TrcCommonLib.trclib.TrcDbgTrace;
+import TrcCommonLib.trclib.TrcHomographyMapper;
 import TrcCommonLib.trclib.TrcOpenCvColorBlobPipeline;
 import TrcCommonLib.trclib.TrcOpenCvDetector;
 import TrcCommonLib.trclib.TrcPose2D;
+import TrcCommonLib.trclib.TrcUtil;
 import TrcCommonLib.trclib.TrcVisionTargetInfo;
 import TrcFtcLib.ftclib.FtcEocvColorBlobProcessor;
 import TrcFtcLib.ftclib.FtcOpMode;
@@ -50,6 +55,7 @@ import TrcFtcLib.ftclib.FtcVisionEocvColorBlob;
 import TrcFtcLib.ftclib.FtcVisionTensorFlow;
 import teamcode.Robot;
 import teamcode.RobotParams;
+import teamcode.drivebases.KalmanPoseEstimator;
 import teamcode.subsystems.BlinkinLEDs;
 
 /**
@@ -57,7 +63,7 @@ import teamcode.subsystems.BlinkinLEDs;
  * vision target info as well as providing info for the robot, camera and the field. It also provides methods to get
  * the location of the robot and detected targets.
  */
-public class Vision
+public class Vision implements KalmanPoseEstimator.VisionPoseSource
 {
     private static final String moduleName = Vision.class.getSimpleName();
     // Warning: EOCV converts camera stream to RGBA whereas Desktop OpenCV converts it to BGRA. Therefore, the correct
@@ -67,15 +73,11 @@ public class Vision
     private static final int colorConversion = Imgproc.COLOR_RGB2YCrCb;
     private static final double[] redBlobColorThresholds = {20.0, 120.0, 180.0, 240.0, 90.0, 120.0};
     private static final double[] blueBlobColorThresholds = {20.0, 250.0, 40.0, 250.0, 160.0, 240.0};
-    private static final TrcOpenCvColorBlobPipeline.FilterContourParams colorBlobFilterContourParams =
-        new TrcOpenCvColorBlobPipeline.FilterContourParams()
-            .setMinArea(5000.0)
-            .setMinPerimeter(200.0)
-            .setWidthRange(50.0, 1000.0)
-            .setHeightRange(80.0, 1000.0)
-            .setSolidityRange(0.0, 100.0)
-            .setVerticesRange(0.0, 1000.0)
-            .setAspectRatioRange(0.3, 1.0);
+    // Color blob contour filter thresholds at full resolution, in pixels.
+    private static final double colorBlobMinArea = 5000.0;
+    private static final double colorBlobMinPerimeter = 200.0;
+    private static final double[] colorBlobWidthRange = {50.0, 1000.0};
+    private static final double[] colorBlobHeightRange = {80.0, 1000.0};
 
     private static final String TFOD_MODEL_ASSET = "MyObject.tflite";
     private static final float TFOD_MIN_CONFIDENCE = 0.75f;
@@ -90,11 +92,23 @@ public class Vision
     public FtcVisionAprilTag aprilTagVision;
     private AprilTagProcessor aprilTagProcessor;
     public FtcVisionEocvColorBlob redBlobVision;
-    private FtcEocvColorBlobProcessor redBlobProcessor;
+    private VisionProcessor redBlobProcessor;
     public FtcVisionEocvColorBlob blueBlobVision;
-    private FtcEocvColorBlobProcessor blueBlobProcessor;
+    private VisionProcessor blueBlobProcessor;
     public FtcVisionTensorFlow tensorFlowVision;
     private TfodProcessor tensorFlowProcessor;
+    private ParallelVisionProcessor parallelProcessor;
+    private AprilTagLocalizer aprilTagLocalizer;
+    private volatile long robotFieldPoseTime = 0;
+    private DetectionCache.FrameClock frameClock;
+    private final HashMap<Integer, DetectionCache<TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject>>>
+        aprilTagCaches = new HashMap<>();
+    private DetectionCache<TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject>> redBlobCache;
+    private DetectionCache<TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject>> blueBlobCache;
+    private DetectionCache<TrcPose2D> robotPoseCache;
+    private TrcHomographyMapper colorBlobMapper;
+    // Created once, getRobotFieldPose is called every loop by the pose estimator.
+    private final Supplier<TrcPose2D> robotFieldPoseComputer = this::computeRobotFieldPose;
     public FtcVision vision;
 
     /**
@@ -128,7 +142,8 @@ public class Vision
 
             tracer.traceInfo(moduleName, "Starting RawEocvColorBlobVision...");
             rawColorBlobPipeline = new FtcRawEocvColorBlobPipeline(
-                "rawColorBlobPipeline", colorConversion, redBlobColorThresholds, colorBlobFilterContourParams, true);
+                "rawColorBlobPipeline", colorConversion, redBlobColorThresholds,
+                createColorBlobFilterContourParams(), true);
             // By default, display original Mat.
             rawColorBlobPipeline.setVideoOutput(0);
             rawColorBlobPipeline.setAnnotateEnabled(true);
@@ -157,22 +172,33 @@ public class Vision
                 aprilTagVision = new FtcVisionAprilTag(aprilTagParams, AprilTagProcessor.TagFamily.TAG_36h11);
                 aprilTagProcessor = aprilTagVision.getVisionProcessor();
                 visionProcessorsList.add(aprilTagProcessor);
+                aprilTagLocalizer = new AprilTagLocalizer(
+                    RobotParams.APRILTAG_POSES.length, RobotParams.APRILTAG_POS_STDDEV,
+                    RobotParams.APRILTAG_RANGE_STDDEV_SCALE, RobotParams.APRILTAG_LATERAL_STDDEV_SCALE,
+                    RobotParams.APRILTAG_HEADING_STDDEV, RobotParams.APRILTAG_HEADING_STDDEV_SCALE);
             }
 
             if (RobotParams.Preferences.useColorBlobVision)
             {
                 tracer.traceInfo(moduleName, "Starting ColorBlobVision...");
 
+                // Each processor gets its own filter parameters, they are scaled with its region.
+                TrcOpenCvColorBlobPipeline.FilterContourParams redBlobFilterParams =
+                    createColorBlobFilterContourParams();
+                TrcOpenCvColorBlobPipeline.FilterContourParams blueBlobFilterParams =
+                    createColorBlobFilterContourParams();
+
                 redBlobVision = new FtcVisionEocvColorBlob(
-                    "RedBlob", colorConversion, redBlobColorThresholds, colorBlobFilterContourParams, true,
+                    "RedBlob", colorConversion, redBlobColorThresholds, redBlobFilterParams, true,
                     RobotParams.cameraRect, RobotParams.worldRect, true);
-                redBlobProcessor = redBlobVision.getVisionProcessor();
+                redBlobProcessor = createColorBlobProcessor(redBlobVision.getVisionProcessor(), redBlobFilterParams);
                 visionProcessorsList.add(redBlobProcessor);
 
                 blueBlobVision = new FtcVisionEocvColorBlob(
-                    "BlueBlob", colorConversion, blueBlobColorThresholds, colorBlobFilterContourParams, true,
+                    "BlueBlob", colorConversion, blueBlobColorThresholds, blueBlobFilterParams, true,
                     RobotParams.cameraRect, RobotParams.worldRect, true);
-                blueBlobProcessor = blueBlobVision.getVisionProcessor();
+                blueBlobProcessor =
+                    createColorBlobProcessor(blueBlobVision.getVisionProcessor(), blueBlobFilterParams);
                 visionProcessorsList.add(blueBlobProcessor);
             }
 
@@ -186,8 +212,39 @@ public class Vision
                 visionProcessorsList.add(tensorFlowProcessor);
             }
 
-            VisionProcessor[] visionProcessors = new VisionProcessor[visionProcessorsList.size()];
-            visionProcessorsList.toArray(visionProcessors);
+            VisionProcessor[] visionProcessors;
+            if (RobotParams.Preferences.useParallelVision && visionProcessorsList.size() > 1)
+            {
+                // Register a single processor with the portal that fans each frame out to all the others in
+                // parallel. The color blob pipelines annotate the frame so they get their own copy of it.
+                tracer.traceInfo(moduleName, "Starting ParallelVisionProcessor...");
+                parallelProcessor = new ParallelVisionProcessor();
+                for (VisionProcessor processor: visionProcessorsList)
+                {
+                    parallelProcessor.addProcessor(
+                        processor, processor != redBlobProcessor && processor != blueBlobProcessor);
+                }
+                visionProcessors = new VisionProcessor[] {parallelProcessor};
+            }
+            else
+            {
+                visionProcessors = new VisionProcessor[visionProcessorsList.size()];
+                visionProcessorsList.toArray(visionProcessors);
+            }
+
+            if (RobotParams.Preferences.useDetectionCache)
+            {
+                // The frame clock goes last so that it only ticks after all other processors are done with a frame.
+                frameClock = new DetectionCache.FrameClock();
+                redBlobCache = new DetectionCache<>(frameClock, RobotParams.VISION_DETECTION_MAX_AGE);
+                blueBlobCache = new DetectionCache<>(frameClock, RobotParams.VISION_DETECTION_MAX_AGE);
+                robotPoseCache = new DetectionCache<>(frameClock, RobotParams.VISION_DETECTION_MAX_AGE);
+                VisionProcessor[] processors = new VisionProcessor[visionProcessors.length + 1];
+                System.arraycopy(visionProcessors, 0, processors, 0, visionProcessors.length);
+                processors[visionProcessors.length] = frameClock;
+                visionProcessors = processors;
+            }
+
             if (RobotParams.Preferences.useWebCam)
             {
                 // Use USB webcams.
@@ -205,13 +262,100 @@ public class Vision
                     RobotParams.Preferences.showVisionView, RobotParams.Preferences.showVisionStat, visionProcessors);
             }
             // Disable all vision until they are needed.
-            for (VisionProcessor processor: visionProcessors)
+            for (VisionProcessor processor: visionProcessorsList)
             {
-                vision.setProcessorEnabled(processor, false);
+                setProcessorEnabled(processor, false);
             }
         }
     }   //Vision
 
+    /**
+     * This method creates the contour filter parameters of a color blob pipeline at full resolution.
+     *
+     * @return contour filter parameters.
+     */
+    private static TrcOpenCvColorBlobPipeline.FilterContourParams createColorBlobFilterContourParams()
+    {
+        return scaleColorBlobFilterContourParams(new TrcOpenCvColorBlobPipeline.FilterContourParams(), 1.0)
+            .setSolidityRange(0.0, 100.0)
+            .setVerticesRange(0.0, 1000.0)
+            .setAspectRatioRange(0.3, 1.0);
+    }   //createColorBlobFilterContourParams
+
+    /**
+     * This method sets the size thresholds of the contour filter parameters for an image downscaled by the
+     * specified factor. Areas scale by the square of the factor and lengths by the factor, the ratio thresholds
+     * (solidity, aspect ratio) don't change.
+     *
+     * @param params specifies the contour filter parameters to set.
+     * @param scale specifies the scale factor of the image.
+     * @return contour filter parameters.
+     */
+    private static TrcOpenCvColorBlobPipeline.FilterContourParams scaleColorBlobFilterContourParams(
+        TrcOpenCvColorBlobPipeline.FilterContourParams params, double scale)
+    {
+        return params
+            .setMinArea(colorBlobMinArea*scale*scale)
+            .setMinPerimeter(colorBlobMinPerimeter*scale)
+            .setWidthRange(colorBlobWidthRange[0]*scale, colorBlobWidthRange[1]*scale)
+            .setHeightRange(colorBlobHeightRange[0]*scale, colorBlobHeightRange[1]*scale);
+    }   //scaleColorBlobFilterContourParams
+
+    /**
+     * This method wraps a color blob processor so that it only processes the part of the frame covered by the
+     * homography mapping and processes it at reduced resolution while the robot is moving.
+     *
+     * @param colorBlobProcessor specifies the color blob processor.
+     * @param filterParams specifies the contour filter parameters of the color blob processor.
+     * @return vision processor to be registered.
+     */
+    private VisionProcessor createColorBlobProcessor(
+        FtcEocvColorBlobProcessor colorBlobProcessor, TrcOpenCvColorBlobPipeline.FilterContourParams filterParams)
+    {
+        VisionProcessor processor = colorBlobProcessor;
+
+        if (RobotParams.Preferences.useColorBlobRoi)
+        {
+            int top = (int) Math.min(
+                RobotParams.HOMOGRAPHY_CAMERA_TOPLEFT_Y, RobotParams.HOMOGRAPHY_CAMERA_TOPRIGHT_Y);
+            int bottom = (int) Math.max(
+                RobotParams.HOMOGRAPHY_CAMERA_BOTTOMLEFT_Y, RobotParams.HOMOGRAPHY_CAMERA_BOTTOMRIGHT_Y) + 1;
+            int left = (int) Math.min(
+                RobotParams.HOMOGRAPHY_CAMERA_TOPLEFT_X, RobotParams.HOMOGRAPHY_CAMERA_BOTTOMLEFT_X);
+            int right = (int) Math.max(
+                RobotParams.HOMOGRAPHY_CAMERA_TOPRIGHT_X, RobotParams.HOMOGRAPHY_CAMERA_BOTTOMRIGHT_X) + 1;
+
+            processor = new RoiColorBlobProcessor(
+                colorBlobProcessor, new Rect(left, top, right - left, bottom - top), this::isRobotMoving,
+                RobotParams.COLOR_BLOB_MOVING_SCALE, scale -> scaleColorBlobFilterContourParams(filterParams, scale));
+            if (colorBlobMapper == null)
+            {
+                colorBlobMapper = new TrcHomographyMapper(RobotParams.cameraRect, RobotParams.worldRect);
+            }
+        }
+
+        return processor;
+    }   //createColorBlobProcessor
+
+    /**
+     * This method checks if the robot is moving fast enough for color blob vision to switch to reduced resolution.
+     *
+     * @return true if the robot is moving, false otherwise.
+     */
+    private boolean isRobotMoving()
+    {
+        boolean moving = false;
+
+        if (robot.robotDrive != null)
+        {
+            TrcPose2D velocity = robot.robotDrive.driveBase.getFieldVelocity();
+            moving = TrcUtil.magnitude(velocity.x, velocity.y) > RobotParams.COLOR_BLOB_MOVING_SPEED ||
+                     Math.abs(velocity.angle) > RobotParams.COLOR_BLOB_MOVING_TURN_RATE;
+        }
+
+        return moving;
+    }   //isRobotMoving
+
     /**
      * This method closes the vision portal and is normally called at the end of an opmode.
      */
@@ -221,8 +365,61 @@ public class Vision
         {
             vision.getVisionPortal().close();
         }
+
+        if (parallelProcessor != null)
+        {
+            parallelProcessor.close();
+        }
+
+        if (robotPoseCache != null)
+        {
+            tracer.traceInfo(moduleName, "RobotPoseCache: " + robotPoseCache);
+        }
     }   //close
 
+    /**
+     * This method enables/disables a vision processor. In parallel mode, the processor is a child of the parallel
+     * processor, not of the vision portal.
+     *
+     * @param processor specifies the vision processor.
+     * @param enabled specifies true to enable, false to disable.
+     */
+    private void setProcessorEnabled(VisionProcessor processor, boolean enabled)
+    {
+        if (parallelProcessor != null)
+        {
+            parallelProcessor.setProcessorEnabled(processor, enabled);
+        }
+        else
+        {
+            vision.setProcessorEnabled(processor, enabled);
+        }
+    }   //setProcessorEnabled
+
+    /**
+     * This method checks if a vision processor is enabled.
+     *
+     * @param processor specifies the vision processor.
+     * @return true if enabled, false if disabled.
+     */
+    private boolean isProcessorEnabled(VisionProcessor processor)
+    {
+        return parallelProcessor != null?
+            parallelProcessor.isProcessorEnabled(processor): vision.isVisionProcessorEnabled(processor);
+    }   //isProcessorEnabled
+
+    /**
+     * This method returns the merged detection results of the most recent frame in parallel mode. The results are
+     * indexed in the order the processors were created (AprilTag, RedBlob, BlueBlob, TensorFlow, whichever are
+     * enabled in preferences).
+     *
+     * @return latest detection bundle, null if not in parallel mode or no frame has been processed.
+     */
+    public ParallelVisionProcessor.DetectionBundle getDetectionBundle()
+    {
+        return parallelProcessor != null? parallelProcessor.getLatestBundle(): null;
+    }   //getDetectionBundle
+
     /**
      * This method enables/disables FPS meter on the viewport.
      *
@@ -374,7 +571,7 @@ public class Vision
     {
         if (aprilTagProcessor != null)
         {
-            vision.setProcessorEnabled(aprilTagProcessor, enabled);
+            setProcessorEnabled(aprilTagProcessor, enabled);
         }
     }   //setAprilTagVisionEnabled
 
@@ -385,7 +582,7 @@ public class Vision
      */
     public boolean isAprilTagVisionEnabled()
     {
-        return aprilTagProcessor != null && vision.isVisionProcessorEnabled(aprilTagProcessor);
+        return aprilTagProcessor != null && isProcessorEnabled(aprilTagProcessor);
     }   //isAprilTagVisionEnabled
 
     /**
@@ -397,8 +594,22 @@ public class Vision
      */
     public TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject> getDetectedAprilTag(Integer id, int lineNum)
     {
-        TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject> aprilTagInfo =
-            aprilTagVision.getBestDetectedTargetInfo(id, null);
+        TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject> aprilTagInfo;
+
+        if (frameClock != null)
+        {
+            DetectionCache<TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject>> aprilTagCache;
+            synchronized (aprilTagCaches)
+            {
+                aprilTagCache = aprilTagCaches.computeIfAbsent(
+                    id, key -> new DetectionCache<>(frameClock, RobotParams.VISION_DETECTION_MAX_AGE));
+            }
+            aprilTagInfo = aprilTagCache.get(() -> aprilTagVision.getBestDetectedTargetInfo(id, null));
+        }
+        else
+        {
+            aprilTagInfo = aprilTagVision.getBestDetectedTargetInfo(id, null);
+        }
 
         if (aprilTagInfo != null && robot.blinkin != null)
         {
@@ -414,6 +625,22 @@ public class Vision
         return aprilTagInfo;
     }   //getDetectedAprilTag
 
+    /**
+     * This method calculates the robot's absolute field location from the AprilTag's absolute field location and
+     * its pose relative to the camera.
+     *
+     * @param aprilTagId specifies the AprilTag ID.
+     * @param aprilTagPoseFromCamera specifies the AprilTag pose relative to the camera.
+     * @return robot field location.
+     */
+    public static TrcPose2D getRobotFieldPose(int aprilTagId, TrcPose2D aprilTagPoseFromCamera)
+    {
+        TrcPose2D aprilTagPose = RobotParams.APRILTAG_POSES[aprilTagId - 1];
+        TrcPose2D cameraPose = aprilTagPose.subtractRelativePose(aprilTagPoseFromCamera);
+
+        return cameraPose.subtractRelativePose(RobotParams.CAM_POSE);
+    }   //getRobotFieldPose
+
     /**
      * This method calculates the robot's absolute field location with the detected AprilTagInfo.
      *
@@ -426,44 +653,131 @@ public class Vision
 
         if (aprilTagInfo != null)
         {
-            TrcPose2D aprilTagPose = RobotParams.APRILTAG_POSES[aprilTagInfo.detectedObj.aprilTagDetection.id - 1];
-            TrcPose2D cameraPose = aprilTagPose.subtractRelativePose(aprilTagInfo.objPose);
-            robotPose = cameraPose.subtractRelativePose(RobotParams.CAM_POSE);
+            int aprilTagId = aprilTagInfo.detectedObj.aprilTagDetection.id;
+
+            robotPose = getRobotFieldPose(aprilTagId, aprilTagInfo.objPose);
             tracer.traceInfo(
                 moduleName,
-                "AprilTagId=" + aprilTagInfo.detectedObj.aprilTagDetection.id +
-                ", aprilTagFieldPose=" + aprilTagPose +
+                "AprilTagId=" + aprilTagId +
+                ", aprilTagFieldPose=" + RobotParams.APRILTAG_POSES[aprilTagId - 1] +
                 ", aprilTagPoseFromCamera=" + aprilTagInfo.objPose +
-                ", cameraPose=" + cameraPose +
-                ", robotPose=%s" + robotPose);
+                ", robotPose=" + robotPose);
         }
 
         return robotPose;
     }   //getRobotFieldPose
 
     /**
-     * This method uses vision to find an AprilTag and uses the AprilTag's absolute field location and its relative
-     * position from the camera to calculate the robot's absolute field location.
+     * This method uses vision to find the AprilTags in view and uses their absolute field locations and their
+     * relative positions from the camera to calculate the robot's absolute field location.
      *
-     * @return robot field location.
+     * @return robot field location, null if no AprilTag is found in a recent frame.
      */
     public TrcPose2D getRobotFieldPose()
+    {
+        return robotPoseCache != null? robotPoseCache.get(robotFieldPoseComputer): computeRobotFieldPose();
+    }   //getRobotFieldPose
+
+    /**
+     * This method finds all AprilTags in view and fuses the robot's absolute field locations calculated from each
+     * of them, rejecting the ones that disagree with the rest.
+     *
+     * @return robot field location.
+     */
+    private synchronized TrcPose2D computeRobotFieldPose()
     {
         TrcPose2D robotPose = null;
 
         if (aprilTagVision != null)
         {
-            // Find any AprilTag in view.
-            TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject> aprilTagInfo = getDetectedAprilTag(null, -1);
+            // Find all AprilTags in view.
+            TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject>[] aprilTags =
+                aprilTagVision.getDetectedTargetsInfo(null, null);
 
-            if (aprilTagInfo != null)
+            if (aprilTags != null)
             {
-                robotPose = getRobotFieldPose(aprilTagInfo);
+                long frameTime = 0;
+
+                aprilTagLocalizer.reset();
+                for (TrcVisionTargetInfo<FtcVisionAprilTag.DetectedObject> aprilTagInfo: aprilTags)
+                {
+                    frameTime = aprilTagInfo.detectedObj.aprilTagDetection.frameAcquisitionNanoTime;
+                    int aprilTagId = aprilTagInfo.detectedObj.aprilTagDetection.id;
+
+                    if (aprilTagId >= 1 && aprilTagId <= RobotParams.APRILTAG_POSES.length)
+                    {
+                        TrcPose2D aprilTagPose = RobotParams.APRILTAG_POSES[aprilTagId - 1];
+                        TrcPose2D tagRobotPose = getRobotFieldPose(aprilTagId, aprilTagInfo.objPose);
+
+                        aprilTagLocalizer.addObservation(
+                            aprilTagId, tagRobotPose.x, tagRobotPose.y, tagRobotPose.angle,
+                            aprilTagPose.x, aprilTagPose.y,
+                            TrcUtil.magnitude(aprilTagInfo.objPose.x, aprilTagInfo.objPose.y));
+                    }
+                }
+
+                if (aprilTagLocalizer.solve())
+                {
+                    double[] covariance = aprilTagLocalizer.getCovariance();
+
+                    robotPose = aprilTagLocalizer.getPose();
+                    robotFieldPoseTime = frameTime;
+                    tracer.traceInfo(
+                        moduleName,
+                        "AprilTags=" + aprilTagLocalizer.getNumInliers() + "/" +
+                        aprilTagLocalizer.getNumObservations() +
+                        ", robotPose=" + robotPose +
+                        ", stdDev=(" + Math.sqrt(covariance[0]) + ", " + Math.sqrt(covariance[4]) + ", " +
+                        Math.sqrt(covariance[8]) + ")");
+                }
             }
         }
 
         return robotPose;
-    }   //getRobotFieldPose
+    }   //computeRobotFieldPose
+
+    //
+    // Implements KalmanPoseEstimator.VisionPoseSource interface.
+    //
+
+    @Override
+    public TrcPose2D getPose()
+    {
+        return getRobotFieldPose();
+    }   //getPose
+
+    @Override
+    public long getPoseTime()
+    {
+        return robotFieldPoseTime;
+    }   //getPoseTime
+
+    @Override
+    public double[] getPoseCovariance()
+    {
+        return aprilTagLocalizer != null? aprilTagLocalizer.getCovariance(): null;
+    }   //getPoseCovariance
+
+    /**
+     * This method returns the capture time of the frame the last robot field pose was computed from.
+     *
+     * @return frame capture time in nanoseconds (System.nanoTime() time base).
+     */
+    public long getRobotFieldPoseTime()
+    {
+        return robotFieldPoseTime;
+    }   //getRobotFieldPoseTime
+
+    /**
+     * This method returns the AprilTag localizer so that the caller can inspect the covariance and inliers of the
+     * last fused pose.
+     *
+     * @return AprilTag localizer, null if AprilTag vision is not used.
+     */
+    public AprilTagLocalizer getAprilTagLocalizer()
+    {
+        return aprilTagLocalizer;
+    }   //getAprilTagLocalizer
 
     /**
      * This method enables/disables RedBlob vision.
@@ -474,7 +788,7 @@ public class Vision
     {
         if (redBlobProcessor != null)
         {
-            vision.setProcessorEnabled(redBlobProcessor, enabled);
+            setProcessorEnabled(redBlobProcessor, enabled);
         }
     }   //setRedBlobVisionEnabled
 
@@ -485,9 +799,43 @@ public class Vision
      */
     public boolean isRedBlobVisionEnabled()
     {
-        return redBlobProcessor != null && vision.isVisionProcessorEnabled(redBlobProcessor);
+        return redBlobProcessor != null && isProcessorEnabled(redBlobProcessor);
     }   //isRedBlobVisionEnabled
 
+    /**
+     * This method returns the best detected object of a color blob vision. If the processor is wrapped to process a
+     * region of the frame, the objects come from the wrapper in full frame coordinates, not from the color blob
+     * vision which has them in region coordinates.
+     *
+     * @param colorBlobVision specifies the color blob vision.
+     * @param processor specifies the registered processor of the color blob vision.
+     * @return best detected object info, null if none.
+     */
+    private TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject> getBestColorBlob(
+        FtcVisionEocvColorBlob colorBlobVision, VisionProcessor processor)
+    {
+        TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject> colorBlobInfo = null;
+
+        if (processor instanceof RoiColorBlobProcessor)
+        {
+            TrcOpenCvColorBlobPipeline.DetectedObject[] detectedObjects =
+                ((RoiColorBlobProcessor) processor).getDetectedObjects();
+
+            if (detectedObjects != null && detectedObjects.length > 0)
+            {
+                colorBlobInfo = new TrcVisionTargetInfo<>(
+                    detectedObjects[0], RobotParams.CAM_IMAGE_WIDTH, RobotParams.CAM_IMAGE_HEIGHT, colorBlobMapper,
+                    0.0, 0.0);
+            }
+        }
+        else
+        {
+            colorBlobInfo = colorBlobVision.getBestDetectedTargetInfo(null, null, 0.0, 0.0);
+        }
+
+        return colorBlobInfo;
+    }   //getBestColorBlob
+
     /**
      * This method calls ColorBlob vision to detect the Red Blob object.
      *
@@ -497,7 +845,9 @@ public class Vision
     public TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject> getDetectedRedBlob(int lineNum)
     {
         TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject> colorBlobInfo =
-            redBlobVision.getBestDetectedTargetInfo(null, null, 0.0, 0.0);
+            redBlobCache != null?
+                redBlobCache.get(() -> getBestColorBlob(redBlobVision, redBlobProcessor)):
+                getBestColorBlob(redBlobVision, redBlobProcessor);
 
         if (colorBlobInfo != null && robot.blinkin != null)
         {
@@ -522,7 +872,7 @@ public class Vision
     {
         if (blueBlobProcessor != null)
         {
-            vision.setProcessorEnabled(blueBlobProcessor, enabled);
+            setProcessorEnabled(blueBlobProcessor, enabled);
         }
     }   //setBlueBlobVisionEnabled
 
@@ -533,7 +883,7 @@ public class Vision
      */
     public boolean isBlueBlobVisionEnabled()
     {
-        return blueBlobProcessor != null && vision.isVisionProcessorEnabled(blueBlobProcessor);
+        return blueBlobProcessor != null && isProcessorEnabled(blueBlobProcessor);
     }   //isBlueBlobVisionEnabled
 
     /**
@@ -545,7 +895,9 @@ public class Vision
     public TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject> getDetectedBlueBlob(int lineNum)
     {
         TrcVisionTargetInfo<TrcOpenCvColorBlobPipeline.DetectedObject> colorBlobInfo =
-            blueBlobVision.getBestDetectedTargetInfo(null, null, 0.0, 0.0);
+            blueBlobCache != null?
+                blueBlobCache.get(() -> getBestColorBlob(blueBlobVision, blueBlobProcessor)):
+                getBestColorBlob(blueBlobVision, blueBlobProcessor);
 
         if (colorBlobInfo != null && robot.blinkin != null)
         {
@@ -570,7 +922,7 @@ public class Vision
     {
         if (tensorFlowProcessor != null)
         {
-            vision.setProcessorEnabled(tensorFlowProcessor, enabled);
+            setProcessorEnabled(tensorFlowProcessor, enabled);
         }
     }   //setTensorFlowVisionEnabled
 
@@ -581,7 +933,7 @@ public class Vision
      */
     public boolean isTensorFlowVisionEnabled()
     {
-        return tensorFlowProcessor != null && vision.isVisionProcessorEnabled(tensorFlowProcessor);
+        return tensorFlowProcessor != null && isProcessorEnabled(tensorFlowProcessor);
     }   //isTensorFlowVisionEnabled
 
     /**